@@ -0,0 +1,77 @@
+# Script PowerShell pentru mai multe noduri headless pe aceeași mașină (teste de încărcare, seeding)
+#   .\run-cluster.ps1 -Nodes 20      pornește 20 de noduri în cluster\node-01 ... cluster\node-20
+#   .\run-cluster.ps1 -Stop          oprește nodurile pornite anterior
+# Fiecare nod are folderele lui (-Dp2p.home) și portul API ApiBasePort + i; porturile de transfer,
+# de descoperire și DHT sunt alese de sistem și anunțate în rețea. API-ul cere antetul X-P2P-Token cu
+# token-ul din cluster\node-XX\api-token, rescris la fiecare pornire a nodului.
+param(
+    [int]$Nodes = 10,
+    [int]$ApiBasePort = 8787,
+    [switch]$Stop
+)
+
+$clusterDir = Join-Path $PSScriptRoot "cluster"
+$pidFile = Join-Path $clusterDir "pids.txt"
+
+if ($Stop) {
+    if (-not (Test-Path $pidFile)) {
+        Write-Host "Niciun cluster pornit." -ForegroundColor Yellow
+        exit 0
+    }
+    foreach ($nodePid in Get-Content $pidFile) {
+        Stop-Process -Id $nodePid -ErrorAction SilentlyContinue
+    }
+    Remove-Item $pidFile
+    Write-Host "✓ Noduri oprite" -ForegroundColor Green
+    exit 0
+}
+
+Write-Host "========================================" -ForegroundColor Cyan
+Write-Host " P2P - Cluster de $Nodes noduri headless" -ForegroundColor Cyan
+Write-Host "========================================" -ForegroundColor Cyan
+Write-Host ""
+
+$jar = Join-Path $PSScriptRoot "target\p2p-file-sharing-1.0-SNAPSHOT-headless.jar"
+if (-not (Test-Path $jar)) {
+    $localMaven = Join-Path $PSScriptRoot "maven\bin\mvn.cmd"
+    if (Test-Path $localMaven) {
+        $mvnCmd = $localMaven
+    } else {
+        $mvnCmd = "mvn"
+    }
+    Write-Host "Construire jar headless..." -ForegroundColor Yellow
+    & $mvnCmd -q package -DskipTests
+    if ($LASTEXITCODE -ne 0) {
+        Write-Host "[EROARE] Construirea a eșuat!" -ForegroundColor Red
+        exit 1
+    }
+}
+
+# Memorie puțină per nod; arhiva AppCDS (mvn -Pcds package) e folosită dacă există
+$jvmOptions = @("-Xmx48m", "-XX:+UseSerialGC", "-XX:TieredStopAtLevel=1", "-Dfile.encoding=UTF-8")
+$archive = Join-Path $PSScriptRoot "target\cds\headless.jsa"
+if (Test-Path $archive) {
+    $jvmOptions += "`"-XX:SharedArchiveFile=$archive`""
+    Write-Host "✓ Arhivă AppCDS găsită" -ForegroundColor Green
+}
+
+New-Item -ItemType Directory -Force -Path $clusterDir | Out-Null
+$pids = @()
+for ($i = 1; $i -le $Nodes; $i++) {
+    $nodeHome = Join-Path $clusterDir ("node-{0:D2}" -f $i)
+    New-Item -ItemType Directory -Force -Path $nodeHome | Out-Null
+    $apiPort = $ApiBasePort + $i - 1
+    # Căile sunt puse între ghilimele: Start-Process unește argumentele cu spații
+    $arguments = $jvmOptions + @("`"-Dp2p.home=$nodeHome`"", "-Dp2p.api.port=$apiPort", "-jar", "`"$jar`"")
+    $process = Start-Process java -ArgumentList $arguments -WorkingDirectory $nodeHome -PassThru `
+        -RedirectStandardOutput (Join-Path $nodeHome "node.out.log") `
+        -RedirectStandardError (Join-Path $nodeHome "node.err.log")
+    $pids += $process.Id
+    Write-Host ("Nod {0:D2}: PID {1}, API http://127.0.0.1:{2}/api/stats" -f $i, $process.Id, $apiPort) -ForegroundColor White
+}
+$pids | Set-Content $pidFile
+
+Write-Host ""
+Write-Host "✓ $Nodes noduri pornite (loguri în cluster\node-XX\p2p-app.log)" -ForegroundColor Green
+Write-Host "API: antetul X-P2P-Token cu conținutul cluster\node-XX\api-token" -ForegroundColor White
+Write-Host "Oprire: .\run-cluster.ps1 -Stop" -ForegroundColor Yellow
@@ -49,7 +49,7 @@ public class P2PFileShareApp extends Application {
             // Afișează fereastra
             primaryStage.show();
             
-            // Pornește serviciile P2P după ce fereastra e vizibilă
+            // Pornește serviciile P2P după ce fereastra e vizibilă (pe etape, în fundal)
             Platform.runLater(() -> controller.startServices());
             
             logger.info("Aplicație pornită cu succes");
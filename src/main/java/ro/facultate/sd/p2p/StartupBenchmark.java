@@ -0,0 +1,178 @@
+package ro.facultate.sd.p2p;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+/**
+ * Măsoară pornirea unui jar (UI sau headless) cu și fără arhiva AppCDS produsă de profilul Maven cds
+ *
+ *   mvn -Pcds package
+ *   java -cp target/p2p-file-sharing-1.0-SNAPSHOT-headless.jar ro.facultate.sd.p2p.StartupBenchmark \
+ *        target/p2p-file-sharing-1.0-SNAPSHOT-headless.jar target/cds/headless.jsa
+ *
+ * Fiecare rulare e un JVM nou, pornit în același folder temporar (identitatea și cache-urile
+ * sunt create la rularea de încălzire). Se măsoară timpul de la lansare până la primul anunț
+ * de descoperire și, pentru jar-ul cu interfață, până la afișarea ferestrei.
+ * Arhiva trebuie folosită cu același jar (aceeași cale) cu care a fost creată.
+ */
+public final class StartupBenchmark {
+    private static final int ROUNDS = Integer.getInteger("p2p.bench.rounds", 5);
+    private static final int RUN_TIMEOUT_SECONDS = Integer.getInteger("p2p.bench.timeoutSeconds", 60);
+    private static final String UI_MAIN_CLASS = "ro.facultate.sd.p2p.P2PFileShareApp";
+    private static final String ANNOUNCE_MARKER = "Primul anunț trimis"; // NodeDiscoveryService
+    private static final String WINDOW_MARKER = "Aplicație pornită cu succes"; // P2PFileShareApp
+    
+    private StartupBenchmark() {
+    }
+    
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Utilizare: StartupBenchmark <jar> [arhivă .jsa]");
+            System.exit(2);
+        }
+        Path jar = Paths.get(args[0]).toAbsolutePath();
+        Path archive = args.length > 1 ? Paths.get(args[1]).toAbsolutePath() : null;
+        
+        Map<String, String> markers = new LinkedHashMap<>();
+        if (UI_MAIN_CLASS.equals(mainClass(jar))) {
+            markers.put("fereastră", WINDOW_MARKER);
+        }
+        markers.put("primul anunț", ANNOUNCE_MARKER);
+        
+        Map<String, List<String>> configs = new LinkedHashMap<>();
+        configs.put("fără CDS", List.of("-Xshare:off"));
+        configs.put("CDS JDK", List.of());
+        if (archive != null && Files.exists(archive)) {
+            configs.put("AppCDS", List.of("-Xshare:on", "-XX:SharedArchiveFile=" + archive));
+        } else {
+            System.out.println("⚠ Arhivă AppCDS lipsă (mvn -Pcds package) - se compară doar fără CDS / CDS JDK");
+        }
+        
+        Path home = Files.createTempDirectory("p2p-bench-startup");
+        Map<String, Map<String, List<Double>>> results = new LinkedHashMap<>();
+        int exitCode = 0;
+        try {
+            for (Map.Entry<String, List<String>> config : configs.entrySet()) {
+                run(jar, config.getValue(), home, markers); // Încălzire: identitate, cache-uri, cache-ul de pagini
+                results.put(config.getKey(), new LinkedHashMap<>());
+            }
+            // Configurațiile alternează în fiecare rundă, ca variațiile mașinii să le afecteze la fel
+            for (int round = 0; round < ROUNDS; round++) {
+                for (Map.Entry<String, List<String>> config : configs.entrySet()) {
+                    Map<String, Double> times = run(jar, config.getValue(), home, markers);
+                    times.forEach((milestone, millis) -> results.get(config.getKey())
+                        .computeIfAbsent(milestone, key -> new ArrayList<>()).add(millis));
+                }
+            }
+            
+            System.out.printf("Jar: %s, %d runde (mediană)%n", jar.getFileName(), ROUNDS);
+            System.out.printf("JVM: %s %s%n", System.getProperty("java.vm.name"), System.getProperty("java.version"));
+            for (String milestone : markers.keySet()) {
+                StringBuilder line = new StringBuilder(String.format("%-14s", milestone + ":"));
+                for (String config : configs.keySet()) {
+                    line.append(String.format("  %s %6.0f ms", config, median(results.get(config).get(milestone))));
+                }
+                if (configs.containsKey("AppCDS")) {
+                    double base = median(results.get("CDS JDK").get(milestone));
+                    double app = median(results.get("AppCDS").get(milestone));
+                    line.append(String.format("  (AppCDS %+.0f%%)", 100.0 * (app - base) / base));
+                }
+                System.out.println(line);
+            }
+        } catch (IOException e) {
+            System.out.println("❌ " + e.getMessage());
+            exitCode = 1;
+        } finally {
+            deleteTree(home);
+        }
+        System.exit(exitCode);
+    }
+    
+    /**
+     * Pornește jar-ul într-un JVM nou și așteaptă reperele în ieșirea lui
+     * @return milisecunde de la lansare până la fiecare reper
+     */
+    private static Map<String, Double> run(Path jar, List<String> jvmOptions, Path home, Map<String, String> markers)
+            throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmOptions);
+        command.add("-Dfile.encoding=UTF-8"); // Reperele sunt căutate în ieșirea decodată ca UTF-8
+        command.add("-Dp2p.discovery.firstAnnounceDelayMs=0");
+        command.add("-Dp2p.api.port=0");
+        command.add("-jar");
+        command.add(jar.toString());
+        
+        Map<String, Double> times = new ConcurrentHashMap<>();
+        CountDownLatch seen = new CountDownLatch(markers.size());
+        List<String> output = Collections.synchronizedList(new ArrayList<>());
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).directory(home.toFile()).redirectErrorStream(true).start();
+        Thread reader = new Thread(() -> {
+            try (BufferedReader in = new BufferedReader(
+                     new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    double millis = (System.nanoTime() - start) / 1e6;
+                    output.add(line);
+                    for (Map.Entry<String, String> marker : markers.entrySet()) {
+                        if (line.contains(marker.getValue()) && times.putIfAbsent(marker.getKey(), millis) == null) {
+                            seen.countDown();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                // Procesul a fost oprit
+            }
+        }, "StartupBenchmarkReader");
+        reader.setDaemon(true);
+        reader.start();
+        
+        boolean complete = seen.await(RUN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        process.destroy();
+        if (!process.waitFor(10, TimeUnit.SECONDS)) {
+            process.destroyForcibly().waitFor();
+        }
+        if (!complete) {
+            int from = Math.max(0, output.size() - 20);
+            throw new IOException("Repere negăsite în " + RUN_TIMEOUT_SECONDS + " s cu " + jvmOptions
+                                  + "; ultimele linii:\n" + String.join("\n", output.subList(from, output.size())));
+        }
+        return times;
+    }
+    
+    private static String mainClass(Path jar) throws IOException {
+        try (JarFile file = new JarFile(jar.toFile())) {
+            return file.getManifest() != null ? file.getManifest().getMainAttributes().getValue("Main-Class") : null;
+        }
+    }
+    
+    private static double median(List<Double> values) {
+        List<Double> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return sorted.get(sorted.size() / 2);
+    }
+    
+    private static void deleteTree(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Collections.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
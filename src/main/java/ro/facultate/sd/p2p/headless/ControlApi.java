@@ -0,0 +1,295 @@
+package ro.facultate.sd.p2p.headless;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import ro.facultate.sd.p2p.model.FileInfo;
+import ro.facultate.sd.p2p.network.DownloadTask;
+
+/**
+ * API HTTP/JSON pentru controlul unui nod headless (HttpServer din JDK, fără dependențe)
+ *
+ *   GET  /api/stats                      identitate, porturi, peers, fișiere, memorie
+ *   GET  /api/peers                      peers-ii conectați
+ *   GET  /api/files                      fișierele partajate local
+ *   GET  /api/network?q=text             fișierele din cataloagele peers-ilor (câte unul per hash)
+ *   GET  /api/search?q=text              căutare distribuită în rețea
+ *   GET  /api/downloads                  descărcările active sau pe pauză, cu progresul
+ *   POST /api/downloads?hash=...         descarcă fișierul de la toți deținătorii cunoscuți
+ *   POST /api/downloads/pause?name=...   (la fel /resume și /cancel)
+ *
+ * Fiecare cerere trebuie să poarte antetul X-P2P-Token cu token-ul generat la pornire și scris
+ * în fișierul api-token din -Dp2p.home (citibil doar de proprietar), iar antetul Host trebuie să
+ * fie adresa pe care ascultă API-ul. Astfel o pagină web deschisă în browser nu poate apela API-ul
+ * (nici direct, nici printr-un DNS rebinding); legat pe 0.0.0.0, doar token-ul mai e verificat.
+ *
+ *   curl -H "X-P2P-Token: $(cat api-token)" -X POST 'http://127.0.0.1:8787/api/downloads?hash=...'
+ */
+public class ControlApi {
+    private static final Logger logger = LoggerFactory.getLogger(ControlApi.class);
+    private static final int THREADS = 2; // Cereri rare, de la scripturi sau monitorizare
+    private static final String TOKEN_HEADER = "X-P2P-Token";
+    private static final int TOKEN_BYTES = 32;
+    
+    private final HeadlessNode node;
+    private final HttpServer server;
+    private final byte[] token; // Nou la fiecare pornire
+    private final Set<String> allowedHosts; // Gol = orice Host (API legat pe toate interfețele)
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS, r -> {
+        Thread thread = new Thread(r, "ControlApi");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Gson gson = new GsonBuilder().serializeNulls().create();
+    
+    /**
+     * @param tokenFile fișierul în care e scris token-ul cerut de API (suprascris la fiecare pornire)
+     */
+    public ControlApi(HeadlessNode node, InetSocketAddress address, Path tokenFile) throws IOException {
+        this.node = node;
+        this.token = writeToken(tokenFile);
+        this.allowedHosts = allowedHosts(address);
+        this.server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext("/api/stats", guarded(get(query -> node.getStats())));
+        server.createContext("/api/peers", guarded(get(query -> node.getPeers())));
+        server.createContext("/api/files", guarded(get(query -> node.getSharedFiles())));
+        server.createContext("/api/network", guarded(get(query -> node.getNetworkFiles(query.get("q")))));
+        server.createContext("/api/search", guarded(get(query -> node.search(required(query, "q")))));
+        server.createContext("/api/downloads", guarded(this::handleDownloads));
+        logger.info("Token-ul API-ului de control e în {}", tokenFile.toAbsolutePath());
+    }
+    
+    public void start() {
+        server.start();
+        logger.info("🛰 API de control pe http://{}:{}/api", server.getAddress().getHostString(), getPort());
+    }
+    
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+    
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+    
+    /**
+     * /api/downloads: listare (GET), pornire (POST cu hash), pause/resume/cancel (POST cu name)
+     */
+    private void handleDownloads(HttpExchange exchange) throws IOException {
+        try {
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String action = exchange.getRequestURI().getPath().substring("/api/downloads".length());
+            String method = exchange.getRequestMethod();
+            
+            if (action.isEmpty() && "GET".equals(method)) {
+                respond(exchange, 200, downloads());
+                return;
+            }
+            if (!"POST".equals(method)) {
+                respond(exchange, 405, error("Metodă nepermisă: " + method));
+                return;
+            }
+            switch (action) {
+                case "" -> {
+                    FileInfo file = node.download(required(query, "hash"));
+                    if (file == null) {
+                        respond(exchange, 404, error("Niciun peer conectat nu are fișierul cu acest hash"));
+                    } else {
+                        respond(exchange, 202, file);
+                    }
+                }
+                case "/pause" -> {
+                    node.getFileClient().pauseDownload(required(query, "name"));
+                    respond(exchange, 200, downloads());
+                }
+                case "/resume" -> {
+                    node.getFileClient().resumeDownload(required(query, "name"));
+                    respond(exchange, 200, downloads());
+                }
+                case "/cancel" -> {
+                    node.getFileClient().cancelDownload(required(query, "name"));
+                    respond(exchange, 200, downloads());
+                }
+                default -> respond(exchange, 404, error("Acțiune necunoscută: " + action));
+            }
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, error(e.getMessage()));
+        } catch (RuntimeException e) {
+            logger.warn("Cerere API eșuată: {}", e.toString());
+            respond(exchange, 500, error(e.toString()));
+        }
+    }
+    
+    private List<Map<String, Object>> downloads() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (DownloadTask task : node.getDownloads()) {
+            FileInfo file = task.getFileInfo();
+            long[] progress = node.getProgress(file.getFileName());
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("fileName", file.getFileName());
+            entry.put("fileHash", file.getFileHash());
+            entry.put("state", task.getState());
+            entry.put("receivedBytes", progress != null ? progress[0] : null);
+            entry.put("totalBytes", file.getFileSize());
+            result.add(entry);
+        }
+        return result;
+    }
+    
+    /**
+     * Refuză cererile cu alt Host decât adresa API-ului sau fără token-ul corect
+     */
+    private HttpHandler guarded(HttpHandler handler) {
+        return exchange -> {
+            if (!allowedHosts.isEmpty() && !allowedHosts.contains(hostName(exchange.getRequestHeaders().getFirst("Host")))) {
+                respond(exchange, 403, error("Host nepermis"));
+                return;
+            }
+            String presented = exchange.getRequestHeaders().getFirst(TOKEN_HEADER);
+            if (presented == null || !MessageDigest.isEqual(token, presented.getBytes(StandardCharsets.UTF_8))) {
+                respond(exchange, 401, error("Lipsește antetul " + TOKEN_HEADER + " sau token-ul e greșit"));
+                return;
+            }
+            handler.handle(exchange);
+        };
+    }
+    
+    /**
+     * Generează token-ul și îl scrie în fișier, citibil doar de proprietar unde se poate
+     */
+    private static byte[] writeToken(Path tokenFile) throws IOException {
+        byte[] random = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(random);
+        String token = HexFormat.of().formatHex(random);
+        Files.deleteIfExists(tokenFile);
+        try {
+            Files.createFile(tokenFile, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException e) {
+            // Sistem de fișiere fără permisiuni POSIX (ex. Windows) - rămân permisiunile implicite
+        }
+        Files.writeString(tokenFile, token);
+        return token.getBytes(StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Numele sub care API-ul poate fi apelat; pe loopback și localhost, pe 0.0.0.0 oricare
+     */
+    private static Set<String> allowedHosts(InetSocketAddress address) {
+        InetAddress bound = address.getAddress();
+        if (bound == null || bound.isAnyLocalAddress()) {
+            return Set.of();
+        }
+        String literal = bound.getHostAddress().toLowerCase(Locale.ROOT);
+        String host = address.getHostString().toLowerCase(Locale.ROOT);
+        List<String> names = new ArrayList<>(List.of(literal, "[" + literal + "]", host, "[" + host + "]"));
+        if (bound.isLoopbackAddress()) {
+            names.addAll(List.of("localhost", "127.0.0.1", "[::1]"));
+        }
+        return Set.copyOf(names);
+    }
+    
+    /**
+     * Antetul Host fără port (IPv6 rămâne între paranteze drepte)
+     */
+    private static String hostName(String hostHeader) {
+        if (hostHeader == null) {
+            return "";
+        }
+        String host = hostHeader.trim().toLowerCase(Locale.ROOT);
+        int colon = host.lastIndexOf(':');
+        if (colon > host.lastIndexOf(']')) {
+            host = host.substring(0, colon);
+        }
+        return host;
+    }
+    
+    /**
+     * Handler pentru o resursă doar de citire
+     */
+    private HttpHandler get(Endpoint endpoint) {
+        return exchange -> {
+            try {
+                if (!"GET".equals(exchange.getRequestMethod())) {
+                    respond(exchange, 405, error("Metodă nepermisă: " + exchange.getRequestMethod()));
+                    return;
+                }
+                respond(exchange, 200, endpoint.handle(parseQuery(exchange.getRequestURI().getRawQuery())));
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 400, error(e.getMessage()));
+            } catch (RuntimeException e) {
+                logger.warn("Cerere API eșuată: {}", e.toString());
+                respond(exchange, 500, error(e.toString()));
+            }
+        };
+    }
+    
+    private void respond(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] json = gson.toJson(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, json.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(json);
+        }
+    }
+    
+    private static Map<String, String> error(String message) {
+        return Map.of("error", message);
+    }
+    
+    private static String required(Map<String, String> query, String name) {
+        String value = query.get(name);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Lipsește parametrul '" + name + "'");
+        }
+        return value;
+    }
+    
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String key = equals >= 0 ? pair.substring(0, equals) : pair;
+            String value = equals >= 0 ? pair.substring(equals + 1) : "";
+            query.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+    
+    @FunctionalInterface
+    private interface Endpoint {
+        Object handle(Map<String, String> query);
+    }
+}
@@ -0,0 +1,406 @@
+package ro.facultate.sd.p2p.headless;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ro.facultate.sd.p2p.model.FileInfo;
+import ro.facultate.sd.p2p.model.P2PMessage;
+import ro.facultate.sd.p2p.model.PeerInfo;
+import ro.facultate.sd.p2p.network.DownloadTask;
+import ro.facultate.sd.p2p.network.FileClient;
+import ro.facultate.sd.p2p.network.FileHashCache;
+import ro.facultate.sd.p2p.network.FileServer;
+import ro.facultate.sd.p2p.network.KademliaNode;
+import ro.facultate.sd.p2p.network.NodeDiscoveryService;
+import ro.facultate.sd.p2p.network.PeerIdentity;
+import ro.facultate.sd.p2p.network.SearchService;
+import ro.facultate.sd.p2p.network.SwimMembership;
+import ro.facultate.sd.p2p.network.TlsTransport;
+import ro.facultate.sd.p2p.network.TransferJournal;
+import ro.facultate.sd.p2p.network.UdpDhtTransport;
+
+/**
+ * Nod P2P fără interfață grafică (servere, containere), controlat prin API-ul HTTP local (ControlApi)
+ *
+ *   java -Xmx48m -XX:+UseSerialGC -XX:TieredStopAtLevel=1 -jar target/p2p-file-sharing-1.0-SNAPSHOT-headless.jar
+ *
+ * Folosește aceleași foldere (P2P-Shared, P2P-Downloads, ...) și aceleași setări -Dp2p.* ca aplicația
+ * grafică; jar-ul headless nu conține JavaFX. Folderele sunt create în -Dp2p.home (implicit folderul
+ * curent), deci mai multe noduri pe aceeași mașină au nevoie doar de foldere și porturi API diferite
+ * (vezi run-cluster.ps1); porturile de transfer și de descoperire sunt alese de sistem. Se oprește la
+ * SIGTERM / Ctrl+C, descărcările în curs fiind reluate la următoarea pornire din jurnal. Token-ul
+ * cerut de API e scris la fiecare pornire în fișierul api-token din -Dp2p.home.
+ */
+public final class HeadlessNode {
+    private static final Logger logger = LoggerFactory.getLogger(HeadlessNode.class);
+    private static final boolean FETCH_CATALOG_ON_DISCOVERY =
+        Boolean.parseBoolean(System.getProperty("p2p.catalog.fetchOnDiscovery", "true"));
+    private static final boolean DHT_ENABLED = Boolean.parseBoolean(System.getProperty("p2p.dht.enabled", "true"));
+    private static final int DHT_PORT = Integer.getInteger("p2p.dht.port", 0);
+    private static final int TRANSFER_PORT = Integer.getInteger("p2p.transfer.port", 0); // 0 = ales de sistem
+    private static final String DHT_SEEDS = System.getProperty("p2p.dht.seeds", "");
+    private static final boolean TLS_ENABLED = Boolean.parseBoolean(System.getProperty("p2p.tls.enabled", "false"));
+    private static final boolean TRANSFER_JOURNAL_ENABLED =
+        Boolean.parseBoolean(System.getProperty("p2p.journal.enabled", "true"));
+    // Rulare de antrenament pentru arhiva AppCDS (profilul Maven cds): oprire după pornire și indexare
+    private static final boolean EXIT_WHEN_READY =
+        Boolean.parseBoolean(System.getProperty("p2p.startup.exitWhenReady", "false"));
+    // Implicit doar pe loopback; fiecare cerere are nevoie și de antetul X-P2P-Token
+    private static final String API_HOST = System.getProperty("p2p.api.host", "127.0.0.1");
+    private static final int API_PORT = Integer.getInteger("p2p.api.port", 8787);
+    private static final int SEARCH_MAX_RESULTS = 200;
+    
+    private final Path sharedFolder;
+    private final Path downloadFolder;
+    private final Path cacheFolder;
+    private final Path identityFolder;
+    private final Path apiTokenFile; // Token-ul cerut de ControlApi, nou la fiecare pornire
+    private final long startedAt = System.currentTimeMillis();
+    
+    private final Map<String, PeerInfo> connectedPeers = new ConcurrentHashMap<>();
+    private final Map<String, Set<FileInfo>> catalogs = new ConcurrentHashMap<>(); // peerId → fișierele lui
+    private final Map<String, long[]> progress = new ConcurrentHashMap<>(); // Nume fișier → {primiți, total}
+    private final ExecutorService catalogFetcher = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "FetchFiles");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private PeerIdentity identity;
+    private NodeDiscoveryService discoveryService;
+    private FileServer fileServer;
+    private FileHashCache hashCache;
+    private FileClient fileClient;
+    private SearchService searchService;
+    private KademliaNode dht; // null dacă e dezactivat sau nu a putut porni
+    private TransferJournal transferJournal; // null dacă e dezactivat sau folosit de altă instanță
+    private ControlApi api;
+    private CompletableFuture<Integer> indexing;
+    private boolean tls;
+    
+    public HeadlessNode(Path home) {
+        this.sharedFolder = home.resolve("P2P-Shared");
+        this.downloadFolder = home.resolve("P2P-Downloads");
+        this.cacheFolder = home.resolve("P2P-Cache");
+        this.identityFolder = home.resolve("P2P-Identity");
+        this.apiTokenFile = home.resolve("api-token");
+    }
+    
+    public static void main(String[] args) {
+        HeadlessNode node = new HeadlessNode(Paths.get(System.getProperty("p2p.home", System.getProperty("user.dir"))));
+        Runtime.getRuntime().addShutdownHook(new Thread(node::stop, "Shutdown"));
+        try {
+            node.start();
+            if (EXIT_WHEN_READY) {
+                node.indexing.join();
+                System.exit(0);
+            }
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            logger.error("Nodul nu a putut porni", e);
+            System.exit(1); // Rulează și hook-ul de oprire pentru serviciile deja pornite
+        }
+    }
+    
+    /**
+     * Pornește serverul de fișiere, clientul, descoperirea și căutarea, apoi API-ul de control
+     */
+    public void start() throws IOException, GeneralSecurityException {
+        Files.createDirectories(sharedFolder);
+        Files.createDirectories(downloadFolder);
+        identity = PeerIdentity.loadOrCreate(identityFolder);
+        TlsTransport transport = TLS_ENABLED ? TlsTransport.create(identity) : null;
+        tls = transport != null;
+        
+        // Clientul există înainte de descoperire: primii peers găsiți își trimit imediat cataloagele
+        fileClient = new FileClient(downloadFolder);
+        fileClient.setTlsTransport(transport);
+        fileClient.setOnDownloadStart(fileName -> logger.info("📥 Începe descărcarea: {}", fileName));
+        fileClient.setOnDownloadBytes((fileName, received, total) -> progress.put(fileName, new long[] {received, total}));
+        fileClient.setOnDownloadComplete(fileName -> {
+            progress.remove(fileName);
+            logger.info("✅ Descărcare completă: {}", fileName);
+        });
+        fileClient.setOnDownloadError((fileName, error) -> logger.warn("❌ {}: {}", fileName, error));
+        
+        // Serverul pornește înaintea anunțurilor, deci peers-ii care ne descoperă găsesc portul deschis;
+        // la start partajează doar fișierele cu hash-ul salvat, restul sunt indexate după anunț
+        hashCache = new FileHashCache(cacheFolder.resolve("shared-hashes.json"));
+        hashCache.load();
+        fileServer = startFileServer(transport);
+        int fileTransferPort = fileServer.getPort();
+        
+        discoveryService = new NodeDiscoveryService(identity.getPeerId(), fileTransferPort);
+        discoveryService.setOnPeerDiscovered(this::onPeerDiscovered);
+        discoveryService.setOnPeerLost(this::onPeerLost);
+        discoveryService.setOnFilesAdded(this::onFilesAdded);
+        discoveryService.setCatalogFetcher(fileClient::requestCatalogEvents);
+        fileServer.setCatalogEventsHandler(discoveryService::getCatalogEvents);
+        searchService = new SearchService(identity.getPeerId(), fileServer, fileClient, connectedPeers::values);
+        fileServer.setSearchHandler(searchService::handleQuery);
+        if (DHT_ENABLED) {
+            startDht();
+        }
+        discoveryService.start();
+        if (dht != null) {
+            for (FileInfo file : fileServer.getSharedFiles()) {
+                dht.publish(file.getFileHash(), fileTransferPort);
+            }
+        }
+        
+        indexing = fileServer.startIndexing();
+        indexing.thenAccept(added -> {
+            if (added > 0) {
+                logger.info("📂 {} fișiere noi indexate, {} partajate în total", added, fileServer.getSharedFiles().size());
+            }
+        });
+        
+        if (TRANSFER_JOURNAL_ENABLED) {
+            restoreTransfers();
+        }
+        
+        api = new ControlApi(this, new InetSocketAddress(API_HOST, API_PORT), apiTokenFile);
+        api.start();
+        logger.info("🚀 Nod headless pornit: peer {}, transfer TCP {}{}, API http://{}:{}/api/stats",
+                    identity.getPeerId().substring(0, 8), fileTransferPort, tls ? " 🔒 TLS" : "",
+                    API_HOST, api.getPort());
+    }
+    
+    /**
+     * Portul e ales de sistem la bind (implicit) și ajunge la ceilalți prin anunțurile de descoperire;
+     * -Dp2p.transfer.port fixează un port anume, iar dacă e ocupat pornirea eșuează
+     */
+    private FileServer startFileServer(TlsTransport transport) throws IOException {
+        FileServer server = new FileServer(TRANSFER_PORT, sharedFolder);
+        server.setTlsTransport(transport);
+        server.setHashCache(hashCache);
+        server.setOnFileAdded(this::onOwnFileAdded);
+        server.start();
+        return server;
+    }
+    
+    /**
+     * Fișier nou în P2P-Shared: anunțat în rețea și publicat în DHT
+     */
+    private void onOwnFileAdded(FileInfo fileInfo) {
+        fileInfo.setOwnerPeerId(identity.getPeerId());
+        discoveryService.broadcastFileAdded(fileInfo);
+        if (dht != null) {
+            dht.publish(fileInfo.getFileHash(), fileServer.getPort());
+        }
+    }
+    
+    private void startDht() {
+        try {
+            KademliaNode node = new KademliaNode(identity.getPeerId(), new UdpDhtTransport(null, DHT_PORT));
+            node.start();
+            discoveryService.setDhtPort(node.getPort());
+            List<InetSocketAddress> seeds = SwimMembership.parseSeeds(DHT_SEEDS);
+            if (!seeds.isEmpty()) {
+                node.bootstrap(seeds);
+            }
+            dht = node;
+        } catch (IOException e) {
+            logger.warn("DHT indisponibil: {}", e.getMessage());
+        }
+    }
+    
+    private void restoreTransfers() {
+        TransferJournal journal = new TransferJournal(cacheFolder.resolve("transfers.journal"));
+        try {
+            List<TransferJournal.Entry> unfinished = journal.open();
+            transferJournal = journal;
+            fileClient.setTransferJournal(journal);
+            fileClient.restoreDownloads(unfinished);
+        } catch (IOException e) {
+            logger.warn("Jurnal transferuri indisponibil, descărcările nu se reiau automat: {}", e.getMessage());
+        }
+    }
+    
+    private void onPeerDiscovered(PeerInfo peer) {
+        connectedPeers.put(peer.getPeerId(), peer);
+        fileClient.updatePeerAddress(peer);
+        if (dht != null && peer.getDhtPort() > 0) {
+            dht.addContact(new InetSocketAddress(peer.getAddress(), peer.getDhtPort()));
+        }
+        logger.info("🌐 Peer nou: {} @ {}", peer.getPeerId().substring(0, 8), peer.getAddress());
+        if (FETCH_CATALOG_ON_DISCOVERY) {
+            catalogFetcher.execute(() -> {
+                P2PMessage catalog = fileClient.requestCatalogEvents(peer, -1);
+                if (catalog != null && catalog.getFileList() != null && connectedPeers.containsKey(peer.getPeerId())) {
+                    catalogOf(peer.getPeerId()).addAll(catalog.getFileList());
+                }
+            });
+        }
+    }
+    
+    private void onPeerLost(String peerId) {
+        connectedPeers.remove(peerId);
+        catalogs.remove(peerId);
+        logger.info("❌ Peer deconectat: {}", peerId.substring(0, 8));
+    }
+    
+    private void onFilesAdded(List<FileInfo> files) {
+        for (FileInfo file : files) {
+            String owner = file.getOwnerPeerId();
+            if (owner != null && !owner.equals(identity.getPeerId())) {
+                catalogOf(owner).add(file);
+            }
+        }
+    }
+    
+    private Set<FileInfo> catalogOf(String peerId) {
+        return catalogs.computeIfAbsent(peerId, id -> ConcurrentHashMap.newKeySet());
+    }
+    
+    // Operații pentru ControlApi
+    
+    public List<FileInfo> getSharedFiles() {
+        return fileServer.getSharedFiles();
+    }
+    
+    public Collection<PeerInfo> getPeers() {
+        return connectedPeers.values();
+    }
+    
+    /**
+     * Fișierele din rețea, câte unul per hash (de la primul deținător), opțional filtrate după nume
+     */
+    public List<FileInfo> getNetworkFiles(String query) {
+        String needle = query != null ? query.toLowerCase(Locale.ROOT) : null;
+        Map<String, FileInfo> byHash = new LinkedHashMap<>();
+        for (Set<FileInfo> files : catalogs.values()) {
+            for (FileInfo file : files) {
+                if (needle == null || file.getFileName().toLowerCase(Locale.ROOT).contains(needle)) {
+                    byHash.putIfAbsent(file.getFileHash(), file);
+                }
+            }
+        }
+        return new ArrayList<>(byHash.values());
+    }
+    
+    /**
+     * Căutare distribuită (SEARCH_QUERY); rezultatele pot fi apoi descărcate după hash
+     */
+    public List<FileInfo> search(String query) {
+        List<FileInfo> hits = searchService.search(query, SEARCH_MAX_RESULTS);
+        for (FileInfo hit : hits) {
+            if (hit.getOwnerPeerId() != null && connectedPeers.containsKey(hit.getOwnerPeerId())) {
+                catalogOf(hit.getOwnerPeerId()).add(hit);
+            }
+        }
+        return hits;
+    }
+    
+    /**
+     * Pornește descărcarea unui fișier de la toți deținătorii lui cunoscuți
+     * @return fișierul, sau null dacă hash-ul nu e în niciun catalog
+     */
+    public FileInfo download(String fileHash) {
+        List<FileInfo> holders = new ArrayList<>();
+        for (Map.Entry<String, Set<FileInfo>> catalog : catalogs.entrySet()) {
+            if (!connectedPeers.containsKey(catalog.getKey())) {
+                continue;
+            }
+            for (FileInfo file : catalog.getValue()) {
+                if (file.getFileHash().equals(fileHash)) {
+                    holders.add(file);
+                }
+            }
+        }
+        if (holders.isEmpty()) {
+            return null;
+        }
+        fileClient.downloadFileAsync(holders.get(0), holders);
+        return holders.get(0);
+    }
+    
+    public List<DownloadTask> getDownloads() {
+        return fileClient.getDownloads();
+    }
+    
+    /**
+     * @return {primiți, total} din ultimul progres raportat, sau null dacă nu a început transferul
+     */
+    public long[] getProgress(String fileName) {
+        return progress.get(fileName);
+    }
+    
+    public FileClient getFileClient() {
+        return fileClient;
+    }
+    
+    /**
+     * Sumar pentru monitorizare: identitate, porturi, număr de peers/fișiere/descărcări, memorie
+     */
+    public Map<String, Object> getStats() {
+        Runtime runtime = Runtime.getRuntime();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("peerId", identity.getPeerId());
+        stats.put("fileTransferPort", fileServer.getPort());
+        stats.put("discoveryPort", discoveryService.getDiscoveryPort());
+        stats.put("dhtPort", dht != null ? dht.getPort() : null);
+        stats.put("tls", tls);
+        stats.put("peers", connectedPeers.size());
+        stats.put("sharedFiles", fileServer.getSharedFiles().size());
+        stats.put("indexing", fileServer.isIndexing());
+        stats.put("networkFiles", getNetworkFiles(null).size());
+        stats.put("downloads", getDownloads().size());
+        stats.put("uptimeSeconds", (System.currentTimeMillis() - startedAt) / 1000);
+        stats.put("heapUsedMb", (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024));
+        stats.put("heapMaxMb", runtime.maxMemory() / (1024 * 1024));
+        return stats;
+    }
+    
+    /**
+     * Oprește API-ul și serviciile (hook-ul de oprire al JVM-ului)
+     */
+    public void stop() {
+        if (api != null) {
+            api.stop();
+        }
+        if (discoveryService != null) {
+            discoveryService.stop();
+        }
+        if (fileServer != null) {
+            fileServer.stop();
+        }
+        if (fileClient != null) {
+            fileClient.shutdown();
+        }
+        if (searchService != null) {
+            searchService.stop();
+        }
+        if (dht != null) {
+            dht.stop();
+        }
+        catalogFetcher.shutdownNow();
+        if (hashCache != null) {
+            hashCache.close();
+        }
+        if (transferJournal != null) {
+            transferJournal.close();
+        }
+        if (identity != null) {
+            identity.close();
+        }
+        logger.info("Nod oprit");
+    }
+}
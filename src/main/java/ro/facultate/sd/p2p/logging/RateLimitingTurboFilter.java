@@ -0,0 +1,182 @@
+package ro.facultate.sd.p2p.logging;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Marker;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+
+/**
+ * Filtru logback care limitează mesajele repetitive (ex. evenimente de transfer)
+ * Fiecare șablon de mesaj (per logger) are o fereastră de timp: primele N mesaje
+ * trec, restul sunt eșantionate (1 din M) sau suprimate, iar la sfârșitul ferestrei
+ * se loghează un rezumat cu numărul de mesaje suprimate - și după o rafală urmată
+ * de liniște, și la oprirea logback-ului. WARN și ERROR nu sunt niciodată filtrate.
+ */
+public class RateLimitingTurboFilter extends TurboFilter {
+    private static final int MAX_TRACKED_PATTERNS = 1024;
+    private static final String SUMMARY_FORMAT = "[rate-limit] {} mesaje similare suprimate: \"{}\"";
+    
+    private long windowMillis = 1000;
+    private int maxPerWindow = 20;
+    private int sampleEvery = 0; // 0 = suprimă tot peste limită
+    
+    private final ConcurrentHashMap<Key, Window> windows = new ConcurrentHashMap<>();
+    private ScheduledFuture<?> sweeper; // Rezumatele ferestrelor în care nu mai vine niciun mesaj
+    
+    @Override
+    public void start() {
+        // Oprit de context înaintea appender-elor, deci rezumatele de la oprire mai ajung în log
+        getContext().register(this);
+        sweeper = getContext().getScheduledExecutorService()
+            .scheduleAtFixedRate(this::flushExpired, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+        getContext().addScheduledFuture(sweeper);
+        super.start();
+    }
+        
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format,
+                              Object[] params, Throwable t) {
+        if (format == null || level == null || level.isGreaterOrEqual(Level.WARN)) {
+            return FilterReply.NEUTRAL;
+        }
+        // Evaluăm doar mesajele care ar fi oricum logate
+        if (!level.isGreaterOrEqual(logger.getEffectiveLevel()) || SUMMARY_FORMAT.equals(format)) {
+            return FilterReply.NEUTRAL;
+        }
+        
+        if (windows.size() > MAX_TRACKED_PATTERNS) {
+            flushAll(); // Șabloane construite dinamic - evităm creșterea nelimitată
+        }
+        
+        Window window = windows.computeIfAbsent(new Key(logger.getName(), format), k -> new Window(logger, format));
+        rollOver(window, System.currentTimeMillis());
+        
+        int count = window.count.incrementAndGet();
+        if (count <= maxPerWindow) {
+            return FilterReply.NEUTRAL;
+        }
+        if (sampleEvery > 0 && (count - maxPerWindow) % sampleEvery == 0) {
+            return FilterReply.NEUTRAL;
+        }
+        
+        window.suppressed.incrementAndGet();
+        return FilterReply.DENY;
+    }
+    
+    @Override
+    public void stop() {
+        if (sweeper != null) {
+            sweeper.cancel(false);
+            sweeper = null;
+        }
+        flushAll();
+        super.stop();
+    }
+    
+    /**
+     * Începe o fereastră nouă dacă cea curentă a expirat, cu rezumatul celei vechi
+     * @return true dacă fereastra a expirat
+     */
+    private boolean rollOver(Window window, long now) {
+        long start = window.start.get();
+        if (now - start < windowMillis || !window.start.compareAndSet(start, now)) {
+            return false;
+        }
+        int suppressed = window.suppressed.getAndSet(0);
+        window.count.set(0);
+        if (suppressed > 0) {
+            window.logger.info(SUMMARY_FORMAT, suppressed, window.format);
+        }
+        return true;
+    }
+    
+    /**
+     * Rezumă ferestrele expirate și uită șabloanele care nu mai apar
+     */
+    private void flushExpired() {
+        long now = System.currentTimeMillis();
+        windows.forEach((key, window) -> {
+            boolean idle = window.count.get() == 0;
+            if (rollOver(window, now) && idle) {
+                windows.remove(key, window);
+            }
+        });
+    }
+    
+    /**
+     * Rezumă toate ferestrele și le uită (la prea multe șabloane și la oprire)
+     */
+    private void flushAll() {
+        windows.forEach((key, window) -> {
+            windows.remove(key, window);
+            int suppressed = window.suppressed.getAndSet(0);
+            if (suppressed > 0) {
+                window.logger.info(SUMMARY_FORMAT, suppressed, window.format);
+            }
+        });
+    }
+    
+    // Setters folosiți din logback.xml
+    public void setWindowMillis(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+    
+    public void setMaxPerWindow(int maxPerWindow) {
+        this.maxPerWindow = maxPerWindow;
+    }
+    
+    public void setSampleEvery(int sampleEvery) {
+        this.sampleEvery = sampleEvery;
+    }
+    
+    /**
+     * Contorii pentru un șablon de mesaj în fereastra curentă
+     */
+    private static final class Window {
+        private final Logger logger;
+        private final String format;
+        private final AtomicLong start = new AtomicLong(System.currentTimeMillis());
+        private final AtomicInteger count = new AtomicInteger();
+        private final AtomicInteger suppressed = new AtomicInteger();
+        
+        private Window(Logger logger, String format) {
+            this.logger = logger;
+            this.format = format;
+        }
+    }
+    
+    /**
+     * Același șablon din loggere diferite are ferestre separate
+     */
+    private static final class Key {
+        private final String loggerName;
+        private final String format;
+        
+        private Key(String loggerName, String format) {
+            this.loggerName = loggerName;
+            this.format = format;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return loggerName.equals(key.loggerName) && format.equals(key.format);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(loggerName, format);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package ro.facultate.sd.p2p.model;
+
+import java.io.Serializable;
+
+/**
+ * Semnăturile pe blocuri ale unei versiuni vechi a fișierului, trimise de client în FILE_REQUEST
+ * Pentru fiecare bloc: o sumă rulantă slabă (găsită ieftin la orice offset) și un hash tare
+ * trunchiat (confirmă potrivirea). Serverul trimite apoi doar blocurile care diferă.
+ */
+public class BlockSignature implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    private final int blockSize;
+    private final long basisLength; // Dimensiunea versiunii vechi (ultimul bloc poate fi mai scurt)
+    private final int[] weakSums;
+    private final byte[] strongSums; // strongLength bytes per bloc, concatenați
+    private final int strongLength;
+    private final String basisHash; // MD5 al versiunii vechi
+    
+    public BlockSignature(int blockSize, long basisLength, int[] weakSums, byte[] strongSums,
+                          int strongLength, String basisHash) {
+        this.blockSize = blockSize;
+        this.basisLength = basisLength;
+        this.weakSums = weakSums;
+        this.strongSums = strongSums;
+        this.strongLength = strongLength;
+        this.basisHash = basisHash;
+    }
+    
+    public int getBlockSize() {
+        return blockSize;
+    }
+    
+    public long getBasisLength() {
+        return basisLength;
+    }
+    
+    public int getBlockCount() {
+        return weakSums.length;
+    }
+    
+    /**
+     * Lungimea blocului dat (doar ultimul poate fi mai scurt decât blockSize)
+     */
+    public int getBlockLength(int block) {
+        return (int) Math.min(blockSize, basisLength - (long) block * blockSize);
+    }
+    
+    public int getWeakSum(int block) {
+        return weakSums[block];
+    }
+    
+    public int getStrongLength() {
+        return strongLength;
+    }
+    
+    /**
+     * Compară hash-ul tare al blocului cu cel dat (primii strongLength bytes)
+     */
+    public boolean strongMatches(int block, byte[] strong) {
+        int offset = block * strongLength;
+        for (int i = 0; i < strongLength; i++) {
+            if (strongSums[offset + i] != strong[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    public String getBasisHash() {
+        return basisHash;
+    }
+}
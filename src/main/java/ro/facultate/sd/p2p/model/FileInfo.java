@@ -43,14 +43,21 @@ public class FileInfo implements Serializable {
     }
     
     public String getFileSizeFormatted() {
-        if (fileSize < 1024) {
-            return fileSize + " B";
-        } else if (fileSize < 1024 * 1024) {
-            return String.format("%.2f KB", fileSize / 1024.0);
-        } else if (fileSize < 1024 * 1024 * 1024) {
-            return String.format("%.2f MB", fileSize / (1024.0 * 1024.0));
+        return formatSize(fileSize);
+    }
+    
+    /**
+     * Formatează o dimensiune în bytes (B, KB, MB, GB)
+     */
+    public static String formatSize(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        } else if (bytes < 1024 * 1024) {
+            return String.format("%.2f KB", bytes / 1024.0);
+        } else if (bytes < 1024 * 1024 * 1024) {
+            return String.format("%.2f MB", bytes / (1024.0 * 1024.0));
         } else {
-            return String.format("%.2f GB", fileSize / (1024.0 * 1024.0 * 1024.0));
+            return String.format("%.2f GB", bytes / (1024.0 * 1024.0 * 1024.0));
         }
     }
     
@@ -16,10 +16,15 @@ public class P2PMessage implements Serializable {
         REQUEST_FILE_LIST,  // "Ce fișiere ai?"
         FILE_LIST_RESPONSE, // "Iată lista mea de fișiere"
         FILE_ADDED,         // "Am adăugat un fișier nou!" (UDP broadcast)
+        SEARCH_QUERY,       // "Cine are fișiere care potrivesc X?" (propagat cu TTL)
+        SEARCH_HIT,         // "Iată doar fișierele care potrivesc"
+        REQUEST_CATALOG_EVENTS, // "Ce fișiere ai adăugat după evenimentul N?"
+        CATALOG_EVENTS,     // "Iată evenimentele lipsă (sau lista completă)"
         
         // Mesaje de transfer (TCP)
         FILE_REQUEST,       // "Vreau să descarc fișierul X"
         FILE_ACCEPT,        // "OK, încep să trimit"
+        FILE_QUEUED,        // "Toate sloturile sunt ocupate, ești al N-lea la rând"
         FILE_REJECT,        // "Nu am fișierul sau sunt ocupat"
         FILE_CHUNK,         // Bucată de date din fișier
         FILE_COMPLETE,      // "Am terminat de trimis"
@@ -37,6 +42,22 @@ public class P2PMessage implements Serializable {
     private byte[] fileData;
     private String errorMessage;
     private long resumeOffset;  // Pentru resume download - de la ce byte să înceapă
+    private String queryId;     // ID unic al căutării (pentru eliminarea duplicatelor)
+    private String searchQuery; // Textul căutării
+    private String originPeerId; // Peer-ul care a inițiat căutarea
+    private int ttl;            // Câte noduri mai poate traversa căutarea
+    private int maxResults;     // Limita de rezultate cerută
+    private int catalogEpoch;   // Pornirea peer-ului căreia îi aparțin secvențele de catalog
+    private int catalogSequence; // Ultimul eveniment de catalog cunoscut / inclus
+    private boolean fullCatalog; // Răspunsul conține lista completă, nu doar evenimentele cerute
+    private int queuePosition;  // Poziția în coada de upload (FILE_QUEUED)
+    private long retryAfterMillis; // FILE_REJECT: peer ocupat, reîncearcă după atât (0 = respingere definitivă)
+    private String compression; // FILE_REQUEST: codec acceptat; FILE_ACCEPT: codec ales (null = fără compresie)
+    private int uncompressedLength; // FILE_CHUNK comprimat: dimensiunea originală a bucății
+    private BlockSignature blockSignature; // FILE_REQUEST: versiunea veche deținută de client (transfer delta)
+    private int copyBlock;      // FILE_CHUNK delta: primul bloc de copiat din versiunea veche
+    private int copyBlockCount; // FILE_CHUNK delta: câte blocuri consecutive (0 = bucată cu date)
+    private String contentHash; // FILE_COMPLETE delta: MD5 al versiunii trimise
     
     public P2PMessage() {
     }
@@ -115,6 +136,134 @@ public class P2PMessage implements Serializable {
         this.resumeOffset = resumeOffset;
     }
     
+    public String getQueryId() {
+        return queryId;
+    }
+    
+    public void setQueryId(String queryId) {
+        this.queryId = queryId;
+    }
+    
+    public String getSearchQuery() {
+        return searchQuery;
+    }
+    
+    public void setSearchQuery(String searchQuery) {
+        this.searchQuery = searchQuery;
+    }
+    
+    public String getOriginPeerId() {
+        return originPeerId;
+    }
+    
+    public void setOriginPeerId(String originPeerId) {
+        this.originPeerId = originPeerId;
+    }
+    
+    public int getTtl() {
+        return ttl;
+    }
+    
+    public void setTtl(int ttl) {
+        this.ttl = ttl;
+    }
+    
+    public int getMaxResults() {
+        return maxResults;
+    }
+    
+    public void setMaxResults(int maxResults) {
+        this.maxResults = maxResults;
+    }
+    
+    public int getCatalogEpoch() {
+        return catalogEpoch;
+    }
+    
+    public void setCatalogEpoch(int catalogEpoch) {
+        this.catalogEpoch = catalogEpoch;
+    }
+    
+    public int getCatalogSequence() {
+        return catalogSequence;
+    }
+    
+    public void setCatalogSequence(int catalogSequence) {
+        this.catalogSequence = catalogSequence;
+    }
+    
+    public boolean isFullCatalog() {
+        return fullCatalog;
+    }
+    
+    public void setFullCatalog(boolean fullCatalog) {
+        this.fullCatalog = fullCatalog;
+    }
+    
+    public int getQueuePosition() {
+        return queuePosition;
+    }
+    
+    public void setQueuePosition(int queuePosition) {
+        this.queuePosition = queuePosition;
+    }
+    
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+    
+    public void setRetryAfterMillis(long retryAfterMillis) {
+        this.retryAfterMillis = retryAfterMillis;
+    }
+    
+    public String getCompression() {
+        return compression;
+    }
+    
+    public void setCompression(String compression) {
+        this.compression = compression;
+    }
+    
+    public int getUncompressedLength() {
+        return uncompressedLength;
+    }
+    
+    public void setUncompressedLength(int uncompressedLength) {
+        this.uncompressedLength = uncompressedLength;
+    }
+    
+    public BlockSignature getBlockSignature() {
+        return blockSignature;
+    }
+    
+    public void setBlockSignature(BlockSignature blockSignature) {
+        this.blockSignature = blockSignature;
+    }
+    
+    public int getCopyBlock() {
+        return copyBlock;
+    }
+    
+    public void setCopyBlock(int copyBlock) {
+        this.copyBlock = copyBlock;
+    }
+    
+    public int getCopyBlockCount() {
+        return copyBlockCount;
+    }
+    
+    public void setCopyBlockCount(int copyBlockCount) {
+        this.copyBlockCount = copyBlockCount;
+    }
+    
+    public String getContentHash() {
+        return contentHash;
+    }
+    
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+    
     @Override
     public String toString() {
         return "P2PMessage{" +
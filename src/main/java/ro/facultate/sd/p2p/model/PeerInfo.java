@@ -13,7 +13,10 @@ public class PeerInfo implements Serializable {
     private String address; // Adresa IP
     private int discoveryPort; // Port UDP pentru descoperire
     private int fileTransferPort; // Port TCP pentru transfer fișiere
+    private int membershipPort; // Port UDP pentru membership SWIM (0 = necunoscut)
+    private int dhtPort; // Port UDP pentru DHT Kademlia (0 = necunoscut)
     private long lastSeen; // Timestamp ultima comunicare
+    private int announceInterval; // Intervalul de anunțare declarat (secunde)
     
     public PeerInfo() {
     }
@@ -58,6 +61,22 @@ public class PeerInfo implements Serializable {
         this.fileTransferPort = fileTransferPort;
     }
     
+    public int getMembershipPort() {
+        return membershipPort;
+    }
+    
+    public void setMembershipPort(int membershipPort) {
+        this.membershipPort = membershipPort;
+    }
+    
+    public int getDhtPort() {
+        return dhtPort;
+    }
+    
+    public void setDhtPort(int dhtPort) {
+        this.dhtPort = dhtPort;
+    }
+    
     public long getLastSeen() {
         return lastSeen;
     }
@@ -70,6 +89,14 @@ public class PeerInfo implements Serializable {
         this.lastSeen = System.currentTimeMillis();
     }
     
+    public int getAnnounceInterval() {
+        return announceInterval;
+    }
+    
+    public void setAnnounceInterval(int announceInterval) {
+        this.announceInterval = announceInterval;
+    }
+    
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
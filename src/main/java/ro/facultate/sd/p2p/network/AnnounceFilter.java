@@ -0,0 +1,110 @@
+package ro.facultate.sd.p2p.network;
+
+import ro.facultate.sd.p2p.model.PeerInfo;
+
+/**
+ * Tabel de dimensiune fixă pentru eliminarea datagramelor duplicate
+ * Pentru fiecare peer reține epoch-ul, cea mai mare secvență și o fereastră de
+ * 64 de secvențe văzute (ca fereastra anti-replay din IPsec), deci acceptă
+ * pachete sosite în altă ordine dar respinge copiile. Cheia e UUID-ul ca două
+ * long-uri, deci verificarea nu alocă nimic. Tabelul e mapat direct: la coliziune
+ * intrarea veche e înlocuită (pachetul e procesat normal, nu pierdut).
+ * Nu e sincronizat: NodeDiscoveryService îl folosește doar sub lacătul de recepție.
+ */
+public class AnnounceFilter {
+    private static final int WINDOW = 64;
+    
+    private final Slot[] slots;
+    private final int mask;
+    
+    public AnnounceFilter(int capacity) {
+        int size = Integer.highestOneBit(Math.max(16, capacity - 1)) << 1;
+        this.slots = new Slot[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+    }
+    
+    /**
+     * Înregistrează o datagramă
+     * @return false dacă e un duplicat sau prea veche
+     */
+    public boolean accept(long msb, long lsb, int epoch, int sequence) {
+        Slot slot = slots[index(msb, lsb)];
+        
+        if (!slot.used || slot.msb != msb || slot.lsb != lsb || slot.epoch != epoch) {
+            // Peer nou, intrare suprascrisă sau peer repornit
+            slot.used = true;
+            slot.msb = msb;
+            slot.lsb = lsb;
+            slot.epoch = epoch;
+            slot.maxSequence = sequence;
+            slot.window = 1L;
+            if (slot.peer != null && !slot.peerMatches(msb, lsb)) {
+                slot.peer = null;
+            }
+            return true;
+        }
+        
+        int delta = sequence - slot.maxSequence;
+        if (delta > 0) {
+            slot.window = delta >= WINDOW ? 1L : (slot.window << delta) | 1L;
+            slot.maxSequence = sequence;
+            return true;
+        }
+        
+        int age = -delta;
+        if (age >= WINDOW) {
+            return false; // Prea veche
+        }
+        long bit = 1L << age;
+        if ((slot.window & bit) != 0) {
+            return false; // Duplicat
+        }
+        slot.window |= bit;
+        return true;
+    }
+    
+    /**
+     * Peer-ul cunoscut pentru acest UUID (fără alocări) sau null
+     */
+    public PeerInfo knownPeer(long msb, long lsb) {
+        Slot slot = slots[index(msb, lsb)];
+        return slot.used && slot.peerMatches(msb, lsb) ? slot.peer : null;
+    }
+    
+    public void rememberPeer(long msb, long lsb, PeerInfo peer) {
+        Slot slot = slots[index(msb, lsb)];
+        if (slot.used && slot.msb == msb && slot.lsb == lsb) {
+            slot.peer = peer;
+            slot.peerMsb = msb;
+            slot.peerLsb = lsb;
+        }
+    }
+    
+    private int index(long msb, long lsb) {
+        long h = msb ^ (lsb * 0x9E3779B97F4A7C15L);
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+    
+    /**
+     * O intrare din tabel
+     */
+    private static final class Slot {
+        private boolean used;
+        private long msb;
+        private long lsb;
+        private int epoch;
+        private int maxSequence;
+        private long window;
+        
+        private PeerInfo peer;
+        private long peerMsb;
+        private long peerLsb;
+        
+        private boolean peerMatches(long msb, long lsb) {
+            return peer != null && peerMsb == msb && peerLsb == lsb;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package ro.facultate.sd.p2p.network;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ro.facultate.sd.p2p.model.FileInfo;
+
+/**
+ * Jurnalul evenimentelor de catalog ale acestui peer (fișiere adăugate), numerotate crescător
+ * Secvența curentă e inclusă în anunțuri; un peer care observă un gol cere prin TCP doar
+ * evenimentele lipsă. Se păstrează ultimele N evenimente - cine a rămas mai în urmă
+ * primește lista completă.
+ */
+public class CatalogEventLog {
+    private final FileInfo[] events;
+    private int lastSequence; // 0 = niciun eveniment
+    
+    /**
+     * @param capacity câte evenimente recente se păstrează
+     */
+    public CatalogEventLog(int capacity) {
+        this.events = new FileInfo[capacity];
+    }
+    
+    /**
+     * Adaugă un eveniment
+     * @return secvența atribuită (începe de la 1)
+     */
+    public synchronized int append(FileInfo file) {
+        lastSequence++;
+        events[lastSequence % events.length] = file;
+        return lastSequence;
+    }
+    
+    public synchronized int getLastSequence() {
+        return lastSequence;
+    }
+    
+    /**
+     * Evenimentele cu secvența mai mare decât cea dată, în ordine
+     * @return null dacă o parte din ele au fost deja suprascrise (trebuie trimisă lista completă)
+     */
+    public synchronized List<FileInfo> since(int afterSequence) {
+        if (afterSequence < lastSequence - events.length || afterSequence < 0) {
+            return null;
+        }
+        List<FileInfo> result = new ArrayList<>(Math.max(0, lastSequence - afterSequence));
+        for (int sequence = afterSequence + 1; sequence <= lastSequence; sequence++) {
+            result.add(events[sequence % events.length]);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,313 @@
+package ro.facultate.sd.p2p.network;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ro.facultate.sd.p2p.model.BlockSignature;
+
+/**
+ * Transfer delta în stilul rsync, pentru fișiere din care clientul are deja o versiune veche
+ *
+ * 1. Clientul calculează semnătura versiunii vechi: sumă rulantă + MD5 trunchiat pe fiecare bloc.
+ * 2. Serverul parcurge versiunea nouă byte cu byte; suma rulantă se actualizează în O(1) la fiecare
+ *    pas, iar MD5 se calculează doar când suma slabă se potrivește. Rezultatul: instrucțiuni
+ *    "copiază blocurile i..j de la tine" și date literale pentru ce s-a schimbat.
+ * 3. Clientul reconstruiește fișierul din versiunea veche + literale și verifică MD5-ul final.
+ */
+public final class DeltaSync {
+    public static final long MIN_BASIS_BYTES = 64 * 1024; // Sub atât descărcarea completă e la fel de ieftină
+    
+    private static final int MIN_BLOCK_SIZE = 2048;
+    private static final int MAX_BLOCK_SIZE = 64 * 1024;
+    private static final int STRONG_LENGTH = 8; // Din MD5; potrivirea finală e verificată pe tot fișierul
+    private static final int LITERAL_CHUNK = 8192;
+    
+    private DeltaSync() {
+    }
+    
+    /**
+     * Ce emite serverul: date noi sau trimiteri la blocuri pe care clientul le are deja
+     */
+    public interface DeltaSink {
+        void literal(byte[] data, int offset, int length) throws IOException;
+        
+        void copy(int firstBlock, int blockCount) throws IOException;
+    }
+    
+    /**
+     * Dimensiunea blocului ~ √lungime (ca rsync), rotunjită la KB
+     */
+    static int blockSizeFor(long length) {
+        long size = (long) Math.sqrt((double) length) & ~1023L;
+        return (int) Math.max(MIN_BLOCK_SIZE, Math.min(MAX_BLOCK_SIZE, size));
+    }
+    
+    /**
+     * Semnătura versiunii existente (și MD5-ul ei complet, în aceeași trecere)
+     */
+    public static BlockSignature sign(Path file) throws IOException {
+        long length = Files.size(file);
+        int blockSize = blockSizeFor(length);
+        int blocks = (int) ((length + blockSize - 1) / blockSize);
+        int[] weak = new int[blocks];
+        byte[] strong = new byte[blocks * STRONG_LENGTH];
+        MessageDigest fileDigest = md5();
+        MessageDigest blockDigest = md5();
+        
+        byte[] block = new byte[blockSize];
+        try (InputStream in = Files.newInputStream(file)) {
+            for (int i = 0; i < blocks; i++) {
+                int blockLength = in.readNBytes(block, 0, blockSize);
+                weak[i] = weakSum(block, 0, blockLength);
+                blockDigest.update(block, 0, blockLength);
+                System.arraycopy(blockDigest.digest(), 0, strong, i * STRONG_LENGTH, STRONG_LENGTH);
+                fileDigest.update(block, 0, blockLength);
+            }
+        }
+        return new BlockSignature(blockSize, length, weak, strong, STRONG_LENGTH, toHex(fileDigest.digest()));
+    }
+    
+    /**
+     * Parcurge versiunea nouă și emite instrucțiunile delta (copierile consecutive sunt comasate)
+     * @return MD5 al versiunii noi, pentru verificarea reconstrucției
+     */
+    public static String diff(Path file, BlockSignature signature, DeltaSink sink) throws IOException {
+        int n = signature.getBlockSize();
+        Map<Integer, List<Integer>> index = new HashMap<>();
+        for (int block = 0; block < signature.getBlockCount(); block++) {
+            if (signature.getBlockLength(block) == n) {
+                index.computeIfAbsent(signature.getWeakSum(block), k -> new ArrayList<>(1)).add(block);
+            }
+        }
+        int lastBlock = signature.getBlockCount() - 1;
+        int lastBlockLength = lastBlock >= 0 ? signature.getBlockLength(lastBlock) : 0;
+        
+        MessageDigest fileDigest = md5();
+        MessageDigest blockDigest = md5();
+        CopyRun run = new CopyRun(sink);
+        byte[] buffer = new byte[Math.max(4 * n, 256 * 1024)];
+        
+        try (InputStream in = Files.newInputStream(file)) {
+            int length = 0;        // Bytes valizi în buffer
+            int position = 0;      // Începutul ferestrei curente
+            int literalStart = 0;  // Bytes de la literalStart la position nu s-au potrivit cu niciun bloc
+            boolean eof = false;
+            boolean rolling = false;
+            int a = 0;
+            int b = 0;
+            
+            while (true) {
+                // Fereastra + byte-ul următor trebuie să fie în buffer
+                if (length - position <= n && !eof) {
+                    run.literal(buffer, literalStart, position - literalStart);
+                    System.arraycopy(buffer, position, buffer, 0, length - position);
+                    length -= position;
+                    position = 0;
+                    literalStart = 0;
+                    while (length < buffer.length) {
+                        int read = in.read(buffer, length, buffer.length - length);
+                        if (read < 0) {
+                            eof = true;
+                            break;
+                        }
+                        fileDigest.update(buffer, length, read);
+                        length += read;
+                    }
+                }
+                
+                int available = length - position;
+                if (available < n) {
+                    // Coada fișierului: se poate potrivi doar cu ultimul bloc (scurt) al clientului
+                    if (available > 0 && available == lastBlockLength
+                        && strongMatches(blockDigest, signature, lastBlock, buffer, position, available)) {
+                        run.literal(buffer, literalStart, position - literalStart);
+                        run.copy(lastBlock);
+                    } else {
+                        run.literal(buffer, literalStart, length - literalStart);
+                    }
+                    break;
+                }
+                
+                if (!rolling) {
+                    a = 0;
+                    b = 0;
+                    for (int i = 0; i < n; i++) {
+                        int x = buffer[position + i] & 0xFF;
+                        a += x;
+                        b += (n - i) * x;
+                    }
+                    a &= 0xFFFF;
+                    b &= 0xFFFF;
+                    rolling = true;
+                }
+                
+                int match = -1;
+                List<Integer> candidates = index.get(a | (b << 16));
+                if (candidates != null) {
+                    blockDigest.update(buffer, position, n);
+                    byte[] strong = blockDigest.digest();
+                    for (int candidate : candidates) {
+                        if (signature.strongMatches(candidate, strong)) {
+                            match = candidate;
+                            break;
+                        }
+                    }
+                }
+                
+                if (match >= 0) {
+                    run.literal(buffer, literalStart, position - literalStart);
+                    run.copy(match);
+                    position += n;
+                    literalStart = position;
+                    rolling = false;
+                    continue;
+                }
+                
+                if (available == n) {
+                    // Ultima fereastră posibilă, fără potrivire
+                    run.literal(buffer, literalStart, length - literalStart);
+                    break;
+                }
+                
+                // Fereastra avansează cu un byte: suma rulantă se actualizează în O(1)
+                int outgoing = buffer[position] & 0xFF;
+                int incoming = buffer[position + n] & 0xFF;
+                a = (a - outgoing + incoming) & 0xFFFF;
+                b = (b - n * outgoing + a) & 0xFFFF;
+                position++;
+                if (position - literalStart >= LITERAL_CHUNK) {
+                    run.literal(buffer, literalStart, position - literalStart);
+                    literalStart = position;
+                }
+            }
+        }
+        run.flush();
+        return toHex(fileDigest.digest());
+    }
+    
+    /**
+     * Versiunea veche de la client, din care se copiază blocurile indicate de server
+     */
+    public static final class Basis implements Closeable {
+        private final RandomAccessFile file;
+        private final int blockSize;
+        private final byte[] buffer;
+        
+        public Basis(Path path, BlockSignature signature) throws IOException {
+            this.file = new RandomAccessFile(path.toFile(), "r");
+            this.blockSize = signature.getBlockSize();
+            this.buffer = new byte[blockSize];
+        }
+        
+        /**
+         * Copiază blocurile în fișierul reconstruit
+         * @return câți bytes au fost scriși
+         */
+        public long copy(int firstBlock, int blockCount, OutputStream out, MessageDigest digest) throws IOException {
+            file.seek((long) firstBlock * blockSize);
+            long written = 0;
+            for (int i = 0; i < blockCount; i++) {
+                int read = file.read(buffer, 0, blockSize);
+                if (read <= 0) {
+                    throw new IOException("Blocul " + (firstBlock + i) + " lipsește din versiunea veche");
+                }
+                out.write(buffer, 0, read);
+                digest.update(buffer, 0, read);
+                written += read;
+            }
+            return written;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            file.close();
+        }
+    }
+    
+    /**
+     * Suma slabă a unui bloc (variantă Adler-32, ca în rsync)
+     */
+    static int weakSum(byte[] data, int offset, int length) {
+        int a = 0;
+        int b = 0;
+        for (int i = 0; i < length; i++) {
+            int x = data[offset + i] & 0xFF;
+            a += x;
+            b += (length - i) * x;
+        }
+        return (a & 0xFFFF) | ((b & 0xFFFF) << 16);
+    }
+    
+    private static boolean strongMatches(MessageDigest digest, BlockSignature signature, int block,
+                                         byte[] data, int offset, int length) {
+        digest.update(data, offset, length);
+        return signature.strongMatches(block, digest.digest());
+    }
+    
+    public static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Orice JVM are MD5
+        }
+    }
+    
+    public static String toHex(byte[] digest) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * Comasează copierile de blocuri consecutive într-o singură instrucțiune
+     */
+    private static final class CopyRun {
+        private final DeltaSink sink;
+        private int first = -1;
+        private int count;
+        
+        CopyRun(DeltaSink sink) {
+            this.sink = sink;
+        }
+        
+        void copy(int block) throws IOException {
+            if (count > 0 && block == first + count) {
+                count++;
+                return;
+            }
+            flush();
+            first = block;
+            count = 1;
+        }
+        
+        void literal(byte[] data, int offset, int length) throws IOException {
+            if (length <= 0) {
+                return;
+            }
+            flush();
+            for (int sent = 0; sent < length; sent += LITERAL_CHUNK) {
+                sink.literal(data, offset + sent, Math.min(LITERAL_CHUNK, length - sent));
+            }
+        }
+        
+        void flush() throws IOException {
+            if (count > 0) {
+                sink.copy(first, count);
+                count = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package ro.facultate.sd.p2p.network;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.function.BiConsumer;
+
+/**
+ * Transportul mesajelor DHT (datagrame)
+ * Implementări: UDP pentru rețeaua reală și în memorie pentru simulări cu multe noduri într-un singur JVM.
+ */
+public interface DhtTransport {
+    
+    /**
+     * Pornește recepția; receiver-ul primește adresa expeditorului și mesajul
+     */
+    void start(BiConsumer<InetSocketAddress, ByteBuffer> receiver) throws IOException;
+    
+    /**
+     * Trimite un mesaj (best-effort, fără confirmare)
+     */
+    void send(InetSocketAddress target, ByteBuffer message);
+    
+    /**
+     * Construiește adresa unui nod din forma transmisă în mesaje (host + port)
+     */
+    InetSocketAddress address(String host, int port);
+    
+    int getPort();
+    
+    void close();
+}
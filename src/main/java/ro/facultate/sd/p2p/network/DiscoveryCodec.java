@@ -0,0 +1,199 @@
+package ro.facultate.sd.p2p.network;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import ro.facultate.sd.p2p.model.FileInfo;
+
+/**
+ * Format binar compact pentru datagramele de descoperire (înlocuiește JSON-ul Gson)
+ *
+ * Antet fix (44 bytes, big-endian):
+ *   0  int   MAGIC ("P2PD")
+ *   4  byte  VERSION
+ *   5  byte  tip (ANNOUNCE / RESPONSE / FILE_ADDED / BYE)
+ *   6  short intervalul de anunțare al expeditorului (secunde)
+ *   8  long  peerId - cei mai semnificativi 64 biți ai UUID-ului
+ *   16 long  peerId - cei mai puțin semnificativi 64 biți
+ *   24 int   epoch - identifică pornirea curentă a peer-ului
+ *   28 int   număr de secvență (crește la fiecare datagramă trimisă)
+ *   32 short port UDP de descoperire
+ *   34 short port TCP pentru transfer
+ *   36 short port UDP pentru membership SWIM (0 = dezactivat)
+ *   38 short port UDP pentru DHT Kademlia (0 = dezactivat)
+ *   40 int   secvența catalogului: ultimul eveniment (ANNOUNCE / RESPONSE / BYE)
+ *            sau chiar evenimentul transmis (FILE_ADDED)
+ *
+ * FILE_ADDED adaugă: short număr de fișiere, apoi pentru fiecare long dimensiune,
+ * byte lungime hash + hash (ASCII), short lungime nume + nume (UTF-8). Fișierele
+ * dintr-o datagramă sunt evenimente consecutive, ultimul având secvența din antet.
+ *
+ * Citirea se face direct din buffer-ul de recepție, cu poziții absolute,
+ * fără obiecte intermediare; doar câmpurile necesare sunt decodate.
+ */
+public final class DiscoveryCodec {
+    public static final int MAGIC = 0x50325044; // "P2PD"
+    public static final byte VERSION = 5;
+    public static final int HEADER_SIZE = 44;
+    public static final int MAX_DATAGRAM = 1400; // Sub MTU-ul Ethernet
+    public static final int FILES_OFFSET = HEADER_SIZE + 2; // Primul fișier din FILE_ADDED
+    
+    public static final byte TYPE_ANNOUNCE = 1;
+    public static final byte TYPE_RESPONSE = 2;
+    public static final byte TYPE_FILE_ADDED = 3;
+    public static final byte TYPE_BYE = 4;
+    
+    private static final int OFFSET_VERSION = 4;
+    private static final int OFFSET_TYPE = 5;
+    private static final int OFFSET_ANNOUNCE_INTERVAL = 6;
+    private static final int OFFSET_PEER_MSB = 8;
+    private static final int OFFSET_PEER_LSB = 16;
+    private static final int OFFSET_EPOCH = 24;
+    private static final int OFFSET_SEQUENCE = 28;
+    private static final int OFFSET_DISCOVERY_PORT = 32;
+    private static final int OFFSET_TRANSFER_PORT = 34;
+    private static final int OFFSET_MEMBERSHIP_PORT = 36;
+    private static final int OFFSET_DHT_PORT = 38;
+    private static final int OFFSET_CATALOG_SEQUENCE = 40;
+    
+    private DiscoveryCodec() {
+    }
+    
+    // Codificare
+    
+    /**
+     * Scrie antetul în buffer și lasă poziția după el
+     */
+    public static ByteBuffer writeHeader(ByteBuffer buffer, byte type, int announceIntervalSeconds,
+                                         long peerMsb, long peerLsb, int epoch, int sequence,
+                                         int discoveryPort, int transferPort, int membershipPort,
+                                         int dhtPort, int catalogSequence) {
+        buffer.putInt(MAGIC)
+              .put(VERSION)
+              .put(type)
+              .putShort((short) Math.min(announceIntervalSeconds, 0xFFFF))
+              .putLong(peerMsb)
+              .putLong(peerLsb)
+              .putInt(epoch)
+              .putInt(sequence)
+              .putShort((short) discoveryPort)
+              .putShort((short) transferPort)
+              .putShort((short) membershipPort)
+              .putShort((short) dhtPort)
+              .putInt(catalogSequence);
+        return buffer;
+    }
+    
+    /**
+     * Adaugă descrierea unui fișier după antet
+     * @return false dacă nu încape în datagramă
+     */
+    public static boolean writeFile(ByteBuffer buffer, FileInfo file) {
+        byte[] hash = file.getFileHash().getBytes(StandardCharsets.US_ASCII);
+        byte[] name = file.getFileName().getBytes(StandardCharsets.UTF_8);
+        int needed = 8 + 1 + hash.length + 2 + name.length;
+        
+        if (hash.length > 255 || name.length > 0xFFFF || buffer.remaining() < needed) {
+            return false;
+        }
+        buffer.putLong(file.getFileSize())
+              .put((byte) hash.length)
+              .put(hash)
+              .putShort((short) name.length)
+              .put(name);
+        return true;
+    }
+    
+    // Decodificare (poziții absolute - buffer-ul nu e modificat)
+    
+    /**
+     * Verificare ieftină: magic, versiune și lungime minimă
+     */
+    public static boolean isValid(ByteBuffer buffer, int length) {
+        return length >= HEADER_SIZE
+            && buffer.getInt(0) == MAGIC
+            && buffer.get(OFFSET_VERSION) == VERSION;
+    }
+    
+    public static byte type(ByteBuffer buffer) {
+        return buffer.get(OFFSET_TYPE);
+    }
+    
+    public static int announceInterval(ByteBuffer buffer) {
+        return Short.toUnsignedInt(buffer.getShort(OFFSET_ANNOUNCE_INTERVAL));
+    }
+    
+    public static long peerMsb(ByteBuffer buffer) {
+        return buffer.getLong(OFFSET_PEER_MSB);
+    }
+    
+    public static long peerLsb(ByteBuffer buffer) {
+        return buffer.getLong(OFFSET_PEER_LSB);
+    }
+    
+    public static int epoch(ByteBuffer buffer) {
+        return buffer.getInt(OFFSET_EPOCH);
+    }
+    
+    public static int sequence(ByteBuffer buffer) {
+        return buffer.getInt(OFFSET_SEQUENCE);
+    }
+    
+    public static int discoveryPort(ByteBuffer buffer) {
+        return Short.toUnsignedInt(buffer.getShort(OFFSET_DISCOVERY_PORT));
+    }
+    
+    public static int transferPort(ByteBuffer buffer) {
+        return Short.toUnsignedInt(buffer.getShort(OFFSET_TRANSFER_PORT));
+    }
+    
+    public static int membershipPort(ByteBuffer buffer) {
+        return Short.toUnsignedInt(buffer.getShort(OFFSET_MEMBERSHIP_PORT));
+    }
+    
+    public static int dhtPort(ByteBuffer buffer) {
+        return Short.toUnsignedInt(buffer.getShort(OFFSET_DHT_PORT));
+    }
+    
+    public static int catalogSequence(ByteBuffer buffer) {
+        return buffer.getInt(OFFSET_CATALOG_SEQUENCE);
+    }
+    
+    public static int fileCount(ByteBuffer buffer) {
+        return Short.toUnsignedInt(buffer.getShort(HEADER_SIZE));
+    }
+    
+    /**
+     * Citește fișierul de la poziția dată
+     * @return fișierul sau null dacă datele sunt trunchiate
+     */
+    public static FileInfo readFile(ByteBuffer buffer, int offset, int length) {
+        if (offset + 8 + 1 > length) {
+            return null;
+        }
+        long size = buffer.getLong(offset);
+        int hashLength = Byte.toUnsignedInt(buffer.get(offset + 8));
+        int nameLengthOffset = offset + 9 + hashLength;
+        if (nameLengthOffset + 2 > length) {
+            return null;
+        }
+        int nameLength = Short.toUnsignedInt(buffer.getShort(nameLengthOffset));
+        if (nameLengthOffset + 2 + nameLength > length) {
+            return null;
+        }
+        
+        byte[] array = buffer.array();
+        String hash = new String(array, offset + 9, hashLength, StandardCharsets.US_ASCII);
+        String name = new String(array, nameLengthOffset + 2, nameLength, StandardCharsets.UTF_8);
+        return new FileInfo(name, size, hash);
+    }
+    
+    /**
+     * Lungimea în bytes a unui fișier codificat la poziția dată
+     */
+    public static int fileLength(ByteBuffer buffer, int offset) {
+        int hashLength = Byte.toUnsignedInt(buffer.get(offset + 8));
+        int nameLength = Short.toUnsignedInt(buffer.getShort(offset + 9 + hashLength));
+        return 8 + 1 + hashLength + 2 + nameLength;
+    }
+}
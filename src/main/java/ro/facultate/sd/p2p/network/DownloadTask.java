@@ -0,0 +1,162 @@
+package ro.facultate.sd.p2p.network;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import ro.facultate.sd.p2p.model.FileInfo;
+
+/**
+ * Starea unei descărcări și resursele pe care le ține cât rulează
+ *
+ *   PENDING → RUNNING → COMPLETED / FAILED
+ *   PENDING / RUNNING → PAUSED → PENDING (la reluare, de la dimensiunea fișierului .partial)
+ *   orice stare neterminată → CANCELLED
+ *
+ * Pauza și anularea vin de pe alt thread (UI): închid conexiunea curentă, ceea ce deblochează
+ * imediat citirea din thread-ul de descărcare, și anulează execuția din executor.
+ * O descărcare pe pauză nu ține nicio conexiune, niciun thread și niciun slot la sursă.
+ */
+public class DownloadTask {
+    public enum State { PENDING, RUNNING, PAUSED, CANCELLED, COMPLETED, FAILED }
+    
+    private final FileInfo fileInfo;
+    private final List<FileInfo> sources;
+    final Object runLock = new Object(); // O singură execuție scrie fișierul .partial la un moment dat
+    
+    private State state = State.PENDING;
+    private Socket socket; // Conexiunea execuției curente
+    private Future<?> future;
+    private volatile boolean deltaFailed; // Reconstrucția delta a eșuat - următoarele încercări descarcă tot
+    private volatile String rejectReason; // Motivul ultimei respingeri, raportat dacă toate sursele refuză
+    
+    DownloadTask(FileInfo fileInfo, List<FileInfo> sources) {
+        this.fileInfo = fileInfo;
+        this.sources = sources;
+    }
+    
+    public FileInfo getFileInfo() {
+        return fileInfo;
+    }
+    
+    List<FileInfo> getSources() {
+        return sources;
+    }
+    
+    public synchronized State getState() {
+        return state;
+    }
+    
+    public synchronized boolean isRunning() {
+        return state == State.RUNNING;
+    }
+    
+    public synchronized boolean isFinished() {
+        return state == State.COMPLETED || state == State.FAILED || state == State.CANCELLED;
+    }
+    
+    /**
+     * PENDING → RUNNING
+     * @return false dacă descărcarea a fost oprită înainte să înceapă
+     */
+    synchronized boolean start() {
+        if (state != State.PENDING) {
+            return false;
+        }
+        state = State.RUNNING;
+        return true;
+    }
+    
+    boolean isDeltaFailed() {
+        return deltaFailed;
+    }
+    
+    void setDeltaFailed() {
+        deltaFailed = true;
+    }
+    
+    String getRejectReason() {
+        return rejectReason;
+    }
+    
+    void setRejectReason(String reason) {
+        rejectReason = reason;
+    }
+    
+    synchronized void setFuture(Future<?> future) {
+        this.future = future;
+    }
+    
+    /**
+     * Înregistrează conexiunea execuției curente, ca pauza/anularea să o poată închide
+     * @return false (și socket închis) dacă descărcarea a fost oprită între timp
+     */
+    synchronized boolean attach(Socket socket) {
+        if (state != State.RUNNING) {
+            closeQuietly(socket);
+            return false;
+        }
+        this.socket = socket;
+        return true;
+    }
+    
+    /**
+     * RUNNING → COMPLETED / FAILED; o pauză sau anulare cerută între timp rămâne
+     */
+    synchronized void finish(boolean success) {
+        if (state == State.RUNNING) {
+            state = success ? State.COMPLETED : State.FAILED;
+        }
+        socket = null;
+    }
+    
+    synchronized boolean pause() {
+        if (state != State.PENDING && state != State.RUNNING) {
+            return false;
+        }
+        state = State.PAUSED;
+        release();
+        return true;
+    }
+    
+    /**
+     * PAUSED → PENDING; apelantul trimite din nou descărcarea în executor
+     */
+    synchronized boolean resume() {
+        if (state != State.PAUSED) {
+            return false;
+        }
+        state = State.PENDING;
+        return true;
+    }
+    
+    synchronized boolean cancel() {
+        if (state == State.COMPLETED || state == State.FAILED || state == State.CANCELLED) {
+            return false;
+        }
+        state = State.CANCELLED;
+        release();
+        return true;
+    }
+    
+    private void release() {
+        closeQuietly(socket);
+        socket = null;
+        if (future != null) {
+            future.cancel(true); // Întrerupe și așteptarea dintre reîncercări
+            future = null;
+        }
+    }
+    
+    private static void closeQuietly(Socket socket) {
+        if (socket == null) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Conexiunea era deja închisă
+        }
+    }
+}
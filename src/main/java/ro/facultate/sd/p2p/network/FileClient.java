@@ -1,20 +1,35 @@
 package ro.facultate.sd.p2p.network;
 
+import java.io.BufferedInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.zip.Inflater;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import ro.facultate.sd.p2p.model.BlockSignature;
 import ro.facultate.sd.p2p.model.FileInfo;
 import ro.facultate.sd.p2p.model.P2PMessage;
 import ro.facultate.sd.p2p.model.PeerInfo;
@@ -25,21 +40,35 @@ import ro.facultate.sd.p2p.model.PeerInfo;
 public class FileClient {
     private static final Logger logger = LoggerFactory.getLogger(FileClient.class);
     private static final int CONNECTION_TIMEOUT = 5000; // 5 secunde
+    private static final int SOCKET_BUFFER_SIZE = 16 * 1024;
     private static final String PARTIAL_SUFFIX = ".partial"; // Extensie pentru fișiere incomplete
     private static final int MAX_RETRY_ATTEMPTS = 3; // Număr maxim de reîncercări
     private static final int RETRY_DELAY_MS = 2000; // Delay inițial între reîncercări (2 secunde)
+    private static final boolean COMPRESSION_ENABLED = !"false".equals(System.getProperty("p2p.compression.enabled"));
+    private static final boolean DELTA_ENABLED = !"false".equals(System.getProperty("p2p.delta.enabled"));
+    // La atâția bytes primiți, .partial e forțat pe disc și progresul trece în jurnal
+    private static final long CHECKPOINT_BYTES = Long.getLong("p2p.journal.checkpointBytes", 4L * 1024 * 1024);
     
     private final Path downloadFolder;
+    private final PeerQualityTracker quality = new PeerQualityTracker();
+    private TlsTransport tls; // null = conexiuni TCP necriptate
+    private TransferJournal journal; // null = reluarea se bazează doar pe lungimea fișierului .partial
     private boolean simulateInterruptionForTesting = false;
     private long interruptAtBytes = 0;
     
-    private final java.util.concurrent.ConcurrentHashMap<String, Thread> activeDownloads = new java.util.concurrent.ConcurrentHashMap<>();
-    private final java.util.concurrent.ConcurrentHashMap<String, Boolean> pausedDownloads = new java.util.concurrent.ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, DownloadTask> transfers = new ConcurrentHashMap<>(); // Active sau pe pauză
+    private final ExecutorService transferExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "Download");
+        thread.setDaemon(true);
+        return thread;
+    });
     
     private Consumer<String> onDownloadStart;
     private BiConsumer<String, Double> onDownloadProgress;
+    private ProgressListener onDownloadBytes;
     private Consumer<String> onDownloadComplete;
     private BiConsumer<String, String> onDownloadError;
+    private BiConsumer<String, Integer> onDownloadQueued;
     
     public FileClient(Path downloadFolder) {
         this.downloadFolder = downloadFolder;
@@ -58,7 +87,7 @@ public class FileClient {
     public List<FileInfo> requestFileList(PeerInfo peer) {
         List<FileInfo> files = new ArrayList<>();
         
-        try (Socket socket = new Socket(peer.getAddress(), peer.getFileTransferPort());
+        try (Socket socket = openSocket(peer.getAddress(), peer.getFileTransferPort(), peer.getPeerId());
              ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
              ObjectInputStream in = new ObjectInputStream(socket.getInputStream())) {
             
@@ -87,6 +116,7 @@ public class FileClient {
             }
             
         } catch (IOException | ClassNotFoundException e) {
+            quality.recordFailure(peer.getPeerId());
             logger.error("Eroare la cererea listei de fișiere de la peer " + 
                         peer.getPeerId().substring(0, 8), e);
         }
@@ -94,10 +124,91 @@ public class FileClient {
         return files;
     }
     
+    /**
+     * Cere evenimentele de catalog ale unui peer de după secvența dată
+     * Fișierele primite au setat peer-ul ca owner.
+     * @return răspunsul CATALOG_EVENTS sau null dacă peer-ul nu a răspuns
+     */
+    public P2PMessage requestCatalogEvents(PeerInfo peer, int afterSequence) {
+        try (Socket socket = openSocket(peer.getAddress(), peer.getFileTransferPort(), peer.getPeerId());
+             ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
+             ObjectInputStream in = new ObjectInputStream(socket.getInputStream())) {
+            
+            socket.setSoTimeout(CONNECTION_TIMEOUT);
+            
+            P2PMessage request = new P2PMessage(P2PMessage.MessageType.REQUEST_CATALOG_EVENTS);
+            request.setCatalogSequence(afterSequence);
+            out.writeObject(request);
+            out.flush();
+            
+            P2PMessage response = (P2PMessage) in.readObject();
+            if (response.getType() != P2PMessage.MessageType.CATALOG_EVENTS || response.getFileList() == null) {
+                return null;
+            }
+            for (FileInfo file : response.getFileList()) {
+                file.setOwnerPeerId(peer.getPeerId());
+                file.setOwnerAddress(peer.getAddress());
+                file.setOwnerPort(peer.getFileTransferPort());
+            }
+            return response;
+            
+        } catch (IOException | ClassNotFoundException e) {
+            logger.debug("Evenimentele de catalog nu au putut fi cerute de la peer {}: {}",
+                        peer.getPeerId().substring(0, 8), e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Trimite o căutare unui peer și primește doar fișierele care potrivesc
+     * Rezultatele fără owner (potrivirile locale ale peer-ului) primesc adresa acestuia.
+     */
+    public List<FileInfo> sendSearchQuery(PeerInfo peer, P2PMessage query) {
+        List<FileInfo> hits = new ArrayList<>();
+        
+        try (Socket socket = openSocket(peer.getAddress(), peer.getFileTransferPort(), peer.getPeerId());
+             ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
+             ObjectInputStream in = new ObjectInputStream(socket.getInputStream())) {
+            
+            socket.setSoTimeout(CONNECTION_TIMEOUT);
+            
+            out.writeObject(query);
+            out.flush();
+            
+            P2PMessage response = (P2PMessage) in.readObject();
+            
+            if (response.getType() == P2PMessage.MessageType.SEARCH_HIT && response.getFileList() != null) {
+                hits = response.getFileList();
+                
+                for (FileInfo file : hits) {
+                    if (file.getOwnerAddress() == null) {
+                        file.setOwnerPeerId(peer.getPeerId());
+                        file.setOwnerAddress(peer.getAddress());
+                        file.setOwnerPort(peer.getFileTransferPort());
+                    }
+                }
+            }
+            
+        } catch (IOException | ClassNotFoundException e) {
+            logger.debug("Căutarea nu a primit răspuns de la peer {}: {}", 
+                        peer.getPeerId().substring(0, 8), e.getMessage());
+        }
+        
+        return hits;
+    }
+    
     /**
      * Descarcă un fișier de la un peer (cu suport pentru resume)
      */
     public boolean downloadFile(FileInfo fileInfo) {
+        return downloadFileWithRetry(fileInfo, 0);
+    }
+    
+    /**
+     * Descarcă fișierul de la sursa dată (alt peer cu același hash, eventual sub alt nume)
+     * Throughput-ul obținut e înregistrat pentru alegerea surselor la descărcările viitoare.
+     */
+    private boolean downloadFile(FileInfo fileInfo, FileInfo source, DownloadTask task) {
         String fileName = fileInfo.getFileName();
         Path targetPath = downloadFolder.resolve(fileName);
         Path partialPath = downloadFolder.resolve(fileName + PARTIAL_SUFFIX);
@@ -106,126 +217,216 @@ public class FileClient {
         long resumeOffset = 0;
         if (Files.exists(partialPath)) {
             try {
-                resumeOffset = Files.size(partialPath);
+                resumeOffset = trustedLength(fileName, partialPath);
                 logger.info("Găsit fișier parțial pentru {}: {} bytes. RELUARE de la byte {}", 
                            fileName, resumeOffset, resumeOffset);
+                if (resumeOffset > fileInfo.getFileSize()) {
+                    // Nu poate proveni din acest fișier - se descarcă de la zero (fișierul e trunchiat)
+                    logger.warn("Fișier parțial mai mare decât originalul pentru {}, reîncep descărcarea", fileName);
+                    resumeOffset = 0;
+                }
             } catch (IOException e) {
                 logger.warn("Nu s-a putut citi dimensiunea fișierului parțial", e);
                 resumeOffset = 0;
             }
         }
+        if (journal != null && resumeOffset == 0) {
+            journal.progress(fileName, 0); // .partial se rescrie de la început
+        }
         
         if (onDownloadStart != null) {
             onDownloadStart.accept(fileName);
         }
         
+        // Există o versiune veche și nicio descărcare parțială: se cer doar diferențele
+        BlockSignature signature = null;
+        if (DELTA_ENABLED && resumeOffset == 0 && !task.isDeltaFailed() && Files.isRegularFile(targetPath)) {
+            signature = signBasis(targetPath);
+            if (signature != null && signature.getBasisHash().equals(fileInfo.getFileHash())) {
+                logger.info("✅ {} este deja la zi (același hash), nu e nimic de descărcat", fileName);
+                if (onDownloadProgress != null) {
+                    onDownloadProgress.accept(fileName, 100.0);
+                }
+                if (onDownloadComplete != null) {
+                    onDownloadComplete.accept(fileName);
+                }
+                return true;
+            }
+        }
+        
         if (resumeOffset > 0) {
             logger.info("🔄 RELUARE descărcare: {} de la byte {} ({}%)", 
                        fileName, resumeOffset, (resumeOffset * 100.0) / fileInfo.getFileSize());
+        } else if (signature != null) {
+            logger.info("🔁 Începe descărcare DELTA: {} de la {}:{} (versiunea veche: {} bytes)", 
+                       fileName, source.getOwnerAddress(), source.getOwnerPort(), signature.getBasisLength());
         } else {
             logger.info("⬇️ Începe descărcare NOUĂ: {} de la {}:{}", 
-                       fileName, fileInfo.getOwnerAddress(), fileInfo.getOwnerPort());
+                       fileName, source.getOwnerAddress(), source.getOwnerPort());
         }
         
         // Deschide fișierul în mod append dacă reluăm, altfel creează nou
-        try (Socket socket = new Socket(fileInfo.getOwnerAddress(), fileInfo.getOwnerPort());
+        try (Socket socket = connect(source, task);
              ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
-             ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
+             // ObjectInputStream citește antetele mesajelor câțiva bytes o dată - fără buffer, un apel de sistem pentru fiecare
+             ObjectInputStream in = new ObjectInputStream(
+                 new BufferedInputStream(socket.getInputStream(), SOCKET_BUFFER_SIZE));
              FileOutputStream fos = new FileOutputStream(partialPath.toFile(), resumeOffset > 0)) {
             
             // Trimite cererea de fișier cu offset pentru resume
             P2PMessage request = new P2PMessage(P2PMessage.MessageType.FILE_REQUEST);
-            request.setRequestedFileName(fileName);
+            request.setRequestedFileName(source.getFileName());
             request.setResumeOffset(resumeOffset);
+            request.setCompression(COMPRESSION_ENABLED ? TransferCompression.DEFLATE : null);
+            request.setBlockSignature(signature);
             out.writeObject(request);
             out.flush();
             
-            // Primește răspunsul
+            // Primește răspunsul (eventual după o așteptare în coada de upload a sursei)
             P2PMessage response = (P2PMessage) in.readObject();
+            int lastQueuePosition = -1;
+            while (response.getType() == P2PMessage.MessageType.FILE_QUEUED) {
+                if (response.getQueuePosition() != lastQueuePosition) {
+                    lastQueuePosition = response.getQueuePosition();
+                    logger.info("⏳ {} în coadă la {}: poziția {}", fileName, source.getOwnerAddress(), lastQueuePosition);
+                    if (onDownloadQueued != null) {
+                        onDownloadQueued.accept(fileName, lastQueuePosition);
+                    }
+                }
+                response = (P2PMessage) in.readObject();
+            }
+            
+            if (response.getType() == P2PMessage.MessageType.FILE_REJECT && response.getRetryAfterMillis() > 0) {
+                // Sursa e ocupată, nu defectă - decide logica de retry
+                throw new SourceBusyException(response.getRetryAfterMillis());
+            }
             
+            // Eroarea e raportată abia când au refuzat toate sursele (downloadWithRetry)
             if (response.getType() == P2PMessage.MessageType.FILE_REJECT) {
                 String error = response.getErrorMessage();
                 logger.error("Cerere respinsă: {}", error);
-                
-                if (onDownloadError != null) {
-                    onDownloadError.accept(fileName, error);
-                }
-                
+                task.setRejectReason(error);
                 return false;
             }
             
             if (response.getType() != P2PMessage.MessageType.FILE_ACCEPT) {
                 logger.error("Răspuns neașteptat: {}", response.getType());
-                
-                if (onDownloadError != null) {
-                    onDownloadError.accept(fileName, "Răspuns invalid de la server");
-                }
-                
+                task.setRejectReason("Răspuns invalid de la server");
                 return false;
             }
             
             // Primește fișierul în bucăți
             long totalBytes = fileInfo.getFileSize();
             long receivedBytes = resumeOffset; // Începem de la offset dacă reluăm
+            long checkpointed = resumeOffset; // Ultimul progres confirmat în jurnal
+            long transferStart = System.nanoTime();
             
-            while (true) {
-                // Verifică dacă download-ul e pe pauză
-                while (pausedDownloads.getOrDefault(fileName, false)) {
-                    try {
-                        Thread.sleep(500); // Așteaptă 500ms și verifică din nou
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        logger.info("Download întrerupt pentru: {}", fileName);
-                        throw new IOException("Download anulat");
-                    }
-                }
-                
-                P2PMessage chunk = (P2PMessage) in.readObject();
-                
-                if (chunk.getType() == P2PMessage.MessageType.FILE_CHUNK) {
-                    byte[] data = chunk.getFileData();
-                    fos.write(data);
-                    
-                    receivedBytes += data.length;
-                    
-                    // Simulare întrerupere pentru testare
-                    if (simulateInterruptionForTesting && receivedBytes >= interruptAtBytes) {
-                        logger.warn("⚠️ SIMULARE ÎNTRERUPERE la {} bytes pentru testare!", receivedBytes);
-                        throw new IOException("Simulare întrerupere pentru testare");
-                    }
-                    
-                    // Raportează progresul
-                    if (onDownloadProgress != null && totalBytes > 0) {
-                        double progress = (receivedBytes * 100.0) / totalBytes;
-                        onDownloadProgress.accept(fileName, progress);
-                    }
-                    
-                } else if (chunk.getType() == P2PMessage.MessageType.FILE_COMPLETE) {
-                    logger.info("✅ Descărcare completă: {} ({} bytes total)", fileName, receivedBytes);
-                    
-                    // Setează progresul la 100% ÎNAINTE de callback
-                    if (onDownloadProgress != null) {
-                        onDownloadProgress.accept(fileName, 100.0);
-                    }
+            Inflater inflater = TransferCompression.DEFLATE.equals(response.getCompression()) ? new Inflater() : null;
+            DeltaSync.Basis basis = signature != null ? new DeltaSync.Basis(targetPath, signature) : null;
+            MessageDigest reconstructed = signature != null ? DeltaSync.md5() : null;
+            try {
+                while (true) {
+                    // Pauza/anularea închid socket-ul, deci citirea se deblochează imediat
+                    P2PMessage chunk = (P2PMessage) in.readObject();
                     
-                    // Redenumește fișierul .partial în numele final
-                    try {
-                        Files.move(partialPath, targetPath, 
-                                  java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-                        logger.info("📁 Fișier mutat: {} -> {}", partialPath.getFileName(), fileName);
-                    } catch (IOException e) {
-                        logger.error("Eroare la redenumirea fișierului final", e);
-                    }
+                    if (chunk.getType() == P2PMessage.MessageType.FILE_CHUNK && chunk.getCopyBlockCount() > 0) {
+                        // Transfer delta: blocurile neschimbate se copiază din versiunea veche
+                        if (basis == null) {
+                            throw new IOException("Instrucțiune delta fără versiune veche");
+                        }
+                        receivedBytes += basis.copy(chunk.getCopyBlock(), chunk.getCopyBlockCount(), fos, reconstructed);
+                        checkpointed = checkpoint(fileName, fos, receivedBytes, checkpointed);
+                        
+                        if (onDownloadBytes != null) {
+                            onDownloadBytes.onProgress(fileName, receivedBytes, totalBytes);
+                        }
                     
-                    if (onDownloadComplete != null) {
-                        onDownloadComplete.accept(fileName);
+                    } else if (chunk.getType() == P2PMessage.MessageType.FILE_CHUNK) {
+                        // Bucățile comprimate se decomprimă imediat: .partial și offset-ul rămân în bytes originali
+                        byte[] data = inflater != null
+                            ? TransferCompression.inflate(inflater, chunk.getFileData(), chunk.getUncompressedLength())
+                            : chunk.getFileData();
+                        fos.write(data);
+                        if (reconstructed != null) {
+                            reconstructed.update(data);
+                        }
+                        
+                        receivedBytes += data.length;
+                        checkpointed = checkpoint(fileName, fos, receivedBytes, checkpointed);
+                        
+                        // Simulare întrerupere pentru testare
+                        if (simulateInterruptionForTesting && receivedBytes >= interruptAtBytes) {
+                            logger.warn("⚠️ SIMULARE ÎNTRERUPERE la {} bytes pentru testare!", receivedBytes);
+                            throw new IOException("Simulare întrerupere pentru testare");
+                        }
+                        
+                        // Raportează progresul
+                        if (onDownloadBytes != null) {
+                            onDownloadBytes.onProgress(fileName, receivedBytes, totalBytes);
+                        }
+                        if (onDownloadProgress != null && totalBytes > 0) {
+                            double progress = (receivedBytes * 100.0) / totalBytes;
+                            onDownloadProgress.accept(fileName, progress);
+                        }
+                        
+                    } else if (chunk.getType() == P2PMessage.MessageType.FILE_COMPLETE) {
+                        if (basis != null && chunk.getContentHash() != null
+                            && !chunk.getContentHash().equals(DeltaSync.toHex(reconstructed.digest()))) {
+                            // Reconstrucția nu corespunde versiunii serverului: descărcare completă,
+                            // după ce conexiunea și .partial sunt închise (mai jos)
+                            logger.warn("Reconstrucția delta pentru {} nu corespunde, descarc fișierul complet", fileName);
+                            task.setDeltaFailed();
+                            break;
+                        }
+                        if (basis != null) {
+                            basis.close(); // Înainte de înlocuirea versiunii vechi
+                        }
+                        
+                        logger.info("✅ Descărcare completă: {} ({} bytes total)", fileName, receivedBytes);
+                        // Un transfer delta nu măsoară viteza legăturii
+                        if (source.getOwnerPeerId() != null && basis == null) {
+                            quality.recordTransfer(source.getOwnerPeerId(), receivedBytes - resumeOffset,
+                                                   System.nanoTime() - transferStart);
+                        }
+                        
+                        // Setează progresul la 100% ÎNAINTE de callback
+                        if (onDownloadProgress != null) {
+                            onDownloadProgress.accept(fileName, 100.0);
+                        }
+                        
+                        // Redenumește fișierul .partial în numele final
+                        try {
+                            Files.move(partialPath, targetPath, 
+                                      java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+                            logger.info("📁 Fișier mutat: {} -> {}", partialPath.getFileName(), fileName);
+                        } catch (IOException e) {
+                            logger.error("Eroare la redenumirea fișierului final", e);
+                        }
+                        
+                        if (onDownloadComplete != null) {
+                            onDownloadComplete.accept(fileName);
+                        }
+                        
+                        return true;
                     }
-                    
-                    return true;
+                }
+            } finally {
+                if (inflater != null) {
+                    inflater.end();
+                }
+                if (basis != null) {
+                    basis.close();
                 }
             }
             
         } catch (IOException | ClassNotFoundException e) {
+            checkpoint(fileName, partialPath); // Tot ce s-a primit până la întrerupere rămâne valabil
+            if (!task.isRunning()) {
+                // Conexiune închisă de pauză/anulare, nu de o eroare
+                logger.info("Conexiune închisă pentru {} ({})", fileName, task.getState());
+                throw new RuntimeException(e);
+            }
+            
             // NU șterge fișierul parțial - păstrează-l pentru reluare!
             try {
                 long partialSize = Files.exists(partialPath) ? Files.size(partialPath) : 0;
@@ -242,6 +443,14 @@ public class FileClient {
             // Aruncă excepția mai departe pentru logica de retry
             throw new RuntimeException(e);
         }
+        
+        // Singura ieșire din bucla de mai sus fără return: reconstrucția delta a eșuat
+        try {
+            Files.deleteIfExists(partialPath);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return downloadFile(fileInfo, source, task);
     }
     
     /**
@@ -251,83 +460,386 @@ public class FileClient {
      * @return true dacă descărcarea a reușit
      */
     public boolean downloadFileWithRetry(FileInfo fileInfo, int maxRetries) {
+        return downloadFileWithRetry(fileInfo, List.of(fileInfo), maxRetries);
+    }
+    
+    /**
+     * Descarcă un fișier de la cea mai rapidă sursă disponibilă
+     * Sursele (peers cu același hash) sunt ordonate după RTT, throughput și erori;
+     * după o eroare se reîncearcă de la următoarea sursă, iar cea căzută e penalizată.
+     * @param sources peers care dețin fișierul (inclusiv fileInfo)
+     */
+    public boolean downloadFileWithRetry(FileInfo fileInfo, List<FileInfo> sources, int maxRetries) {
+        DownloadTask task = register(fileInfo, sources);
+        if (task == null) {
+            logger.warn("Descărcarea {} este deja în curs", fileInfo.getFileName());
+            return false;
+        }
+        return execute(task, maxRetries);
+    }
+    
+    /**
+     * Rulează descărcarea pe thread-ul curent, cât timp nu e pusă pe pauză sau anulată
+     * Descărcările terminate ies din registru; cele pe pauză rămân pentru reluare.
+     */
+    private boolean execute(DownloadTask task, int maxRetries) {
+        synchronized (task.runLock) {
+            if (!task.start()) {
+                return false;
+            }
+            boolean success = false;
+            try {
+                success = downloadWithRetry(task, maxRetries);
+                return success;
+            } finally {
+                task.finish(success);
+                if (task.isFinished()) {
+                    transfers.remove(task.getFileInfo().getFileName(), task);
+                }
+                if (journal != null && (task.getState() == DownloadTask.State.COMPLETED
+                                        || task.getState() == DownloadTask.State.FAILED)) {
+                    journal.state(task.getFileInfo().getFileName(), task.getState());
+                }
+            }
+        }
+    }
+    
+    private boolean downloadWithRetry(DownloadTask task, int maxRetries) {
+        FileInfo fileInfo = task.getFileInfo();
+        List<FileInfo> sources = task.getSources();
         String fileName = fileInfo.getFileName();
         int attempt = 0;
+        // După identitate: sursele au același nume și hash, diferă doar peer-ul
+        Set<FileInfo> failedSources = Collections.newSetFromMap(new IdentityHashMap<>());
+        long busyRetryAfterMillis = 0; // Cea mai apropiată eliberare anunțată de o sursă ocupată
         
-        // Salvez thread-ul curent pentru control pauză
-        activeDownloads.put(fileName, Thread.currentThread());
-        
-        try {
-            while (attempt <= maxRetries) {
+        while (attempt <= maxRetries && task.isRunning()) {
+            try {
+                // Fără pauză dacă mai e o sursă neîncercată
+                if (attempt > 0 && failedSources.size() >= sources.size()) {
+                    // Sursele ocupate spun când să revenim; altfel delay exponențial: 2s, 4s, 8s...
+                    long delayMs = busyRetryAfterMillis > 0
+                        ? busyRetryAfterMillis : RETRY_DELAY_MS * (1L << (attempt - 1));
+                    busyRetryAfterMillis = 0;
+                    logger.info("🔄 Reîncerc descărcarea {} (încercarea {}/{}) în {} secunde...", 
+                               fileName, attempt + 1, maxRetries + 1, delayMs / 1000);
+                    Thread.sleep(delayMs);
+                }
+                
+                FileInfo source = pickSource(fileInfo, sources, failedSources);
+                boolean success;
                 try {
-                    if (attempt > 0) {
-                        // Calculează delay exponențial: 2s, 4s, 8s...
-                        int delayMs = RETRY_DELAY_MS * (1 << (attempt - 1));
-                        logger.info("🔄 Reîncerc descărcarea {} (încercarea {}/{}) în {} secunde...", 
-                                   fileName, attempt + 1, maxRetries + 1, delayMs / 1000);
-                        Thread.sleep(delayMs);
+                    success = downloadFile(fileInfo, source, task);
+                } catch (SourceBusyException e) {
+                    // Ocupat nu înseamnă nesigur: fără penalizare, doar altă sursă sau așteptare
+                    failedSources.add(source);
+                    busyRetryAfterMillis = busyRetryAfterMillis > 0
+                        ? Math.min(busyRetryAfterMillis, e.getRetryAfterMillis()) : e.getRetryAfterMillis();
+                    if (failedSources.size() < sources.size()) {
+                        logger.info("Sursa {} este ocupată, încerc următoarea sursă", source.getOwnerAddress());
+                        continue;
                     }
-                    
-                    boolean success = downloadFile(fileInfo);
-                    
-                    if (success) {
-                        if (attempt > 0) {
-                            logger.info("✅ Descărcare reușită după {} reîncercări: {}", attempt, fileName);
-                        }
-                        return true;
+                    throw e;
+                } catch (RuntimeException e) {
+                    if (task.isRunning()) {
+                        failedSources.add(source);
+                        recordFailure(source);
                     }
-                    
-                    // Dacă downloadFile returnează false (fișier reject), nu mai încercăm
-                    logger.warn("❌ Descărcarea a fost respinsă de server: {}", fileName);
-                    if (onDownloadError != null) {
-                        onDownloadError.accept(fileName, "Fișierul nu este disponibil pe server");
+                    throw e;
+                }
+                
+                if (success) {
+                    if (attempt > 0) {
+                        logger.info("✅ Descărcare reușită după {} reîncercări: {}", attempt, fileName);
                     }
-                    return false;
-                    
-                } catch (RuntimeException e) {
-                    attempt++;
+                    return true;
+                }
+                
+                // Respins de această sursă: următoarea sursă, dacă mai există
+                failedSources.add(source);
+                recordFailure(source);
+                if (failedSources.size() < sources.size()) {
+                    logger.info("Sursa {} a respins cererea, încerc următoarea sursă", source.getOwnerAddress());
+                    continue;
+                }
+                                    
+                // Dacă downloadFile returnează false (fișier reject), nu mai încercăm
+                logger.warn("❌ Descărcarea a fost respinsă de server: {}", fileName);
+                if (onDownloadError != null) {
+                    String reason = task.getRejectReason();
+                    onDownloadError.accept(fileName, reason != null ? reason : "Fișierul nu este disponibil pe server");
+                }
+                return false;
+                
+            } catch (RuntimeException e) {
+                if (!task.isRunning()) {
+                    return false; // Pusă pe pauză sau anulată - nu e o eroare
+                }
+                attempt++;
+                
+                if (attempt > maxRetries) {
+                    // Am epuizat toate reîncercările
+                    logger.error("❌ Descărcarea {} a eșuat după {} încercări", fileName, attempt);
                     
-                    if (attempt > maxRetries) {
-                        // Am epuizat toate reîncercările
-                        logger.error("❌ Descărcarea {} a eșuat după {} încercări", fileName, attempt);
-                        
-                        if (onDownloadError != null) {
-                            Path partialPath = downloadFolder.resolve(fileName + PARTIAL_SUFFIX);
-                            try {
-                                long partialSize = Files.exists(partialPath) ? Files.size(partialPath) : 0;
-                                if (partialSize > 0) {
-                                    onDownloadError.accept(fileName, 
-                                        String.format("Conexiune întreruptă. Progres salvat: %d bytes. Încearcă din nou mai târziu.", partialSize));
-                                } else {
-                                    onDownloadError.accept(fileName, "Nu s-a putut conecta la peer. Verifică dacă peer-ul este online.");
-                                }
-                            } catch (IOException ex) {
-                                onDownloadError.accept(fileName, "Descărcare eșuată: " + e.getCause().getMessage());
+                    if (onDownloadError != null && e instanceof SourceBusyException) {
+                        onDownloadError.accept(fileName, "Toate sursele sunt ocupate. Încearcă din nou mai târziu.");
+                    } else if (onDownloadError != null) {
+                        Path partialPath = downloadFolder.resolve(fileName + PARTIAL_SUFFIX);
+                        try {
+                            long partialSize = Files.exists(partialPath) ? Files.size(partialPath) : 0;
+                            if (partialSize > 0) {
+                                onDownloadError.accept(fileName, 
+                                    String.format("Conexiune întreruptă. Progres salvat: %d bytes. Încearcă din nou mai târziu.", partialSize));
+                            } else {
+                                onDownloadError.accept(fileName, "Nu s-a putut conecta la peer. Verifică dacă peer-ul este online.");
                             }
+                        } catch (IOException ex) {
+                            onDownloadError.accept(fileName, "Descărcare eșuată: " + e.getCause().getMessage());
                         }
-                        
-                        return false;
                     }
                     
-                    // Mai încercăm o dată
-                    logger.warn("⚠️ Eroare la descărcare, voi reîncerca... ({}/{})", attempt, maxRetries);
-                    
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    logger.error("Transfer întrerupt");
-                    if (onDownloadError != null) {
-                        onDownloadError.accept(fileName, "Transfer anulat");
-                    }
                     return false;
                 }
+                
+                // Mai încercăm o dată
+                logger.warn("⚠️ Eroare la descărcare, voi reîncerca... ({}/{})", attempt, maxRetries);
+                
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (!task.isRunning()) {
+                    return false; // Pauza/anularea au întrerupt așteptarea dintre reîncercări
+                }
+                logger.error("Transfer întrerupt");
+                if (onDownloadError != null) {
+                    onDownloadError.accept(fileName, "Transfer anulat");
+                }
+                return false;
             }
-            
-            return false;
-            
-        } finally {
-            // Cleanup
-            activeDownloads.remove(fileName);
-            pausedDownloads.remove(fileName);
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Cea mai bună sursă care nu a eșuat deja la această descărcare
+     * (dacă toate au eșuat, se reia de la cea mai bună)
+     */
+    private FileInfo pickSource(FileInfo fileInfo, List<FileInfo> sources, Set<FileInfo> failedSources) {
+        List<FileInfo> ranked = quality.rank(sources, FileInfo::getOwnerPeerId, fileInfo.getFileSize());
+        for (FileInfo source : ranked) {
+            if (!failedSources.contains(source)) {
+                return source;
+            }
+        }
+        failedSources.clear();
+        return ranked.isEmpty() ? fileInfo : ranked.get(0);
+    }
+    
+    /**
+     * Semnătura versiunii vechi a fișierului, dacă e destul de mare ca transferul delta să merite
+     */
+    private BlockSignature signBasis(Path basisPath) {
+        try {
+            if (Files.size(basisPath) < DeltaSync.MIN_BASIS_BYTES) {
+                return null;
+            }
+            return DeltaSync.sign(basisPath);
+        } catch (IOException e) {
+            logger.warn("Nu s-a putut citi versiunea veche a {}: {}", basisPath.getFileName(), e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Lungimea din .partial pe care se poate continua: cu jurnal, doar bytes-ii confirmați acolo -
+     * după o cădere, restul fișierului poate conține date care nu au ajuns pe disc
+     */
+    private long trustedLength(String fileName, Path partialPath) throws IOException {
+        long length = Files.size(partialPath);
+        TransferJournal.Entry journaled = journal != null ? journal.get(fileName) : null;
+        if (journaled == null || journaled.getVerifiedBytes() < 0 || journaled.getVerifiedBytes() >= length) {
+            return length;
+        }
+        logger.info("{}: {} din {} bytes ai fișierului parțial sunt confirmați în jurnal, restul se descarcă din nou",
+                    fileName, journaled.getVerifiedBytes(), length);
+        try (FileChannel channel = FileChannel.open(partialPath, StandardOpenOption.WRITE)) {
+            channel.truncate(journaled.getVerifiedBytes());
+        }
+        return journaled.getVerifiedBytes();
+    }
+    
+    /**
+     * La fiecare CHECKPOINT_BYTES: datele primite ajung pe disc, apoi progresul trece în jurnal
+     * @return ultimul progres confirmat
+     */
+    private long checkpoint(String fileName, FileOutputStream fos, long receivedBytes, long checkpointed) throws IOException {
+        if (journal == null || receivedBytes - checkpointed < CHECKPOINT_BYTES) {
+            return checkpointed;
+        }
+        fos.getChannel().force(false);
+        journal.progress(fileName, receivedBytes);
+        return receivedBytes;
+    }
+    
+    /**
+     * Confirmă tot fișierul .partial (după o întrerupere, pauză sau eroare)
+     */
+    private void checkpoint(String fileName, Path partialPath) {
+        if (journal == null || !Files.exists(partialPath)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(partialPath, StandardOpenOption.WRITE)) {
+            channel.force(false);
+            journal.progress(fileName, channel.size());
+        } catch (IOException e) {
+            logger.warn("Progresul pentru {} nu a putut fi salvat: {}", fileName, e.getMessage());
+        }
+    }
+    
+    /**
+     * Deschide conexiunea către sursă, înregistrată la task înainte de connect,
+     * ca o pauză să poată întrerupe și conectarea
+     */
+    private Socket connect(FileInfo source, DownloadTask task) throws IOException {
+        Socket socket = tls != null ? tls.createSocket() : new Socket();
+        if (!task.attach(socket)) {
+            throw new IOException("Descărcare oprită");
+        }
+        try {
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(source.getOwnerAddress(), source.getOwnerPort()), CONNECTION_TIMEOUT);
+            if (tls != null) {
+                socket.setSoTimeout(CONNECTION_TIMEOUT); // Doar pentru handshake
+                tls.verifyPeer(socket, source.getOwnerPeerId());
+                socket.setSoTimeout(0);
+            }
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        return socket;
+    }
+    
+    /**
+     * Conexiune scurtă către un peer (listă, căutare, ping), criptată dacă TLS e activ
+     * @param peerId identitatea pe care trebuie să o prezinte peer-ul în modul TLS
+     */
+    private Socket openSocket(String address, int port, String peerId) throws IOException {
+        Socket socket = tls != null ? tls.createSocket() : new Socket();
+        try {
+            // Cererile mici nu mai așteaptă ACK-ul întârziat al serverului (Nagle), ~40 ms pe cerere
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(address, port), CONNECTION_TIMEOUT);
+            // Și antetul ObjectInputStream e citit cu timeout (ex. un peer cu TLS nu răspunde unui client fără TLS)
+            socket.setSoTimeout(CONNECTION_TIMEOUT);
+            if (tls != null) {
+                tls.verifyPeer(socket, peerId);
+            }
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        return socket;
+    }
+    
+    /**
+     * Înregistrează o descărcare nouă
+     * @return null dacă fișierul are deja o descărcare activă sau pe pauză
+     */
+    private DownloadTask register(FileInfo fileInfo, List<FileInfo> sources) {
+        DownloadTask created = new DownloadTask(fileInfo, sources);
+        DownloadTask task = transfers.merge(fileInfo.getFileName(), created,
+            (existing, fresh) -> existing.isFinished() ? fresh : existing);
+        if (task != created) {
+            return null;
+        }
+        if (journal != null) {
+            journalStart(fileInfo, sources);
+        }
+        return task;
+    }
+    
+    /**
+     * Înregistrează descărcarea în jurnal, păstrând progresul confirmat al unui .partial cu același hash
+     */
+    private void journalStart(FileInfo fileInfo, List<FileInfo> sources) {
+        String fileName = fileInfo.getFileName();
+        TransferJournal.Entry previous = journal.get(fileName);
+        long verifiedBytes = -1; // Fără istoric: un .partial existent e folosit în întregime
+        if (previous != null && Objects.equals(previous.getFileInfo().getFileHash(), fileInfo.getFileHash())) {
+            verifiedBytes = previous.getVerifiedBytes();
+        } else if (previous != null) {
+            // Alt conținut sub același nume - fișierul parțial vechi nu poate fi continuat
+            logger.info("{} s-a schimbat de la descărcarea întreruptă, reîncep de la zero", fileName);
+            try {
+                Files.deleteIfExists(downloadFolder.resolve(fileName + PARTIAL_SUFFIX));
+            } catch (IOException e) {
+                logger.warn("Nu s-a putut șterge fișierul parțial pentru {}", fileName);
+            }
+            verifiedBytes = 0;
+        }
+        journal.started(fileInfo, sources, verifiedBytes);
+    }
+    
+    /**
+     * Recreează descărcările neterminate din jurnal: cele puse pe pauză de utilizator rămân
+     * pe pauză, restul (active la oprire sau la cădere, ori eșuate) pornesc imediat
+     */
+    public void restoreDownloads(List<TransferJournal.Entry> entries) {
+        for (TransferJournal.Entry entry : entries) {
+            FileInfo fileInfo = entry.getFileInfo();
+            List<FileInfo> sources = entry.getSources().isEmpty() ? List.of(fileInfo) : entry.getSources();
+            DownloadTask task = new DownloadTask(fileInfo, sources);
+            if (transfers.putIfAbsent(fileInfo.getFileName(), task) != null) {
+                continue;
+            }
+            if (entry.getState() == DownloadTask.State.PAUSED) {
+                task.pause();
+            } else {
+                submit(task);
+            }
+        }
+    }
+    
+    /**
+     * Un peer a reapărut, eventual la altă adresă sau alt port: sursele descărcărilor îl urmează
+     */
+    public void updatePeerAddress(PeerInfo peer) {
+        for (DownloadTask task : transfers.values()) {
+            for (FileInfo source : task.getSources()) {
+                if (peer.getPeerId().equals(source.getOwnerPeerId())) {
+                    source.setOwnerAddress(peer.getAddress());
+                    source.setOwnerPort(peer.getFileTransferPort());
+                }
+            }
+        }
+    }
+    
+    private void submit(DownloadTask task) {
+        task.setFuture(transferExecutor.submit(() -> execute(task, MAX_RETRY_ATTEMPTS)));
+    }
+    
+    private void recordFailure(FileInfo source) {
+        if (source.getOwnerPeerId() != null) {
+            quality.recordFailure(source.getOwnerPeerId());
+        }
+    }
+    
+    /**
+     * Sursa a respins cererea pentru că sloturile și coada ei de upload sunt pline
+     */
+    private static final class SourceBusyException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        
+        private final long retryAfterMillis;
+        
+        SourceBusyException(long retryAfterMillis) {
+            super("Peer ocupat, reîncearcă după " + retryAfterMillis + " ms");
+            this.retryAfterMillis = retryAfterMillis;
+        }
+        
+        long getRetryAfterMillis() {
+            return retryAfterMillis;
         }
     }
     
@@ -335,41 +847,80 @@ public class FileClient {
      * Descarcă un fișier într-un thread separat (cu retry automat)
      */
     public void downloadFileAsync(FileInfo fileInfo) {
-        Thread downloadThread = new Thread(() -> downloadFileWithRetry(fileInfo, MAX_RETRY_ATTEMPTS), 
-                                          "Download-" + fileInfo.getFileName());
-        downloadThread.setDaemon(true);
-        downloadThread.start();
+        downloadFileAsync(fileInfo, List.of(fileInfo));
+    }
+    
+    /**
+     * Descarcă un fișier într-un thread separat, alegând cea mai rapidă sursă
+     */
+    public void downloadFileAsync(FileInfo fileInfo, List<FileInfo> sources) {
+        DownloadTask task = register(fileInfo, sources);
+        if (task == null) {
+            // Un click pe o descărcare pe pauză o reia, nu pornește una paralelă
+            resumeDownload(fileInfo.getFileName());
+            return;
+        }
+        submit(task);
     }
     
     /**
      * Verifică dacă un peer este activ (trimite PING)
      */
     public boolean pingPeer(PeerInfo peer) {
-        try (Socket socket = new Socket(peer.getAddress(), peer.getFileTransferPort());
+        try (Socket socket = openSocket(peer.getAddress(), peer.getFileTransferPort(), peer.getPeerId());
              ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
              ObjectInputStream in = new ObjectInputStream(socket.getInputStream())) {
             
             socket.setSoTimeout(CONNECTION_TIMEOUT);
             
+            // RTT măsurat pe conexiunea deja deschisă (fără handshake-ul TCP)
+            long sentAt = System.nanoTime();
             P2PMessage ping = new P2PMessage(P2PMessage.MessageType.PING);
             out.writeObject(ping);
             out.flush();
             
             P2PMessage response = (P2PMessage) in.readObject();
             
-            return response.getType() == P2PMessage.MessageType.PONG;
-            
+            if (response.getType() != P2PMessage.MessageType.PONG) {
+                return false;
+            }
+            quality.recordRtt(peer.getPeerId(), System.nanoTime() - sentAt);
+            return true;
+        
         } catch (IOException | ClassNotFoundException e) {
+            quality.recordFailure(peer.getPeerId());
             logger.debug("Peer inactiv: {}", peer.getPeerId().substring(0, 8));
             return false;
         }
     }
     
     // Getters
+    /**
+     * Calitatea măsurată a peers-ilor (RTT, throughput, erori)
+     */
+    public PeerQualityTracker getQualityTracker() {
+        return quality;
+    }
+    
     public Path getDownloadFolder() {
         return downloadFolder;
     }
     
+    /**
+     * Activează TLS pentru toate conexiunile către alți peers
+     * Serverele lor trebuie să ruleze și ele cu TLS (setare la nivelul întregii rețele).
+     */
+    public void setTlsTransport(TlsTransport tls) {
+        this.tls = tls;
+    }
+    
+    /**
+     * Jurnalul în care se înregistrează descărcările (deschis deja de apelant)
+     */
+    public void setTransferJournal(TransferJournal journal) {
+        this.journal = journal;
+    }
+    
     // Callbacks
     public void setOnDownloadStart(Consumer<String> callback) {
         this.onDownloadStart = callback;
@@ -379,6 +930,14 @@ public class FileClient {
         this.onDownloadProgress = callback;
     }
     
+    /**
+     * Callback apelat pentru fiecare bucată primită, cu bytes primiți / total
+     * Rulează pe thread-ul de descărcare - trebuie să fie ieftin
+     */
+    public void setOnDownloadBytes(ProgressListener callback) {
+        this.onDownloadBytes = callback;
+    }
+    
     public void setOnDownloadComplete(Consumer<String> callback) {
         this.onDownloadComplete = callback;
     }
@@ -387,6 +946,21 @@ public class FileClient {
         this.onDownloadError = callback;
     }
     
+    /**
+     * Apelat când sursa pune cererea în coada de upload (nume fișier, poziție)
+     */
+    public void setOnDownloadQueued(BiConsumer<String, Integer> callback) {
+        this.onDownloadQueued = callback;
+    }
+    
+    /**
+     * Ascultător pentru progresul descărcării exprimat în bytes
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        void onProgress(String fileName, long receivedBytes, long totalBytes);
+    }
+    
     // Metode pentru control download
     
     /**
@@ -394,8 +968,11 @@ public class FileClient {
      * @param fileName Numele fișierului a cărui descărcare trebuie pusă pe pauză
      */
     public void pauseDownload(String fileName) {
-        if (activeDownloads.containsKey(fileName)) {
-            pausedDownloads.put(fileName, true);
+        DownloadTask task = transfers.get(fileName);
+        if (task != null && task.pause()) {
+            if (journal != null) {
+                journal.state(fileName, DownloadTask.State.PAUSED); // Rămâne pe pauză și după repornire
+            }
             logger.info("⏸ Download pus pe pauză: {}", fileName);
         } else {
             logger.warn("Nu există download activ pentru: {}", fileName);
@@ -407,12 +984,44 @@ public class FileClient {
      * @param fileName Numele fișierului a cărui descărcare trebuie reluată
      */
     public void resumeDownload(String fileName) {
-        if (activeDownloads.containsKey(fileName)) {
-            pausedDownloads.put(fileName, false);
+        DownloadTask task = transfers.get(fileName);
+        if (task != null && task.resume()) {
+            if (journal != null) {
+                journal.state(fileName, DownloadTask.State.PENDING);
+            }
+            // Execuția nouă reia de la dimensiunea fișierului .partial
+            submit(task);
             logger.info("▶ Download reluat: {}", fileName);
         } else {
+            logger.warn("Nu există download pe pauză pentru: {}", fileName);
+        }
+    }
+    
+    /**
+     * Anulează descărcarea: închide conexiunea și șterge fișierul parțial
+     * @param fileName Numele fișierului a cărui descărcare trebuie anulată
+     */
+    public void cancelDownload(String fileName) {
+        DownloadTask task = transfers.get(fileName);
+        if (task == null || !task.cancel()) {
             logger.warn("Nu există download activ pentru: {}", fileName);
+            return;
         }
+        logger.info("✖ Download anulat: {}", fileName);
+        if (journal != null) {
+            journal.state(fileName, DownloadTask.State.CANCELLED);
+        }
+        // Fișierul parțial se șterge după ce execuția curentă (dacă există) a eliberat-o
+        transferExecutor.execute(() -> {
+            synchronized (task.runLock) {
+                try {
+                    Files.deleteIfExists(downloadFolder.resolve(fileName + PARTIAL_SUFFIX));
+                } catch (IOException e) {
+                    logger.warn("Nu s-a putut șterge fișierul parțial pentru {}", fileName);
+                }
+                transfers.remove(fileName, task);
+            }
+        });
     }
     
     /**
@@ -421,7 +1030,15 @@ public class FileClient {
      * @return true dacă download-ul este pe pauză
      */
     public boolean isDownloadPaused(String fileName) {
-        return pausedDownloads.getOrDefault(fileName, false);
+        DownloadTask task = transfers.get(fileName);
+        return task != null && task.getState() == DownloadTask.State.PAUSED;
+    }
+    
+    /**
+     * Descărcările active sau pe pauză
+     */
+    public List<DownloadTask> getDownloads() {
+        return new ArrayList<>(transfers.values());
     }
     
     /**
@@ -430,7 +1047,25 @@ public class FileClient {
      * @return true dacă download-ul este activ
      */
     public boolean isDownloadActive(String fileName) {
-        return activeDownloads.containsKey(fileName);
+        DownloadTask task = transfers.get(fileName);
+        return task != null && !task.isFinished();
+    }
+    
+    /**
+     * Pune pe pauză toate descărcările (progresul rămâne în fișierele .partial) și oprește executorul
+     * Pauza nu trece în jurnal: la următoarea pornire descărcările active se reiau singure.
+     */
+    public void shutdown() {
+        for (DownloadTask task : transfers.values()) {
+            task.pause();
+        }
+        transferExecutor.shutdownNow();
+        try {
+            // Descărcările întrerupte își confirmă progresul în jurnal înainte ca acesta să fie închis
+            transferExecutor.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
     
     // Metode pentru testare
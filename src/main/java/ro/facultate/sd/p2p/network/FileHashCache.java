@@ -0,0 +1,156 @@
+package ro.facultate.sd.p2p.network;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Hash-urile fișierelor partajate, salvate între porniri (un singur fișier JSON)
+ *
+ * Un hash e refolosit doar dacă fișierul are aceeași dimensiune și aceeași dată a ultimei
+ * modificări ca la calcul; altfel fișierul e citit din nou. Fișierele modificate chiar în
+ * ultimele secunde nu sunt salvate - pot fi încă în curs de scriere.
+ *
+ * Scrierile se fac pe un thread separat; mai multe modificări până la scriere produc una singură.
+ */
+public class FileHashCache {
+    private static final Logger logger = LoggerFactory.getLogger(FileHashCache.class);
+    private static final long UNSTABLE_MILLIS = 2000; // Fișiere mai noi de atât nu sunt salvate
+    private static final Type ENTRIES_TYPE = new TypeToken<Map<String, Entry>>() { }.getType();
+    
+    private final Path file;
+    private final Gson gson = new Gson();
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>(); // Nume fișier → hash
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "FileHashCache");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    public FileHashCache(Path file) {
+        this.file = file;
+    }
+    
+    /**
+     * Încarcă hash-urile salvate (un fișier corupt e ignorat - totul se recalculează)
+     */
+    public void load() {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Map<String, Entry> loaded = gson.fromJson(reader, ENTRIES_TYPE);
+            if (loaded != null) {
+                loaded.forEach((name, entry) -> {
+                    if (name != null && entry != null && entry.hash != null) {
+                        entries.put(name, entry);
+                    }
+                });
+            }
+            logger.info("Cache hash-uri: {} fișiere încărcate din {}", entries.size(), file);
+        } catch (IOException | JsonParseException e) {
+            logger.warn("Cache-ul de hash-uri nu a putut fi citit, fișierele se recitesc: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * @return hash-ul salvat, sau null dacă fișierul e necunoscut ori s-a schimbat de la calcul
+     */
+    public String get(String fileName, long size, long modifiedMillis) {
+        Entry entry = entries.get(fileName);
+        if (entry == null || entry.size != size || entry.modified != modifiedMillis) {
+            return null;
+        }
+        return entry.hash;
+    }
+    
+    public void put(String fileName, long size, long modifiedMillis, String hash) {
+        if (System.currentTimeMillis() - modifiedMillis < UNSTABLE_MILLIS) {
+            return;
+        }
+        Entry previous = entries.put(fileName, new Entry(size, modifiedMillis, hash));
+        if (previous == null || previous.size != size || previous.modified != modifiedMillis
+            || !previous.hash.equals(hash)) {
+            scheduleWrite();
+        }
+    }
+    
+    /**
+     * Uită fișierele care nu mai sunt în folder
+     */
+    public void retainAll(Collection<String> fileNames) {
+        if (entries.keySet().retainAll(fileNames)) {
+            scheduleWrite();
+        }
+    }
+    
+    private void scheduleWrite() {
+        if (dirty.compareAndSet(false, true)) {
+            writer.execute(() -> {
+                dirty.set(false);
+                write();
+            });
+        }
+    }
+    
+    /**
+     * Scrie într-un fișier temporar și îl mută peste cel vechi
+     */
+    private void write() {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(file.getParent());
+            Files.writeString(temp, gson.toJson(new HashMap<>(entries), ENTRIES_TYPE), StandardCharsets.UTF_8);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Cache-ul de hash-uri nu a putut fi salvat: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Termină scrierile în așteptare (la închiderea aplicației)
+     */
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Hash-ul unui fișier, împreună cu dimensiunea și data modificării de la calcul
+     */
+    private static final class Entry {
+        private long size;
+        private long modified;
+        private String hash;
+        
+        private Entry(long size, long modified, String hash) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package ro.facultate.sd.p2p.network;
 
+import java.io.BufferedOutputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -7,20 +8,34 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+
+import javax.net.ssl.SSLException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import ro.facultate.sd.p2p.model.BlockSignature;
 import ro.facultate.sd.p2p.model.FileInfo;
 import ro.facultate.sd.p2p.model.P2PMessage;
+import ro.facultate.sd.p2p.search.FileSearchIndex;
 
 /**
  * Server TCP pentru gestionarea cererilor de fișiere de la alți peers
@@ -29,12 +44,32 @@ import ro.facultate.sd.p2p.model.P2PMessage;
 public class FileServer {
     private static final Logger logger = LoggerFactory.getLogger(FileServer.class);
     private static final int BUFFER_SIZE = 8192; // 8KB bucăți pentru transfer
+    private static final int SOCKET_BUFFER_SIZE = 16 * 1024; // Cât o înregistrare TLS
+    private static final int UPLOAD_SLOTS = Integer.getInteger("p2p.upload.slots", 4);
+    private static final int UPLOAD_QUEUE_LENGTH = Integer.getInteger("p2p.upload.queueLength", 16);
+    private static final long MAX_QUEUE_WAIT_MILLIS = Long.getLong("p2p.upload.maxQueueWaitMs", 10 * 60_000L);
+    private static final long QUEUE_KEEPALIVE_MILLIS = 5000; // Clientul află periodic că încă e în coadă
+    private static final long QUEUE_DISCONNECT_CHECK_MILLIS = 1000; // Cât de repede observăm un client plecat din coadă
+    private static final boolean COMPRESSION_ENABLED = !"false".equals(System.getProperty("p2p.compression.enabled"));
+    private static final int COMPRESSION_LEVEL = Integer.getInteger("p2p.compression.level", Deflater.BEST_SPEED);
+    private static final boolean DELTA_ENABLED = !"false".equals(System.getProperty("p2p.delta.enabled"));
+    private static final long INDEX_PROGRESS_INTERVAL_MS = 200; // Progresul indexării e raportat cel mult atât de des
     
     private final int port;
     private final Path sharedFolder;
-    private final List<FileInfo> sharedFiles;
+    private final UploadSlots uploadSlots = new UploadSlots(UPLOAD_SLOTS, UPLOAD_QUEUE_LENGTH);
+    private final Object indexLock = new Object(); // Scanarea și indexarea din fundal modifică aceeași listă
+    
+    // Înlocuite împreună la fiecare scanare, sub indexLock; cititorii nu văd niciodată o listă golită
+    private volatile List<FileInfo> sharedFiles;
+    private volatile FileSearchIndex localIndex; // Index pentru căutările venite din rețea
     
     private ServerSocket serverSocket;
+    private TlsTransport tls; // null = conexiuni TCP necriptate
+    private FileHashCache hashCache; // null = fiecare fișier e citit la fiecare scanare
+    private List<Path> unindexedFiles = List.of(); // Găsite la start, fără hash cunoscut
+    private volatile Set<String> indexerPending = Set.of(); // Numele lăsate indexării din fundal
+    private volatile boolean indexing;
     private ExecutorService executorService;
     private Thread acceptThread;
     private volatile boolean running;
@@ -42,11 +77,15 @@ public class FileServer {
     private Consumer<String> onFileRequested;
     private Consumer<String> onTransferComplete;
     private Consumer<FileInfo> onFileAdded;
+    private BiConsumer<Integer, Integer> onIndexProgress; // (fișiere indexate, total)
+    private Function<P2PMessage, List<FileInfo>> searchHandler;
+    private Function<P2PMessage, P2PMessage> catalogEventsHandler;
     
     public FileServer(int port, Path sharedFolder) {
         this.port = port;
         this.sharedFolder = sharedFolder;
         this.sharedFiles = new CopyOnWriteArrayList<>();
+        this.localIndex = new FileSearchIndex();
         
         // Creează folderul dacă nu există
         try {
@@ -57,7 +96,8 @@ public class FileServer {
     }
     
     /**
-     * Pornește serverul
+     * Pornește serverul cu fișierele al căror hash e deja cunoscut (din cache)
+     * Celelalte sunt citite de startIndexing(), în fundal.
      */
     public void start() throws IOException {
         if (running) {
@@ -65,20 +105,74 @@ public class FileServer {
             return;
         }
         
-        serverSocket = new ServerSocket(port);
+        serverSocket = tls != null ? tls.createServerSocket(port) : new ServerSocket(port);
         executorService = Executors.newCachedThreadPool();
         running = true;
         
-        // Scanează fișierele din folder
-        scanSharedFolder();
+        // Doar fișierele nemodificate de la pornirea trecută - fără să citească nimic din ele
+        unindexedFiles = scanFolder(false);
         
         // Thread pentru acceptarea conexiunilor
         acceptThread = new Thread(this::acceptConnections, "FileServerAcceptor");
         acceptThread.setDaemon(true);
         acceptThread.start();
         
-        logger.info("FileServer pornit pe portul {}, partajează {} fișiere", 
-                    port, sharedFiles.size());
+        logger.info("FileServer pornit pe portul {}, partajează {} fișiere ({} de indexat)", 
+                    getPort(), sharedFiles.size(), unindexedFiles.size());
+    }
+    
+    /**
+     * Calculează în fundal hash-urile fișierelor rămase neindexate la start
+     * Fiecare fișier indexat e anunțat prin onFileAdded, progresul prin onIndexProgress.
+     * @return numărul de fișiere adăugate, disponibil la terminarea indexării
+     */
+    public CompletableFuture<Integer> startIndexing() {
+        List<Path> pending = unindexedFiles;
+        unindexedFiles = List.of();
+        indexerPending = pending.stream().map(file -> file.getFileName().toString()).collect(Collectors.toSet());
+        indexing = true;
+        return CompletableFuture.supplyAsync(() -> indexFiles(pending), task -> {
+            Thread thread = new Thread(task, "SharedFolderIndexer");
+            thread.setDaemon(true);
+            thread.start();
+        });
+    }
+    
+    private int indexFiles(List<Path> pending) {
+        long started = System.nanoTime();
+        long lastReport = 0;
+        int added = 0;
+        try {
+            for (int i = 0; i < pending.size() && running; i++) {
+                FileInfo fileInfo = Files.isRegularFile(pending.get(i)) ? addFileToSharedList(pending.get(i)) : null;
+                if (fileInfo != null) {
+                    added++;
+                    if (onFileAdded != null) {
+                        onFileAdded.accept(fileInfo);
+                    }
+                }
+                long now = System.currentTimeMillis();
+                if (onIndexProgress != null && (now - lastReport >= INDEX_PROGRESS_INTERVAL_MS || i == pending.size() - 1)) {
+                    onIndexProgress.accept(i + 1, pending.size());
+                    lastReport = now;
+                }
+            }
+        } finally {
+            indexing = false;
+            indexerPending = Set.of();
+        }
+        if (!pending.isEmpty()) {
+            logger.info("Indexare completă: {} fișiere noi sau modificate în {} ms", added,
+                        (System.nanoTime() - started) / 1_000_000);
+        }
+        return added;
+    }
+    
+    /**
+     * @return true cât timp startIndexing() mai are fișiere de citit
+     */
+    public boolean isIndexing() {
+        return indexing;
     }
     
     /**
@@ -113,6 +207,7 @@ public class FileServer {
         while (running) {
             try {
                 Socket clientSocket = serverSocket.accept();
+                clientSocket.setTcpNoDelay(true); // Răspunsurile sunt scrise întregi, la flush
                 logger.debug("Conexiune nouă de la {}", clientSocket.getRemoteSocketAddress());
                 
                 // Procesează cererea într-un thread separat
@@ -132,7 +227,11 @@ public class FileServer {
     private void handleClient(Socket socket) {
         try (socket;
              ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
-             ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream())) {
+             // Un flush = o singură scriere pe socket (o singură înregistrare TLS pentru o bucată)
+             ObjectOutputStream out = new ObjectOutputStream(
+                 new BufferedOutputStream(socket.getOutputStream(), SOCKET_BUFFER_SIZE))) {
+            
+            out.flush(); // Antetul stream-ului - clientul îl așteaptă înainte să trimită cererea
             
             // Citește cererea
             P2PMessage request = (P2PMessage) in.readObject();
@@ -142,19 +241,33 @@ public class FileServer {
                 case REQUEST_FILE_LIST:
                     handleFileListRequest(out);
                     break;
-                    
+                
                 case FILE_REQUEST:
-                    handleFileRequest(request, out);
+                    handleFileRequest(request, socket, out);
                     break;
-                    
+                
                 case PING:
                     handlePing(out);
                     break;
-                    
+                
+                case SEARCH_QUERY:
+                    handleSearchQuery(request, out);
+                    break;
+                
+                case REQUEST_CATALOG_EVENTS:
+                    handleCatalogEventsRequest(request, out);
+                    break;
+                
                 default:
                     logger.warn("Tip de mesaj necunoscut: {}", request.getType());
             }
             
+        } catch (SocketException e) {
+            // Clientul a pus descărcarea pe pauză sau a anulat-o - slotul s-a eliberat deja
+            logger.info("Conexiune închisă de client: {}", e.getMessage());
+        } catch (SSLException e) {
+            // Client fără TLS sau cu o identitate respinsă
+            logger.warn("Handshake TLS eșuat cu {}: {}", socket.getRemoteSocketAddress(), e.getMessage());
         } catch (IOException | ClassNotFoundException e) {
             logger.error("Eroare la procesarea clientului", e);
         }
@@ -176,7 +289,7 @@ public class FileServer {
     /**
      * Trimite un fișier cerut (cu suport pentru resume de la offset)
      */
-    private void handleFileRequest(P2PMessage request, ObjectOutputStream out) throws IOException {
+    private void handleFileRequest(P2PMessage request, Socket socket, ObjectOutputStream out) throws IOException {
         String fileName = request.getRequestedFileName();
         long resumeOffset = request.getResumeOffset();
         
@@ -211,9 +324,120 @@ public class FileServer {
             return;
         }
         
+        // Admisie: slot liber, loc în coadă sau respingere cu sugestie de reîncercare
+        UploadSlots.Ticket ticket = uploadSlots.tryAcquire();
+        if (ticket == null) {
+            rejectBusy(fileName, out);
+            return;
+        }
+        try {
+            if (!waitForSlot(ticket, fileName, socket, out)) {
+                return;
+            }
+            if (DELTA_ENABLED && request.getBlockSignature() != null && resumeOffset == 0) {
+                streamDelta(requestedFile, filePath, request.getBlockSignature(), request.getCompression(), out);
+            } else {
+                streamFile(requestedFile, filePath, resumeOffset, request.getCompression(), out);
+            }
+        } finally {
+            uploadSlots.release(ticket);
+        }
+    }
+    
+    /**
+     * Ține cererea în coadă până primește slot, trimițând FILE_QUEUED la fiecare schimbare
+     * de poziție (și periodic, ca semn că serverul n-a uitat de client)
+     * Un client care închide conexiunea e observat în cel mult QUEUE_DISCONNECT_CHECK_MILLIS,
+     * iar locul lui în coadă se eliberează (la ieșire, în handleFileRequest).
+     * @return false dacă așteptarea a expirat (cererea a fost respinsă) sau clientul a plecat
+     */
+    private boolean waitForSlot(UploadSlots.Ticket ticket, String fileName, Socket socket, ObjectOutputStream out)
+            throws IOException {
+        long deadline = System.currentTimeMillis() + MAX_QUEUE_WAIT_MILLIS;
+        int position = uploadSlots.position(ticket);
+        int reportedPosition = -1;
+        long nextKeepalive = 0;
+        while (position > 0) {
+            long now = System.currentTimeMillis();
+            if (position != reportedPosition || now >= nextKeepalive) {
+                P2PMessage queued = new P2PMessage(P2PMessage.MessageType.FILE_QUEUED);
+                queued.setQueuePosition(position);
+                queued.setRetryAfterMillis(uploadSlots.retryAfterMillis());
+                out.writeObject(queued);
+                out.flush();
+                logger.debug("Cerere în coadă: {} (poziția {})", fileName, position);
+                reportedPosition = position;
+                nextKeepalive = now + QUEUE_KEEPALIVE_MILLIS;
+            }
+            
+            long remaining = deadline - now;
+            if (remaining <= 0) {
+                rejectBusy(fileName, out);
+                return false;
+            }
+            if (clientDisconnected(socket)) {
+                logger.info("Client plecat din coada de upload: {}", fileName);
+                return false;
+            }
+            try {
+                position = uploadSlots.awaitChange(ticket, position, Math.min(remaining, QUEUE_DISCONNECT_CHECK_MILLIS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Cât așteaptă în coadă clientul nu trimite nimic, deci o citire care întoarce EOF
+     * (sau eșuează) înseamnă că a închis conexiunea
+     */
+    private static boolean clientDisconnected(Socket socket) {
+        try {
+            socket.setSoTimeout(1);
+            return socket.getInputStream().read() < 0;
+        } catch (SocketTimeoutException e) {
+            return false; // Nimic de citit - clientul încă așteaptă
+        } catch (IOException e) {
+            return true;
+        } finally {
+            try {
+                socket.setSoTimeout(0);
+            } catch (SocketException e) {
+                // Socket deja închis
+            }
+        }
+    }
+    
+    /**
+     * Toate sloturile și coada sunt ocupate - clientul să încerce altă sursă sau să revină mai târziu
+     */
+    private void rejectBusy(String fileName, ObjectOutputStream out) throws IOException {
+        P2PMessage response = new P2PMessage(P2PMessage.MessageType.FILE_REJECT);
+        response.setErrorMessage("Peer ocupat");
+        response.setRetryAfterMillis(uploadSlots.retryAfterMillis());
+        out.writeObject(response);
+        out.flush();
+        logger.info("Cerere respinsă, upload-uri ocupate ({} active, {} în coadă): {}",
+                   uploadSlots.getActiveCount(), uploadSlots.getQueuedCount(), fileName);
+    }
+    
+    /**
+     * @param acceptedCompression codec-ul acceptat de client (null = doar date brute)
+     */
+    private void streamFile(FileInfo requestedFile, Path filePath, long resumeOffset,
+                            String acceptedCompression, ObjectOutputStream out) throws IOException {
+        String fileName = requestedFile.getFileName();
+        
+        // Compresie doar dacă o acceptă ambele părți și eșantioanele arată că datele nu sunt deja comprimate
+        boolean compress = COMPRESSION_ENABLED && TransferCompression.DEFLATE.equals(acceptedCompression)
+            && TransferCompression.isCompressible(filePath, resumeOffset);
+        
         // Acceptă cererea
         P2PMessage acceptMessage = new P2PMessage(P2PMessage.MessageType.FILE_ACCEPT);
         acceptMessage.setFileList(List.of(requestedFile));
+        acceptMessage.setCompression(compress ? TransferCompression.DEFLATE : null);
         out.writeObject(acceptMessage);
         out.flush();
         
@@ -223,8 +447,12 @@ public class FileServer {
         } else {
             logger.info("⬆️ Începe transfer NOU: {}", fileName);
         }
+        if (compress) {
+            logger.info("Transfer comprimat (deflate, nivel {}): {}", COMPRESSION_LEVEL, fileName);
+        }
         
         // Trimite fișierul în bucăți (de la offset dacă e resume)
+        Deflater deflater = compress ? new Deflater(COMPRESSION_LEVEL) : null;
         try (FileInputStream fis = new FileInputStream(filePath.toFile())) {
             // Skip bytes dacă reluăm transferul
             if (resumeOffset > 0) {
@@ -237,19 +465,27 @@ public class FileServer {
             byte[] buffer = new byte[BUFFER_SIZE];
             int bytesRead;
             long totalSent = resumeOffset; // Pornim de la offset
+            long wireBytes = 0;
             
             while ((bytesRead = fis.read(buffer)) != -1) {
                 P2PMessage chunk = new P2PMessage(P2PMessage.MessageType.FILE_CHUNK);
                 
                 // Copiază doar bytes cititi efectiv
-                byte[] data = new byte[bytesRead];
-                System.arraycopy(buffer, 0, data, 0, bytesRead);
+                byte[] data;
+                if (deflater != null) {
+                    data = TransferCompression.deflate(deflater, buffer, bytesRead);
+                    chunk.setUncompressedLength(bytesRead);
+                } else {
+                    data = new byte[bytesRead];
+                    System.arraycopy(buffer, 0, data, 0, bytesRead);
+                }
                 chunk.setFileData(data);
                 
                 out.writeObject(chunk);
                 out.flush();
                 
                 totalSent += bytesRead;
+                wireBytes += data.length;
             }
             
             // Trimite mesaj de completare
@@ -258,13 +494,130 @@ public class FileServer {
             out.flush();
             
             logger.info("Transfer complet: {} ({} bytes)", fileName, totalSent);
+            if (deflater != null) {
+                logger.info("Compresie {}: {} bytes trimiși pentru {} bytes", fileName, wireBytes, totalSent - resumeOffset);
+            }
+            
+            if (onTransferComplete != null) {
+                onTransferComplete.accept(fileName);
+            }
+        } finally {
+            if (deflater != null) {
+                deflater.end(); // Memoria nativă a lui zlib nu așteaptă după GC
+            }
+        }
+    }
+    
+    /**
+     * Transfer delta: clientul are o versiune veche (semnătura din cerere), deci se trimit doar
+     * datele noi, iar pentru restul doar indicii de blocuri pe care clientul le copiază local
+     */
+    private void streamDelta(FileInfo requestedFile, Path filePath, BlockSignature signature,
+                             String acceptedCompression, ObjectOutputStream out) throws IOException {
+        String fileName = requestedFile.getFileName();
+        boolean compress = COMPRESSION_ENABLED && TransferCompression.DEFLATE.equals(acceptedCompression)
+            && TransferCompression.isCompressible(filePath, 0);
+        
+        P2PMessage acceptMessage = new P2PMessage(P2PMessage.MessageType.FILE_ACCEPT);
+        acceptMessage.setFileList(List.of(requestedFile));
+        acceptMessage.setCompression(compress ? TransferCompression.DEFLATE : null);
+        out.writeObject(acceptMessage);
+        out.flush();
+        
+        logger.info("🔁 Începe transfer DELTA: {} (clientul are {} blocuri de {} bytes)",
+                   fileName, signature.getBlockCount(), signature.getBlockSize());
+        
+        Deflater deflater = compress ? new Deflater(COMPRESSION_LEVEL) : null;
+        long[] literalBytes = new long[1];
+        long[] copiedBlocks = new long[1];
+        try {
+            String contentHash = DeltaSync.diff(filePath, signature, new DeltaSync.DeltaSink() {
+                @Override
+                public void literal(byte[] data, int offset, int length) throws IOException {
+                    P2PMessage chunk = new P2PMessage(P2PMessage.MessageType.FILE_CHUNK);
+                    if (deflater != null) {
+                        chunk.setFileData(TransferCompression.deflate(deflater, Arrays.copyOfRange(data, offset, offset + length), length));
+                        chunk.setUncompressedLength(length);
+                    } else {
+                        chunk.setFileData(Arrays.copyOfRange(data, offset, offset + length));
+                    }
+                    out.writeObject(chunk);
+                    out.flush();
+                    literalBytes[0] += length;
+                }
+                
+                @Override
+                public void copy(int firstBlock, int blockCount) throws IOException {
+                    P2PMessage chunk = new P2PMessage(P2PMessage.MessageType.FILE_CHUNK);
+                    chunk.setCopyBlock(firstBlock);
+                    chunk.setCopyBlockCount(blockCount);
+                    out.writeObject(chunk);
+                    copiedBlocks[0] += blockCount;
+                }
+            });
+            
+            P2PMessage complete = new P2PMessage(P2PMessage.MessageType.FILE_COMPLETE);
+            complete.setContentHash(contentHash);
+            out.writeObject(complete);
+            out.flush();
+            
+            logger.info("Transfer delta complet: {} ({} bytes noi, {} blocuri refolosite de la client)",
+                       fileName, literalBytes[0], copiedBlocks[0]);
             
             if (onTransferComplete != null) {
                 onTransferComplete.accept(fileName);
             }
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
         }
     }
     
+    /**
+     * Răspunde la o căutare cu fișierele care potrivesc (doar potrivirile, nu lista completă)
+     */
+    private void handleSearchQuery(P2PMessage request, ObjectOutputStream out) throws IOException {
+        List<FileInfo> hits = searchHandler != null
+            ? searchHandler.apply(request)
+            : searchLocal(request.getSearchQuery(), request.getMaxResults());
+        
+        P2PMessage response = new P2PMessage(P2PMessage.MessageType.SEARCH_HIT);
+        response.setQueryId(request.getQueryId());
+        response.setFileList(new java.util.ArrayList<>(hits));
+        out.writeObject(response);
+        out.flush();
+        
+        logger.debug("Căutare \"{}\": {} rezultate trimise", request.getSearchQuery(), hits.size());
+    }
+    
+    /**
+     * Trimite evenimentele de catalog cerute; dacă nu mai sunt în jurnal
+     * (sau nu există handler), trimite lista completă
+     */
+    private void handleCatalogEventsRequest(P2PMessage request, ObjectOutputStream out) throws IOException {
+        P2PMessage response = catalogEventsHandler != null ? catalogEventsHandler.apply(request) : null;
+        if (response == null) {
+            response = new P2PMessage(P2PMessage.MessageType.CATALOG_EVENTS);
+        }
+        if (response.getFileList() == null) {
+            response.setFileList(new java.util.ArrayList<>(sharedFiles));
+            response.setFullCatalog(true);
+        }
+        out.writeObject(response);
+        out.flush();
+        
+        logger.debug("Evenimente de catalog trimise: {} (complet: {})",
+                     response.getFileList().size(), response.isFullCatalog());
+    }
+    
+    /**
+     * Caută în fișierele partajate local
+     */
+    public List<FileInfo> searchLocal(String query, int maxResults) {
+        return localIndex.search(query, maxResults);
+    }
+    
     /**
      * Răspunde la PING
      */
@@ -276,42 +629,136 @@ public class FileServer {
     
     /**
      * Scanează folderul de fișiere partajate
+     * Cât timp indexarea din fundal rulează, fișierele aflate în coada ei îi sunt lăsate.
      */
     public void scanSharedFolder() {
-        sharedFiles.clear();
-        
+        scanFolder(true);
+    }
+    
+    /**
+     * Lista nouă e construită separat (hash-urile se calculează fără lock) și înlocuiește
+     * lista veche dintr-o dată, deci căutările și cererile din timpul scanării găsesc fișierele.
+     * @param hashUnknown false = fișierele fără hash în cache nu sunt citite, ci returnate
+     * @return fișierele rămase neindexate
+     */
+    private List<Path> scanFolder(boolean hashUnknown) {
+        List<Path> files;
         try (var stream = Files.list(sharedFolder)) {
-            stream.filter(Files::isRegularFile)
-                  .forEach(this::addFileToSharedList);
-            
-            logger.info("Scanare completă: {} fișiere găsite", sharedFiles.size());
-            
+            files = stream.filter(Files::isRegularFile).toList();
         } catch (IOException e) {
             logger.error("Eroare la scanarea folderului", e);
+            return List.of();
         }
+        
+        Set<String> leftToIndexer = indexerPending;
+        List<FileInfo> scanned = new ArrayList<>();
+        List<Path> unindexed = new ArrayList<>();
+        for (Path filePath : files) {
+            FileInfo fileInfo = knownFile(filePath);
+            if (fileInfo == null && hashUnknown && !leftToIndexer.contains(filePath.getFileName().toString())) {
+                fileInfo = hashFile(filePath);
+            }
+            if (fileInfo != null) {
+                scanned.add(fileInfo);
+            } else {
+                unindexed.add(filePath);
+            }
+        }
+        if (hashCache != null) {
+            hashCache.retainAll(files.stream().map(file -> file.getFileName().toString()).toList());
+        }
+        
+        synchronized (indexLock) {
+            // Fișierele din coada indexării rămân așa cum le-a adăugat ea între timp
+            Set<String> unindexedNames = unindexed.stream()
+                .map(file -> file.getFileName().toString())
+                .collect(Collectors.toSet());
+            for (FileInfo existing : sharedFiles) {
+                if (unindexedNames.contains(existing.getFileName())) {
+                    scanned.add(existing);
+                }
+            }
+            FileSearchIndex index = new FileSearchIndex();
+            scanned.forEach(index::add);
+            sharedFiles = new CopyOnWriteArrayList<>(scanned);
+            localIndex = index;
+        }
+        
+        logger.info("Scanare completă: {} fișiere găsite", files.size());
+        return unindexed;
     }
     
     /**
-     * Adaugă un fișier la lista de fișiere partajate
+     * Fișierul cu hash-ul din cache, sau null dacă hash-ul nu e cunoscut (ori fișierul s-a schimbat)
      */
-    private FileInfo addFileToSharedList(Path filePath) {
+    private FileInfo knownFile(Path filePath) {
+        if (hashCache == null) {
+            return null;
+        }
         try {
             String fileName = filePath.getFileName().toString();
             long fileSize = Files.size(filePath);
-            String hash = calculateFileHash(filePath);
-            
-            FileInfo fileInfo = new FileInfo(fileName, fileSize, hash);
-            sharedFiles.add(fileInfo);
-            
-            logger.debug("Fișier adăugat: {}", fileName);
+            String hash = hashCache.get(fileName, fileSize, Files.getLastModifiedTime(filePath).toMillis());
+            return hash != null ? new FileInfo(fileName, fileSize, hash) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Adaugă un fișier la lista de fișiere partajate (hash-ul e citit din cache sau calculat)
+     */
+    private FileInfo addFileToSharedList(Path filePath) {
+        FileInfo fileInfo = hashFile(filePath);
+        if (fileInfo != null) {
+            addToSharedList(fileInfo);
+            logger.debug("Fișier adăugat: {}", fileInfo.getFileName());
+        }
+        return fileInfo;
+    }
+    
+    /**
+     * Descrierea fișierului, cu hash-ul din cache sau calculat acum (și salvat în cache)
+     */
+    private FileInfo hashFile(Path filePath) {
+        try {
+            FileInfo fileInfo = knownFile(filePath);
+            if (fileInfo == null) {
+                String fileName = filePath.getFileName().toString();
+                long fileSize = Files.size(filePath);
+                long modified = Files.getLastModifiedTime(filePath).toMillis();
+                String hash = calculateFileHash(filePath);
+                if (hashCache != null && !"unknown".equals(hash)) {
+                    hashCache.put(fileName, fileSize, modified, hash);
+                }
+                fileInfo = new FileInfo(fileName, fileSize, hash);
+            }
             return fileInfo;
-            
+        
         } catch (IOException e) {
             logger.error("Eroare la adăugarea fișierului: " + filePath, e);
             return null;
         }
     }
     
+    /**
+     * Un fișier cu același nume deja în listă (ex. înlocuit între timp) e scos
+     */
+    private void addToSharedList(FileInfo fileInfo) {
+        synchronized (indexLock) {
+            List<FileInfo> files = sharedFiles;
+            FileSearchIndex index = localIndex;
+            for (FileInfo existing : files) {
+                if (existing.getFileName().equals(fileInfo.getFileName())) {
+                    files.remove(existing);
+                    index.remove(existing);
+                }
+            }
+            files.add(fileInfo);
+            index.add(fileInfo);
+        }
+    }
+    
     /**
      * Calculează hash-ul MD5 al unui fișier
      */
@@ -374,14 +821,32 @@ public class FileServer {
         return new CopyOnWriteArrayList<>(sharedFiles);
     }
     
+    /**
+     * @return portul ocupat efectiv (cel ales de sistem, dacă serverul a fost creat cu portul 0)
+     */
     public int getPort() {
-        return port;
+        ServerSocket bound = serverSocket;
+        return bound != null ? bound.getLocalPort() : port;
     }
     
     public Path getSharedFolder() {
         return sharedFolder;
     }
     
+    /**
+     * Hash-urile salvate între porniri (trebuie setat înainte de start)
+     */
+    public void setHashCache(FileHashCache hashCache) {
+        this.hashCache = hashCache;
+    }
+    
+    /**
+     * Activează TLS (trebuie apelat înainte de start)
+     */
+    public void setTlsTransport(TlsTransport tls) {
+        this.tls = tls;
+    }
+    
     // Callbacks
     public void setOnFileRequested(Consumer<String> callback) {
         this.onFileRequested = callback;
@@ -394,4 +859,24 @@ public class FileServer {
     public void setOnFileAdded(Consumer<FileInfo> callback) {
         this.onFileAdded = callback;
     }
+    
+    public void setOnIndexProgress(BiConsumer<Integer, Integer> callback) {
+        this.onIndexProgress = callback;
+    }
+    
+    /**
+     * Handler pentru SEARCH_QUERY (ex. SearchService, care propagă căutarea mai departe)
+     * Fără handler se răspunde doar cu potrivirile locale.
+     */
+    public void setSearchHandler(Function<P2PMessage, List<FileInfo>> handler) {
+        this.searchHandler = handler;
+    }
+    
+    /**
+     * Handler pentru REQUEST_CATALOG_EVENTS (jurnalul e ținut de NodeDiscoveryService)
+     * Un răspuns fără listă înseamnă că evenimentele cerute nu mai sunt disponibile.
+     */
+    public void setCatalogEventsHandler(Function<P2PMessage, P2PMessage> handler) {
+        this.catalogEventsHandler = handler;
+    }
 }
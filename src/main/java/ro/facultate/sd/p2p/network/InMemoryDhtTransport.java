@@ -0,0 +1,113 @@
+package ro.facultate.sd.p2p.network;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Transport DHT în memorie, pentru simularea a sute de noduri într-un singur JVM
+ * Nodurile au adrese nerezolvate de forma "sim-N:port"; livrarea e asincronă,
+ * cu pierderi de pachete opționale, ca pe o rețea UDP reală.
+ */
+public class InMemoryDhtTransport implements DhtTransport {
+    private final Network network;
+    private final InetSocketAddress localAddress;
+    private volatile BiConsumer<InetSocketAddress, ByteBuffer> receiver;
+    
+    public InMemoryDhtTransport(Network network) {
+        this.network = network;
+        this.localAddress = network.allocateAddress();
+    }
+    
+    @Override
+    public void start(BiConsumer<InetSocketAddress, ByteBuffer> receiver) {
+        this.receiver = receiver;
+        network.endpoints.put(localAddress, this);
+    }
+    
+    @Override
+    public void send(InetSocketAddress target, ByteBuffer message) {
+        network.deliver(localAddress, target, message);
+    }
+    
+    @Override
+    public InetSocketAddress address(String host, int port) {
+        return InetSocketAddress.createUnresolved(host, port);
+    }
+    
+    @Override
+    public int getPort() {
+        return localAddress.getPort();
+    }
+    
+    public InetSocketAddress getLocalAddress() {
+        return localAddress;
+    }
+    
+    @Override
+    public void close() {
+        network.endpoints.remove(localAddress);
+    }
+    
+    /**
+     * Rețeaua simulată comună tuturor nodurilor
+     */
+    public static final class Network {
+        private final Map<InetSocketAddress, InMemoryDhtTransport> endpoints = new ConcurrentHashMap<>();
+        private final ExecutorService delivery;
+        private final double lossRate;
+        private final AtomicInteger nextNode = new AtomicInteger();
+        private final AtomicLong messages = new AtomicLong();
+        
+        /**
+         * @param lossRate probabilitatea ca un mesaj să fie pierdut (0 = fără pierderi)
+         */
+        public Network(double lossRate) {
+            this.lossRate = lossRate;
+            this.delivery = Executors.newFixedThreadPool(4, r -> {
+                Thread thread = new Thread(r, "DhtSimulation");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        
+        private InetSocketAddress allocateAddress() {
+            int node = nextNode.incrementAndGet();
+            return InetSocketAddress.createUnresolved("sim-" + node, 10000 + node % 50000);
+        }
+        
+        private void deliver(InetSocketAddress from, InetSocketAddress to, ByteBuffer message) {
+            messages.incrementAndGet();
+            InMemoryDhtTransport target = endpoints.get(to);
+            if (target == null || (lossRate > 0 && ThreadLocalRandom.current().nextDouble() < lossRate)) {
+                return;
+            }
+            byte[] copy = new byte[message.position()];
+            System.arraycopy(message.array(), 0, copy, 0, copy.length);
+            delivery.execute(() -> {
+                BiConsumer<InetSocketAddress, ByteBuffer> receiver = target.receiver;
+                if (receiver != null) {
+                    receiver.accept(from, ByteBuffer.wrap(copy));
+                }
+            });
+        }
+        
+        /**
+         * Numărul total de mesaje trimise (pentru măsurarea costului căutărilor)
+         */
+        public long getMessageCount() {
+            return messages.get();
+        }
+        
+        public void shutdown() {
+            delivery.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,690 @@
+package ro.facultate.sd.p2p.network;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ro.facultate.sd.p2p.model.PeerInfo;
+
+/**
+ * Nod DHT în stil Kademlia: hash fișier -> peers care îl dețin
+ *
+ * Identificatorii (noduri și chei) au 160 de biți (SHA-1 al peerId-ului, respectiv
+ * al hash-ului de fișier), iar distanța e XOR-ul lor. Tabela de rutare are câte un
+ * k-bucket pentru fiecare bit; căutările sunt iterative (ALPHA cereri în paralel
+ * către cele mai apropiate noduri cunoscute), deci găsesc deținătorii unui fișier în
+ * O(log N) mesaje. Fiecare nod își republică periodic fișierele, iar înregistrările
+ * nerepublicate expiră.
+ *
+ * Format mesaj (big-endian): int MAGIC, byte tip, long rpcId, 20 bytes id expeditor, corp.
+ */
+public class KademliaNode {
+    private static final Logger logger = LoggerFactory.getLogger(KademliaNode.class);
+    private static final int MAGIC = 0x4B41444D; // "KADM"
+    private static final int ID_BYTES = 20;
+    private static final int ID_BITS = ID_BYTES * 8;
+    private static final int HEADER_SIZE = 4 + 1 + 8 + ID_BYTES;
+    private static final int MAX_PACKET = 1400;
+    
+    private static final byte TYPE_PING = 1;
+    private static final byte TYPE_PONG = 2;
+    private static final byte TYPE_STORE = 3;
+    private static final byte TYPE_STORE_ACK = 4;
+    private static final byte TYPE_FIND_NODE = 5;
+    private static final byte TYPE_NODES = 6;
+    private static final byte TYPE_FIND_VALUE = 7;
+    private static final byte TYPE_VALUES = 8;
+    
+    private static final int K = 20; // Dimensiunea unui bucket și numărul de replici
+    private static final int ALPHA = 3; // Cereri paralele per pas de căutare
+    private static final int MAX_HOLDERS_PER_KEY = 48; // Încape într-un singur mesaj VALUES
+    private static final long RPC_TIMEOUT_MILLIS = Long.getLong("p2p.dht.rpcTimeoutMs", 1500);
+    private static final long REPUBLISH_MILLIS = Long.getLong("p2p.dht.republishMs", 30 * 60_000L);
+    private static final long RECORD_TTL_MILLIS = REPUBLISH_MILLIS * 2 + 60_000; // Supraviețuiește unei republicări pierdute
+    private static final long REFRESH_MILLIS = 15 * 60_000L; // Bucket-uri neatinse sunt reîmprospătate
+    private static final int MAX_FAILURES = 2; // Contact eliminat după atâtea RPC-uri fără răspuns
+    private static final int BOOTSTRAP_ATTEMPTS = 3;
+    private static final HexFormat HEX = HexFormat.of();
+    
+    private final String localPeerId;
+    private final byte[] localId;
+    private final DhtTransport transport;
+    
+    // Tabela de rutare, protejată de monitorul listei de bucket-uri
+    private final List<List<Contact>> buckets = new ArrayList<>(ID_BITS);
+    private final long[] bucketTouched = new long[ID_BITS];
+    private final boolean[] evictionPending = new boolean[ID_BITS];
+    
+    // Înregistrări stocate pentru alții: cheie (hex) -> peerId deținător -> deținător
+    private final Map<String, Map<String, StoredHolder>> records = new ConcurrentHashMap<>();
+    private final Map<String, Integer> published = new ConcurrentHashMap<>(); // hash fișier -> port TCP
+    private final Map<Long, CompletableFuture<ByteBuffer>> pendingCalls = new ConcurrentHashMap<>();
+    private final AtomicLong rpcIds = new AtomicLong(ThreadLocalRandom.current().nextLong());
+    
+    private ExecutorService workers;
+    private ScheduledExecutorService scheduler;
+    private volatile boolean running;
+    
+    public KademliaNode(String localPeerId, DhtTransport transport) {
+        this.localPeerId = localPeerId;
+        this.localId = sha1(localPeerId);
+        this.transport = transport;
+        for (int i = 0; i < ID_BITS; i++) {
+            buckets.add(new ArrayList<>());
+        }
+    }
+    
+    public void start() throws IOException {
+        transport.start(this::onMessage);
+        running = true;
+        
+        workers = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "DhtWorker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "DhtMaintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::expireRecords, 60, 60, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(this::republish, REPUBLISH_MILLIS, REPUBLISH_MILLIS, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::refreshBuckets, REFRESH_MILLIS, REFRESH_MILLIS, TimeUnit.MILLISECONDS);
+        
+        logger.info("DHT pornit pe portul {}", transport.getPort());
+    }
+    
+    public void stop() {
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+        transport.close();
+        pendingCalls.values().forEach(call -> call.cancel(false));
+    }
+    
+    // API public
+    
+    /**
+     * Intră în DHT prin nodurile date: le contactează și își caută propriul id,
+     * ceea ce populează bucket-urile apropiate și ne face cunoscuți vecinilor.
+     * PING-urile pierdute se repetă, altfel nodul ar rămâne fără niciun contact.
+     */
+    public CompletableFuture<Void> bootstrap(Collection<InetSocketAddress> seeds) {
+        return CompletableFuture.runAsync(() -> {
+            for (int attempt = 0; attempt < BOOTSTRAP_ATTEMPTS && getContactCount() == 0; attempt++) {
+                List<CompletableFuture<ByteBuffer>> pings = new ArrayList<>();
+                for (InetSocketAddress seed : seeds) {
+                    pings.add(call(transport.address(seed.getHostString(), seed.getPort()), TYPE_PING, out -> { }));
+                }
+                for (CompletableFuture<ByteBuffer> ping : pings) {
+                    ping.exceptionally(e -> null).join();
+                }
+            }
+            lookup(localId, false);
+        }, workers);
+    }
+    
+    /**
+     * Adaugă un contact aflat pe altă cale (ex. anunț multicast); id-ul se află din PONG
+     */
+    public void addContact(InetSocketAddress address) {
+        if (running) {
+            call(address, TYPE_PING, out -> { });
+        }
+    }
+    
+    /**
+     * Publică faptul că acest nod deține fișierul (și îl republică periodic)
+     */
+    public CompletableFuture<Integer> publish(String fileHash, int transferPort) {
+        published.put(fileHash, transferPort);
+        return CompletableFuture.supplyAsync(() -> store(fileHash, transferPort), workers);
+    }
+    
+    /**
+     * Oprește republicarea; înregistrările existente expiră singure
+     */
+    public void unpublish(String fileHash) {
+        published.remove(fileHash);
+    }
+    
+    /**
+     * Caută peers care dețin fișierul (căutare iterativă FIND_VALUE)
+     * @return deținătorii găsiți (adresă și port TCP), listă goală dacă nu există
+     */
+    public CompletableFuture<List<PeerInfo>> findHolders(String fileHash) {
+        return CompletableFuture.supplyAsync(() -> {
+            Map<String, StoredHolder> local = records.get(HEX.formatHex(sha1(fileHash)));
+            Map<String, PeerInfo> holders = new LinkedHashMap<>();
+            if (local != null) {
+                local.values().forEach(stored -> holders.put(stored.holder.getPeerId(), stored.holder));
+            }
+            LookupResult result = lookup(sha1(fileHash), true);
+            result.holders.forEach(holder -> holders.putIfAbsent(holder.getPeerId(), holder));
+            return new ArrayList<>(holders.values());
+        }, workers);
+    }
+    
+    public int getPort() {
+        return transport.getPort();
+    }
+    
+    public int getContactCount() {
+        synchronized (buckets) {
+            int count = 0;
+            for (List<Contact> bucket : buckets) {
+                count += bucket.size();
+            }
+            return count;
+        }
+    }
+    
+    // Operații iterative
+    
+    private int store(String fileHash, int transferPort) {
+        byte[] key = sha1(fileHash);
+        List<Contact> closest = lookup(key, false).closest;
+        List<CompletableFuture<ByteBuffer>> acks = new ArrayList<>();
+        for (Contact contact : closest) {
+            acks.add(call(contact.address, TYPE_STORE, out -> {
+                out.put(key);
+                out.putInt((int) (RECORD_TTL_MILLIS / 1000));
+                putHolder(out, localPeerId, "", transferPort); // Adresa e completată de destinatar
+            }));
+        }
+        int stored = 0;
+        for (CompletableFuture<ByteBuffer> ack : acks) {
+            if (ack.exceptionally(e -> null).join() != null) {
+                stored++;
+            }
+        }
+        logger.debug("Fișier publicat în DHT pe {} noduri", stored);
+        return stored;
+    }
+    
+    /**
+     * Căutare iterativă: cel mult ALPHA cereri în zbor către cele mai apropiate K
+     * noduri neîntrebate, până când cele K au răspuns toate (sau, la FIND_VALUE,
+     * până apar deținători). Fiecare răspuns eliberează imediat un loc, deci un nod
+     * care nu răspunde nu blochează restul căutării până la timeout.
+     */
+    private LookupResult lookup(byte[] target, boolean findValue) {
+        Comparator<Contact> byDistance = (a, b) -> compareDistance(a.id, b.id, target);
+        List<Contact> shortlist = new ArrayList<>(closestContacts(target, K));
+        Set<String> seen = new HashSet<>();
+        Set<String> queried = new HashSet<>();
+        List<Contact> responded = new ArrayList<>();
+        Map<String, PeerInfo> holders = new LinkedHashMap<>();
+        BlockingQueue<Reply> replies = new LinkedBlockingQueue<>();
+        shortlist.forEach(contact -> seen.add(contact.key()));
+        int inFlight = 0;
+        
+        while (running) {
+            for (Contact contact : shortlist.subList(0, Math.min(K, shortlist.size()))) {
+                if (inFlight < ALPHA && queried.add(contact.key())) {
+                    inFlight++;
+                    call(contact.address, findValue ? TYPE_FIND_VALUE : TYPE_FIND_NODE, out -> out.put(target))
+                        .whenComplete((response, error) -> replies.add(new Reply(contact, response)));
+                }
+            }
+            if (inFlight == 0) {
+                break;
+            }
+            
+            Reply reply;
+            try {
+                reply = replies.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            inFlight--;
+            
+            ByteBuffer response = reply.response;
+            if (response == null) {
+                shortlist.remove(reply.contact);
+                continue;
+            }
+            responded.add(reply.contact);
+            if (response.get(4) == TYPE_VALUES) {
+                int count = Short.toUnsignedInt(response.getShort());
+                for (int i = 0; i < count; i++) {
+                    PeerInfo holder = getHolder(response, null);
+                    holders.putIfAbsent(holder.getPeerId(), holder);
+                }
+            }
+            for (Contact contact : getContacts(response)) {
+                if (seen.add(contact.key()) && !contact.isLocal()) {
+                    shortlist.add(contact);
+                }
+            }
+            shortlist.sort(byDistance);
+            if (findValue && !holders.isEmpty()) {
+                break;
+            }
+        }
+        
+        responded.sort(byDistance);
+        return new LookupResult(responded.subList(0, Math.min(K, responded.size())), holders.values());
+    }
+    
+    // Recepție
+    
+    private void onMessage(InetSocketAddress sender, ByteBuffer in) {
+        if (in.remaining() < HEADER_SIZE || in.getInt() != MAGIC) {
+            return;
+        }
+        byte type = in.get();
+        long rpcId = in.getLong();
+        byte[] senderId = new byte[ID_BYTES];
+        in.get(senderId);
+        
+        // Orice mesaj primit e o dovadă că expeditorul trăiește
+        touchContact(new Contact(senderId, transport.address(sender.getHostString(), sender.getPort())));
+        
+        switch (type) {
+            case TYPE_PING -> reply(sender, TYPE_PONG, rpcId, out -> { });
+            case TYPE_STORE -> {
+                handleStore(in, sender);
+                reply(sender, TYPE_STORE_ACK, rpcId, out -> { });
+            }
+            case TYPE_FIND_NODE -> {
+                byte[] target = getId(in);
+                reply(sender, TYPE_NODES, rpcId, out -> putContacts(out, target, senderId));
+            }
+            case TYPE_FIND_VALUE -> handleFindValue(in, sender, rpcId, senderId);
+            default -> {
+                CompletableFuture<ByteBuffer> call = pendingCalls.remove(rpcId);
+                if (call != null) {
+                    call.complete(in);
+                }
+            }
+        }
+    }
+    
+    private void handleStore(ByteBuffer in, InetSocketAddress sender) {
+        String key = HEX.formatHex(getId(in));
+        long ttlMillis = Math.min(in.getInt() * 1000L, RECORD_TTL_MILLIS);
+        PeerInfo holder = getHolder(in, sender.getHostString());
+        
+        Map<String, StoredHolder> holders = records.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+        if (holders.size() < MAX_HOLDERS_PER_KEY || holders.containsKey(holder.getPeerId())) {
+            holders.put(holder.getPeerId(), new StoredHolder(holder, System.currentTimeMillis() + ttlMillis));
+        }
+    }
+    
+    private void handleFindValue(ByteBuffer in, InetSocketAddress sender, long rpcId, byte[] senderId) {
+        byte[] key = getId(in);
+        Map<String, StoredHolder> holders = records.get(HEX.formatHex(key));
+        if (holders == null || holders.isEmpty()) {
+            reply(sender, TYPE_NODES, rpcId, out -> putContacts(out, key, senderId));
+            return;
+        }
+        
+        List<StoredHolder> values = new ArrayList<>(holders.values());
+        reply(sender, TYPE_VALUES, rpcId, out -> {
+            int countPosition = out.position();
+            out.putShort((short) 0);
+            int count = 0;
+            for (StoredHolder stored : values) {
+                if (out.remaining() < 64 + 600) { // Păstrează loc pentru contacte
+                    break;
+                }
+                putHolder(out, stored.holder.getPeerId(), stored.holder.getAddress(),
+                          stored.holder.getFileTransferPort());
+                count++;
+            }
+            out.putShort(countPosition, (short) count);
+            putContacts(out, key, senderId);
+        });
+    }
+    
+    // RPC
+    
+    private CompletableFuture<ByteBuffer> call(InetSocketAddress target, byte type, Consumer<ByteBuffer> body) {
+        long rpcId = rpcIds.incrementAndGet();
+        CompletableFuture<ByteBuffer> future = new CompletableFuture<>();
+        pendingCalls.put(rpcId, future);
+        
+        ByteBuffer out = newMessage(type, rpcId);
+        body.accept(out);
+        transport.send(target, out);
+        
+        return future.orTimeout(RPC_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                     .whenComplete((response, error) -> {
+                         pendingCalls.remove(rpcId);
+                         if (error != null) {
+                             contactFailed(target);
+                         }
+                     });
+    }
+    
+    private void reply(InetSocketAddress target, byte type, long rpcId, Consumer<ByteBuffer> body) {
+        ByteBuffer out = newMessage(type, rpcId);
+        body.accept(out);
+        transport.send(target, out);
+    }
+    
+    private ByteBuffer newMessage(byte type, long rpcId) {
+        ByteBuffer out = ByteBuffer.allocate(MAX_PACKET);
+        out.putInt(MAGIC).put(type).putLong(rpcId).put(localId);
+        return out;
+    }
+    
+    // Tabela de rutare
+    
+    /**
+     * Actualizează contactul: mutat la coada bucket-ului (cel mai recent văzut) sau adăugat;
+     * dacă bucket-ul e plin, cel mai vechi contact e verificat cu PING și înlocuit doar dacă nu răspunde
+     */
+    private void touchContact(Contact contact) {
+        if (contact.isLocal()) {
+            return;
+        }
+        int index = bucketIndex(contact.id);
+        Contact oldest;
+        synchronized (buckets) {
+            List<Contact> bucket = buckets.get(index);
+            bucketTouched[index] = System.currentTimeMillis();
+            for (Iterator<Contact> iterator = bucket.iterator(); iterator.hasNext();) {
+                Contact existing = iterator.next();
+                if (existing.sameNode(contact)) {
+                    iterator.remove();
+                    contact.failures = 0;
+                    bucket.add(contact);
+                    return;
+                }
+            }
+            if (bucket.size() < K) {
+                bucket.add(contact);
+                return;
+            }
+            if (evictionPending[index] || !running) {
+                return;
+            }
+            evictionPending[index] = true;
+            oldest = bucket.get(0);
+        }
+        
+        // Kademlia preferă contactele vechi și stabile
+        call(oldest.address, TYPE_PING, out -> { }).whenComplete((response, error) -> {
+            synchronized (buckets) {
+                evictionPending[index] = false;
+                List<Contact> bucket = buckets.get(index);
+                if (error != null && bucket.remove(oldest) && bucket.size() < K) {
+                    bucket.add(contact);
+                }
+            }
+        });
+    }
+    
+    private void contactFailed(InetSocketAddress address) {
+        synchronized (buckets) {
+            for (List<Contact> bucket : buckets) {
+                for (Iterator<Contact> iterator = bucket.iterator(); iterator.hasNext();) {
+                    Contact contact = iterator.next();
+                    if (contact.address.equals(address) && ++contact.failures >= MAX_FAILURES) {
+                        iterator.remove();
+                    }
+                }
+            }
+        }
+    }
+    
+    private List<Contact> closestContacts(byte[] target, int count) {
+        List<Contact> all = new ArrayList<>();
+        synchronized (buckets) {
+            for (List<Contact> bucket : buckets) {
+                all.addAll(bucket);
+            }
+        }
+        all.sort((a, b) -> compareDistance(a.id, b.id, target));
+        return all.subList(0, Math.min(count, all.size()));
+    }
+    
+    private int bucketIndex(byte[] id) {
+        for (int i = 0; i < ID_BYTES; i++) {
+            int xor = (id[i] ^ localId[i]) & 0xFF;
+            if (xor != 0) {
+                return ID_BITS - 1 - (i * 8 + Integer.numberOfLeadingZeros(xor) - 24);
+            }
+        }
+        return 0;
+    }
+    
+    /**
+     * Compară distanțele XOR ale lui a și b față de țintă
+     */
+    private static int compareDistance(byte[] a, byte[] b, byte[] target) {
+        for (int i = 0; i < ID_BYTES; i++) {
+            int da = (a[i] ^ target[i]) & 0xFF;
+            int db = (b[i] ^ target[i]) & 0xFF;
+            if (da != db) {
+                return Integer.compare(da, db);
+            }
+        }
+        return 0;
+    }
+    
+    // Întreținere periodică
+    
+    private void expireRecords() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Map<String, StoredHolder>> iterator = records.values().iterator(); iterator.hasNext();) {
+            Map<String, StoredHolder> holders = iterator.next();
+            holders.values().removeIf(stored -> stored.expiresAt < now);
+            if (holders.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+    
+    private void republish() {
+        for (Map.Entry<String, Integer> entry : published.entrySet()) {
+            if (!running) {
+                return;
+            }
+            try {
+                store(entry.getKey(), entry.getValue());
+            } catch (RuntimeException e) {
+                logger.debug("Republicare eșuată: {}", e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Caută un id aleator din fiecare bucket neatins de mult, ca tabela să rămână actuală
+     */
+    private void refreshBuckets() {
+        long now = System.currentTimeMillis();
+        for (int index = 0; index < ID_BITS && running; index++) {
+            boolean stale;
+            synchronized (buckets) {
+                stale = !buckets.get(index).isEmpty() && now - bucketTouched[index] > REFRESH_MILLIS;
+            }
+            if (stale) {
+                lookup(randomIdInBucket(index), false);
+            }
+        }
+    }
+    
+    private byte[] randomIdInBucket(int index) {
+        byte[] id = new byte[ID_BYTES];
+        ThreadLocalRandom.current().nextBytes(id);
+        int bit = ID_BITS - 1 - index; // Primul bit diferit față de noi (de la stânga)
+        for (int i = 0; i < ID_BYTES * 8; i++) {
+            int mask = 0x80 >>> (i % 8);
+            boolean ours = (localId[i / 8] & mask) != 0;
+            if (i <= bit) {
+                boolean value = i < bit ? ours : !ours;
+                id[i / 8] = (byte) (value ? id[i / 8] | mask : id[i / 8] & ~mask);
+            }
+        }
+        return id;
+    }
+    
+    // Codificare
+    
+    private void putContacts(ByteBuffer out, byte[] target, byte[] excludedId) {
+        int countPosition = out.position();
+        out.put((byte) 0);
+        int count = 0;
+        for (Contact contact : closestContacts(target, K + 1)) {
+            if (count >= K || out.remaining() < ID_BYTES + 1 + 64 + 2) {
+                break;
+            }
+            if (Arrays.equals(contact.id, excludedId)) {
+                continue;
+            }
+            out.put(contact.id);
+            putString(out, contact.address.getHostString());
+            out.putShort((short) contact.address.getPort());
+            count++;
+        }
+        out.put(countPosition, (byte) count);
+    }
+    
+    private List<Contact> getContacts(ByteBuffer in) {
+        int count = Byte.toUnsignedInt(in.get());
+        List<Contact> contacts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] id = getId(in);
+            String host = getString(in);
+            int port = Short.toUnsignedInt(in.getShort());
+            contacts.add(new Contact(id, transport.address(host, port)));
+        }
+        return contacts;
+    }
+    
+    private static void putHolder(ByteBuffer out, String peerId, String host, int transferPort) {
+        UUID id = UUID.fromString(peerId);
+        out.putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits());
+        putString(out, host);
+        out.putShort((short) transferPort);
+    }
+    
+    /**
+     * @param senderHost adresa folosită când deținătorul nu și-a trimis adresa (publicare proprie)
+     */
+    private static PeerInfo getHolder(ByteBuffer in, String senderHost) {
+        String peerId = new UUID(in.getLong(), in.getLong()).toString();
+        String host = getString(in);
+        int transferPort = Short.toUnsignedInt(in.getShort());
+        return new PeerInfo(peerId, host.isEmpty() ? senderHost : host, 0, transferPort);
+    }
+    
+    private static void putString(ByteBuffer out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.put((byte) bytes.length).put(bytes);
+    }
+    
+    private static String getString(ByteBuffer in) {
+        byte[] bytes = new byte[Byte.toUnsignedInt(in.get())];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private static byte[] getId(ByteBuffer in) {
+        byte[] id = new byte[ID_BYTES];
+        in.get(id);
+        return id;
+    }
+    
+    static byte[] sha1(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 indisponibil", e);
+        }
+    }
+    
+    /**
+     * Un nod cunoscut din tabela de rutare
+     */
+    private final class Contact {
+        private final byte[] id;
+        private final InetSocketAddress address;
+        private int failures;
+        
+        private Contact(byte[] id, InetSocketAddress address) {
+            this.id = id;
+            this.address = address;
+        }
+        
+        private boolean isLocal() {
+            return Arrays.equals(id, localId);
+        }
+        
+        private boolean sameNode(Contact other) {
+            return Arrays.equals(id, other.id);
+        }
+        
+        private String key() {
+            return address.getHostString() + ":" + address.getPort();
+        }
+    }
+    
+    private static final class StoredHolder {
+        private final PeerInfo holder;
+        private final long expiresAt;
+        
+        private StoredHolder(PeerInfo holder, long expiresAt) {
+            this.holder = holder;
+            this.expiresAt = expiresAt;
+        }
+    }
+    
+    private static final class Reply {
+        private final Contact contact;
+        private final ByteBuffer response; // null = fără răspuns
+        
+        private Reply(Contact contact, ByteBuffer response) {
+            this.contact = contact;
+            this.response = response;
+        }
+    }
+    
+    private static final class LookupResult {
+        private final List<Contact> closest;
+        private final Collection<PeerInfo> holders;
+        
+        private LookupResult(List<Contact> closest, Collection<PeerInfo> holders) {
+            this.closest = closest;
+            this.holders = holders;
+        }
+    }
+}
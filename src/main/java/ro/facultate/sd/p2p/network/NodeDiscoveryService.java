@@ -6,20 +6,28 @@ import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.MulticastSocket;
 import java.net.SocketException;
-import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
 import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.gson.Gson;
-
+import ro.facultate.sd.p2p.model.FileInfo;
 import ro.facultate.sd.p2p.model.P2PMessage;
 import ro.facultate.sd.p2p.model.PeerInfo;
 
@@ -31,30 +39,82 @@ public class NodeDiscoveryService {
     private static final Logger logger = LoggerFactory.getLogger(NodeDiscoveryService.class);
     private static final String MULTICAST_GROUP = "230.0.0.1"; // Adresă multicast pentru P2P
     private static final int DISCOVERY_PORT = 9876; // Port comun pentru TOȚI peers
-    private static final int ANNOUNCE_INTERVAL_SECONDS = 10;
-    private static final int PEER_TIMEOUT_SECONDS = 30;
+    // Portul propriu al nodului pentru răspunsurile directe (0 = ales de sistem), trimis în anunțuri:
+    // pe portul comun un pachet unicast ajunge doar la una dintre instanțele de pe aceeași mașină
+    private static final int UNICAST_PORT = Integer.getInteger("p2p.discovery.unicastPort", 0);
+    private static final int MIN_ANNOUNCE_INTERVAL_SECONDS = 10;
+    private static final int MAX_ANNOUNCE_INTERVAL_SECONDS = 300;
+    // Decalajul aleator maxim al primului anunț (0 = imediat, ex. la măsurarea pornirii)
+    private static final long FIRST_ANNOUNCE_MAX_DELAY_MS = Long.getLong("p2p.discovery.firstAnnounceDelayMs", 500);
+    // Bugetul total de anunțuri pe grup (ca la RTCP): intervalul crește cu numărul de peers
+    private static final int GROUP_ANNOUNCES_PER_SECOND = Integer.getInteger("p2p.discovery.announcesPerSecond", 5);
+    private static final int PEER_TIMEOUT_MULTIPLIER = 3; // Peer pierdut după ~3 anunțuri ratate
+    private static final int MIN_PEER_TIMEOUT_SECONDS = 30;
+    private static final int CLEANUP_INTERVAL_SECONDS = 5;
+    private static final long RESPONSE_WINDOW_MILLIS = 1000; // Răspunsurile la peers noi sunt grupate
+    private static final int MULTICAST_RESPONSE_THRESHOLD = 3; // De la câți peers noi răspundem o singură dată, multicast
+    private static final boolean SWIM_ENABLED = Boolean.parseBoolean(System.getProperty("p2p.swim.enabled", "true"));
+    private static final int SWIM_PORT = Integer.getInteger("p2p.swim.port", 9877); // Ocupat = port ales de sistem
+    private static final String SEEDS = System.getProperty("p2p.seeds", ""); // "host:port,..." (porturi SWIM)
+    private static final boolean MULTICAST_ENABLED = Boolean.parseBoolean(System.getProperty("p2p.multicast", "true"));
+    private static final int CATALOG_EVENT_LOG_SIZE = Integer.getInteger("p2p.catalog.eventLogSize", 1024);
+    // Fișierele adăugate în această fereastră pleacă împreună, în cât mai puține datagrame
+    private static final long FILE_ADDED_BATCH_MILLIS = Long.getLong("p2p.catalog.batchWindowMs", 200);
     
     private final String peerId;
     private final int fileTransferPort;
     private final Map<String, PeerInfo> discoveredPeers;
-    private final Gson gson;
+    private final long ownMsb; // peerId ca două long-uri, pentru comparații fără alocări
+    private final long ownLsb;
+    private final int epoch; // Identifică pornirea curentă (secvențele încep de la 0)
+    private final AtomicInteger sequence = new AtomicInteger();
+    private final AnnounceFilter announceFilter = new AnnounceFilter(1024);
+    private final Object receiveLock = new Object(); // Datagramele de pe ambele socket-uri sunt procesate pe rând
+    private final Map<String, PeerInfo> pendingResponses = new ConcurrentHashMap<>();
+    private final AtomicBoolean responseFlushScheduled = new AtomicBoolean();
+    private final CatalogEventLog catalogEvents = new CatalogEventLog(CATALOG_EVENT_LOG_SIZE);
+    private final Map<String, CatalogCursor> catalogCursors = new ConcurrentHashMap<>();
+    private final Queue<FileInfo> pendingFileAdds = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean fileAddFlushScheduled = new AtomicBoolean();
+    // Peers aflați doar prin SWIM (seeds, alte subrețele): multicast-ul nu ajunge la ei, FILE_ADDED li se trimite direct
+    private final Set<String> unicastOnlyPeers = ConcurrentHashMap.newKeySet();
+    
+    private volatile int dhtPort; // Portul DHT anunțat (0 = fără DHT)
+    private volatile int announceIntervalSeconds = MIN_ANNOUNCE_INTERVAL_SECONDS;
+    private volatile long lastAnnounceAt; // Ultimul anunț multicast trimis de noi
+    private double announceJitter = 1.0; // Factorul aleator al perioadei curente [0.5, 1.5)
     
     private MulticastSocket socket;
+    private DatagramSocket unicastSocket; // Răspunsurile directe de la peers, pe portul anunțat
     private InetAddress group;
     private Thread listenerThread;
+    private Thread unicastListenerThread;
     private ScheduledExecutorService scheduler;
+    private SwimMembership membership; // Detectarea căderilor; null dacă e dezactivat
     private volatile boolean running;
     
     private Consumer<PeerInfo> onPeerDiscovered;
     private Consumer<String> onPeerLost;
-    private Consumer<ro.facultate.sd.p2p.model.FileInfo> onFileAdded;
-   
+    private Consumer<List<FileInfo>> onFilesAdded;
+    private BiFunction<PeerInfo, Integer, P2PMessage> catalogFetcher; // Cererea TCP pentru evenimentele lipsă
+    private PeerCatalogCache catalogCache; // Cataloagele salvate de la pornirile anterioare (poate lipsi)
+    
     /* Generare Peer  */
     public NodeDiscoveryService(int fileTransferPort) {
-        this.peerId = UUID.randomUUID().toString();
+        this(UUID.randomUUID().toString(), fileTransferPort);
+    }
+    
+    /**
+     * @param peerId identitatea persistentă (PeerIdentity) - trebuie să fie un UUID, se anunță ca două long-uri
+     */
+    public NodeDiscoveryService(String peerId, int fileTransferPort) {
+        UUID uuid = UUID.fromString(peerId);
+        this.peerId = uuid.toString();
+        this.ownMsb = uuid.getMostSignificantBits();
+        this.ownLsb = uuid.getLeastSignificantBits();
+        this.epoch = (int) (System.currentTimeMillis() / 1000);
         this.fileTransferPort = fileTransferPort;
         this.discoveredPeers = new ConcurrentHashMap<>();
-        this.gson = new Gson();
     }
     
     /**
@@ -66,73 +126,226 @@ public class NodeDiscoveryService {
             return;
         }
         
-        // Creează multicast socket care permite multiple instanțe să asculte pe același port
-        socket = new MulticastSocket(DISCOVERY_PORT);
-        socket.setReuseAddress(true);
+        // Portul direct e deschis primul: e anunțat atât prin multicast, cât și prin SWIM
+        unicastSocket = new DatagramSocket(UNICAST_PORT);
         
-        // Join la grupul multicast
-        group = InetAddress.getByName(MULTICAST_GROUP);
-        socket.joinGroup(group);
+        // Membership SWIM pe un socket separat (portul e trimis în anunțuri);
+        // cu seeds configurați funcționează și fără multicast, între subrețele
+        if (SWIM_ENABLED) {
+            startMembership();
+        }
+        
+        if (MULTICAST_ENABLED) {
+            try {
+                openMulticast();
+            } catch (IOException e) {
+                if (membership == null || SEEDS.isBlank()) {
+                    if (membership != null) {
+                        membership.stop();
+                    }
+                    closeSockets();
+                    throw e;
+                }
+                logger.warn("Multicast indisponibil ({}), descoperire doar prin seeds", e.getMessage());
+                socket.close();
+                socket = null;
+            }
+        }
+        if (socket == null && membership == null) {
+            closeSockets();
+            throw new IOException("Nicio metodă de descoperire activă (multicast și SWIM dezactivate)");
+        }
         
         running = true;
+        scheduler = Executors.newScheduledThreadPool(2);
         
-        // Thread pentru ascultarea mesajelor de descoperire
-        listenerThread = new Thread(this::listenForPeers, "DiscoveryListener");
-        listenerThread.setDaemon(true);
-        listenerThread.start();
+        if (socket != null) {
+            // Thread pentru ascultarea mesajelor de descoperire
+            listenerThread = new Thread(() -> listenForPeers(socket), "DiscoveryListener");
+            listenerThread.setDaemon(true);
+            listenerThread.start();
+            
+            // Primul anunț e decalat aleator, ca nodurile pornite simultan să nu fie sincronizate
+            scheduleAnnounce(FIRST_ANNOUNCE_MAX_DELAY_MS > 0
+                ? ThreadLocalRandom.current().nextLong(FIRST_ANNOUNCE_MAX_DELAY_MS) : 0);
+        }
         
-        // Scheduler pentru anunțuri periodice și curățare peers vechi
-        scheduler = Executors.newScheduledThreadPool(2);
-        scheduler.scheduleAtFixedRate(this::announceSelf, 0, ANNOUNCE_INTERVAL_SECONDS, TimeUnit.SECONDS);
-        scheduler.scheduleAtFixedRate(this::cleanupInactivePeers, PEER_TIMEOUT_SECONDS, 
-                                      PEER_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        // Răspunsuri directe și notificări unicast (și fără multicast)
+        DatagramSocket direct = unicastSocket;
+        unicastListenerThread = new Thread(() -> listenForPeers(direct), "DiscoveryUnicastListener");
+        unicastListenerThread.setDaemon(true);
+        unicastListenerThread.start();
+        
+        // Curățare peers vechi
+        scheduler.scheduleWithFixedDelay(this::cleanupInactivePeers, CLEANUP_INTERVAL_SECONDS,
+                                         CLEANUP_INTERVAL_SECONDS, TimeUnit.SECONDS);
         
-        logger.info("NodeDiscoveryService pornit. Peer ID: {}, Port: {}", 
-                    peerId.substring(0, 8), fileTransferPort);
+        logger.info("NodeDiscoveryService pornit. Peer ID: {}, Port: {}, UDP direct: {}", 
+                    peerId.substring(0, 8), fileTransferPort, getDiscoveryPort());
     }
     
     /**
      * Oprește serviciul de descoperire
      */
     public void stop() {
+        boolean wasRunning = running;
         running = false;
         
         if (scheduler != null) {
             scheduler.shutdownNow();
         }
         
+        if (wasRunning) {
+            sendBye();
+        }
+        
+        if (membership != null) {
+            membership.stop();
+        }
+        
         if (socket != null && !socket.isClosed()) {
             try {
                 socket.leaveGroup(group);
             } catch (IOException e) {
                 logger.warn("Eroare la părăsirea grupului multicast", e);
             }
-            socket.close();
         }
+        closeSockets();
         
         if (listenerThread != null) {
             listenerThread.interrupt();
         }
+        if (unicastListenerThread != null) {
+            unicastListenerThread.interrupt();
+        }
         
         logger.info("NodeDiscoveryService oprit");
     }
     
+    private void openMulticast() throws IOException {
+        // Creează multicast socket care permite multiple instanțe să asculte pe același port
+        socket = new MulticastSocket(DISCOVERY_PORT);
+        socket.setReuseAddress(true);
+        
+        // Join la grupul multicast
+        group = InetAddress.getByName(MULTICAST_GROUP);
+        socket.joinGroup(group);
+    }
+    
+    private void closeSockets() {
+        if (socket != null) {
+            socket.close();
+            socket = null;
+        }
+        if (unicastSocket != null) {
+            unicastSocket.close();
+            unicastSocket = null;
+        }
+    }
+    
+    private void startMembership() {
+        SwimMembership swim = new SwimMembership(peerId, null, SWIM_PORT, fileTransferPort);
+        swim.setSeeds(SwimMembership.parseSeeds(SEEDS));
+        swim.setDiscoveryPort(getDiscoveryPort());
+        swim.setOnMemberAlive(this::onMemberAlive);
+        swim.setOnMemberDead(this::onMemberDead);
+        try {
+            swim.start();
+            membership = swim;
+        } catch (IOException e) {
+            logger.warn("Membership SWIM indisponibil, folosesc doar timeout-ul anunțurilor: {}", e.getMessage());
+        }
+    }
+    
     /**
-     * Trimite mesaj de anunțare în rețea (multicast)
+     * Peer aflat prin gossip (ex. anunțurile lui multicast nu ajung la noi)
+     * Portul de descoperire e cel propagat de SWIM, deci răspunsurile directe ajung la instanța corectă.
+     */
+    private void onMemberAlive(PeerInfo peer) {
+        if (running && discoveredPeers.putIfAbsent(peer.getPeerId(), peer) == null) {
+            unicastOnlyPeers.add(peer.getPeerId());
+            logger.info("Peer descoperit prin gossip: {}", peer);
+            if (onPeerDiscovered != null) {
+                onPeerDiscovered.accept(peer);
+            }
+        }
+    }
+    
+    /**
+     * Peer confirmat căzut de SWIM (probe directe și indirecte eșuate)
+     */
+    private void onMemberDead(String id) {
+        PeerInfo removed = discoveredPeers.remove(id);
+        catalogCursors.remove(id);
+        unicastOnlyPeers.remove(id);
+        if (removed != null) {
+            logger.info("Peer căzut eliminat: {}", removed);
+            if (onPeerLost != null) {
+                onPeerLost.accept(id);
+            }
+        }
+    }
+    
+    private void scheduleAnnounce(long delayMillis) {
+        if (running) {
+            scheduler.schedule(this::announceTick, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    /**
+     * Pasul periodic de anunțare (se reprogramează singur)
+     * Intervalul se recalculează la expirare: dacă între timp au apărut mulți peers,
+     * anunțul e amânat fără a fi trimis (reconsiderarea timer-ului din RTCP), deci
+     * un val de noduri noi nu produce un val de anunțuri.
      */
-    private void announceSelf() {
+    private void announceTick() {
+        if (!running) {
+            return;
+        }
         try {
-            PeerInfo myInfo = new PeerInfo(peerId, getLocalAddress(), DISCOVERY_PORT, fileTransferPort);
-            P2PMessage message = new P2PMessage(P2PMessage.MessageType.PEER_ANNOUNCE, myInfo);
-            
-            byte[] data = gson.toJson(message).getBytes();
-            DatagramPacket packet = new DatagramPacket(
-                data, data.length, 
-                group, 
-                DISCOVERY_PORT
-            );
+            long now = System.currentTimeMillis();
+            long due = lastAnnounceAt + (long) (updateAnnounceInterval() * 1000L * announceJitter);
+            if (due > now) {
+                scheduleAnnounce(due - now); // Amânat (reconsiderare sau anunț trimis între timp)
+                return;
+            }
             
-            socket.send(packet);
+            announceSelf(DiscoveryCodec.TYPE_ANNOUNCE);
+            announceJitter = 0.5 + ThreadLocalRandom.current().nextDouble();
+            scheduleAnnounce((long) (announceIntervalSeconds * 1000L * announceJitter));
+        } catch (RuntimeException e) {
+            logger.error("Eroare la programarea anunțului", e);
+            scheduleAnnounce(MIN_ANNOUNCE_INTERVAL_SECONDS * 1000L);
+        }
+    }
+    
+    /**
+     * Intervalul scalat cu numărul de peers, astfel încât tot grupul să trimită
+     * cel mult GROUP_ANNOUNCES_PER_SECOND anunțuri pe secundă
+     */
+    private int updateAnnounceInterval() {
+        int members = discoveredPeers.size() + 1;
+        int interval = (int) Math.ceil((double) members / Math.max(1, GROUP_ANNOUNCES_PER_SECOND));
+        interval = Math.max(MIN_ANNOUNCE_INTERVAL_SECONDS, Math.min(MAX_ANNOUNCE_INTERVAL_SECONDS, interval));
+        if (interval != announceIntervalSeconds) {
+            logger.debug("Interval de anunțare: {}s ({} peers)", interval, members - 1);
+            announceIntervalSeconds = interval;
+        }
+        return interval;
+    }
+    
+    /**
+     * Trimite mesaj de anunțare în rețea (multicast)
+     */
+    private void announceSelf(byte type) {
+        try {
+            ByteBuffer out = ByteBuffer.allocate(DiscoveryCodec.HEADER_SIZE);
+            writeHeader(out, type);
+            socket.send(new DatagramPacket(out.array(), out.position(), group, DISCOVERY_PORT));
+            if (lastAnnounceAt == 0) {
+                logger.info("Primul anunț trimis - nodul e descoperibil"); // Reper pentru StartupBenchmark
+            }
+            lastAnnounceAt = System.currentTimeMillis();
             logger.debug("Mesaj de anunțare trimis");
             
         } catch (IOException e) {
@@ -140,26 +353,54 @@ public class NodeDiscoveryService {
         }
     }
     
+    /**
+     * Anunță plecarea, ca ceilalți să nu aștepte expirarea timeout-ului
+     */
+    private void sendBye() {
+        if (socket == null) {
+            return; // Fără multicast: ceilalți află prin SWIM
+        }
+        try {
+            ByteBuffer out = ByteBuffer.allocate(DiscoveryCodec.HEADER_SIZE);
+            writeHeader(out, DiscoveryCodec.TYPE_BYE);
+            socket.send(new DatagramPacket(out.array(), out.position(), group, DISCOVERY_PORT));
+            logger.debug("Mesaj BYE trimis");
+        } catch (IOException e) {
+            logger.warn("Nu s-a putut trimite mesajul BYE: {}", e.getMessage());
+        }
+    }
+    
     /**
      * Asculta mesaje de descoperire de la alte noduri
+     * Pachetul și buffer-ul sunt refolosite; propriile pachete și duplicatele
+     * sunt respinse după citirea antetului, înainte de orice alocare.
+     * Socket-ul multicast și cel direct au câte un thread, dar procesarea se face
+     * sub receiveLock: AnnounceFilter și tabela de peers văd datagramele pe rând.
      */
-    private void listenForPeers() {
-        byte[] buffer = new byte[8192];
+    private void listenForPeers(DatagramSocket from) {
+        byte[] buffer = new byte[DiscoveryCodec.MAX_DATAGRAM];
+        ByteBuffer in = ByteBuffer.wrap(buffer);
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
         
         while (running) {
             try {
-                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-                socket.receive(packet);
-                
-                String jsonMessage = new String(packet.getData(), 0, packet.getLength());
-                P2PMessage message = gson.fromJson(jsonMessage, P2PMessage.class);
+                packet.setLength(buffer.length);
+                from.receive(packet);
                 
-                if (message.getType() == P2PMessage.MessageType.PEER_ANNOUNCE) {
-                    handlePeerAnnounce(message, packet.getAddress());
-                } else if (message.getType() == P2PMessage.MessageType.FILE_ADDED) {
-                    handleFileAdded(message, packet.getAddress());
+                int length = packet.getLength();
+                if (!DiscoveryCodec.isValid(in, length)) {
+                    continue; // Versiune veche (JSON) sau pachet străin
                 }
                 
+                long msb = DiscoveryCodec.peerMsb(in);
+                long lsb = DiscoveryCodec.peerLsb(in);
+                if (msb == ownMsb && lsb == ownLsb) {
+                    continue; // Propriul pachet (loopback multicast)
+                }
+                synchronized (receiveLock) {
+                    processDatagram(in, length, msb, lsb, packet.getAddress());
+                }
+                                
             } catch (SocketException e) {
                 if (running) {
                     logger.error("Socket închis neașteptat", e);
@@ -172,23 +413,55 @@ public class NodeDiscoveryService {
         }
     }
     
+    private void processDatagram(ByteBuffer in, int length, long msb, long lsb, InetAddress senderAddress) {
+        if (!announceFilter.accept(msb, lsb, DiscoveryCodec.epoch(in), DiscoveryCodec.sequence(in))) {
+            return; // Duplicat
+        }
+        
+        byte type = DiscoveryCodec.type(in);
+        if (type == DiscoveryCodec.TYPE_ANNOUNCE || type == DiscoveryCodec.TYPE_RESPONSE) {
+            handlePeerAnnounce(in, msb, lsb, senderAddress, type == DiscoveryCodec.TYPE_ANNOUNCE);
+        } else if (type == DiscoveryCodec.TYPE_FILE_ADDED) {
+            handleFileAdded(in, length, msb, lsb, senderAddress);
+        } else if (type == DiscoveryCodec.TYPE_BYE) {
+            handleBye(msb, lsb);
+        }
+    }
+    
     /**
-     * Procesează un mesaj de anunțare de la alt peer
+     * Procesează un anunț (sau răspuns direct) de la alt peer
      */
-    private void handlePeerAnnounce(P2PMessage message, InetAddress senderAddress) {
-        PeerInfo peerInfo = message.getSenderInfo();
-        
-        // Ignoră propriile mesaje
-        if (peerInfo.getPeerId().equals(peerId)) {
+    private void handlePeerAnnounce(ByteBuffer in, long msb, long lsb, InetAddress senderAddress, boolean respond) {
+        // Cale rapidă: peer cunoscut și încă activ - doar actualizăm timestamp-ul
+        PeerInfo known = announceFilter.knownPeer(msb, lsb);
+        if (known != null && discoveredPeers.get(known.getPeerId()) == known
+                && known.getDiscoveryPort() == DiscoveryCodec.discoveryPort(in)
+                && known.getFileTransferPort() == DiscoveryCodec.transferPort(in)
+                && known.getMembershipPort() == DiscoveryCodec.membershipPort(in)
+                && known.getDhtPort() == DiscoveryCodec.dhtPort(in)) {
+            known.setAnnounceInterval(DiscoveryCodec.announceInterval(in));
+            known.updateLastSeen();
+            trackCatalog(known, DiscoveryCodec.epoch(in), DiscoveryCodec.catalogSequence(in) + 1,
+                         DiscoveryCodec.catalogSequence(in));
             return;
         }
         
-        // Actualizează adresa IP cu cea reală (nu cea declarată)
-        peerInfo.setAddress(senderAddress.getHostAddress());
-        peerInfo.updateLastSeen();
+        // Adresa IP reală e luată din pachet (nu cea declarată)
+        PeerInfo peerInfo = new PeerInfo(new UUID(msb, lsb).toString(), senderAddress.getHostAddress(),
+                                         DiscoveryCodec.discoveryPort(in), DiscoveryCodec.transferPort(in));
+        peerInfo.setAnnounceInterval(DiscoveryCodec.announceInterval(in));
+        peerInfo.setMembershipPort(DiscoveryCodec.membershipPort(in));
+        peerInfo.setDhtPort(DiscoveryCodec.dhtPort(in));
         
-        boolean isNewPeer = !discoveredPeers.containsKey(peerInfo.getPeerId());
-        discoveredPeers.put(peerInfo.getPeerId(), peerInfo);
+        // put întoarce atomic intrarea veche: cu SWIM pe alt thread, doar unul anunță peer-ul ca nou
+        boolean isNewPeer = discoveredPeers.put(peerInfo.getPeerId(), peerInfo) == null;
+        unicastOnlyPeers.remove(peerInfo.getPeerId()); // Îi ajung anunțurile, deci și notificările multicast
+        announceFilter.rememberPeer(msb, lsb, peerInfo);
+        if (membership != null) {
+            membership.addMember(peerInfo);
+        }
+        trackCatalog(peerInfo, DiscoveryCodec.epoch(in), DiscoveryCodec.catalogSequence(in) + 1,
+                     DiscoveryCodec.catalogSequence(in));
         
         if (isNewPeer) {
             logger.info("Peer nou descoperit: {}", peerInfo);
@@ -196,29 +469,78 @@ public class NodeDiscoveryService {
                 onPeerDiscovered.accept(peerInfo);
             }
             
-            // Răspunde direct la noul peer
-            sendDirectResponse(peerInfo);
+            // Răspunde noului peer (grupat, cu întârziere aleatoare)
+            if (respond) {
+                queueResponse(peerInfo);
+            }
         } else {
             logger.debug("Peer actualizat: {}", peerInfo.getPeerId().substring(0, 8));
         }
     }
     
     /**
-     * Trimite un răspuns direct unui peer (nu broadcast)
+     * Procesează plecarea anunțată a unui peer
+     */
+    private void handleBye(long msb, long lsb) {
+        PeerInfo known = announceFilter.knownPeer(msb, lsb);
+        String id = known != null ? known.getPeerId() : new UUID(msb, lsb).toString();
+        PeerInfo removed = discoveredPeers.remove(id);
+        pendingResponses.remove(id);
+        catalogCursors.remove(id);
+        unicastOnlyPeers.remove(id);
+        if (membership != null) {
+            membership.removeMember(id);
+        }
+        
+        if (removed != null) {
+            logger.info("Peer plecat: {}", removed);
+            if (onPeerLost != null) {
+                onPeerLost.accept(id);
+            }
+        }
+    }
+    
+    /**
+     * Programează răspunsul pentru un peer nou
+     * Răspunsurile sunt strânse într-o fereastră scurtă cu decalaj aleator; dacă
+     * între timp am anunțat deja multicast, răspunsul nu mai e necesar.
+     */
+    private void queueResponse(PeerInfo peer) {
+        pendingResponses.put(peer.getPeerId(), peer);
+        if (running && responseFlushScheduled.compareAndSet(false, true)) {
+            long delay = RESPONSE_WINDOW_MILLIS / 4 + ThreadLocalRandom.current().nextLong(RESPONSE_WINDOW_MILLIS);
+            scheduler.schedule(this::flushResponses, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    private void flushResponses() {
+        responseFlushScheduled.set(false);
+        List<PeerInfo> targets = new ArrayList<>();
+        for (PeerInfo peer : pendingResponses.values()) {
+            pendingResponses.remove(peer.getPeerId());
+            if (peer.getLastSeen() > lastAnnounceAt) { // Altfel ne-a auzit deja anunțul
+                targets.add(peer);
+            }
+        }
+        
+        if (targets.size() >= MULTICAST_RESPONSE_THRESHOLD) {
+            // Multe noduri noi (ex. pornire simultană): un singur răspuns multicast
+            announceSelf(DiscoveryCodec.TYPE_RESPONSE);
+        } else {
+            targets.forEach(this::sendDirectResponse);
+        }
+    }
+    
+    /**
+     * Trimite un răspuns direct unui peer (nu broadcast), pe portul UDP anunțat de el
      */
     private void sendDirectResponse(PeerInfo targetPeer) {
         try {
-            PeerInfo myInfo = new PeerInfo(peerId, getLocalAddress(), DISCOVERY_PORT, fileTransferPort);
-            P2PMessage response = new P2PMessage(P2PMessage.MessageType.PEER_RESPONSE, myInfo);
-            
-            byte[] data = gson.toJson(response).getBytes();
-            DatagramPacket packet = new DatagramPacket(
-                data, data.length,
-                InetAddress.getByName(targetPeer.getAddress()),
-                targetPeer.getDiscoveryPort()
-            );
-            
-            socket.send(packet);
+            ByteBuffer out = ByteBuffer.allocate(DiscoveryCodec.HEADER_SIZE);
+            writeHeader(out, DiscoveryCodec.TYPE_RESPONSE);
+            unicastSocket.send(new DatagramPacket(out.array(), out.position(),
+                                           InetAddress.getByName(targetPeer.getAddress()),
+                                           targetPeer.getDiscoveryPort()));
             logger.debug("Răspuns trimis direct la peer {}", targetPeer.getPeerId().substring(0, 8));
             
         } catch (IOException e) {
@@ -227,58 +549,287 @@ public class NodeDiscoveryService {
     }
     
     /**
-     * Procesează notificare că un peer a adăugat un fișier nou (inclusiv propriile fișiere)
+     * Procesează notificarea că un peer a adăugat unul sau mai multe fișiere
+     * Fișierele din datagramă sunt livrate împreună, într-un singur apel.
      */
-    private void handleFileAdded(P2PMessage message, InetAddress senderAddress) {
-        PeerInfo peerInfo = message.getSenderInfo();
-        ro.facultate.sd.p2p.model.FileInfo fileInfo = message.getFileInfo();
+    private void handleFileAdded(ByteBuffer in, int length, long msb, long lsb, InetAddress senderAddress) {
+        if (onFilesAdded == null || length < DiscoveryCodec.FILES_OFFSET) {
+            return;
+        }
+        int count = DiscoveryCodec.fileCount(in);
+        int lastSequence = DiscoveryCodec.catalogSequence(in);
+        
+        PeerInfo known = announceFilter.knownPeer(msb, lsb);
+        if (known == null) {
+            // Peer aflat prin SWIM (fără anunțuri): urmărim de acum secvențele lui, ca golurile să fie recuperate
+            known = discoveredPeers.get(new UUID(msb, lsb).toString());
+            if (known != null) {
+                announceFilter.rememberPeer(msb, lsb, known);
+            }
+        }
+        int alreadyKnown = 0;
+        if (known != null) {
+            alreadyKnown = trackCatalog(known, DiscoveryCodec.epoch(in), lastSequence - count + 1, lastSequence);
+            if (alreadyKnown >= count) {
+                return; // Deja primite (ex. prin recuperarea evenimentelor lipsă)
+            }
+        }
+        String ownerId = known != null ? known.getPeerId() : new UUID(msb, lsb).toString();
+        String ownerAddress = senderAddress.getHostAddress();
+        int ownerPort = DiscoveryCodec.transferPort(in);
+        
+        List<FileInfo> files = new ArrayList<>(count - alreadyKnown);
+        int offset = DiscoveryCodec.FILES_OFFSET;
+        for (int i = 0; i < count; i++) {
+            FileInfo fileInfo = DiscoveryCodec.readFile(in, offset, length);
+            if (fileInfo == null) {
+                logger.debug("Notificare FILE_ADDED trunchiată de la {}", ownerAddress);
+                break;
+            }
+            offset += DiscoveryCodec.fileLength(in, offset);
+            if (i < alreadyKnown) {
+                continue;
+            }
+            fileInfo.setOwnerPeerId(ownerId);
+            fileInfo.setOwnerAddress(ownerAddress);
+            fileInfo.setOwnerPort(ownerPort);
+            files.add(fileInfo);
+        }
         
-        if (fileInfo != null && onFileAdded != null) {
-            // Procesează toate mesajele FILE_ADDED, inclusiv propriile (pentru UI consistent)
-            logger.info("Fișier nou anunțat de peer {}: {}", 
-                       peerInfo != null ? peerInfo.getPeerId().substring(0, 8) : "?",
-                       fileInfo.getFileName());
-            onFileAdded.accept(fileInfo);
+        if (!files.isEmpty()) {
+            logger.info("{} fișiere noi anunțate de peer {}", files.size(), ownerId.substring(0, 8));
+            if (catalogCache != null && known != null) {
+                int firstSequence = lastSequence - count + 1 + alreadyKnown;
+                catalogCache.addEvents(ownerId, DiscoveryCodec.epoch(in), firstSequence,
+                                       firstSequence + files.size() - 1, files);
+            }
+            onFilesAdded.accept(files);
         }
     }
     
     /**
-     * Trimite notificare când se adaugă un fișier nou (broadcast multicast)
+     * Programează notificarea FILE_ADDED pentru un fișier nou
+     * Fișierele adăugate într-o fereastră scurtă (ex. un folder întreg) sunt grupate
+     * în cât mai puține datagrame; fișierele sunt livrate și local, tot ca lot.
      */
-    public void broadcastFileAdded(ro.facultate.sd.p2p.model.FileInfo fileInfo) {
-        try {
-            PeerInfo myInfo = new PeerInfo(peerId, getLocalAddress(), DISCOVERY_PORT, fileTransferPort);
-            P2PMessage message = new P2PMessage(P2PMessage.MessageType.FILE_ADDED, myInfo);
-            message.setFileInfo(fileInfo);
-            
-            byte[] data = gson.toJson(message).getBytes();
-            DatagramPacket packet = new DatagramPacket(
-                data, data.length, 
-                group, 
-                DISCOVERY_PORT
-            );
-            
-            socket.send(packet);
-            logger.info("Notificare FILE_ADDED trimisă pentru: {}", fileInfo.getFileName());
-            
-        } catch (IOException e) {
-            logger.error("Eroare la trimiterea notificării FILE_ADDED", e);
+    public void broadcastFileAdded(FileInfo fileInfo) {
+        pendingFileAdds.add(fileInfo);
+        if (!running) {
+            flushFileAdds();
+        } else if (fileAddFlushScheduled.compareAndSet(false, true)) {
+            scheduler.schedule(this::flushFileAdds, FILE_ADDED_BATCH_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    /**
+     * Trimite fișierele în așteptare; fiecare datagramă conține evenimente consecutive,
+     * așa că receptorii pot verifica secvențele fără câmpuri suplimentare
+     */
+    private void flushFileAdds() {
+        fileAddFlushScheduled.set(false);
+        List<FileInfo> files = new ArrayList<>();
+        for (FileInfo file; (file = pendingFileAdds.poll()) != null;) {
+            files.add(file);
+        }
+        if (files.isEmpty()) {
+            return;
+        }
+        if (onFilesAdded != null) {
+            onFilesAdded.accept(files);
+        }
+        
+        ByteBuffer out = ByteBuffer.allocate(DiscoveryCodec.MAX_DATAGRAM);
+        out.position(DiscoveryCodec.FILES_OFFSET);
+        int count = 0;
+        int lastSequence = 0;
+        int datagrams = 0;
+        for (FileInfo file : files) {
+            int catalogSequence = catalogEvents.append(file);
+            if (!DiscoveryCodec.writeFile(out, file)) {
+                if (count > 0) {
+                    sendFileAdded(out, count, lastSequence);
+                    datagrams++;
+                    count = 0;
+                }
+                out.clear().position(DiscoveryCodec.FILES_OFFSET);
+                if (!DiscoveryCodec.writeFile(out, file)) {
+                    // Golul din secvențe face ca peers-ii să-l ceară prin TCP
+                    logger.warn("Numele fișierului e prea lung pentru notificarea FILE_ADDED: {}", file.getFileName());
+                    continue;
+                }
+            }
+            count++;
+            lastSequence = catalogSequence;
         }
+        if (count > 0) {
+            sendFileAdded(out, count, lastSequence);
+            datagrams++;
+        }
+        logger.info("Notificare FILE_ADDED trimisă pentru {} fișiere ({} datagrame)", files.size(), datagrams);
+    }
+    
+    /**
+     * Trimite datagrama multicast și, direct, fiecărui peer aflat doar prin SWIM
+     */
+    private void sendFileAdded(ByteBuffer out, int count, int lastSequence) {
+        int end = out.position();
+        out.position(0);
+        writeHeader(out, DiscoveryCodec.TYPE_FILE_ADDED, lastSequence);
+        out.putShort((short) count);
+        if (socket != null) {
+            try {
+                socket.send(new DatagramPacket(out.array(), end, group, DISCOVERY_PORT));
+            } catch (IOException e) {
+                logger.error("Eroare la trimiterea notificării FILE_ADDED", e);
+            }
+        }
+        DatagramSocket direct = unicastSocket;
+        for (String id : direct != null ? unicastOnlyPeers : Set.<String>of()) {
+            PeerInfo peer = discoveredPeers.get(id);
+            if (peer == null || peer.getDiscoveryPort() <= 0) {
+                continue;
+            }
+            try {
+                direct.send(new DatagramPacket(out.array(), end, InetAddress.getByName(peer.getAddress()),
+                                               peer.getDiscoveryPort()));
+            } catch (IOException e) {
+                logger.debug("FILE_ADDED netrimis către {}: {}", id.substring(0, 8), e.getMessage());
+            }
+        }
+    }
+    
+    private void writeHeader(ByteBuffer out, byte type) {
+        writeHeader(out, type, catalogEvents.getLastSequence());
+    }
+    
+    private void writeHeader(ByteBuffer out, byte type, int catalogSequence) {
+        DiscoveryCodec.writeHeader(out, type, announceIntervalSeconds, ownMsb, ownLsb, epoch,
+                                   sequence.incrementAndGet(), getDiscoveryPort(), fileTransferPort,
+                                   membership != null ? membership.getPort() : 0, dhtPort, catalogSequence);
+    }
+    
+    // Evenimente de catalog
+    
+    /**
+     * Compară evenimentele de catalog primite cu ultimul eveniment aplicat de la peer
+     * La un gol (datagramă FILE_ADDED pierdută) cere prin TCP doar evenimentele lipsă.
+     * Un anunț poartă doar ultima secvență: first = last + 1, adică niciun eveniment.
+     * @return câte dintre evenimentele [first, last] erau deja aplicate (se sar la livrare)
+     */
+    private int trackCatalog(PeerInfo peer, int peerEpoch, int firstSequence, int lastSequence) {
+        CatalogCursor cursor = catalogCursors.get(peer.getPeerId());
+        if (cursor == null) {
+            PeerCatalogCache.Entry cached = catalogCache != null ? catalogCache.get(peer.getPeerId()) : null;
+            if (cached == null || cached.getEpoch() != peerEpoch || cached.getSequence() > lastSequence) {
+                // Primul contact: catalogul de până acum vine din lista completă cerută la descoperire
+                catalogCursors.put(peer.getPeerId(), new CatalogCursor(peerEpoch, lastSequence));
+                return 0;
+            }
+            // Catalog salvat din aceeași pornire a peer-ului: se cer doar evenimentele de după el
+            CatalogCursor restored = new CatalogCursor(peerEpoch, cached.getSequence());
+            restored.fromCache = true;
+            catalogCursors.put(peer.getPeerId(), restored);
+            return trackCatalog(peer, peerEpoch, firstSequence, lastSequence);
+        }
+        
+        synchronized (cursor) {
+            if (cursor.epoch != peerEpoch) {
+                // Peer repornit: secvențele sunt altele, deci e nevoie de lista completă
+                cursor.epoch = peerEpoch;
+                cursor.sequence = -1;
+            }
+            if (lastSequence <= cursor.sequence) {
+                return Math.max(0, lastSequence - firstSequence + 1);
+            }
+            if (firstSequence <= cursor.sequence + 1) {
+                int alreadyKnown = cursor.sequence + 1 - firstSequence;
+                cursor.sequence = lastSequence;
+                return alreadyKnown;
+            }
+            if (cursor.catchUpPending || catalogFetcher == null || !running) {
+                return 0;
+            }
+            cursor.catchUpPending = true;
+        }
+        
+        logger.debug("Gol în catalogul peer-ului {}: primit {}", peer.getPeerId().substring(0, 8), lastSequence);
+        scheduler.execute(() -> catchUpCatalog(peer, cursor));
+        return 0;
+    }
+    
+    /**
+     * Cere evenimentele lipsă; eșecul lasă cursorul neschimbat, deci următorul anunț reîncearcă
+     */
+    private void catchUpCatalog(PeerInfo peer, CatalogCursor cursor) {
+        int afterSequence;
+        synchronized (cursor) {
+            afterSequence = cursor.sequence;
+        }
+        P2PMessage response = catalogFetcher.apply(peer, afterSequence);
+        
+        synchronized (cursor) {
+            cursor.catchUpPending = false;
+            if (response == null || response.getCatalogEpoch() != cursor.epoch) {
+                return;
+            }
+            cursor.sequence = Math.max(cursor.sequence, response.getCatalogSequence());
+        }
+        if (catalogCache != null) {
+            if (response.isFullCatalog()) {
+                catalogCache.putCatalog(peer.getPeerId(), response.getCatalogEpoch(),
+                                        response.getCatalogSequence(), response.getFileList());
+            } else {
+                catalogCache.addEvents(peer.getPeerId(), response.getCatalogEpoch(), afterSequence + 1,
+                                       response.getCatalogSequence(), response.getFileList());
+            }
+        }
+        
+        logger.info("Catalog recuperat de la peer {}: {} fișiere{}", peer.getPeerId().substring(0, 8),
+                    response.getFileList().size(), response.isFullCatalog() ? " (listă completă)" : "");
+        if (onFilesAdded != null && !response.getFileList().isEmpty()) {
+            onFilesAdded.accept(response.getFileList());
+        }
+    }
+    
+    /**
+     * Răspunde la REQUEST_CATALOG_EVENTS cu evenimentele de după secvența cerută
+     * Dacă au ieșit din jurnal, lista rămâne goală și FileServer trimite catalogul complet.
+     */
+    public P2PMessage getCatalogEvents(P2PMessage request) {
+        P2PMessage response = new P2PMessage(P2PMessage.MessageType.CATALOG_EVENTS);
+        response.setCatalogEpoch(epoch);
+        int lastSequence = catalogEvents.getLastSequence();
+        List<FileInfo> events = catalogEvents.since(request.getCatalogSequence());
+        if (events != null) {
+            response.setFileList(new ArrayList<>(events));
+            response.setCatalogSequence(request.getCatalogSequence() + events.size());
+        } else {
+            response.setCatalogSequence(lastSequence); // Lista completă e citită după, deci le include
+        }
+        return response;
     }
     
     /**
      * Curăță peers-ii care nu au mai răspuns de mult timp
+     * Timeout-ul e relativ la intervalul de anunțare declarat de fiecare peer.
+     * Peers urmăriți de SWIM sunt eliminați doar de acesta (multicast-ul poate pierde pachete).
      */
     private void cleanupInactivePeers() {
         long now = System.currentTimeMillis();
-        long timeout = PEER_TIMEOUT_SECONDS * 1000L;
         
         discoveredPeers.entrySet().removeIf(entry -> {
             PeerInfo peer = entry.getValue();
+            if (membership != null && membership.isAlive(peer.getPeerId())) {
+                return false;
+            }
+            long timeout = Math.max(MIN_PEER_TIMEOUT_SECONDS,
+                                    PEER_TIMEOUT_MULTIPLIER * peer.getAnnounceInterval()) * 1000L;
             boolean isInactive = (now - peer.getLastSeen()) > timeout;
             
             if (isInactive) {
                 logger.info("Peer inactiv eliminat: {}", peer);
+                catalogCursors.remove(peer.getPeerId());
+                unicastOnlyPeers.remove(peer.getPeerId());
                 if (onPeerLost != null) {
                     onPeerLost.accept(peer.getPeerId());
                 }
@@ -288,46 +839,30 @@ public class NodeDiscoveryService {
         });
     }
     
-    /**
-     * Obține adresa IP locală
-     */
-    private String getLocalAddress() {
-        try {
-            return InetAddress.getLocalHost().getHostAddress();
-        } catch (UnknownHostException e) {
-            logger.warn("Nu s-a putut determina adresa locală, folosesc localhost");
-            return "127.0.0.1";
-        }
-    }
-    
-    /**
-     * Găsește un port UDP disponibil în intervalul specificat
-     */
-    @SuppressWarnings("unused")
-    private int findAvailableUdpPort(int startPort, int endPort) {
-        for (int port = startPort; port <= endPort; port++) {
-            try (DatagramSocket testSocket = new DatagramSocket(port)) {
-                return port;
-            } catch (IOException e) {
-                // Port ocupat, încearcă următorul
-            }
-        }
-        throw new RuntimeException("Nu s-a găsit niciun port UDP disponibil între " + startPort + " și " + endPort);
-    }
-    
     // Getters
     public String getPeerId() {
         return peerId;
     }
     
+    /**
+     * @return portul UDP direct al nodului (anunțat); grupul multicast e mereu pe DISCOVERY_PORT
+     */
     public int getDiscoveryPort() {
-        return DISCOVERY_PORT;
+        DatagramSocket direct = unicastSocket;
+        return direct != null ? direct.getLocalPort() : DISCOVERY_PORT;
     }
     
     public Map<String, PeerInfo> getDiscoveredPeers() {
         return new ConcurrentHashMap<>(discoveredPeers);
     }
     
+    /**
+     * Portul DHT inclus în anunțuri, pentru ca peers-ii să ne adauge ca și contact
+     */
+    public void setDhtPort(int dhtPort) {
+        this.dhtPort = dhtPort;
+    }
+    
     // Callbacks
     public void setOnPeerDiscovered(Consumer<PeerInfo> callback) {
         this.onPeerDiscovered = callback;
@@ -337,7 +872,49 @@ public class NodeDiscoveryService {
         this.onPeerLost = callback;
     }
     
-    public void setOnFileAdded(Consumer<ro.facultate.sd.p2p.model.FileInfo> callback) {
-        this.onFileAdded = callback;
+    /**
+     * Fișiere noi, livrate în loturi: anunțate de peers (FILE_ADDED), recuperate după
+     * un gol în evenimentele de catalog, sau propriile fișiere adăugate
+     */
+    public void setOnFilesAdded(Consumer<List<FileInfo>> callback) {
+        this.onFilesAdded = callback;
+    }
+    
+    /**
+     * Cererea TCP pentru evenimentele de catalog (ex. FileClient::requestCatalogEvents)
+     */
+    public void setCatalogFetcher(BiFunction<PeerInfo, Integer, P2PMessage> fetcher) {
+        this.catalogFetcher = fetcher;
+    }
+    
+    /**
+     * Cataloagele salvate: la primul contact cu un peer din cache se cer doar evenimentele noi
+     */
+    public void setCatalogCache(PeerCatalogCache cache) {
+        this.catalogCache = cache;
+    }
+    
+    /**
+     * Catalogul peer-ului e cel salvat, completat cu evenimentele lipsă - lista completă nu mai e necesară
+     * Valid după ce primul anunț al peer-ului a fost procesat (înainte de onPeerDiscovered).
+     */
+    public boolean hasCachedCatalog(String id) {
+        CatalogCursor cursor = catalogCursors.get(id);
+        return cursor != null && cursor.fromCache;
+    }
+    
+    /**
+     * Poziția în catalogul unui peer: epoca lui și ultimul eveniment aplicat
+     */
+    private static final class CatalogCursor {
+        private int epoch;
+        private int sequence; // -1 = necunoscut, e nevoie de lista completă
+        private boolean catchUpPending;
+        private boolean fromCache; // Pornit de la catalogul salvat, nu de la lista completă
+        
+        private CatalogCursor(int epoch, int sequence) {
+            this.epoch = epoch;
+            this.sequence = sequence;
+        }
     }
 }
@@ -0,0 +1,239 @@
+package ro.facultate.sd.p2p.network;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import ro.facultate.sd.p2p.model.FileInfo;
+
+/**
+ * Ultimul catalog cunoscut al fiecărui peer, salvat pe disc (un fișier JSON per peer)
+ *
+ * Fiecare catalog are versiunea peer-ului: epoca (pornirea lui) și secvența ultimului eveniment
+ * inclus. La pornire fișierele apar imediat în tabel; când peer-ul reapare cu aceeași epocă,
+ * se cer doar evenimentele de după secvența salvată, nu lista completă.
+ *
+ * Scrierile se fac pe un thread separat (apelantul poate fi thread-ul de recepție UDP);
+ * mai multe modificări ale aceluiași peer până la scriere produc o singură scriere.
+ */
+public class PeerCatalogCache {
+    private static final Logger logger = LoggerFactory.getLogger(PeerCatalogCache.class);
+    private static final String EXTENSION = ".json";
+    
+    private final Path directory;
+    private final long maxAgeMillis;
+    private final Gson gson = new Gson();
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "PeerCatalogCache");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    /**
+     * @param maxAgeMillis cataloagele nemodificate de atâta timp sunt șterse la încărcare
+     */
+    public PeerCatalogCache(Path directory, long maxAgeMillis) {
+        this.directory = directory;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+    
+    /**
+     * Încarcă cataloagele salvate (cele expirate sau corupte sunt șterse)
+     */
+    public List<Entry> load() {
+        List<Entry> loaded = new ArrayList<>();
+        long oldest = System.currentTimeMillis() - maxAgeMillis;
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+                for (Path file : files) {
+                    Entry entry = read(file);
+                    if (entry == null || entry.updatedAt < oldest) {
+                        Files.deleteIfExists(file);
+                        continue;
+                    }
+                    entries.put(entry.peerId, entry);
+                    loaded.add(entry);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Cache-ul de cataloage nu a putut fi citit: {}", e.getMessage());
+        }
+        logger.info("Cache cataloage: {} peers încărcați din {}", loaded.size(), directory);
+        return loaded;
+    }
+    
+    private Entry read(Path file) {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Entry entry = gson.fromJson(reader, Entry.class);
+            if (entry == null || entry.peerId == null || entry.files == null
+                || !file.getFileName().toString().equals(fileName(entry.peerId))) {
+                return null;
+            }
+            return entry;
+        } catch (IOException | JsonParseException | IllegalArgumentException e) {
+            logger.debug("Catalog salvat invalid {}: {}", file.getFileName(), e.getMessage());
+            return null;
+        }
+    }
+    
+    public Entry get(String peerId) {
+        return entries.get(peerId);
+    }
+    
+    /**
+     * Salvează catalogul complet al unui peer, la versiunea dată
+     * Evenimentele mai noi deja salvate (sosite înaintea listei) din aceeași epocă rămân.
+     */
+    public void putCatalog(String peerId, int epoch, int sequence, List<FileInfo> files) {
+        Entry entry = entries.compute(peerId, (id, existing) -> {
+            Entry updated = new Entry(id, epoch, sequence);
+            if (existing != null && existing.epoch == epoch && existing.sequence > sequence) {
+                updated.sequence = existing.sequence;
+                updated.addAll(existing.files);
+            }
+            updated.addAll(files);
+            return updated;
+        });
+        scheduleWrite(entry.peerId);
+    }
+    
+    /**
+     * Adaugă evenimentele [firstSequence, lastSequence] la catalogul salvat
+     * Se aplică doar în continuarea versiunii salvate - după un gol catalogul rămâne la versiunea
+     * veche, iar la revalidare se cer din nou evenimentele lipsă.
+     */
+    public void addEvents(String peerId, int epoch, int firstSequence, int lastSequence, List<FileInfo> files) {
+        boolean[] changed = new boolean[1];
+        entries.computeIfPresent(peerId, (id, existing) -> {
+            if (existing.epoch != epoch || firstSequence > existing.sequence + 1 || lastSequence <= existing.sequence) {
+                return existing;
+            }
+            Entry updated = new Entry(id, epoch, lastSequence);
+            updated.addAll(existing.files);
+            updated.addAll(files);
+            changed[0] = true;
+            return updated;
+        });
+        if (changed[0]) {
+            scheduleWrite(peerId);
+        }
+    }
+    
+    private void scheduleWrite(String peerId) {
+        if (dirty.add(peerId)) {
+            writer.execute(() -> {
+                dirty.remove(peerId);
+                Entry entry = entries.get(peerId);
+                if (entry != null) {
+                    write(entry);
+                }
+            });
+        }
+    }
+    
+    /**
+     * Scrie într-un fișier temporar și îl mută peste cel vechi - un catalog nu e niciodată scris pe jumătate
+     */
+    private void write(Entry entry) {
+        Path target = directory.resolve(fileName(entry.peerId));
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        try {
+            Files.writeString(temp, gson.toJson(entry), StandardCharsets.UTF_8);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warn("Catalogul peer-ului {} nu a putut fi salvat: {}", entry.peerId, e.getMessage());
+        }
+    }
+    
+    /**
+     * Numele fișierului; peerId-ul vine din rețea, deci trebuie să fie un UUID valid
+     */
+    private static String fileName(String peerId) {
+        return UUID.fromString(peerId) + EXTENSION;
+    }
+    
+    /**
+     * Termină scrierile în așteptare (la închiderea aplicației)
+     */
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Catalogul salvat al unui peer (imutabil după publicare - o modificare creează o intrare nouă)
+     */
+    public static final class Entry {
+        private String peerId;
+        private int epoch;
+        private int sequence;
+        private long updatedAt;
+        private List<FileInfo> files;
+        
+        private Entry(String peerId, int epoch, int sequence) {
+            this.peerId = peerId;
+            this.epoch = epoch;
+            this.sequence = sequence;
+            this.updatedAt = System.currentTimeMillis();
+            this.files = new ArrayList<>();
+        }
+        
+        /**
+         * Adaugă fișierele (un fișier deja prezent, același nume și hash, e înlocuit)
+         */
+        private void addAll(List<FileInfo> added) {
+            Map<FileInfo, FileInfo> merged = new LinkedHashMap<>();
+            for (FileInfo file : files) {
+                merged.put(file, file);
+            }
+            for (FileInfo file : added) {
+                merged.put(file, file);
+            }
+            files = new ArrayList<>(merged.values());
+        }
+        
+        public String getPeerId() {
+            return peerId;
+        }
+        
+        public int getEpoch() {
+            return epoch;
+        }
+        
+        public int getSequence() {
+            return sequence;
+        }
+        
+        public List<FileInfo> getFiles() {
+            return Collections.unmodifiableList(files);
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package ro.facultate.sd.p2p.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.cert.Certificate;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Identitatea persistentă a acestui peer: o pereche de chei EC P-256 cu certificat auto-semnat
+ *
+ * peerId-ul e derivat din amprenta cheii publice (SHA-256, primii 16 bytes ca UUID), deci rămâne
+ * același la fiecare pornire și nu poate fi revendicat de altcineva fără cheia privată - în modul TLS
+ * amprenta certificatului prezentat trebuie să dea exact peerId-ul așteptat.
+ *
+ * O identitate per folder -Dp2p.home (slot-0), ocupată printr-un lock pe fișier cât rulează
+ * instanța. Instanțele care împart același folder aleg explicit câte un slot
+ * (-Dp2p.identity.slot=N), ca fiecare să-și regăsească identitatea indiferent de ordinea pornirii;
+ * o instanță care găsește slotul ocupat primește o identitate efemeră, nu pe a alteia.
+ *
+ * Un keystore care nu mai poate fi citit e mutat deoparte (*.corrupt) și slotul primește chei noi.
+ * Fără keytool (ex. un runtime jlink) peerId-ul e un UUID aleator salvat în slot: rămâne același
+ * între porniri, dar identitatea nu are chei, deci nici TLS.
+ */
+public final class PeerIdentity implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(PeerIdentity.class);
+    private static final int SLOT = Integer.getInteger("p2p.identity.slot", 0);
+    private static final String ALIAS = "p2p";
+    private static final long KEYTOOL_TIMEOUT_SECONDS = 30;
+    private static final String KEYTOOL_PASSWORD_ENV = "P2P_KEYSTORE_PASS"; // Parola nu apare în lista de procese
+    
+    private final String peerId;
+    private final KeyStore keyStore; // null = fără chei (keytool indisponibil), doar peerId aleator
+    private final char[] password;
+    private final FileChannel lockChannel; // Slotul ocupat; null pentru o identitate efemeră
+    private final int slot;
+    
+    private PeerIdentity(String peerId, KeyStore keyStore, char[] password, FileChannel lockChannel, int slot) {
+        this.peerId = peerId;
+        this.keyStore = keyStore;
+        this.password = password;
+        this.lockChannel = lockChannel;
+        this.slot = slot;
+    }
+    
+    /**
+     * Încarcă identitatea din slotul ales (-Dp2p.identity.slot, implicit 0) sau o creează la prima pornire
+     * Dacă slotul e ocupat de altă instanță sau folderul nu poate fi scris, identitatea e efemeră.
+     */
+    public static PeerIdentity loadOrCreate(Path root) {
+        Path directory = root.resolve("slot-" + SLOT);
+        FileChannel channel = null;
+        try {
+            Files.createDirectories(directory);
+            channel = FileChannel.open(directory.resolve("lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock lock = tryLock(channel);
+            if (lock == null) {
+                channel.close();
+                logger.warn("Identitatea din {} e folosită de altă instanță - pornește-le cu -Dp2p.home "
+                            + "sau -Dp2p.identity.slot diferite", directory);
+            } else {
+                PeerIdentity identity = load(directory, channel, SLOT);
+                logger.info("🪪 Identitate {} (slot {})", identity.peerId, SLOT);
+                return identity;
+            }
+        } catch (IOException | GeneralSecurityException e) {
+            logger.warn("Identitatea din {} nu a putut fi încărcată: {}", directory, e.getMessage());
+            closeQuietly(channel);
+        }
+        logger.warn("Nicio identitate persistentă disponibilă - peerId nou, valabil doar pentru această pornire");
+        return ephemeral();
+    }
+    
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            return null; // Ocupat de o instanță din același JVM
+        }
+    }
+    
+    private static PeerIdentity load(Path directory, FileChannel channel, int slot)
+            throws IOException, GeneralSecurityException {
+        Path keystorePath = directory.resolve("identity.p12");
+        Path passwordPath = directory.resolve("identity.pass");
+        Path peerIdPath = directory.resolve("peer.id");
+        if (Files.exists(keystorePath) && Files.exists(passwordPath)) {
+            char[] password = Files.readString(passwordPath).trim().toCharArray();
+            try {
+                KeyStore keyStore = readKeyStore(keystorePath, password);
+                return new PeerIdentity(peerIdOf(publicKey(keyStore)), keyStore, password, channel, slot);
+            } catch (IOException | GeneralSecurityException e) {
+                logger.warn("Identitatea din {} nu poate fi citită ({}), generez una nouă", directory, e.getMessage());
+                moveAside(keystorePath);
+                moveAside(passwordPath);
+            }
+        }
+        
+        Path keytool = keytool();
+        if (keytool == null) {
+            String peerId = readOrCreatePeerId(peerIdPath);
+            logger.warn("keytool lipsește din {} - peerId salvat fără chei, TLS indisponibil",
+                        Path.of(System.getProperty("java.home"), "bin"));
+            return new PeerIdentity(peerId, null, new char[0], channel, slot);
+        }
+        
+        char[] password = UUID.randomUUID().toString().toCharArray();
+        Files.deleteIfExists(keystorePath);
+        generateKeyStore(keytool, keystorePath, password);
+        Files.writeString(passwordPath, new String(password));
+        restrictToOwner(passwordPath);
+        restrictToOwner(keystorePath);
+        Files.deleteIfExists(peerIdPath); // Identitatea cu chei o înlocuiește pe cea fără
+        logger.info("🪪 Identitate nouă generată în {}", directory);
+        KeyStore keyStore = readKeyStore(keystorePath, password);
+        return new PeerIdentity(peerIdOf(publicKey(keyStore)), keyStore, password, channel, slot);
+    }
+    
+    /**
+     * peerId-ul fără chei salvat în slot (creat la prima pornire sau dacă fișierul e invalid)
+     */
+    private static String readOrCreatePeerId(Path peerIdPath) throws IOException {
+        if (Files.exists(peerIdPath)) {
+            try {
+                return UUID.fromString(Files.readString(peerIdPath).trim()).toString();
+            } catch (IllegalArgumentException e) {
+                logger.warn("peerId invalid în {}, generez unul nou", peerIdPath);
+            }
+        }
+        String peerId = UUID.randomUUID().toString();
+        Files.writeString(peerIdPath, peerId);
+        return peerId;
+    }
+    
+    /**
+     * Păstrează un fișier de identitate necitibil lângă cel nou, în loc să-l șteargă
+     */
+    private static void moveAside(Path path) throws IOException {
+        if (Files.exists(path)) {
+            Files.move(path, path.resolveSibling(path.getFileName() + ".corrupt"), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    /**
+     * Identitate valabilă doar pentru această pornire (sloturi ocupate, benchmark-uri)
+     * Cheile sunt tot generate, ca TLS să funcționeze; fără keytool rămâne doar un peerId aleator.
+     */
+    public static PeerIdentity ephemeral() {
+        char[] password = UUID.randomUUID().toString().toCharArray();
+        Path directory = null;
+        try {
+            Path keytool = keytool();
+            if (keytool == null) {
+                throw new IOException("keytool nu există în " + Path.of(System.getProperty("java.home"), "bin"));
+            }
+            directory = Files.createTempDirectory("p2p-identity");
+            Path keystorePath = directory.resolve("identity.p12");
+            generateKeyStore(keytool, keystorePath, password);
+            KeyStore keyStore = readKeyStore(keystorePath, password);
+            return new PeerIdentity(peerIdOf(publicKey(keyStore)), keyStore, password, null, -1);
+        } catch (IOException | GeneralSecurityException e) {
+            logger.warn("Cheile identității nu au putut fi generate ({}), TLS indisponibil", e.getMessage());
+            return new PeerIdentity(UUID.randomUUID().toString(), null, password, null, -1);
+        } finally {
+            if (directory != null) {
+                try {
+                    Files.deleteIfExists(directory.resolve("identity.p12"));
+                    Files.deleteIfExists(directory);
+                } catch (IOException e) {
+                    // Fișier temporar, rămâne în folderul temp al sistemului
+                }
+            }
+        }
+    }
+    
+    /**
+     * peerId-ul corespunzător unei chei publice: SHA-256 al formei codate, primii 16 bytes,
+     * cu biții de versiune/variantă ai unui UUID (versiunea 8, definită de aplicație)
+     */
+    public static String peerIdOf(PublicKey key) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(key.getEncoded());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e); // Orice JVM are SHA-256
+        }
+        digest[6] = (byte) ((digest[6] & 0x0F) | 0x80);
+        digest[8] = (byte) ((digest[8] & 0x3F) | 0x80);
+        ByteBuffer bytes = ByteBuffer.wrap(digest);
+        return new UUID(bytes.getLong(), bytes.getLong()).toString();
+    }
+    
+    /**
+     * @return keytool din JDK-ul curent, sau null dacă runtime-ul nu îl conține
+     */
+    private static Path keytool() {
+        Path keytool = Path.of(System.getProperty("java.home"), "bin",
+                               System.getProperty("os.name").startsWith("Windows") ? "keytool.exe" : "keytool");
+        return Files.isExecutable(keytool) ? keytool : null;
+    }
+    
+    /**
+     * Cheia și certificatul sunt generate cu keytool din JDK - Java nu are un API public pentru certificate
+     * Parola e dată prin mediul procesului (-storepass:env), nu pe linia de comandă.
+     */
+    private static void generateKeyStore(Path keytool, Path keystorePath, char[] password) throws IOException {
+        ProcessBuilder builder = new ProcessBuilder(keytool.toString(), "-genkeypair",
+                "-alias", ALIAS, "-keyalg", "EC", "-groupname", "secp256r1", "-sigalg", "SHA256withECDSA",
+                "-dname", "CN=p2p-peer", "-validity", "36500",
+                "-storetype", "PKCS12", "-keystore", keystorePath.toString(),
+                "-storepass:env", KEYTOOL_PASSWORD_ENV, "-keypass:env", KEYTOOL_PASSWORD_ENV)
+            .redirectErrorStream(true);
+        builder.environment().put(KEYTOOL_PASSWORD_ENV, new String(password));
+        Process process = builder.start();
+        try {
+            String output = new String(process.getInputStream().readAllBytes());
+            if (!process.waitFor(KEYTOOL_TIMEOUT_SECONDS, TimeUnit.SECONDS) || process.exitValue() != 0) {
+                throw new IOException("keytool a eșuat: " + output.trim());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            process.destroyForcibly();
+            throw new IOException("Generarea identității a fost întreruptă", e);
+        }
+    }
+    
+    private static KeyStore readKeyStore(Path keystorePath, char[] password) throws IOException, GeneralSecurityException {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream in = Files.newInputStream(keystorePath)) {
+            keyStore.load(in, password);
+        }
+        if (!keyStore.isKeyEntry(ALIAS)) {
+            throw new GeneralSecurityException("Keystore fără cheia " + ALIAS);
+        }
+        return keyStore;
+    }
+    
+    private static PublicKey publicKey(KeyStore keyStore) throws GeneralSecurityException {
+        Certificate certificate = keyStore.getCertificate(ALIAS);
+        return certificate.getPublicKey();
+    }
+    
+    private static void restrictToOwner(Path path) {
+        try {
+            Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException | IOException e) {
+            // Sistem de fișiere fără permisiuni POSIX (ex. Windows) - rămân permisiunile implicite
+        }
+    }
+    
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Lock-ul se eliberează oricum la ieșirea procesului
+        }
+    }
+    
+    public String getPeerId() {
+        return peerId;
+    }
+    
+    /**
+     * Keystore-ul cu cheia privată și certificatul; null dacă identitatea nu are chei
+     */
+    public KeyStore getKeyStore() {
+        return keyStore;
+    }
+    
+    char[] getPassword() {
+        return password;
+    }
+    
+    /**
+     * @return slotul ocupat, -1 pentru o identitate efemeră
+     */
+    public int getSlot() {
+        return slot;
+    }
+    
+    /**
+     * Eliberează slotul (la oprirea aplicației)
+     */
+    @Override
+    public void close() {
+        closeQuietly(lockChannel);
+    }
+}
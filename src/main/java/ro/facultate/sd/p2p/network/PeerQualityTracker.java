@@ -0,0 +1,157 @@
+package ro.facultate.sd.p2p.network;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Calitatea măsurată a fiecărui peer: RTT (din PING/PONG), throughput (din transferuri)
+ * și rata de erori. Toate sunt medii exponențiale, deci măsurătorile recente contează mai mult.
+ *
+ * Clasamentul estimează cât ar dura descărcarea de la fiecare sursă:
+ *   timp = RTT + dimensiune / throughput, împărțit la probabilitatea de reușită.
+ * Peers fără măsurători primesc valori medii, ca să fie încercați și ei.
+ */
+public class PeerQualityTracker {
+    private static final double RTT_GAIN = 0.125; // Ca la SRTT din TCP
+    private static final double THROUGHPUT_GAIN = 0.3;
+    private static final double FAILURE_GAIN = 0.5; // O eroare dublează timpul estimat al peer-ului
+    private static final double SUCCESS_DECAY = 0.2; // Fiecare reușită reduce rata de erori cu 20%
+    private static final double DEFAULT_RTT_MILLIS = 50;
+    private static final double DEFAULT_THROUGHPUT = 1024 * 1024; // bytes/s, până există măsurători
+    private static final long MIN_TRANSFER_BYTES = 64 * 1024; // Transferurile mici măsoară mai mult latența
+    private static final double MAX_ERROR_RATE = 0.95;
+    
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+    
+    /**
+     * Înregistrează un RTT măsurat (ex. PING → PONG)
+     */
+    public void recordRtt(String peerId, long rttNanos) {
+        Stats s = stats.computeIfAbsent(peerId, k -> new Stats());
+        double millis = rttNanos / 1_000_000.0;
+        synchronized (s) {
+            s.rttMillis = Double.isNaN(s.rttMillis) ? millis : s.rttMillis + RTT_GAIN * (millis - s.rttMillis);
+            s.errorRate *= 1 - SUCCESS_DECAY;
+        }
+    }
+    
+    /**
+     * Înregistrează un transfer reușit (fără timpul petrecut pe pauză)
+     */
+    public void recordTransfer(String peerId, long bytes, long elapsedNanos) {
+        Stats s = stats.computeIfAbsent(peerId, k -> new Stats());
+        synchronized (s) {
+            s.errorRate *= 1 - SUCCESS_DECAY;
+            if (bytes < MIN_TRANSFER_BYTES || elapsedNanos <= 0) {
+                return;
+            }
+            double throughput = bytes * 1e9 / elapsedNanos;
+            s.throughput = Double.isNaN(s.throughput)
+                ? throughput : s.throughput + THROUGHPUT_GAIN * (throughput - s.throughput);
+        }
+    }
+    
+    /**
+     * Înregistrează o eroare (conexiune refuzată, timeout, transfer întrerupt)
+     */
+    public void recordFailure(String peerId) {
+        Stats s = stats.computeIfAbsent(peerId, k -> new Stats());
+        synchronized (s) {
+            s.errorRate = Math.min(MAX_ERROR_RATE, s.errorRate + FAILURE_GAIN * (1 - s.errorRate));
+        }
+    }
+    
+    public void forget(String peerId) {
+        stats.remove(peerId);
+    }
+    
+    public boolean hasRtt(String peerId) {
+        Stats s = stats.get(peerId);
+        return s != null && !Double.isNaN(s.rttMillis);
+    }
+    
+    /**
+     * RTT mediu în milisecunde, sau -1 dacă nu a fost măsurat
+     */
+    public double getRttMillis(String peerId) {
+        Stats s = stats.get(peerId);
+        return s == null || Double.isNaN(s.rttMillis) ? -1 : s.rttMillis;
+    }
+    
+    /**
+     * Throughput mediu în bytes/s, sau -1 dacă nu a fost măsurat
+     */
+    public double getThroughput(String peerId) {
+        Stats s = stats.get(peerId);
+        return s == null || Double.isNaN(s.throughput) ? -1 : s.throughput;
+    }
+    
+    /**
+     * Timpul estimat (secunde) pentru a descărca numărul dat de bytes de la peer
+     */
+    public double estimateSeconds(String peerId, long bytes) {
+        return estimateSeconds(peerId, bytes, averageThroughput());
+    }
+    
+    private double estimateSeconds(String peerId, long bytes, double defaultThroughput) {
+        double rtt = DEFAULT_RTT_MILLIS;
+        double throughput = defaultThroughput;
+        double errorRate = 0;
+        Stats s = peerId != null ? stats.get(peerId) : null;
+        if (s != null) {
+            synchronized (s) {
+                if (!Double.isNaN(s.rttMillis)) {
+                    rtt = s.rttMillis;
+                }
+                if (!Double.isNaN(s.throughput)) {
+                    throughput = s.throughput;
+                }
+                errorRate = s.errorRate;
+            }
+        }
+        return (rtt / 1000.0 + bytes / throughput) / (1 - errorRate);
+    }
+    
+    /**
+     * Ordonează sursele după timpul estimat de descărcare (cea mai rapidă prima)
+     * @param peerIdOf peer-ul fiecărei surse
+     */
+    public <T> List<T> rank(Collection<T> sources, Function<T, String> peerIdOf, long bytes) {
+        double defaultThroughput = averageThroughput();
+        Map<T, Double> estimates = new IdentityHashMap<>();
+        for (T source : sources) {
+            estimates.put(source, estimateSeconds(peerIdOf.apply(source), bytes, defaultThroughput));
+        }
+        List<T> ranked = new ArrayList<>(sources);
+        ranked.sort(Comparator.comparingDouble(estimates::get));
+        return ranked;
+    }
+    
+    /**
+     * Media throughput-urilor măsurate - estimarea pentru peers noi
+     */
+    private double averageThroughput() {
+        double sum = 0;
+        int count = 0;
+        for (Stats s : stats.values()) {
+            double throughput = s.throughput;
+            if (!Double.isNaN(throughput)) {
+                sum += throughput;
+                count++;
+            }
+        }
+        return count > 0 ? sum / count : DEFAULT_THROUGHPUT;
+    }
+    
+    private static final class Stats {
+        private volatile double rttMillis = Double.NaN;
+        private volatile double throughput = Double.NaN;
+        private volatile double errorRate;
+    }
+}
@@ -0,0 +1,181 @@
+package ro.facultate.sd.p2p.network;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ro.facultate.sd.p2p.model.FileInfo;
+import ro.facultate.sd.p2p.model.P2PMessage;
+import ro.facultate.sd.p2p.model.PeerInfo;
+
+/**
+ * Căutare distribuită prin inundare limitată (SEARCH_QUERY / SEARCH_HIT)
+ * Fiecare peer evaluează căutarea pe indexul fișierelor proprii și răspunde doar cu
+ * potrivirile; dacă TTL-ul permite, o propagă la câțiva vecini. ID-urile căutărilor
+ * văzute recent sunt reținute pentru a nu procesa aceeași căutare de două ori,
+ * iar rezultatele sunt limitate la fiecare pas.
+ */
+public class SearchService {
+    private static final Logger logger = LoggerFactory.getLogger(SearchService.class);
+    private static final int DEFAULT_TTL = Integer.getInteger("p2p.search.ttl", 2);
+    private static final int MAX_TTL = 4;
+    private static final int MAX_RESULTS = 500; // Limită absolută per răspuns
+    private static final int FORWARD_FANOUT = 4; // La câți vecini se propagă o căutare
+    private static final long HOP_TIMEOUT_MS = 2000; // Timp de așteptare per nivel de propagare
+    private static final long SEEN_QUERY_MILLIS = 60_000;
+    
+    private final String localPeerId;
+    private final FileServer fileServer;
+    private final FileClient fileClient;
+    private final Supplier<Collection<PeerInfo>> peers;
+    private final Map<String, Long> seenQueries = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+    
+    public SearchService(String localPeerId, FileServer fileServer, FileClient fileClient,
+                         Supplier<Collection<PeerInfo>> peers) {
+        this.localPeerId = localPeerId;
+        this.fileServer = fileServer;
+        this.fileClient = fileClient;
+        this.peers = peers;
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "SearchWorker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Inițiază o căutare în rețea
+     * @return fișierele găsite la alți peers (fără duplicate, cel mult maxResults)
+     */
+    public List<FileInfo> search(String query, int maxResults) {
+        P2PMessage message = new P2PMessage(P2PMessage.MessageType.SEARCH_QUERY);
+        message.setQueryId(UUID.randomUUID().toString());
+        message.setSearchQuery(query);
+        message.setOriginPeerId(localPeerId);
+        message.setTtl(DEFAULT_TTL);
+        message.setMaxResults(Math.min(maxResults, MAX_RESULTS));
+        
+        markSeen(message.getQueryId());
+        
+        long start = System.currentTimeMillis();
+        List<FileInfo> hits = forward(message, null, peers.get().size());
+        logger.info("Căutare \"{}\": {} rezultate în {} ms", query, hits.size(),
+                   System.currentTimeMillis() - start);
+        return hits;
+    }
+    
+    /**
+     * Procesează o căutare primită (apelat de FileServer pentru SEARCH_QUERY)
+     */
+    public List<FileInfo> handleQuery(P2PMessage query) {
+        int maxResults = query.getMaxResults() > 0 ? Math.min(query.getMaxResults(), MAX_RESULTS) : MAX_RESULTS;
+        
+        // Căutare deja procesată (a ajuns pe alt drum) - nu răspundem din nou
+        if (query.getQueryId() == null || !markSeen(query.getQueryId())) {
+            return List.of();
+        }
+        
+        Map<String, FileInfo> merged = new LinkedHashMap<>();
+        for (FileInfo file : fileServer.searchLocal(query.getSearchQuery(), maxResults)) {
+            merged.put(resultKey(file, localPeerId), file);
+        }
+        
+        int ttl = Math.min(query.getTtl(), MAX_TTL) - 1;
+        if (ttl > 0 && merged.size() < maxResults) {
+            P2PMessage next = new P2PMessage(P2PMessage.MessageType.SEARCH_QUERY);
+            next.setQueryId(query.getQueryId());
+            next.setSearchQuery(query.getSearchQuery());
+            next.setOriginPeerId(query.getOriginPeerId());
+            next.setTtl(ttl);
+            next.setMaxResults(maxResults - merged.size());
+            
+            String from = query.getSenderInfo() != null ? query.getSenderInfo().getPeerId() : null;
+            for (FileInfo file : forward(next, from, FORWARD_FANOUT)) {
+                if (merged.size() >= maxResults) {
+                    break;
+                }
+                merged.putIfAbsent(resultKey(file, file.getOwnerPeerId()), file);
+            }
+        }
+        
+        return new ArrayList<>(merged.values());
+    }
+    
+    /**
+     * Trimite căutarea în paralel la vecini (exceptând expeditorul și inițiatorul)
+     */
+    private List<FileInfo> forward(P2PMessage query, String excludedPeerId, int fanout) {
+        List<PeerInfo> targets = new ArrayList<>();
+        for (PeerInfo peer : peers.get()) {
+            String id = peer.getPeerId();
+            if (!id.equals(localPeerId) && !id.equals(excludedPeerId) && !id.equals(query.getOriginPeerId())) {
+                targets.add(peer);
+            }
+        }
+        Collections.shuffle(targets);
+        if (targets.size() > fanout) {
+            targets = targets.subList(0, fanout);
+        }
+        if (targets.isEmpty()) {
+            return List.of();
+        }
+        
+        query.setSenderInfo(new PeerInfo(localPeerId, null, 0, fileServer.getPort()));
+        
+        List<CompletableFuture<List<FileInfo>>> futures = new ArrayList<>();
+        for (PeerInfo peer : targets) {
+            futures.add(CompletableFuture.supplyAsync(() -> fileClient.sendSearchQuery(peer, query), executor));
+        }
+        
+        Map<String, FileInfo> merged = new LinkedHashMap<>();
+        long deadline = System.currentTimeMillis() + HOP_TIMEOUT_MS * Math.max(1, query.getTtl());
+        for (CompletableFuture<List<FileInfo>> future : futures) {
+            try {
+                long remaining = Math.max(1, deadline - System.currentTimeMillis());
+                for (FileInfo file : future.get(remaining, TimeUnit.MILLISECONDS)) {
+                    if (merged.size() >= query.getMaxResults()) {
+                        break;
+                    }
+                    merged.putIfAbsent(resultKey(file, file.getOwnerPeerId()), file);
+                }
+            } catch (Exception e) {
+                logger.debug("Răspuns de căutare pierdut: {}", e.getMessage());
+            }
+        }
+        return new ArrayList<>(merged.values());
+    }
+    
+    /**
+     * Marchează o căutare ca văzută
+     * @return false dacă fusese deja văzută
+     */
+    private boolean markSeen(String queryId) {
+        long now = System.currentTimeMillis();
+        if (seenQueries.size() > 1000) {
+            seenQueries.values().removeIf(seenAt -> now - seenAt > SEEN_QUERY_MILLIS);
+        }
+        return seenQueries.putIfAbsent(queryId, now) == null;
+    }
+    
+    private static String resultKey(FileInfo file, String ownerPeerId) {
+        return file.getFileHash() + "|" + file.getFileName() + "|" + ownerPeerId;
+    }
+    
+    public void stop() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,877 @@
+package ro.facultate.sd.p2p.network;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ro.facultate.sd.p2p.model.PeerInfo;
+
+/**
+ * Membership în stil SWIM, pe un socket UDP separat de cel multicast
+ *
+ * La fiecare perioadă de protocol fiecare nod verifică un singur membru (ales
+ * round-robin dintr-o listă amestecată): PING direct, iar dacă ACK-ul nu vine la
+ * timp, PING_REQ prin câțiva membri intermediari. Un membru care nu răspunde devine
+ * SUSPECT, apoi DEAD după expirarea timpului de suspiciune, dacă nu infirmă singur
+ * suspiciunea (mărindu-și incarnation). Schimbările de stare nu au mesaje proprii:
+ * sunt atașate (piggyback) la PING/ACK-urile obișnuite, fiecare de O(log n) ori.
+ * Astfel încărcarea per nod rămâne constantă indiferent de mărimea rețelei.
+ *
+ * Pentru rețele fără multicast (sau peers din alte subrețele) nodul pornește de la
+ * o listă de seeds host:port și schimbă periodic tabela de membri (push-pull, SYNC /
+ * SYNC_ACK) cu cel mult SYNC_FANOUT noduri, în paralel cu descoperirea multicast.
+ *
+ * Format mesaj (big-endian): int MAGIC, byte tip, int secvență,
+ * [PING_REQ: adresa țintei], [SYNC/SYNC_ACK: short număr intrări, intrări],
+ * byte număr actualizări, actualizări.
+ * Actualizare: byte stare, long+long peerId, int incarnation, adresă, short port TCP,
+ * short port UDP de descoperire (răspunsurile directe).
+ * Adresă: byte lungime (0 = adresa expeditorului) + bytes, short port.
+ */
+public class SwimMembership {
+    private static final Logger logger = LoggerFactory.getLogger(SwimMembership.class);
+    private static final int MAGIC = 0x53574932; // "SWI2" (v2: actualizările au și portul de descoperire)
+    private static final byte TYPE_PING = 1;
+    private static final byte TYPE_ACK = 2;
+    private static final byte TYPE_PING_REQ = 3;
+    private static final byte TYPE_SYNC = 4;
+    private static final byte TYPE_SYNC_ACK = 5;
+    private static final int MAX_PACKET = 1400;
+    private static final int MAX_UPDATE_SIZE = 1 + 16 + 4 + 1 + 16 + 2 + 2 + 2;
+    private static final int MAX_PIGGYBACK = 16; // Actualizări atașate per mesaj
+    private static final int MAX_SYNC_ENTRIES = 24; // Intrări de tabelă per SYNC (restul la sincronizările următoare)
+    
+    private static final long PROTOCOL_PERIOD_MILLIS = Long.getLong("p2p.swim.periodMs", 1000);
+    private static final long ACK_TIMEOUT_MILLIS = PROTOCOL_PERIOD_MILLIS / 3;
+    private static final int INDIRECT_PROBES = Integer.getInteger("p2p.swim.indirectProbes", 3);
+    private static final int SUSPICION_MULTIPLIER = 4; // Timp de suspiciune = 4 * log(n) perioade
+    private static final int RETRANSMIT_MULTIPLIER = 3; // Fiecare actualizare e trimisă de 3 * log2(n) ori
+    private static final long DEAD_RETENTION_MILLIS = 60_000; // Cât ținem minte membrii morți
+    private static final long TOMBSTONE_RETENTION_MILLIS = 10 * DEAD_RETENTION_MILLIS; // Incarnation-ul lor, după aceea
+    private static final long SYNC_INTERVAL_MILLIS = Long.getLong("p2p.swim.syncMs", 10_000);
+    private static final int SYNC_FANOUT = 3; // Noduri contactate per sincronizare (seeds incluși)
+    
+    public enum State { ALIVE, SUSPECT, DEAD }
+    
+    private final String localPeerId;
+    private final InetAddress bindAddress;
+    private final int requestedPort;
+    private final int transferPort;
+    private int discoveryPort; // Portul UDP direct al nodului (NodeDiscoveryService), propagat cu starea
+    private final List<InetSocketAddress> seeds = new ArrayList<>();
+    
+    // Starea membership e protejată de monitorul acestui obiect
+    private final Map<String, Member> members = new HashMap<>();
+    private final Map<String, Tombstone> tombstones = new HashMap<>(); // Membri morți scoși din tabelă
+    private final Map<String, Update> updates = new LinkedHashMap<>();
+    private final List<Member> probeOrder = new ArrayList<>();
+    private int probeIndex;
+    private int incarnation;
+    
+    private final Map<Integer, Member> pendingProbes = new ConcurrentHashMap<>();
+    private final Map<Integer, Relay> relays = new ConcurrentHashMap<>();
+    private final AtomicInteger sequence = new AtomicInteger();
+    
+    private DatagramSocket socket;
+    private Thread receiverThread;
+    private ScheduledExecutorService scheduler;
+    private volatile boolean running;
+    
+    private Consumer<PeerInfo> onMemberAlive;
+    private Consumer<String> onMemberDead;
+    
+    /**
+     * @param bindAddress adresa locală (null = toate interfețele, loopback pentru teste)
+     * @param port portul UDP (0 = ales de sistem)
+     */
+    public SwimMembership(String localPeerId, InetAddress bindAddress, int port, int transferPort) {
+        this.localPeerId = localPeerId;
+        this.bindAddress = bindAddress;
+        this.requestedPort = port;
+        this.transferPort = transferPort;
+        // Același peerId supraviețuiește repornirii (PeerIdentity); un incarnation de la 0 ar fi ignorat
+        // de membrii care ne mai țin DEAD sau într-un tombstone, ca în epoch-ul din NodeDiscoveryService
+        this.incarnation = (int) (System.currentTimeMillis() / 1000);
+    }
+    
+    /**
+     * Interpretează o listă "host:port,host:port" (ex. proprietatea p2p.seeds)
+     * Adresele sunt rezolvate abia la trimitere, ca un seed indisponibil la pornire să fie reîncercat.
+     */
+    public static List<InetSocketAddress> parseSeeds(String value) {
+        List<InetSocketAddress> result = new ArrayList<>();
+        if (value == null) {
+            return result;
+        }
+        for (String entry : value.split(",")) {
+            entry = entry.trim();
+            int separator = entry.lastIndexOf(':');
+            if (separator <= 0) {
+                if (!entry.isEmpty()) {
+                    logger.warn("Seed ignorat (format așteptat host:port): {}", entry);
+                }
+                continue;
+            }
+            try {
+                int port = Integer.parseInt(entry.substring(separator + 1));
+                result.add(InetSocketAddress.createUnresolved(entry.substring(0, separator), port));
+            } catch (IllegalArgumentException e) {
+                logger.warn("Seed ignorat (port invalid): {}", entry);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Setează nodurile de pornire (înainte de start)
+     */
+    public void setSeeds(List<InetSocketAddress> seedAddresses) {
+        seeds.clear();
+        seeds.addAll(seedAddresses);
+    }
+    
+    /**
+     * Setează portul UDP direct anunțat celorlalți (înainte de start)
+     */
+    public void setDiscoveryPort(int port) {
+        this.discoveryPort = port;
+    }
+    
+    /**
+     * Pornește socket-ul și perioada de protocol
+     * Dacă portul cerut e ocupat (ex. altă instanță pe aceeași mașină), se folosește unul ales de sistem.
+     */
+    public void start() throws SocketException {
+        try {
+            socket = new DatagramSocket(new InetSocketAddress(bindAddress, requestedPort));
+        } catch (SocketException e) {
+            if (requestedPort == 0) {
+                throw e;
+            }
+            logger.info("Portul SWIM {} e ocupat, folosesc un port ales de sistem", requestedPort);
+            socket = new DatagramSocket(new InetSocketAddress(bindAddress, 0));
+        }
+        running = true;
+        
+        synchronized (this) {
+            enqueueSelf(); // Anunță-te la primii membri contactați
+        }
+        
+        receiverThread = new Thread(this::receiveLoop, "SwimReceiver");
+        receiverThread.setDaemon(true);
+        receiverThread.start();
+        
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "SwimProtocol");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::protocolTick, PROTOCOL_PERIOD_MILLIS,
+                                      PROTOCOL_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::syncTick, 0, SYNC_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        
+        logger.info("Membership SWIM pornit pe portul UDP {}", socket.getLocalPort());
+    }
+    
+    public void stop() {
+        boolean wasRunning = running;
+        running = false;
+        if (wasRunning && socket != null) {
+            leave();
+        }
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (socket != null) {
+            socket.close();
+        }
+        if (receiverThread != null) {
+            receiverThread.interrupt();
+        }
+    }
+    
+    /**
+     * Plecare anunțată: propria stare DEAD trimisă la câțiva membri, care o propagă mai departe
+     */
+    private void leave() {
+        List<Member> targets = new ArrayList<>();
+        synchronized (this) {
+            updates.clear();
+            updates.put(localPeerId, new Update(State.DEAD, localPeerId, incarnation, null,
+                                                socket.getLocalPort(), transferPort, discoveryPort));
+            for (Member member : members.values()) {
+                if (member.state == State.ALIVE) {
+                    targets.add(member);
+                }
+            }
+        }
+        Collections.shuffle(targets);
+        for (Member member : targets.subList(0, Math.min(SYNC_FANOUT, targets.size()))) {
+            send(newMessage(TYPE_PING, sequence.incrementAndGet()), member.address);
+        }
+    }
+    
+    /**
+     * Adaugă un membru aflat pe altă cale (ex. anunț multicast)
+     * Anunțul direct e o dovadă proaspătă că peer-ul trăiește, deci reînvie și un membru declarat mort.
+     */
+    public void addMember(PeerInfo peer) {
+        if (peer.getPeerId().equals(localPeerId) || peer.getMembershipPort() <= 0) {
+            return;
+        }
+        InetSocketAddress address = new InetSocketAddress(peer.getAddress(), peer.getMembershipPort());
+        
+        synchronized (this) {
+            Member member = members.get(peer.getPeerId());
+            if (member == null) {
+                Tombstone tombstone = tombstones.remove(peer.getPeerId());
+                member = new Member(peer.getPeerId(), address, peer.getFileTransferPort(), peer.getDiscoveryPort(),
+                                    tombstone != null ? tombstone.incarnation : 0);
+                members.put(member.peerId, member);
+                insertProbeTarget(member);
+            } else if (member.state == State.DEAD || !member.address.equals(address)
+                       || member.discoveryPort != peer.getDiscoveryPort()) {
+                member.address = address;
+                member.transferPort = peer.getFileTransferPort();
+                member.discoveryPort = peer.getDiscoveryPort();
+                member.setState(State.ALIVE);
+            } else {
+                return;
+            }
+            enqueue(member);
+        }
+    }
+    
+    /**
+     * Marchează un membru ca plecat (ex. a trimis BYE) și propagă vestea
+     */
+    public void removeMember(String peerId) {
+        synchronized (this) {
+            Member member = members.get(peerId);
+            if (member == null || member.state == State.DEAD) {
+                return;
+            }
+            member.setState(State.DEAD);
+            enqueue(member);
+        }
+    }
+    
+    /**
+     * @return true dacă membrul e viu sau doar suspectat (încă neconfirmat mort)
+     */
+    public synchronized boolean isAlive(String peerId) {
+        Member member = members.get(peerId);
+        return member != null && member.state != State.DEAD;
+    }
+    
+    public synchronized State getState(String peerId) {
+        Member member = members.get(peerId);
+        return member != null ? member.state : null;
+    }
+    
+    public synchronized int getMemberCount() {
+        int count = 0;
+        for (Member member : members.values()) {
+            if (member.state != State.DEAD) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    public int getPort() {
+        return socket != null ? socket.getLocalPort() : requestedPort;
+    }
+    
+    // Perioada de protocol
+    
+    private void protocolTick() {
+        try {
+            List<Runnable> events = new ArrayList<>();
+            Member target;
+            synchronized (this) {
+                expireSuspects(events);
+                target = nextProbeTarget();
+            }
+            fire(events);
+            expireRelays();
+            
+            if (target != null) {
+                int seq = sequence.incrementAndGet();
+                pendingProbes.put(seq, target);
+                send(newMessage(TYPE_PING, seq), target.address);
+                scheduler.schedule(() -> probeIndirectly(seq, target), ACK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                scheduler.schedule(() -> finishProbe(seq, target), PROTOCOL_PERIOD_MILLIS - 1, TimeUnit.MILLISECONDS);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Eroare în perioada de protocol SWIM", e);
+        }
+    }
+    
+    /**
+     * Fără ACK direct: cere altor membri să verifice ținta (ocolește o legătură proastă)
+     */
+    private void probeIndirectly(int seq, Member target) {
+        if (!pendingProbes.containsKey(seq)) {
+            return;
+        }
+        List<Member> helpers;
+        synchronized (this) {
+            helpers = new ArrayList<>();
+            for (Member member : members.values()) {
+                if (member.state == State.ALIVE && member != target) {
+                    helpers.add(member);
+                }
+            }
+        }
+        Collections.shuffle(helpers);
+        for (Member helper : helpers.subList(0, Math.min(INDIRECT_PROBES, helpers.size()))) {
+            ByteBuffer out = newMessage(TYPE_PING_REQ, seq);
+            putAddress(out, target.address.getAddress(), target.address.getPort());
+            send(out, helper.address);
+        }
+    }
+    
+    private void finishProbe(int seq, Member target) {
+        if (pendingProbes.remove(seq) == null) {
+            return; // ACK primit
+        }
+        synchronized (this) {
+            if (target.state == State.ALIVE) {
+                target.setState(State.SUSPECT);
+                enqueue(target);
+                logger.info("Peer suspect (fără ACK): {}", target.peerId.substring(0, 8));
+            }
+        }
+    }
+    
+    /**
+     * Următoarea țintă, round-robin peste o listă amestecată la fiecare tur complet
+     */
+    private Member nextProbeTarget() {
+        for (int attempts = 0; attempts <= probeOrder.size(); attempts++) {
+            if (probeIndex >= probeOrder.size()) {
+                probeOrder.clear();
+                for (Member member : members.values()) {
+                    if (member.state != State.DEAD) {
+                        probeOrder.add(member);
+                    }
+                }
+                Collections.shuffle(probeOrder);
+                probeIndex = 0;
+                if (probeOrder.isEmpty()) {
+                    return null;
+                }
+            }
+            Member candidate = probeOrder.get(probeIndex++);
+            if (candidate.state != State.DEAD && members.get(candidate.peerId) == candidate) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Membrii noi sunt inserați la o poziție aleatoare în turul curent
+     */
+    private void insertProbeTarget(Member member) {
+        probeOrder.add(ThreadLocalRandom.current().nextInt(probeOrder.size() + 1), member);
+    }
+    
+    private void expireSuspects(List<Runnable> events) {
+        long now = System.currentTimeMillis();
+        long suspicionTimeout = SUSPICION_MULTIPLIER * logScale() * PROTOCOL_PERIOD_MILLIS;
+        
+        Iterator<Member> iterator = members.values().iterator();
+        while (iterator.hasNext()) {
+            Member member = iterator.next();
+            if (member.state == State.SUSPECT && now - member.stateSince > suspicionTimeout) {
+                member.setState(State.DEAD);
+                enqueue(member);
+                events.add(deadEvent(member));
+                logger.info("Peer confirmat căzut: {}", member.peerId.substring(0, 8));
+            } else if (member.state == State.DEAD && now - member.stateSince > DEAD_RETENTION_MILLIS) {
+                // Incarnation-ul rămâne ținut minte: un ALIVE vechi încă în circulație nu îl readuce
+                tombstones.put(member.peerId, new Tombstone(member.incarnation, now));
+                iterator.remove();
+            }
+        }
+        tombstones.values().removeIf(tombstone -> now - tombstone.since > TOMBSTONE_RETENTION_MILLIS);
+    }
+    
+    /**
+     * Schimb periodic de tabele (push-pull) cu un membru aleator și, cât timp nu
+     * cunoaștem pe nimeni, cu seeds; cel mult SYNC_FANOUT destinații
+     */
+    private void syncTick() {
+        try {
+            List<InetSocketAddress> targets = new ArrayList<>();
+            synchronized (this) {
+                List<Member> alive = new ArrayList<>();
+                for (Member member : members.values()) {
+                    if (member.state == State.ALIVE) {
+                        alive.add(member);
+                    }
+                }
+                if (!alive.isEmpty()) {
+                    targets.add(alive.get(ThreadLocalRandom.current().nextInt(alive.size())).address);
+                }
+                if (alive.isEmpty() || ThreadLocalRandom.current().nextInt(6) == 0) {
+                    // Seeds sunt recontactați rar după bootstrap (reunesc partiții)
+                    List<InetSocketAddress> shuffled = new ArrayList<>(seeds);
+                    Collections.shuffle(shuffled);
+                    for (InetSocketAddress seed : shuffled) {
+                        InetSocketAddress resolved = new InetSocketAddress(seed.getHostString(), seed.getPort());
+                        if (targets.size() < SYNC_FANOUT && !resolved.isUnresolved()
+                                && !isSelf(resolved) && !targets.contains(resolved)) {
+                            targets.add(resolved);
+                        }
+                    }
+                }
+            }
+            for (InetSocketAddress target : targets) {
+                send(newTableMessage(TYPE_SYNC, sequence.incrementAndGet()), target);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Eroare la sincronizarea tabelei de membri", e);
+        }
+    }
+    
+    private boolean isSelf(InetSocketAddress address) {
+        if (address.getPort() != socket.getLocalPort()) {
+            return false;
+        }
+        InetAddress host = address.getAddress();
+        try {
+            return host.isLoopbackAddress() || host.isAnyLocalAddress()
+                || NetworkInterface.getByInetAddress(host) != null;
+        } catch (SocketException e) {
+            return false;
+        }
+    }
+    
+    private void expireRelays() {
+        long now = System.currentTimeMillis();
+        relays.values().removeIf(relay -> now - relay.createdAt > PROTOCOL_PERIOD_MILLIS * 2);
+    }
+    
+    // Recepție
+    
+    private void receiveLoop() {
+        byte[] buffer = new byte[MAX_PACKET];
+        ByteBuffer in = ByteBuffer.wrap(buffer);
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        
+        while (running) {
+            try {
+                packet.setLength(buffer.length);
+                socket.receive(packet);
+                in.clear().limit(packet.getLength());
+                if (in.remaining() < 10 || in.getInt() != MAGIC) {
+                    continue;
+                }
+                
+                byte type = in.get();
+                int seq = in.getInt();
+                InetSocketAddress sender = (InetSocketAddress) packet.getSocketAddress();
+                InetSocketAddress target = type == TYPE_PING_REQ ? getAddress(in, sender.getAddress()) : null;
+                if (type == TYPE_SYNC || type == TYPE_SYNC_ACK) {
+                    readEntries(in, Short.toUnsignedInt(in.getShort()), sender.getAddress());
+                }
+                readEntries(in, Byte.toUnsignedInt(in.get()), sender.getAddress());
+                
+                if (type == TYPE_PING) {
+                    send(newMessage(TYPE_ACK, seq), sender);
+                } else if (type == TYPE_ACK) {
+                    handleAck(seq);
+                } else if (type == TYPE_PING_REQ) {
+                    int relaySeq = sequence.incrementAndGet();
+                    relays.put(relaySeq, new Relay(sender, seq));
+                    send(newMessage(TYPE_PING, relaySeq), target);
+                } else if (type == TYPE_SYNC) {
+                    send(newTableMessage(TYPE_SYNC_ACK, seq), sender);
+                }
+                
+            } catch (SocketException e) {
+                if (running) {
+                    logger.error("Socket SWIM închis neașteptat", e);
+                }
+            } catch (Exception e) {
+                logger.debug("Mesaj SWIM invalid: {}", e.toString());
+            }
+        }
+    }
+    
+    private void handleAck(int seq) {
+        pendingProbes.remove(seq);
+        
+        // ACK pentru un PING trimis în numele altui membru: îl trimitem mai departe
+        Relay relay = relays.remove(seq);
+        if (relay != null) {
+            send(newMessage(TYPE_ACK, relay.requesterSeq), relay.requester);
+        }
+    }
+    
+    private void readEntries(ByteBuffer in, int count, InetAddress senderAddress) throws IOException {
+        List<Runnable> events = new ArrayList<>();
+        
+        for (int i = 0; i < count; i++) {
+            State state = State.values()[in.get()];
+            long msb = in.getLong();
+            long lsb = in.getLong();
+            int updateIncarnation = in.getInt();
+            InetSocketAddress address = getAddress(in, senderAddress);
+            int updateTransferPort = Short.toUnsignedInt(in.getShort());
+            int updateDiscoveryPort = Short.toUnsignedInt(in.getShort());
+            
+            synchronized (this) {
+                applyUpdate(state, new UUID(msb, lsb).toString(), updateIncarnation,
+                            address, updateTransferPort, updateDiscoveryPort, events);
+            }
+        }
+        fire(events);
+    }
+    
+    /**
+     * Regulile SWIM: o stare nouă e acceptată doar cu incarnation cel puțin egal
+     * (SUSPECT/DEAD) sau strict mai mare (ALIVE peste SUSPECT)
+     */
+    private void applyUpdate(State state, String peerId, int updateIncarnation,
+                             InetSocketAddress address, int updateTransferPort, int updateDiscoveryPort,
+                             List<Runnable> events) {
+        if (peerId.equals(localPeerId)) {
+            // Suntem suspectați sau declarați morți: infirmăm cu un incarnation mai mare
+            if (running && state != State.ALIVE && updateIncarnation >= incarnation) {
+                incarnation = updateIncarnation + 1;
+                enqueueSelf();
+                logger.info("Suspiciune infirmată (incarnation {})", incarnation);
+            }
+            return;
+        }
+        
+        Member member = members.get(peerId);
+        switch (state) {
+            case ALIVE -> {
+                if (member == null) {
+                    Tombstone tombstone = tombstones.get(peerId);
+                    if (tombstone != null && updateIncarnation <= tombstone.incarnation) {
+                        return; // Veste mai veche decât moartea lui
+                    }
+                    tombstones.remove(peerId);
+                    member = new Member(peerId, address, updateTransferPort, updateDiscoveryPort, updateIncarnation);
+                    members.put(peerId, member);
+                    insertProbeTarget(member);
+                    enqueue(member);
+                    events.add(aliveEvent(member));
+                } else if (updateIncarnation > member.incarnation) {
+                    boolean wasDead = member.state == State.DEAD;
+                    member.incarnation = updateIncarnation;
+                    member.address = address;
+                    member.transferPort = updateTransferPort;
+                    member.discoveryPort = updateDiscoveryPort;
+                    member.setState(State.ALIVE);
+                    enqueue(member);
+                    if (wasDead) {
+                        events.add(aliveEvent(member));
+                    }
+                }
+            }
+            case SUSPECT -> {
+                if (member != null
+                        && ((member.state == State.ALIVE && updateIncarnation >= member.incarnation)
+                            || (member.state == State.SUSPECT && updateIncarnation > member.incarnation))) {
+                    member.incarnation = updateIncarnation;
+                    if (member.state == State.ALIVE) {
+                        member.setState(State.SUSPECT);
+                    }
+                    enqueue(member);
+                }
+            }
+            case DEAD -> {
+                if (member != null && member.state != State.DEAD && updateIncarnation >= member.incarnation) {
+                    member.incarnation = updateIncarnation;
+                    member.setState(State.DEAD);
+                    enqueue(member);
+                    events.add(deadEvent(member));
+                    logger.info("Peer căzut (raportat de alt membru): {}", peerId.substring(0, 8));
+                }
+            }
+        }
+    }
+    
+    // Diseminare
+    
+    private void enqueue(Member member) {
+        updates.put(member.peerId, new Update(member.state, member.peerId, member.incarnation,
+                                              member.address.getAddress(), member.address.getPort(),
+                                              member.transferPort, member.discoveryPort));
+    }
+    
+    /**
+     * Propria stare ALIVE; adresa e lăsată goală - destinatarul folosește adresa expeditorului
+     */
+    private void enqueueSelf() {
+        updates.put(localPeerId, new Update(State.ALIVE, localPeerId, incarnation, null,
+                                            socket.getLocalPort(), transferPort, discoveryPort));
+    }
+    
+    /**
+     * Atașează actualizările cel mai puțin trimise; cele trimise de destule ori sunt uitate
+     */
+    private synchronized void appendUpdates(ByteBuffer out) {
+        int countPosition = out.position();
+        out.put((byte) 0);
+        if (updates.isEmpty()) {
+            return;
+        }
+        
+        List<Update> ordered = new ArrayList<>(updates.values());
+        ordered.sort(Comparator.comparingInt(update -> update.transmissions));
+        int limit = RETRANSMIT_MULTIPLIER * (32 - Integer.numberOfLeadingZeros(members.size() + 1));
+        int count = 0;
+        
+        for (Update update : ordered) {
+            if (count >= MAX_PIGGYBACK || out.remaining() < MAX_UPDATE_SIZE) {
+                break;
+            }
+            putEntry(out, update);
+            count++;
+            
+            if (++update.transmissions >= limit) {
+                updates.remove(update.peerId);
+            }
+        }
+        out.put(countPosition, (byte) count);
+    }
+    
+    /**
+     * ceil(log10(n + 1)), cel puțin 1 - scala timpului de suspiciune
+     */
+    private int logScale() {
+        return Math.max(1, (int) Math.ceil(Math.log10(members.size() + 1)));
+    }
+    
+    // Codificare
+    
+    private static ByteBuffer newMessage(byte type, int seq) {
+        ByteBuffer out = ByteBuffer.allocate(MAX_PACKET);
+        out.putInt(MAGIC).put(type).putInt(seq);
+        return out;
+    }
+    
+    /**
+     * Mesaj cu o porțiune din tabela de membri: noi înșine plus membri vii aleși aleator
+     */
+    private ByteBuffer newTableMessage(byte type, int seq) {
+        ByteBuffer out = newMessage(type, seq);
+        List<Update> entries = new ArrayList<>();
+        synchronized (this) {
+            entries.add(new Update(State.ALIVE, localPeerId, incarnation, null, socket.getLocalPort(),
+                                   transferPort, discoveryPort));
+            List<Member> known = new ArrayList<>();
+            for (Member member : members.values()) {
+                if (member.state != State.DEAD) {
+                    known.add(member);
+                }
+            }
+            Collections.shuffle(known);
+            for (Member member : known.subList(0, Math.min(known.size(), MAX_SYNC_ENTRIES - 1))) {
+                entries.add(new Update(member.state, member.peerId, member.incarnation,
+                                       member.address.getAddress(), member.address.getPort(),
+                                       member.transferPort, member.discoveryPort));
+            }
+        }
+        
+        out.putShort((short) entries.size());
+        for (Update entry : entries) {
+            putEntry(out, entry);
+        }
+        return out;
+    }
+    
+    private static void putEntry(ByteBuffer out, Update update) {
+        UUID id = UUID.fromString(update.peerId);
+        out.put((byte) update.state.ordinal())
+           .putLong(id.getMostSignificantBits())
+           .putLong(id.getLeastSignificantBits())
+           .putInt(update.incarnation);
+        putAddress(out, update.address, update.port);
+        out.putShort((short) update.transferPort);
+        out.putShort((short) update.discoveryPort);
+    }
+    
+    private void send(ByteBuffer out, InetSocketAddress target) {
+        appendUpdates(out);
+        try {
+            socket.send(new DatagramPacket(out.array(), out.position(), target));
+        } catch (IOException e) {
+            if (running) {
+                logger.debug("Trimitere SWIM eșuată către {}: {}", target, e.getMessage());
+            }
+        }
+    }
+    
+    private static void putAddress(ByteBuffer out, InetAddress address, int port) {
+        if (address == null) {
+            out.put((byte) 0);
+        } else {
+            byte[] raw = address.getAddress();
+            out.put((byte) raw.length).put(raw);
+        }
+        out.putShort((short) port);
+    }
+    
+    private static InetSocketAddress getAddress(ByteBuffer in, InetAddress senderAddress) throws IOException {
+        int length = Byte.toUnsignedInt(in.get());
+        InetAddress address = senderAddress;
+        if (length > 0) {
+            byte[] raw = new byte[length];
+            in.get(raw);
+            address = InetAddress.getByAddress(raw);
+        }
+        return new InetSocketAddress(address, Short.toUnsignedInt(in.getShort()));
+    }
+    
+    // Evenimente (apelate în afara monitorului)
+    
+    private Runnable aliveEvent(Member member) {
+        PeerInfo peer = new PeerInfo(member.peerId, member.address.getAddress().getHostAddress(),
+                                     member.discoveryPort, member.transferPort);
+        peer.setMembershipPort(member.address.getPort());
+        return () -> {
+            if (onMemberAlive != null) {
+                onMemberAlive.accept(peer);
+            }
+        };
+    }
+    
+    private Runnable deadEvent(Member member) {
+        String peerId = member.peerId;
+        return () -> {
+            if (onMemberDead != null) {
+                onMemberDead.accept(peerId);
+            }
+        };
+    }
+    
+    private static void fire(List<Runnable> events) {
+        for (Runnable event : events) {
+            try {
+                event.run();
+            } catch (RuntimeException e) {
+                logger.error("Eroare în callback-ul de membership", e);
+            }
+        }
+    }
+    
+    // Callbacks
+    public void setOnMemberAlive(Consumer<PeerInfo> callback) {
+        this.onMemberAlive = callback;
+    }
+    
+    public void setOnMemberDead(Consumer<String> callback) {
+        this.onMemberDead = callback;
+    }
+    
+    /**
+     * Starea locală a unui membru
+     */
+    private static final class Member {
+        private final String peerId;
+        private InetSocketAddress address;
+        private int transferPort;
+        private int discoveryPort;
+        private int incarnation;
+        private State state = State.ALIVE;
+        private long stateSince = System.currentTimeMillis();
+        
+        private Member(String peerId, InetSocketAddress address, int transferPort, int discoveryPort, int incarnation) {
+            this.peerId = peerId;
+            this.address = address;
+            this.transferPort = transferPort;
+            this.discoveryPort = discoveryPort;
+            this.incarnation = incarnation;
+        }
+        
+        private void setState(State state) {
+            this.state = state;
+            this.stateSince = System.currentTimeMillis();
+        }
+    }
+    
+    /**
+     * O schimbare de stare în curs de diseminare
+     */
+    private static final class Update {
+        private final State state;
+        private final String peerId;
+        private final int incarnation;
+        private final InetAddress address;
+        private final int port;
+        private final int transferPort;
+        private final int discoveryPort;
+        private int transmissions;
+        
+        private Update(State state, String peerId, int incarnation, InetAddress address, int port,
+                       int transferPort, int discoveryPort) {
+            this.state = state;
+            this.peerId = peerId;
+            this.incarnation = incarnation;
+            this.address = address;
+            this.port = port;
+            this.transferPort = transferPort;
+            this.discoveryPort = discoveryPort;
+        }
+    }
+    
+    /**
+     * Incarnation-ul cu care a murit un membru scos din tabelă
+     */
+    private static final class Tombstone {
+        private final int incarnation;
+        private final long since;
+        
+        private Tombstone(int incarnation, long since) {
+            this.incarnation = incarnation;
+            this.since = since;
+        }
+    }
+    
+    /**
+     * PING trimis în numele altui membru (PING_REQ)
+     */
+    private static final class Relay {
+        private final InetSocketAddress requester;
+        private final int requesterSeq;
+        private final long createdAt = System.currentTimeMillis();
+        
+        private Relay(InetSocketAddress requester, int requesterSeq) {
+            this.requester = requester;
+            this.requesterSeq = requesterSeq;
+        }
+    }
+}
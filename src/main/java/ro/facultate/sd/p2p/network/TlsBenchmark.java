@@ -0,0 +1,202 @@
+package ro.facultate.sd.p2p.network;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import ro.facultate.sd.p2p.model.FileInfo;
+import ro.facultate.sd.p2p.model.PeerInfo;
+
+/**
+ * Compară transferul TLS cu cel necriptat pe loopback, prin FileServer/FileClient reale
+ *
+ *   java -cp target/p2p-file-sharing-1.0-SNAPSHOT.jar ro.facultate.sd.p2p.network.TlsBenchmark
+ *
+ * Fișierul de test e aleator (incompresibil), deci se măsoară doar costul criptării.
+ * Ținta: debitul TLS cel mult cu 15% sub cel necriptat, pe o mașină cu mai multe nuclee (criptarea
+ * la server și decriptarea la client rulează în paralel). Altfel benchmark-ul iese cu cod 1.
+ *
+ * Cu un singur nucleu cele două se fac pe rând pe același procesor și ținta nu poate fi atinsă;
+ * -Dp2p.bench.singleCore=true acceptă explicit până la 40%, iar rezultatul e marcat ca atare.
+ * -Dp2p.bench.tlsBudgetPercent suprascrie oricare dintre bugete.
+ */
+public final class TlsBenchmark {
+    private static final int FILE_MB = Integer.getInteger("p2p.bench.fileMb", 64);
+    private static final int ROUNDS = Integer.getInteger("p2p.bench.rounds", 5);
+    private static final int PINGS = Integer.getInteger("p2p.bench.pings", 50);
+    private static final double TARGET_PERCENT = 15;
+    private static final double SINGLE_CORE_PERCENT = 40;
+    private static final boolean SINGLE_CORE = Boolean.parseBoolean(System.getProperty("p2p.bench.singleCore", "false"));
+    private static final double BUDGET_PERCENT = Double.parseDouble(System.getProperty("p2p.bench.tlsBudgetPercent",
+        String.valueOf(SINGLE_CORE ? SINGLE_CORE_PERCENT : TARGET_PERCENT)));
+    
+    private TlsBenchmark() {
+    }
+    
+    public static void main(String[] args) throws Exception {
+        Path shared = Files.createTempDirectory("p2p-bench-shared");
+        Path downloads = Files.createTempDirectory("p2p-bench-downloads");
+        writeRandomFile(shared.resolve("bench.bin"), FILE_MB * 1024L * 1024L);
+        
+        PeerIdentity serverIdentity = PeerIdentity.ephemeral();
+        TlsTransport serverTls = TlsTransport.create(serverIdentity);
+        TlsTransport clientTls = TlsTransport.create(PeerIdentity.ephemeral());
+        String serverId = serverIdentity.getPeerId();
+        int plainPort = freePort();
+        int tlsPort = freePort();
+        FileServer plainServer = new FileServer(plainPort, shared);
+        FileServer tlsServer = new FileServer(tlsPort, shared);
+        tlsServer.setTlsTransport(serverTls);
+        FileClient plainClient = new FileClient(downloads);
+        FileClient tlsClient = new FileClient(downloads);
+        tlsClient.setTlsTransport(clientTls);
+        
+        int exitCode;
+        try {
+            plainServer.start();
+            tlsServer.start();
+            plainServer.startIndexing().join();
+            tlsServer.startIndexing().join();
+            FileInfo file = plainServer.getSharedFiles().get(0);
+            
+            // O rundă de încălzire pe fiecare cale (JIT, intrinsics, cache-ul de pagini)
+            download(plainClient, file, serverId, plainPort, downloads);
+            download(tlsClient, file, serverId, tlsPort, downloads);
+            List<Double> plain = new ArrayList<>();
+            List<Double> tls = new ArrayList<>();
+            for (int round = 0; round < ROUNDS; round++) {
+                plain.add(download(plainClient, file, serverId, plainPort, downloads));
+                tls.add(download(tlsClient, file, serverId, tlsPort, downloads));
+            }
+            double plainRate = median(plain);
+            double tlsRate = median(tls);
+            double overhead = 100.0 * (1 - tlsRate / plainRate);
+            
+            // Prima conexiune TLS a clientului nou face handshake complet, următoarele reiau sesiunea
+            FileClient freshClient = new FileClient(downloads);
+            freshClient.setTlsTransport(TlsTransport.create(PeerIdentity.ephemeral()));
+            PeerInfo plainPeer = new PeerInfo(serverId, "127.0.0.1", 0, plainPort);
+            PeerInfo tlsPeer = new PeerInfo(serverId, "127.0.0.1", 0, tlsPort);
+            double fullHandshake = pingMillis(freshClient, tlsPeer);
+            List<Double> resumed = new ArrayList<>();
+            List<Double> plainPings = new ArrayList<>();
+            for (int i = 0; i < PINGS; i++) {
+                resumed.add(pingMillis(freshClient, tlsPeer));
+                plainPings.add(pingMillis(plainClient, plainPeer));
+            }
+            freshClient.shutdown();
+            
+            System.out.printf("Fișier: %d MB aleator, %d runde (mediană)%n", FILE_MB, ROUNDS);
+            System.out.printf("JVM: %s %s, %s%n", System.getProperty("java.vm.name"),
+                              System.getProperty("java.version"), intrinsics());
+            System.out.printf("Necriptat: %8.1f MB/s%n", plainRate);
+            System.out.printf("TLS:       %8.1f MB/s  (%+.1f%% față de necriptat, buget %.0f%%)%n",
+                              tlsRate, -overhead, BUDGET_PERCENT);
+            System.out.printf("Conexiune + PING: necriptat %.2f ms, TLS complet %.2f ms, TLS reluat %.2f ms%n",
+                              median(plainPings), fullHandshake, median(resumed));
+            int cores = Runtime.getRuntime().availableProcessors();
+            if (SINGLE_CORE) {
+                System.out.printf("⚠ Buget pentru un singur nucleu (%d disponibile) - nu verifică ținta de %.0f%%%n",
+                                  cores, TARGET_PERCENT);
+            } else if (cores < 2) {
+                System.out.printf("⚠ Un singur nucleu: ținta de %.0f%% presupune mai multe (vezi p2p.bench.singleCore)%n",
+                                  TARGET_PERCENT);
+            }
+            
+            exitCode = overhead <= BUDGET_PERCENT ? 0 : 1;
+            System.out.println(exitCode == 0 ? "✅ În buget" : "❌ Peste buget");
+        } finally {
+            plainClient.shutdown();
+            tlsClient.shutdown();
+            plainServer.stop();
+            tlsServer.stop();
+            deleteTree(shared);
+            deleteTree(downloads);
+        }
+        System.exit(exitCode);
+    }
+    
+    /**
+     * Descarcă fișierul și îl șterge (altfel următoarea rundă l-ar găsi deja complet)
+     * @return debitul în MB/s
+     */
+    private static double download(FileClient client, FileInfo file, String serverId, int port, Path downloads)
+            throws IOException {
+        FileInfo source = new FileInfo(file.getFileName(), file.getFileSize(), file.getFileHash());
+        source.setOwnerPeerId(serverId);
+        source.setOwnerAddress("127.0.0.1");
+        source.setOwnerPort(port);
+        
+        long start = System.nanoTime();
+        if (!client.downloadFile(source)) {
+            throw new IOException("Descărcarea de test a eșuat pe portul " + port);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        Files.delete(downloads.resolve(file.getFileName()));
+        return file.getFileSize() / (1024.0 * 1024.0) / seconds;
+    }
+    
+    private static double pingMillis(FileClient client, PeerInfo peer) throws IOException {
+        long start = System.nanoTime();
+        if (!client.pingPeer(peer)) {
+            throw new IOException("PING eșuat pe portul " + peer.getFileTransferPort());
+        }
+        return (System.nanoTime() - start) / 1e6;
+    }
+    
+    private static String intrinsics() {
+        HotSpotDiagnosticMXBean hotSpot = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+        StringBuilder sb = new StringBuilder();
+        for (String option : new String[] {"UseAES", "UseAESIntrinsics", "UseGHASHIntrinsics"}) {
+            String value;
+            try {
+                value = hotSpot.getVMOption(option).getValue();
+            } catch (IllegalArgumentException e) {
+                value = "?"; // Opțiunile de diagnostic cer -XX:+UnlockDiagnosticVMOptions
+            }
+            sb.append(option).append('=').append(value).append(' ');
+        }
+        return sb.toString().trim();
+    }
+    
+    private static double median(List<Double> values) {
+        List<Double> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return sorted.get(sorted.size() / 2);
+    }
+    
+    private static void writeRandomFile(Path path, long size) throws IOException {
+        Random random = new Random(43);
+        byte[] buffer = new byte[1024 * 1024];
+        try (OutputStream out = Files.newOutputStream(path)) {
+            for (long written = 0; written < size; written += buffer.length) {
+                random.nextBytes(buffer);
+                out.write(buffer, 0, (int) Math.min(buffer.length, size - written));
+            }
+        }
+    }
+    
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+    
+    private static void deleteTree(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Collections.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package ro.facultate.sd.p2p.network;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.List;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509ExtendedTrustManager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Transport TLS opțional pentru conexiunile FileClient ↔ FileServer
+ *
+ * Fiecare peer folosește certificatul auto-semnat al identității sale (PeerIdentity). Nu există
+ * o autoritate comună, dar nici nu e nevoie: peerId-ul e amprenta cheii publice, deci clientul
+ * verifică după handshake că certificatul serverului dă exact peerId-ul anunțat în descoperire.
+ * Serverul cere și el certificatul clientului.
+ *
+ * Doar TLS 1.3 / 1.2 cu AES-GCM (accelerat de instrucțiunile AES-NI/PCLMUL prin intrinsics HotSpot).
+ * Un singur SSLContext per proces: sesiunile se reiau (tichete TLS 1.3) la reconectarea la același
+ * peer, fără încă o semnătură ECDSA și un schimb ECDHE complet.
+ */
+public class TlsTransport {
+    private static final Logger logger = LoggerFactory.getLogger(TlsTransport.class);
+    private static final String[] PROTOCOLS = {"TLSv1.3", "TLSv1.2"};
+    private static final String[] CIPHER_SUITES = {
+        "TLS_AES_128_GCM_SHA256",
+        "TLS_AES_256_GCM_SHA384",
+        "TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256",
+        "TLS_ECDHE_ECDSA_WITH_AES_256_GCM_SHA384"
+    };
+    private static final int SESSION_CACHE_SIZE = 1024;
+    private static final int SESSION_TIMEOUT_SECONDS = 24 * 3600;
+    
+    private final SSLContext context;
+    private final String peerId;
+    
+    private TlsTransport(SSLContext context, String peerId) {
+        this.context = context;
+        this.peerId = peerId;
+    }
+    
+    /**
+     * Transportul TLS al acestui peer, cu cheia și certificatul identității lui
+     */
+    public static TlsTransport create(PeerIdentity identity) throws IOException, GeneralSecurityException {
+        if (identity.getKeyStore() == null) {
+            throw new IOException("Identitatea nu are chei - TLS are nevoie de keytool dintr-un JDK complet");
+        }
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(identity.getKeyStore(), identity.getPassword());
+        
+        SSLContext context = SSLContext.getInstance("TLS");
+        String peerId = identity.getPeerId();
+        TlsTransport transport = new TlsTransport(context, peerId);
+        context.init(keyManagers.getKeyManagers(), new TrustManager[] {new PeerTrustManager()}, new SecureRandom());
+        for (var sessions : List.of(context.getClientSessionContext(), context.getServerSessionContext())) {
+            sessions.setSessionCacheSize(SESSION_CACHE_SIZE);
+            sessions.setSessionTimeout(SESSION_TIMEOUT_SECONDS);
+        }
+        logger.info("🔒 TLS pregătit pentru peer {}", peerId.substring(0, 8));
+        return transport;
+    }
+    
+    public ServerSocket createServerSocket(int port) throws IOException {
+        SSLServerSocket serverSocket = (SSLServerSocket) context.getServerSocketFactory().createServerSocket(port);
+        SSLParameters parameters = parameters();
+        parameters.setNeedClientAuth(true);
+        serverSocket.setSSLParameters(parameters);
+        return serverSocket;
+    }
+    
+    /**
+     * Socket neconectat: apelantul face connect (cu timeout), apoi verifyPeer
+     */
+    public Socket createSocket() throws IOException {
+        SSLSocket socket = (SSLSocket) context.getSocketFactory().createSocket();
+        socket.setSSLParameters(parameters());
+        return socket;
+    }
+    
+    /**
+     * Face handshake-ul și verifică identitatea serverului
+     * @param expectedPeerId peer-ul la care ne-am conectat; fără el conexiunea e refuzată, altfel
+     *                       orice certificat auto-semnat ar fi acceptat
+     */
+    public void verifyPeer(Socket socket, String expectedPeerId) throws IOException {
+        if (expectedPeerId == null) {
+            throw new IOException("Identitatea peer-ului nu e cunoscută - conexiunea TLS nu poate fi verificată");
+        }
+        SSLSocket sslSocket = (SSLSocket) socket;
+        sslSocket.startHandshake();
+        Certificate[] chain = sslSocket.getSession().getPeerCertificates();
+        String presented = PeerIdentity.peerIdOf(chain[0].getPublicKey());
+        if (!expectedPeerId.equals(presented)) {
+            throw new IOException("Identitate TLS greșită: așteptat " + expectedPeerId + ", primit " + presented);
+        }
+    }
+    
+    public String getPeerId() {
+        return peerId;
+    }
+    
+    private SSLParameters parameters() {
+        SSLParameters parameters = context.getDefaultSSLParameters();
+        parameters.setProtocols(PROTOCOLS);
+        parameters.setCipherSuites(CIPHER_SUITES);
+        parameters.setUseCipherSuitesOrder(true);
+        return parameters;
+    }
+    
+    /**
+     * Acceptă orice certificat auto-semnat valid; cheia lui determină peerId-ul, iar potrivirea
+     * cu peer-ul așteptat o face verifyPeer, după handshake.
+     */
+    private static final class PeerTrustManager extends X509ExtendedTrustManager {
+        private void check(X509Certificate[] chain) throws CertificateException {
+            if (chain == null || chain.length == 0) {
+                throw new CertificateException("Peer-ul nu a prezentat un certificat");
+            }
+            X509Certificate certificate = chain[0];
+            certificate.checkValidity();
+            try {
+                certificate.verify(certificate.getPublicKey());
+            } catch (GeneralSecurityException e) {
+                throw new CertificateException("Certificatul peer-ului nu este auto-semnat corect", e);
+            }
+        }
+        
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+            check(chain);
+        }
+        
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+            check(chain);
+        }
+        
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType, Socket socket) throws CertificateException {
+            check(chain);
+        }
+        
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType, Socket socket) throws CertificateException {
+            check(chain);
+        }
+        
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine engine) throws CertificateException {
+            check(chain);
+        }
+        
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine engine) throws CertificateException {
+            check(chain);
+        }
+        
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return new X509Certificate[0];
+        }
+    }
+}
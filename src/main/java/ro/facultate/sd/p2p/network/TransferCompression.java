@@ -0,0 +1,121 @@
+package ro.facultate.sd.p2p.network;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresie negociată per transfer: clientul anunță în FILE_REQUEST că acceptă deflate,
+ * serverul decide în FILE_ACCEPT. Bucățile sunt comprimate cu un singur Deflater pe transfer
+ * și SYNC_FLUSH după fiecare, deci fiecare bucată se decomprimă imediat ce sosește și
+ * fișierul .partial conține mereu bytes necomprimați - offset-ul de reluare rămâne același.
+ *
+ * Formatele deja comprimate (zip, jpg, mp4...) sunt detectate prin entropia câtorva eșantioane
+ * din fișier: peste ~7 biți/byte compresia doar consumă CPU.
+ */
+public final class TransferCompression {
+    public static final String DEFLATE = "deflate";
+    
+    private static final int SAMPLE_COUNT = 4;
+    private static final int SAMPLE_SIZE = 16 * 1024;
+    private static final double MAX_ENTROPY_BITS = 7.0; // Biți/byte; datele comprimate au aproape 8
+    private static final long MIN_COMPRESS_BYTES = 4096; // Sub atât câștigul nu contează
+    
+    private TransferCompression() {
+    }
+    
+    /**
+     * Estimează din eșantioane dacă restul fișierului (de la offset) merită comprimat
+     */
+    public static boolean isCompressible(Path file, long offset) {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+            long remaining = raf.length() - offset;
+            if (remaining < MIN_COMPRESS_BYTES) {
+                return false;
+            }
+            
+            byte[] sample = new byte[(int) Math.min(SAMPLE_SIZE, remaining)];
+            long step = SAMPLE_COUNT > 1 ? (remaining - sample.length) / (SAMPLE_COUNT - 1) : 0;
+            double entropy = 0;
+            for (int i = 0; i < SAMPLE_COUNT; i++) {
+                raf.seek(offset + i * step);
+                raf.readFully(sample);
+                entropy += entropyBits(sample);
+            }
+            return entropy / SAMPLE_COUNT < MAX_ENTROPY_BITS;
+        } catch (IOException e) {
+            return false; // Fără compresie, transferul raportează singur eroarea de citire
+        }
+    }
+    
+    /**
+     * Entropia Shannon a distribuției bytes-ilor, în biți/byte (0..8)
+     */
+    static double entropyBits(byte[] data) {
+        int[] counts = new int[256];
+        for (byte b : data) {
+            counts[b & 0xFF]++;
+        }
+        double entropy = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                double p = (double) count / data.length;
+                entropy -= p * Math.log(p) / Math.log(2);
+            }
+        }
+        return entropy;
+    }
+    
+    /**
+     * Comprimă o bucată și o închide cu SYNC_FLUSH (decomprimabilă imediat, dicționarul rămâne)
+     */
+    public static byte[] deflate(Deflater deflater, byte[] input, int length) {
+        deflater.setInput(input, 0, length);
+        byte[] output = new byte[length + 64];
+        int written = 0;
+        while (true) {
+            written += deflater.deflate(output, written, output.length - written, Deflater.SYNC_FLUSH);
+            if (written < output.length) {
+                return Arrays.copyOf(output, written);
+            }
+            output = Arrays.copyOf(output, output.length * 2);
+        }
+    }
+    
+    /**
+     * Decomprimă o bucată primită
+     * @param uncompressedLength dimensiunea originală, trimisă de server
+     */
+    public static byte[] inflate(Inflater inflater, byte[] input, int uncompressedLength) throws IOException {
+        inflater.setInput(input);
+        byte[] output = new byte[uncompressedLength];
+        int read = 0;
+        try {
+            while (read < uncompressedLength) {
+                int count = inflater.inflate(output, read, uncompressedLength - read);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += count;
+            }
+            // Consumă marcajul SYNC_FLUSH rămas; setInput pentru bucata următoare l-ar pierde
+            byte[] extra = new byte[1];
+            while (inflater.getRemaining() > 0) {
+                int remaining = inflater.getRemaining();
+                if (inflater.inflate(extra) > 0 || inflater.getRemaining() == remaining) {
+                    break;
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Bucată comprimată invalidă", e);
+        }
+        if (read != uncompressedLength || inflater.getRemaining() > 0) {
+            throw new IOException("Bucată comprimată invalidă: " + read + " din " + uncompressedLength + " bytes");
+        }
+        return output;
+    }
+}
@@ -0,0 +1,340 @@
+package ro.facultate.sd.p2p.network;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import ro.facultate.sd.p2p.model.FileInfo;
+
+/**
+ * Jurnalul descărcărilor neterminate, scris doar prin adăugare (o înregistrare JSON pe linie)
+ *
+ *   START    - fișierul (nume, dimensiune, hash) și sursele lui
+ *   PROGRESS - câți bytes din .partial sunt verificați (ajunși pe disc înainte de înregistrare)
+ *   STATE    - pauză, reluare, eșec; COMPLETED / CANCELLED scot descărcarea din jurnal
+ *
+ * Fiecare linie are în față CRC32-ul ei, deci o linie scrisă pe jumătate la o cădere e ignorată.
+ * La deschidere jurnalul e reluat și rescris compact (o înregistrare START per descărcare);
+ * la fel când înregistrările depășesc de multe ori numărul descărcărilor.
+ */
+public class TransferJournal {
+    private static final Logger logger = LoggerFactory.getLogger(TransferJournal.class);
+    private static final int COMPACT_MIN_RECORDS = Integer.getInteger("p2p.journal.compactRecords", 10_000);
+    
+    private final Path file;
+    private final Gson gson = new Gson();
+    private final Map<String, Entry> entries = new LinkedHashMap<>(); // Nume fișier → descărcare
+    private FileChannel lockChannel;
+    private Writer writer;
+    private int records; // Înregistrări în fișierul curent
+    
+    public TransferJournal(Path file) {
+        this.file = file;
+    }
+    
+    /**
+     * Reia jurnalul, îl compactează și îl deschide pentru adăugare
+     * @return descărcările neterminate, în ordinea pornirii
+     * @throws IOException dacă jurnalul e folosit de altă instanță sau nu poate fi scris
+     */
+    public synchronized List<Entry> open() throws IOException {
+        Files.createDirectories(file.getParent());
+        lockChannel = FileChannel.open(file.resolveSibling(file.getFileName() + ".lock"),
+                                       StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            lockChannel.close();
+            throw new IOException("Jurnalul " + file + " este folosit de altă instanță");
+        }
+        
+        if (Files.exists(file)) {
+            replay();
+        }
+        compact();
+        logger.info("📒 Jurnal transferuri: {} descărcări neterminate", entries.size());
+        return new ArrayList<>(entries.values());
+    }
+    
+    private void replay() throws IOException {
+        int corrupt = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Record record = decode(line);
+                if (record == null) {
+                    corrupt++;
+                    continue;
+                }
+                apply(record);
+            }
+        }
+        if (corrupt > 0) {
+            logger.warn("Jurnal transferuri: {} înregistrări incomplete sau corupte ignorate", corrupt);
+        }
+    }
+    
+    private void apply(Record record) {
+        switch (record.type) {
+            case START -> {
+                if (record.file != null && record.file.getFileName() != null) {
+                    entries.remove(record.file.getFileName()); // Repornită: ajunge la sfârșitul ordinii
+                    entries.put(record.file.getFileName(), new Entry(record.file, record.sources,
+                                                                     record.verified, record.state));
+                }
+            }
+            case PROGRESS -> {
+                Entry entry = entries.get(record.name);
+                if (entry != null) {
+                    entry.verifiedBytes = record.verified;
+                }
+            }
+            case STATE -> {
+                if (record.state == DownloadTask.State.COMPLETED || record.state == DownloadTask.State.CANCELLED) {
+                    entries.remove(record.name);
+                } else if (entries.containsKey(record.name)) {
+                    entries.get(record.name).state = record.state;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Rescrie jurnalul doar cu starea curentă, într-un fișier temporar mutat peste cel vechi
+     */
+    private void compact() throws IOException {
+        closeWriter();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Entry entry : entries.values()) {
+                out.write(encode(Record.start(entry)));
+            }
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true); // Jurnalul compact e pe disc înainte să-l înlocuiască pe cel vechi
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        records = entries.size();
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    }
+    
+    /**
+     * O descărcare nouă (sau repornită de la zero)
+     * @param verifiedBytes bytes verificați din .partial existent; -1 = necunoscut (fișier dinaintea jurnalului)
+     */
+    public synchronized void started(FileInfo fileInfo, List<FileInfo> sources, long verifiedBytes) {
+        List<FileInfo> saved = new ArrayList<>();
+        for (FileInfo source : sources) {
+            saved.add(copy(source));
+        }
+        Entry entry = new Entry(copy(fileInfo), saved, verifiedBytes, DownloadTask.State.PENDING);
+        entries.remove(fileInfo.getFileName());
+        entries.put(fileInfo.getFileName(), entry);
+        append(Record.start(entry));
+    }
+    
+    /**
+     * Primii verifiedBytes din .partial sunt pe disc (apelantul a făcut deja force)
+     */
+    public synchronized void progress(String fileName, long verifiedBytes) {
+        Entry entry = entries.get(fileName);
+        if (entry == null || entry.verifiedBytes == verifiedBytes) {
+            return;
+        }
+        entry.verifiedBytes = verifiedBytes;
+        append(Record.progress(fileName, verifiedBytes));
+    }
+    
+    public synchronized void state(String fileName, DownloadTask.State state) {
+        Entry entry = entries.get(fileName);
+        if (entry == null || entry.state == state) {
+            return;
+        }
+        if (state == DownloadTask.State.COMPLETED || state == DownloadTask.State.CANCELLED) {
+            entries.remove(fileName);
+        } else {
+            entry.state = state;
+        }
+        append(Record.state(fileName, state));
+    }
+    
+    public synchronized Entry get(String fileName) {
+        return entries.get(fileName);
+    }
+    
+    /**
+     * Fără fsync: o înregistrare pierdută la o cădere lasă doar un progres mai vechi,
+     * iar datele declarate verificate sunt deja pe disc
+     */
+    private void append(Record record) {
+        if (writer == null) {
+            return; // Închis (oprirea aplicației)
+        }
+        try {
+            writer.write(encode(record));
+            writer.flush();
+            records++;
+            if (records >= COMPACT_MIN_RECORDS && records > 4 * entries.size()) {
+                compact();
+            }
+        } catch (IOException e) {
+            logger.warn("Jurnalul transferurilor nu a putut fi scris: {}", e.getMessage());
+        }
+    }
+    
+    private String encode(Record record) {
+        String json = gson.toJson(record);
+        return String.format("%08x %s%n", crc(json), json);
+    }
+    
+    private Record decode(String line) {
+        int space = line.indexOf(' ');
+        if (space != 8) {
+            return null;
+        }
+        String json = line.substring(space + 1);
+        try {
+            if (Long.parseLong(line.substring(0, space), 16) != crc(json)) {
+                return null;
+            }
+            Record record = gson.fromJson(json, Record.class);
+            return record != null && record.type != null ? record : null;
+        } catch (NumberFormatException | JsonParseException e) {
+            return null;
+        }
+    }
+    
+    private static long crc(String json) {
+        CRC32 crc = new CRC32();
+        crc.update(json.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+    
+    private static FileInfo copy(FileInfo source) {
+        FileInfo copy = new FileInfo(source.getFileName(), source.getFileSize(), source.getFileHash());
+        copy.setOwnerPeerId(source.getOwnerPeerId());
+        copy.setOwnerAddress(source.getOwnerAddress());
+        copy.setOwnerPort(source.getOwnerPort());
+        return copy;
+    }
+    
+    private void closeWriter() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+    
+    /**
+     * Închide jurnalul (la oprirea aplicației); înregistrările de după sunt ignorate
+     */
+    public synchronized void close() {
+        try {
+            closeWriter();
+            if (lockChannel != null) {
+                lockChannel.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Jurnalul transferurilor nu a putut fi închis: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * O descărcare neterminată, așa cum a rămas în jurnal
+     */
+    public static final class Entry {
+        private final FileInfo fileInfo;
+        private final List<FileInfo> sources;
+        private long verifiedBytes;
+        private DownloadTask.State state;
+        
+        private Entry(FileInfo fileInfo, List<FileInfo> sources, long verifiedBytes, DownloadTask.State state) {
+            this.fileInfo = fileInfo;
+            this.sources = sources != null ? sources : List.of();
+            this.verifiedBytes = verifiedBytes;
+            this.state = state != null ? state : DownloadTask.State.PENDING;
+        }
+        
+        public FileInfo getFileInfo() {
+            return fileInfo;
+        }
+        
+        public List<FileInfo> getSources() {
+            return sources;
+        }
+        
+        /**
+         * @return bytes verificați din .partial, -1 dacă nu se știe
+         */
+        public long getVerifiedBytes() {
+            return verifiedBytes;
+        }
+        
+        public DownloadTask.State getState() {
+            return state;
+        }
+    }
+    
+    private enum RecordType { START, PROGRESS, STATE }
+    
+    /**
+     * O linie din jurnal (câmpurile nefolosite de tipul ei rămân null)
+     */
+    private static final class Record {
+        private RecordType type;
+        private String name;
+        private FileInfo file;
+        private List<FileInfo> sources;
+        private long verified;
+        private DownloadTask.State state;
+        
+        static Record start(Entry entry) {
+            Record record = new Record();
+            record.type = RecordType.START;
+            record.file = entry.fileInfo;
+            record.sources = entry.sources;
+            record.verified = entry.verifiedBytes;
+            record.state = entry.state;
+            return record;
+        }
+        
+        static Record progress(String fileName, long verifiedBytes) {
+            Record record = new Record();
+            record.type = RecordType.PROGRESS;
+            record.name = fileName;
+            record.verified = verifiedBytes;
+            return record;
+        }
+        
+        static Record state(String fileName, DownloadTask.State state) {
+            Record record = new Record();
+            record.type = RecordType.STATE;
+            record.name = fileName;
+            record.state = state;
+            return record;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package ro.facultate.sd.p2p.network;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Transport DHT peste un socket UDP propriu
+ */
+public class UdpDhtTransport implements DhtTransport {
+    private static final Logger logger = LoggerFactory.getLogger(UdpDhtTransport.class);
+    private static final int MAX_PACKET = 1400;
+    
+    private final InetAddress bindAddress;
+    private final int requestedPort;
+    
+    private DatagramSocket socket;
+    private Thread receiverThread;
+    private volatile boolean running;
+    
+    /**
+     * @param bindAddress adresa locală (null = toate interfețele)
+     * @param port portul UDP (0 = ales de sistem; dacă e ocupat se alege altul)
+     */
+    public UdpDhtTransport(InetAddress bindAddress, int port) {
+        this.bindAddress = bindAddress;
+        this.requestedPort = port;
+    }
+    
+    @Override
+    public void start(BiConsumer<InetSocketAddress, ByteBuffer> receiver) throws IOException {
+        try {
+            socket = new DatagramSocket(new InetSocketAddress(bindAddress, requestedPort));
+        } catch (SocketException e) {
+            if (requestedPort == 0) {
+                throw e;
+            }
+            logger.info("Portul DHT {} e ocupat, folosesc un port ales de sistem", requestedPort);
+            socket = new DatagramSocket(new InetSocketAddress(bindAddress, 0));
+        }
+        running = true;
+        
+        receiverThread = new Thread(() -> receiveLoop(receiver), "DhtReceiver");
+        receiverThread.setDaemon(true);
+        receiverThread.start();
+    }
+    
+    private void receiveLoop(BiConsumer<InetSocketAddress, ByteBuffer> receiver) {
+        byte[] buffer = new byte[MAX_PACKET];
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        
+        while (running) {
+            try {
+                packet.setLength(buffer.length);
+                socket.receive(packet);
+                // Copie: răspunsurile sunt procesate pe alte thread-uri, iar buffer-ul e refolosit
+                receiver.accept((InetSocketAddress) packet.getSocketAddress(),
+                                ByteBuffer.wrap(Arrays.copyOf(buffer, packet.getLength())));
+            } catch (SocketException e) {
+                if (running) {
+                    logger.error("Socket DHT închis neașteptat", e);
+                }
+            } catch (Exception e) {
+                logger.debug("Mesaj DHT invalid: {}", e.toString());
+            }
+        }
+    }
+    
+    @Override
+    public void send(InetSocketAddress target, ByteBuffer message) {
+        try {
+            socket.send(new DatagramPacket(message.array(), message.position(), target));
+        } catch (IOException e) {
+            if (running) {
+                logger.debug("Trimitere DHT eșuată către {}: {}", target, e.getMessage());
+            }
+        }
+    }
+    
+    @Override
+    public InetSocketAddress address(String host, int port) {
+        return new InetSocketAddress(host, port);
+    }
+    
+    @Override
+    public int getPort() {
+        return socket != null ? socket.getLocalPort() : requestedPort;
+    }
+    
+    @Override
+    public void close() {
+        running = false;
+        if (socket != null) {
+            socket.close();
+        }
+        if (receiverThread != null) {
+            receiverThread.interrupt();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package ro.facultate.sd.p2p.network;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Controlul admisiei pentru upload-uri: un număr fix de transferuri simultane,
+ * o coadă FIFO limitată pentru restul și respingere când și coada e plină.
+ * Un seeder popular servește astfel câțiva clienți la viteză întreagă, în loc să-și
+ * împartă discul și uplink-ul între oricât de mulți cititori.
+ */
+public class UploadSlots {
+    private static final double DURATION_GAIN = 0.2;
+    private static final long MIN_RETRY_AFTER_MILLIS = 1_000;
+    private static final long MAX_RETRY_AFTER_MILLIS = 120_000;
+    
+    private final int slots;
+    private final int maxQueued;
+    private final Deque<Ticket> waiting = new ArrayDeque<>();
+    private int active;
+    private double averageUploadMillis = 5_000; // Estimare până la primele transferuri
+    
+    /**
+     * @param slots transferuri simultane
+     * @param maxQueued câte cereri pot aștepta în coadă
+     */
+    public UploadSlots(int slots, int maxQueued) {
+        this.slots = Math.max(1, slots);
+        this.maxQueued = Math.max(0, maxQueued);
+    }
+    
+    /**
+     * Cere un slot: primit imediat dacă e liber, altfel loc în coadă
+     * @return null dacă și coada e plină (cererea trebuie respinsă)
+     */
+    public synchronized Ticket tryAcquire() {
+        Ticket ticket = new Ticket();
+        if (active < slots && waiting.isEmpty()) {
+            grant(ticket);
+            return ticket;
+        }
+        if (waiting.size() >= maxQueued) {
+            return null;
+        }
+        waiting.addLast(ticket);
+        return ticket;
+    }
+    
+    /**
+     * Poziția în coadă (1 = următorul servit), 0 dacă are deja slot
+     */
+    public synchronized int position(Ticket ticket) {
+        if (ticket.granted) {
+            return 0;
+        }
+        int position = 1;
+        for (Ticket queued : waiting) {
+            if (queued == ticket) {
+                return position;
+            }
+            position++;
+        }
+        return 0;
+    }
+    
+    /**
+     * Așteaptă până când poziția se schimbă, primește slot sau expiră timpul
+     * @return poziția curentă (0 = are slot)
+     */
+    public synchronized int awaitChange(Ticket ticket, int lastPosition, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        int position = position(ticket);
+        while (position == lastPosition && position > 0) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                break;
+            }
+            wait(remaining);
+            position = position(ticket);
+        }
+        return position;
+    }
+    
+    /**
+     * Eliberează slotul (sau locul din coadă) și promovează următoarele cereri
+     */
+    public synchronized void release(Ticket ticket) {
+        if (ticket.released) {
+            return;
+        }
+        ticket.released = true;
+        if (ticket.granted) {
+            active--;
+            long duration = System.currentTimeMillis() - ticket.grantedAt;
+            averageUploadMillis += DURATION_GAIN * (duration - averageUploadMillis);
+        } else {
+            waiting.remove(ticket);
+        }
+        while (active < slots && !waiting.isEmpty()) {
+            grant(waiting.pollFirst());
+        }
+        notifyAll();
+    }
+    
+    /**
+     * Când merită reîncercat: durata medie a unui upload × cereri în fața noului venit / sloturi
+     */
+    public synchronized long retryAfterMillis() {
+        long estimate = (long) (averageUploadMillis * (waiting.size() + 1) / slots);
+        return Math.max(MIN_RETRY_AFTER_MILLIS, Math.min(MAX_RETRY_AFTER_MILLIS, estimate));
+    }
+    
+    public synchronized int getActiveCount() {
+        return active;
+    }
+    
+    public synchronized int getQueuedCount() {
+        return waiting.size();
+    }
+    
+    private void grant(Ticket ticket) {
+        ticket.granted = true;
+        ticket.grantedAt = System.currentTimeMillis();
+        active++;
+    }
+    
+    /**
+     * Cererea unui client: slot primit sau loc în coadă
+     */
+    public static final class Ticket {
+        private boolean granted;
+        private boolean released;
+        private long grantedAt;
+        
+        private Ticket() {
+        }
+    }
+}
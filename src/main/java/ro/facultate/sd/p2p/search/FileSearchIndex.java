@@ -0,0 +1,413 @@
+package ro.facultate.sd.p2p.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+import ro.facultate.sd.p2p.model.FileInfo;
+
+/**
+ * Index inversat în memorie pentru căutarea fișierelor după nume și atribute
+ * Numele sunt indexate pe trigrame (căutare subșir), cuvinte (căutare prefix)
+ * și extensie; dimensiunea și owner-ul sunt filtre aplicate pe candidați.
+ * Indexul e actualizat incremental (add/remove) și e sigur pentru mai multe thread-uri.
+ *
+ * Sintaxa interogărilor (termenii se combină cu ȘI):
+ *   raport          - subșir în nume (prefix de cuvânt pentru 1-2 caractere)
+ *   ext:pdf         - extensie
+ *   owner:3f2a      - prefix al ID-ului peer-ului
+ *   size>10MB       - dimensiune (>, <, >=, <=; unități B, KB, MB, GB)
+ */
+public class FileSearchIndex {
+    private static final int NGRAM = 3;
+    private static final int GRAM_BUCKETS = 1 << 18; // Trigrame distribuite pe găleți (coliziunile sunt verificate)
+    private static final int PREFIX_BUCKETS = 1 << 16;
+    
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    // Documente - id-ul e poziția în liste; intrările șterse devin null
+    private final List<FileInfo> docs = new ArrayList<>();
+    private final List<String> lowerNames = new ArrayList<>();
+    private final Map<FileInfo, Integer> ids = new HashMap<>();
+    private int removedCount;
+    
+    // Liste de postări (id-uri crescătoare). Trigramele și prefixele de cuvânt sunt
+    // indexate după hash, fără String-uri intermediare; o găleată poate conține
+    // și documente care nu potrivesc - de aceea candidații sunt verificați la final.
+    private IntList[] gramBuckets = new IntList[GRAM_BUCKETS];
+    private IntList[] prefixBuckets = new IntList[PREFIX_BUCKETS];
+    private final Map<String, IntList> extensions = new HashMap<>();
+    
+    /**
+     * Adaugă sau înlocuiește un fișier (cheia e numele + hash-ul, ca în FileInfo.equals)
+     */
+    public void add(FileInfo file) {
+        lock.writeLock().lock();
+        try {
+            Integer existing = ids.get(file);
+            if (existing != null) {
+                // Aceeași cheie - doar înlocuiește instanța (owner/adresă nouă)
+                docs.set(existing, file);
+                return;
+            }
+            
+            int id = docs.size();
+            String lower = file.getFileName().toLowerCase(Locale.ROOT);
+            docs.add(file);
+            lowerNames.add(lower);
+            ids.put(file, id);
+            
+            for (int i = 0; i + NGRAM <= lower.length(); i++) {
+                bucket(gramBuckets, gramHash(lower, i)).addUnique(id);
+            }
+            
+            // Prefixele de 1 și 2 caractere ale fiecărui cuvânt (pentru termeni scurți)
+            boolean tokenStart = true;
+            for (int i = 0; i < lower.length(); i++) {
+                boolean letterOrDigit = Character.isLetterOrDigit(lower.charAt(i));
+                if (letterOrDigit && tokenStart) {
+                    bucket(prefixBuckets, prefixHash(lower, i, 1)).addUnique(id);
+                    if (i + 1 < lower.length() && Character.isLetterOrDigit(lower.charAt(i + 1))) {
+                        bucket(prefixBuckets, prefixHash(lower, i, 2)).addUnique(id);
+                    }
+                }
+                tokenStart = !letterOrDigit;
+            }
+            
+            extensions.computeIfAbsent(extensionOf(lower), k -> new IntList()).add(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Elimină un fișier (postările sunt curățate la compactare)
+     */
+    public void remove(FileInfo file) {
+        lock.writeLock().lock();
+        try {
+            Integer id = ids.remove(file);
+            if (id == null) {
+                return;
+            }
+            docs.set(id, null);
+            lowerNames.set(id, null);
+            removedCount++;
+            
+            if (removedCount > 1024 && removedCount > docs.size() / 2) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            docs.clear();
+            lowerNames.clear();
+            ids.clear();
+            gramBuckets = new IntList[GRAM_BUCKETS];
+            prefixBuckets = new IntList[PREFIX_BUCKETS];
+            extensions.clear();
+            removedCount = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ids.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Caută fișierele care potrivesc interogarea
+     * Se parcurge cea mai scurtă listă de postări, iar celelalte sunt verificate prin
+     * căutare binară; parcurgerea se oprește când s-au găsit maxResults rezultate.
+     * @param query interogarea (vezi sintaxa din descrierea clasei); goală = toate
+     * @param maxResults numărul maxim de rezultate (0 = fără limită)
+     */
+    public List<FileInfo> search(String query, int maxResults) {
+        Query parsed = Query.parse(query);
+        int limit = maxResults > 0 ? maxResults : Integer.MAX_VALUE;
+        
+        lock.readLock().lock();
+        try {
+            List<IntList> postings = new ArrayList<>();
+            
+            for (String ext : parsed.extensions) {
+                IntList list = extensions.get(ext);
+                if (list == null) {
+                    return List.of();
+                }
+                postings.add(list);
+            }
+            
+            for (String term : parsed.terms) {
+                if (term.length() >= NGRAM) {
+                    for (int i = 0; i + NGRAM <= term.length(); i++) {
+                        IntList list = gramBuckets[gramHash(term, i)];
+                        if (list == null) {
+                            return List.of();
+                        }
+                        postings.add(list);
+                    }
+                } else {
+                    IntList list = prefixBuckets[prefixHash(term, 0, term.length())];
+                    if (list == null) {
+                        return List.of();
+                    }
+                    postings.add(list);
+                }
+            }
+            
+            List<FileInfo> results = new ArrayList<>();
+            if (postings.isEmpty()) {
+                for (int id = 0; id < docs.size() && results.size() < limit; id++) {
+                    collect(id, parsed, results);
+                }
+                return results;
+            }
+            
+            postings.sort((a, b) -> Integer.compare(a.size, b.size));
+            IntList driver = postings.get(0);
+            int[] cursors = new int[postings.size()];
+            
+            for (int i = 0; i < driver.size && results.size() < limit; i++) {
+                int id = driver.values[i];
+                boolean inAll = true;
+                for (int p = 1; p < postings.size() && inAll; p++) {
+                    IntList list = postings.get(p);
+                    cursors[p] = list.seek(cursors[p], id);
+                    inAll = cursors[p] < list.size && list.values[cursors[p]] == id;
+                }
+                if (inAll) {
+                    collect(id, parsed, results);
+                }
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Verifică un candidat (subșiruri, prefixe, atribute) și îl adaugă la rezultate
+     */
+    private void collect(int id, Query query, List<FileInfo> results) {
+        FileInfo file = docs.get(id);
+        if (file == null) {
+            return;
+        }
+        String lower = lowerNames.get(id);
+        for (String term : query.terms) {
+            boolean matches = term.length() >= NGRAM ? lower.contains(term) : hasTokenPrefix(lower, term);
+            if (!matches) {
+                return;
+            }
+        }
+        if (query.attributes.test(file)) {
+            results.add(file);
+        }
+    }
+    
+    private static boolean hasTokenPrefix(String lower, String prefix) {
+        int from = 0;
+        int index;
+        while ((index = lower.indexOf(prefix, from)) >= 0) {
+            if (index == 0 || !Character.isLetterOrDigit(lower.charAt(index - 1))) {
+                return true;
+            }
+            from = index + 1;
+        }
+        return false;
+    }
+    
+    /**
+     * Reconstruiește postările fără documentele șterse
+     */
+    private void compact() {
+        List<FileInfo> live = new ArrayList<>(ids.size());
+        for (FileInfo doc : docs) {
+            if (doc != null) {
+                live.add(doc);
+            }
+        }
+        docs.clear();
+        lowerNames.clear();
+        ids.clear();
+        gramBuckets = new IntList[GRAM_BUCKETS];
+        prefixBuckets = new IntList[PREFIX_BUCKETS];
+        extensions.clear();
+        removedCount = 0;
+        
+        // Reentrant - add() reia lock-ul de scriere deja deținut
+        for (FileInfo doc : live) {
+            add(doc);
+        }
+    }
+    
+    private static IntList bucket(IntList[] buckets, int index) {
+        IntList list = buckets[index];
+        if (list == null) {
+            list = new IntList();
+            buckets[index] = list;
+        }
+        return list;
+    }
+    
+    private static int gramHash(String text, int start) {
+        int h = text.charAt(start);
+        h = h * 31 + text.charAt(start + 1);
+        h = h * 31 + text.charAt(start + 2);
+        return mix(h) & (GRAM_BUCKETS - 1);
+    }
+    
+    private static int prefixHash(String text, int start, int length) {
+        int h = length == 1 ? text.charAt(start) : text.charAt(start) * 65599 + text.charAt(start + 1) + 1;
+        return mix(h) & (PREFIX_BUCKETS - 1);
+    }
+    
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        return h ^ (h >>> 13);
+    }
+    
+    static String extensionOf(String lower) {
+        int dot = lower.lastIndexOf('.');
+        return dot > 0 && dot < lower.length() - 1 ? lower.substring(dot + 1) : "";
+    }
+    
+    /**
+     * Interogare parsată: termeni text, extensii și filtre de atribute
+     */
+    static final class Query {
+        final List<String> terms = new ArrayList<>();
+        final List<String> extensions = new ArrayList<>();
+        Predicate<FileInfo> attributes = f -> true;
+        
+        static Query parse(String text) {
+            Query query = new Query();
+            if (text == null) {
+                return query;
+            }
+            
+            for (String part : text.trim().toLowerCase(Locale.ROOT).split("\\s+")) {
+                if (part.isEmpty()) {
+                    continue;
+                }
+                if (part.startsWith("ext:") && part.length() > 4) {
+                    query.extensions.add(part.substring(4).replaceFirst("^\\.", ""));
+                } else if (part.startsWith("owner:") && part.length() > 6) {
+                    String prefix = part.substring(6);
+                    query.and(f -> f.getOwnerPeerId() != null
+                        && f.getOwnerPeerId().toLowerCase(Locale.ROOT).startsWith(prefix));
+                } else if (part.startsWith("size") && part.length() > 5 && parseSizeFilter(query, part.substring(4))) {
+                    // Filtru de dimensiune adăugat
+                } else {
+                    query.terms.add(part);
+                }
+            }
+            return query;
+        }
+        
+        private void and(Predicate<FileInfo> predicate) {
+            attributes = attributes.and(predicate);
+        }
+        
+        private static boolean parseSizeFilter(Query query, String expression) {
+            String op = expression.startsWith(">=") || expression.startsWith("<=")
+                ? expression.substring(0, 2)
+                : expression.substring(0, 1);
+            if (!op.startsWith(">") && !op.startsWith("<")) {
+                return false;
+            }
+            
+            long bytes = parseSize(expression.substring(op.length()));
+            if (bytes < 0) {
+                return false;
+            }
+            switch (op) {
+                case ">":  query.and(f -> f.getFileSize() > bytes); break;
+                case ">=": query.and(f -> f.getFileSize() >= bytes); break;
+                case "<":  query.and(f -> f.getFileSize() < bytes); break;
+                default:   query.and(f -> f.getFileSize() <= bytes); break;
+            }
+            return true;
+        }
+        
+        private static long parseSize(String value) {
+            long multiplier = 1;
+            String number = value;
+            if (value.endsWith("kb")) {
+                multiplier = 1024L;
+            } else if (value.endsWith("mb")) {
+                multiplier = 1024L * 1024;
+            } else if (value.endsWith("gb")) {
+                multiplier = 1024L * 1024 * 1024;
+            }
+            if (multiplier > 1) {
+                number = value.substring(0, value.length() - 2);
+            } else if (value.endsWith("b")) {
+                number = value.substring(0, value.length() - 1);
+            }
+            try {
+                return (long) (Double.parseDouble(number) * multiplier);
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+    }
+    
+    /**
+     * Listă de int-uri crescătoare (evită boxing-ul pentru postări)
+     */
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+        
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+        
+        /**
+         * Id-urile vin crescător - un duplicat poate fi doar ultimul element
+         */
+        void addUnique(int value) {
+            if (size == 0 || values[size - 1] != value) {
+                add(value);
+            }
+        }
+        
+        /**
+         * Prima poziție >= from cu valoarea >= target (căutare exponențială, apoi binară)
+         * Cursorii avansează doar înainte, deci intersecția e aproape liniară.
+         */
+        int seek(int from, int target) {
+            int step = 1;
+            int hi = from;
+            while (hi < size && values[hi] < target) {
+                from = hi + 1;
+                hi += step;
+                step <<= 1;
+            }
+            int index = Arrays.binarySearch(values, from, Math.min(hi + 1, size), target);
+            return index >= 0 ? index : -index - 1;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ro.facultate.sd.p2p.ui;
+
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Buffer limitat pentru mesajele din log-ul de activitate
+ * Orice thread poate adăuga mesaje fără să atingă thread-ul JavaFX;
+ * UI-ul le golește periodic în loturi (un singur appendText per lot).
+ */
+public class ActivityLogBuffer {
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+    
+    private final ArrayBlockingQueue<String> pending;
+    private final AtomicInteger dropped = new AtomicInteger();
+    
+    public ActivityLogBuffer(int capacity) {
+        this.pending = new ArrayBlockingQueue<>(capacity);
+    }
+    
+    /**
+     * Adaugă un mesaj (thread-safe, nu blochează niciodată)
+     * Dacă buffer-ul e plin, mesajul e numărat ca omis.
+     */
+    public void add(String message) {
+        String line = "[" + LocalTime.now().format(TIME_FORMAT) + "] " + message + "\n";
+        if (!pending.offer(line)) {
+            dropped.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Golește cel mult maxLines mesaje într-un singur text
+     * @return textul de adăugat sau null dacă nu e nimic nou
+     */
+    public String drain(int maxLines) {
+        int omitted = dropped.getAndSet(0);
+        if (pending.isEmpty() && omitted == 0) {
+            return null;
+        }
+        
+        StringBuilder sb = new StringBuilder();
+        String line;
+        int count = 0;
+        while (count < maxLines && (line = pending.poll()) != null) {
+            sb.append(line);
+            count++;
+        }
+        
+        if (omitted > 0) {
+            sb.append("[").append(LocalTime.now().format(TIME_FORMAT)).append("] ... ")
+              .append(omitted).append(" mesaje omise (activitate intensă)\n");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,167 @@
+package ro.facultate.sd.p2p.ui;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import ro.facultate.sd.p2p.model.FileInfo;
+
+/**
+ * Agregă progresul descărcărilor și îl livrează UI-ului la o rată fixă de cadre
+ * Thread-urile de descărcare doar suprascriu ultimul număr de bytes primiți
+ * (fără Platform.runLater per bucată); thread-ul JavaFX apelează flush() o dată
+ * pe cadru și primește doar fișierele modificate, cu viteză și ETA netezite.
+ */
+public class DownloadProgressAggregator {
+    private static final double SPEED_SMOOTHING = 0.3; // Factor EWMA pentru viteză
+    private static final long STALL_NANOS = 2_000_000_000L; // Fără date 2s = transfer blocat
+    
+    private final long frameIntervalNanos;
+    private final Map<String, TransferStats> transfers = new ConcurrentHashMap<>();
+    private long lastFlushNanos;
+    
+    public DownloadProgressAggregator(int framesPerSecond) {
+        this.frameIntervalNanos = 1_000_000_000L / framesPerSecond;
+    }
+    
+    /**
+     * Înregistrează progresul (apelat din thread-ul de descărcare, per bucată)
+     */
+    public void record(String fileName, long receivedBytes, long totalBytes) {
+        TransferStats stats = transfers.get(fileName);
+        if (stats == null) {
+            stats = transfers.computeIfAbsent(fileName, TransferStats::new);
+        }
+        stats.totalBytes = totalBytes;
+        stats.receivedBytes = receivedBytes;
+        stats.dirty.set(true); // După receivedBytes: cine vede dirty vede și valoarea nouă
+    }
+    
+    /**
+     * Elimină un transfer terminat sau anulat
+     */
+    public void remove(String fileName) {
+        transfers.remove(fileName);
+    }
+    
+    public TransferStats get(String fileName) {
+        return transfers.get(fileName);
+    }
+    
+    /**
+     * Calculează noile valori pentru transferurile modificate (doar pe thread-ul JavaFX)
+     * @param nowNanos timpul cadrului curent (ex. din AnimationTimer)
+     * @return fișierele actualizate; listă goală dacă nu a trecut un interval de cadru
+     */
+    public List<TransferStats> flush(long nowNanos) {
+        if (nowNanos - lastFlushNanos < frameIntervalNanos) {
+            return List.of();
+        }
+        lastFlushNanos = nowNanos;
+        
+        List<TransferStats> changed = new ArrayList<>();
+        for (TransferStats stats : transfers.values()) {
+            if (stats.update(nowNanos)) {
+                changed.add(stats);
+            }
+        }
+        return changed;
+    }
+    
+    /**
+     * Starea unui transfer; câmpurile calculate sunt citite doar pe thread-ul JavaFX
+     */
+    public static final class TransferStats {
+        private final String fileName;
+        private volatile long receivedBytes;
+        private volatile long totalBytes;
+        private final AtomicBoolean dirty = new AtomicBoolean();
+        
+        private long sampleBytes = -1;
+        private long sampleNanos;
+        private long lastProgressNanos;
+        private double bytesPerSecond;
+        private double progress;
+        
+        private TransferStats(String fileName) {
+            this.fileName = fileName;
+        }
+        
+        /**
+         * Preia ultimul eșantion și actualizează viteza netezită
+         * @return true dacă valorile afișate s-au schimbat
+         */
+        private boolean update(long nowNanos) {
+            // dirty e șters înainte de citire: un record() venit între timp rămâne pentru cadrul următor
+            boolean fresh = dirty.getAndSet(false);
+            long received = receivedBytes;
+                        
+            if (sampleBytes < 0) {
+                sampleBytes = received;
+                sampleNanos = nowNanos;
+                lastProgressNanos = nowNanos;
+            } else if (fresh) {
+                double seconds = (nowNanos - sampleNanos) / 1e9;
+                if (seconds > 0) {
+                    double instant = (received - sampleBytes) / seconds;
+                    bytesPerSecond = bytesPerSecond == 0
+                        ? instant
+                        : SPEED_SMOOTHING * instant + (1 - SPEED_SMOOTHING) * bytesPerSecond;
+                }
+                sampleBytes = received;
+                sampleNanos = nowNanos;
+                lastProgressNanos = nowNanos;
+            } else if (bytesPerSecond > 0 && nowNanos - lastProgressNanos > STALL_NANOS) {
+                bytesPerSecond = 0; // Transfer blocat sau pe pauză
+                sampleNanos = nowNanos;
+                return true;
+            } else {
+                return false;
+            }
+            
+            long total = totalBytes;
+            progress = total > 0 ? Math.min(received * 100.0 / total, 100.0) : 0;
+            return true;
+        }
+        
+        public String getFileName() {
+            return fileName;
+        }
+        
+        public double getProgress() {
+            return progress;
+        }
+        
+        public double getBytesPerSecond() {
+            return bytesPerSecond;
+        }
+        
+        /**
+         * Timpul estimat rămas în secunde, -1 dacă nu se poate estima
+         */
+        public long getEtaSeconds() {
+            long remaining = totalBytes - receivedBytes;
+            if (bytesPerSecond <= 0 || remaining <= 0) {
+                return -1;
+            }
+            return (long) Math.ceil(remaining / bytesPerSecond);
+        }
+        
+        /**
+         * Text scurt pentru UI: "45.2% · 3.10 MB/s · 00:12"
+         */
+        public String describe() {
+            StringBuilder sb = new StringBuilder(String.format("%.1f%%", progress));
+            if (bytesPerSecond > 0) {
+                sb.append(" · ").append(FileInfo.formatSize((long) bytesPerSecond)).append("/s");
+                long eta = getEtaSeconds();
+                if (eta >= 0) {
+                    sb.append(" · ").append(String.format("%02d:%02d", eta / 60, eta % 60));
+                }
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -2,19 +2,33 @@ package ro.facultate.sd.p2p.ui;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javafx.animation.Animation;
+import javafx.animation.AnimationTimer;
+import javafx.animation.KeyFrame;
+import javafx.animation.PauseTransition;
+import javafx.animation.Timeline;
 import javafx.application.Platform;
+import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -22,24 +36,72 @@ import javafx.fxml.FXML;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.ContextMenu;
 import javafx.scene.control.Label;
+import javafx.scene.control.MenuItem;
 import javafx.scene.control.TableCell;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.scene.control.TextArea;
+import javafx.scene.control.TextField;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 import ro.facultate.sd.p2p.model.FileInfo;
+import ro.facultate.sd.p2p.model.P2PMessage;
 import ro.facultate.sd.p2p.model.PeerInfo;
+import ro.facultate.sd.p2p.network.DeltaSync;
+import ro.facultate.sd.p2p.network.DownloadTask;
 import ro.facultate.sd.p2p.network.FileClient;
+import ro.facultate.sd.p2p.network.FileHashCache;
 import ro.facultate.sd.p2p.network.FileServer;
+import ro.facultate.sd.p2p.network.KademliaNode;
+import ro.facultate.sd.p2p.network.PeerCatalogCache;
+import ro.facultate.sd.p2p.network.PeerIdentity;
+import ro.facultate.sd.p2p.network.PeerQualityTracker;
 import ro.facultate.sd.p2p.network.NodeDiscoveryService;
+import ro.facultate.sd.p2p.network.SearchService;
+import ro.facultate.sd.p2p.network.SwimMembership;
+import ro.facultate.sd.p2p.network.TlsTransport;
+import ro.facultate.sd.p2p.network.TransferJournal;
+import ro.facultate.sd.p2p.network.UdpDhtTransport;
 
 /**
  * Controller pentru fereastra principală
  */
 public class MainController {
     private static final Logger logger = LoggerFactory.getLogger(MainController.class);
+    private static final int LOG_BUFFER_CAPACITY = 2000; // Mesaje în așteptare pentru UI
+    private static final int LOG_FLUSH_INTERVAL_MS = 250;
+    private static final int LOG_MAX_LINES_PER_FLUSH = 200;
+    private static final int LOG_MAX_CHARS = 200_000; // Textul vechi e tăiat peste această limită
+    private static final int PROGRESS_FPS = 10; // Rata de actualizare a progresului în UI
+    private static final int SEARCH_DEBOUNCE_MS = 150; // Căutarea pornește după o scurtă pauză la tastare
+    private static final int NETWORK_SEARCH_MAX_RESULTS = 200;
+    private static final int FILES_ADDED_LOG_LIMIT = 5; // Peste atâtea fișiere într-un lot se loghează doar un rezumat
+    // false = nu se descarcă listele complete la descoperire; fișierele apar doar prin căutare
+    private static final boolean FETCH_CATALOG_ON_DISCOVERY = 
+        Boolean.parseBoolean(System.getProperty("p2p.catalog.fetchOnDiscovery", "true"));
+    // DHT Kademlia: găsește deținătorii unui hash și dincolo de peers-ii descoperiți direct
+    private static final boolean DHT_ENABLED = Boolean.parseBoolean(System.getProperty("p2p.dht.enabled", "true"));
+    private static final int DHT_PORT = Integer.getInteger("p2p.dht.port", 0);
+    private static final String DHT_SEEDS = System.getProperty("p2p.dht.seeds", ""); // "host:port,host:port"
+    // TLS între peers; toți peers-ii din rețea trebuie să ruleze cu aceeași setare
+    private static final boolean TLS_ENABLED = Boolean.parseBoolean(System.getProperty("p2p.tls.enabled", "false"));
+    // Cataloagele peers-ilor salvate între porniri (doar împreună cu descărcarea listelor la descoperire)
+    private static final boolean CATALOG_CACHE_ENABLED =
+        Boolean.parseBoolean(System.getProperty("p2p.catalogCache.enabled", "true"));
+    private static final int CATALOG_CACHE_MAX_AGE_DAYS = Integer.getInteger("p2p.catalogCache.maxAgeDays", 7);
+    // După atât, fișierele din cache ale peers-ilor care nu au reapărut dispar din tabel
+    private static final int CATALOG_CACHE_GRACE_SECONDS = Integer.getInteger("p2p.catalogCache.graceSeconds", 120);
+    // Descărcările neterminate sunt reluate la pornire din jurnal, nu ghicite după fișierele .partial
+    // Portul TCP de transfer; 0 = ales de sistem la bind și trimis în anunțuri (mai multe instanțe pe o mașină)
+    private static final int TRANSFER_PORT = Integer.getInteger("p2p.transfer.port", 0);
+    private static final boolean TRANSFER_JOURNAL_ENABLED =
+        Boolean.parseBoolean(System.getProperty("p2p.journal.enabled", "true"));
+    // Rulare de antrenament pentru arhiva AppCDS (profilul Maven cds): închidere după etapa READY
+    private static final boolean EXIT_WHEN_READY =
+        Boolean.parseBoolean(System.getProperty("p2p.startup.exitWhenReady", "false"));
     
     @FXML private Label peerIdLabel;
     @FXML private Label statusLabel;
@@ -56,7 +118,7 @@ public class MainController {
     
     @FXML private TableView<FileInfo> networkFilesTable;
     @FXML private TableColumn<FileInfo, String> networkNameColumn;
-    @FXML private TableColumn<FileInfo, String> networkSizeColumn;
+    @FXML private TableColumn<FileInfo, Long> networkSizeColumn;
     @FXML private TableColumn<FileInfo, String> networkOwnerColumn;
     @FXML private TableColumn<FileInfo, Void> networkProgressColumn;
     @FXML private TableColumn<FileInfo, Void> networkActionsColumn;
@@ -67,23 +129,45 @@ public class MainController {
     @FXML private Button refreshSharedButton;
     @FXML private Button refreshNetworkButton;
     
+    @FXML private TextField networkSearchField;
+    @FXML private Label searchResultLabel;
+    
     @FXML private TextArea activityLog;
     
     private Stage primaryStage;
     private NodeDiscoveryService discoveryService;
     private FileServer fileServer;
     private FileClient fileClient;
+    private SearchService searchService;
+    private KademliaNode dht; // null dacă e dezactivat sau nu a putut porni
+    private PeerCatalogCache catalogCache; // null dacă e dezactivat
+    private TransferJournal transferJournal; // null dacă e dezactivat sau folosit de altă instanță
+    private FileHashCache hashCache;
+    private FileHashCache downloadHashCache; // Hash-urile fișierelor din P2P-Downloads, între porniri
     
     private final ObservableList<FileInfo> sharedFiles = FXCollections.observableArrayList();
-    private final ObservableList<FileInfo> networkFiles = FXCollections.observableArrayList();
+    private final NetworkFileCatalog networkCatalog = new NetworkFileCatalog();
     private final Map<String, PeerInfo> connectedPeers = new ConcurrentHashMap<>();
     private final Map<String, Double> downloadProgress = new ConcurrentHashMap<>();
     private final Map<String, Boolean> downloadPaused = new ConcurrentHashMap<>();
     private final Map<String, Double> lastLoggedProgress = new ConcurrentHashMap<>(); // Pentru a loga doar la intervale
+    private final Map<String, String> downloadedFiles = new ConcurrentHashMap<>(); // Nume → hash, complete în P2P-Downloads
+    private final Map<String, Long> partialSizes = new ConcurrentHashMap<>(); // Doar fără jurnal: nume → lungimea .partial
+    private final ExecutorService downloadIndexer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "IndexDownloads");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ActivityLogBuffer logBuffer = new ActivityLogBuffer(LOG_BUFFER_CAPACITY);
+    private final DownloadProgressAggregator progressAggregator = new DownloadProgressAggregator(PROGRESS_FPS);
+    private final Set<ProgressCell> progressCells = Collections.newSetFromMap(new WeakHashMap<>()); // Celulele vizibile
     
-    private int fileTransferPort = 8888;
+    private int fileTransferPort;
     private Path sharedFolder;
     private Path downloadFolder;
+    private Path cacheFolder;
+    private Path identityFolder;
+    private PeerIdentity identity;
     
     /**
      * Inițializare controller
@@ -92,6 +176,9 @@ public class MainController {
     public void initialize() {
         setupTables();
         setupFolders();
+        startLogFlusher();
+        startProgressPulse();
+        setupSearch();
         
         // Dezactivează butoanele până când aplicația pornește
         addFileButton.setDisable(true);
@@ -125,8 +212,16 @@ public class MainController {
         // Tabel fișiere din rețea
         networkNameColumn.setCellValueFactory(data -> 
             new SimpleStringProperty(data.getValue().getFileName()));
+        // Valoarea e dimensiunea brută - sortarea e numerică, afișarea formatată
         networkSizeColumn.setCellValueFactory(data -> 
-            new SimpleStringProperty(data.getValue().getFileSizeFormatted()));
+            new SimpleObjectProperty<>(data.getValue().getFileSize()));
+        networkSizeColumn.setCellFactory(col -> new TableCell<FileInfo, Long>() {
+            @Override
+            protected void updateItem(Long size, boolean empty) {
+                super.updateItem(size, empty);
+                setText(empty || size == null ? null : FileInfo.formatSize(size));
+            }
+        });
         networkOwnerColumn.setCellValueFactory(data -> {
             String peerId = data.getValue().getOwnerPeerId();
             if (peerId != null) {
@@ -141,65 +236,17 @@ public class MainController {
         networkHashColumn.setCellValueFactory(data -> 
             new SimpleStringProperty(data.getValue().getFileHash().substring(0, 12) + "..."));
         
-        // Coloană cu ProgressBar - cu actualizare automată
-        networkProgressColumn.setCellFactory(col -> new TableCell<FileInfo, Void>() {
-            private final javafx.scene.control.ProgressBar progressBar = new javafx.scene.control.ProgressBar(0);
-            private final Label statusLabel = new Label("-");
-            private final javafx.scene.layout.VBox container = new javafx.scene.layout.VBox(2);
-            private String currentFileName = null;
-            
-            {
-                progressBar.setPrefWidth(120);
-                progressBar.setPrefHeight(18);
-                statusLabel.setStyle("-fx-font-size: 9px; -fx-text-fill: #666;");
-                container.getChildren().addAll(progressBar, statusLabel);
-                container.setAlignment(javafx.geometry.Pos.CENTER);
-                
-                // Timeline pentru actualizare automată la fiecare 100ms
-                javafx.animation.Timeline timeline = new javafx.animation.Timeline(
-                    new javafx.animation.KeyFrame(javafx.util.Duration.millis(100), e -> {
-                        if (currentFileName != null) {
-                            Double progress = downloadProgress.get(currentFileName);
-                            if (progress != null && progress > 0) {
-                                progressBar.setProgress(progress / 100.0);
-                                statusLabel.setText(String.format("%.1f%%", progress));
-                                progressBar.setStyle("-fx-accent: #4CAF50;");
-                            }
-                        }
-                    })
-                );
-                timeline.setCycleCount(javafx.animation.Animation.INDEFINITE);
-                timeline.play();
-            }
-            
-            @Override
-            protected void updateItem(Void item, boolean empty) {
-                super.updateItem(item, empty);
-                if (empty || getTableRow() == null || getTableRow().getItem() == null) {
-                    setGraphic(null);
-                    currentFileName = null;
-                } else {
-                    FileInfo fileInfo = getTableRow().getItem();
-                    currentFileName = fileInfo.getFileName();
-                    Double progress = downloadProgress.get(currentFileName);
-                    
-                    if (progress != null) {
-                        progressBar.setProgress(progress / 100.0);
-                        statusLabel.setText(String.format("%.1f%%", progress));
-                        progressBar.setStyle("-fx-accent: #4CAF50;");
-                    } else {
-                        progressBar.setProgress(0);
-                        statusLabel.setText("-");
-                        progressBar.setStyle("-fx-accent: #2196F3;");
-                    }
-                    setGraphic(container);
-                }
-            }
+        // Coloană cu ProgressBar - actualizată în loturi de progressAggregator
+        networkProgressColumn.setCellFactory(col -> {
+            ProgressCell cell = new ProgressCell();
+            progressCells.add(cell);
+            return cell;
         });
         
         // Coloană cu butoane Descarcă/Pauză/Resume
         networkActionsColumn.setCellFactory(col -> new TableCell<FileInfo, Void>() {
             private final Button actionButton = new Button();
+            private final MenuItem cancelItem = new MenuItem("✖ Anulează descărcarea");
             
             {
                 actionButton.setPrefWidth(70);
@@ -209,6 +256,14 @@ public class MainController {
                         handleDownloadAction(fileInfo);
                     }
                 });
+                // Click dreapta pe Pauză/Resume: anulare (conexiune închisă, fișier parțial șters)
+                cancelItem.setOnAction(event -> {
+                    FileInfo fileInfo = getTableRow().getItem();
+                    if (fileInfo != null) {
+                        handleCancelDownload(fileInfo);
+                    }
+                });
+                actionButton.setContextMenu(new ContextMenu(cancelItem));
             }
             
             @Override
@@ -257,17 +312,165 @@ public class MainController {
             }
         });
         
-        networkFilesTable.setItems(networkFiles);
+        // Tabelul afișează vederea sortată/filtrată a catalogului (actualizată în loturi)
+        networkFilesTable.setItems(networkCatalog.getView());
+        networkCatalog.bindComparator(networkFilesTable.comparatorProperty());
+    }
+    
+    /**
+     * Celulă cu ProgressBar și text (procent, viteză, ETA)
+     * Nu are timer propriu - e actualizată de startProgressPulse doar când progresul se schimbă
+     */
+    private class ProgressCell extends TableCell<FileInfo, Void> {
+        private final javafx.scene.control.ProgressBar progressBar = new javafx.scene.control.ProgressBar(0);
+        private final Label statusLabel = new Label("-");
+        private final javafx.scene.layout.VBox container = new javafx.scene.layout.VBox(2);
+        private String currentFileName = null;
+        
+        ProgressCell() {
+            progressBar.setPrefWidth(120);
+            progressBar.setPrefHeight(18);
+            statusLabel.setStyle("-fx-font-size: 9px; -fx-text-fill: #666;");
+            container.getChildren().addAll(progressBar, statusLabel);
+            container.setAlignment(javafx.geometry.Pos.CENTER);
+        }
+        
+        @Override
+        protected void updateItem(Void item, boolean empty) {
+            super.updateItem(item, empty);
+            if (empty || getTableRow() == null || getTableRow().getItem() == null) {
+                setGraphic(null);
+                currentFileName = null;
+            } else {
+                currentFileName = getTableRow().getItem().getFileName();
+                showProgress();
+                setGraphic(container);
+            }
+        }
+        
+        /**
+         * Afișează progresul curent pentru fișierul din rând
+         */
+        void showProgress() {
+            Double progress = downloadProgress.get(currentFileName);
+            
+            if (progress != null) {
+                DownloadProgressAggregator.TransferStats stats = progressAggregator.get(currentFileName);
+                progressBar.setProgress(progress / 100.0);
+                statusLabel.setText(stats != null && progress < 100 
+                    ? stats.describe() 
+                    : String.format("%.1f%%", progress));
+                progressBar.setStyle("-fx-accent: #4CAF50;");
+            } else {
+                progressBar.setProgress(0);
+                statusLabel.setText("-");
+                progressBar.setStyle("-fx-accent: #2196F3;");
+            }
+        }
+    }
+    
+    /**
+     * Pornește bucla de actualizare a UI-ului (o dată pe cadru)
+     * Aplică loturile catalogului de rețea și progresul (limitat la PROGRESS_FPS);
+     * actualizările multiple pentru același fișier între cadre sunt comasate într-una singură.
+     */
+    private void startProgressPulse() {
+        new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                // Aplică modificările catalogului de rețea ca un singur lot pe cadru
+                if (networkCatalog.flush() != null) {
+                    updateStatistics();
+                    applySearch(); // Rezultatele căutării active includ fișierele noi
+                }
+                
+                List<DownloadProgressAggregator.TransferStats> changed = progressAggregator.flush(now);
+                if (changed.isEmpty()) {
+                    return;
+                }
+                
+                Set<String> changedNames = new java.util.HashSet<>();
+                for (DownloadProgressAggregator.TransferStats stats : changed) {
+                    changedNames.add(stats.getFileName());
+                    // Nu suprascrie starea finală (100%) setată la completare
+                    downloadProgress.computeIfPresent(stats.getFileName(), 
+                        (name, old) -> old >= 100 ? old : stats.getProgress());
+                }
+                
+                for (ProgressCell cell : progressCells) {
+                    if (cell.currentFileName != null && changedNames.contains(cell.currentFileName)) {
+                        cell.showProgress();
+                    }
+                }
+            }
+        }.start();
+    }
+    
+    /**
+     * Configurează câmpul de căutare (cu debounce, pentru a nu căuta la fiecare tastă)
+     */
+    private void setupSearch() {
+        PauseTransition debounce = new PauseTransition(Duration.millis(SEARCH_DEBOUNCE_MS));
+        debounce.setOnFinished(e -> applySearch());
+        networkSearchField.textProperty().addListener((obs, oldText, newText) -> debounce.playFromStart());
+        // Enter: caută și în rețea (doar potrivirile, fără liste complete)
+        networkSearchField.setOnAction(e -> {
+            applySearch();
+            startNetworkSearch(networkSearchField.getText());
+        });
+    }
+    
+    /**
+     * Trimite căutarea în rețea și adaugă rezultatele în catalog
+     */
+    private void startNetworkSearch(String query) {
+        if (searchService == null || query == null || query.isBlank()) {
+            return;
+        }
+        
+        log("🔎 Caut în rețea: " + query);
+        new Thread(() -> {
+            List<FileInfo> hits = searchService.search(query, NETWORK_SEARCH_MAX_RESULTS);
+            networkCatalog.addAll(hits);
+            log("🔎 " + hits.size() + " rezultate din rețea pentru: " + query);
+        }, "NetworkSearch").start();
+    }
+    
+    /**
+     * Filtrează tabelul de rețea după interogarea din câmpul de căutare
+     */
+    private void applySearch() {
+        String query = networkSearchField.getText();
+        
+        if (query == null || query.isBlank()) {
+            networkCatalog.setFilter(null);
+            searchResultLabel.setText("");
+            return;
+        }
+        
+        long start = System.nanoTime();
+        List<FileInfo> matches = networkCatalog.search(query, 0);
+        long micros = (System.nanoTime() - start) / 1000;
+        
+        // Set după identitate - predicatul e evaluat pentru fiecare rând
+        Set<FileInfo> matchSet = Collections.newSetFromMap(new IdentityHashMap<>(matches.size() * 2));
+        matchSet.addAll(matches);
+        networkCatalog.setFilter(matchSet::contains);
+        
+        searchResultLabel.setText(matches.size() + " / " + networkCatalog.size() + 
+            String.format(" (%.1f ms)", micros / 1000.0));
     }
     
     /**
      * Configurează folderele de lucru
      */
     private void setupFolders() {
-        // Folosește directorul curent al proiectului
-        String currentDir = System.getProperty("user.dir");
+        // Folosește directorul dat prin -Dp2p.home (un folder per instanță) sau directorul curent
+        String currentDir = System.getProperty("p2p.home", System.getProperty("user.dir"));
         sharedFolder = Paths.get(currentDir, "P2P-Shared");
         downloadFolder = Paths.get(currentDir, "P2P-Downloads");
+        cacheFolder = Paths.get(currentDir, "P2P-Cache");
+        identityFolder = Paths.get(currentDir, "P2P-Identity");
         
         try {
             java.nio.file.Files.createDirectories(sharedFolder);
@@ -282,105 +485,208 @@ public class MainController {
     }
     
     /**
-     * Pornește serviciile P2P
+     * Pornește serviciile P2P în fundal, pe etape (vezi StartupPhase) - fereastra rămâne folosibilă
      */
     public void startServices() {
-        try {
-            // Găsește un port disponibil pentru transfer fișiere
-            fileTransferPort = findAvailablePort(8888, 8900);
-            log("🔌 Port transfer găsit: " + fileTransferPort);
-            
-            // Pornește serviciul de descoperire MAI ÎNTÂI
-            discoveryService = new NodeDiscoveryService(fileTransferPort);
-            discoveryService.setOnPeerDiscovered(this::onPeerDiscovered);
-            discoveryService.setOnPeerLost(this::onPeerLost);
-            discoveryService.setOnFileAdded(this::onFileAddedByPeer);
-            discoveryService.start();
-            
-            // Pornește serverul de fișiere ȘI setează callback-urile ÎNAINTE de start
-            fileServer = new FileServer(fileTransferPort, sharedFolder);
-            fileServer.setOnFileRequested(fileName -> 
-                log("📤 Cerere primită pentru: " + fileName));
-            fileServer.setOnTransferComplete(fileName -> 
-                log("✅ Transfer completat: " + fileName));
-            
-            // IMPORTANT: Setează callback FILE_ADDED ÎNAINTE de start
-            fileServer.setOnFileAdded(fileInfo -> {
-                // Setează owner peer ID
-                fileInfo.setOwnerPeerId(discoveryService.getPeerId());
-                // Trimite notificare în rețea
-                discoveryService.broadcastFileAdded(fileInfo);
-                log("📢 Broadcasting FILE_ADDED pentru: " + fileInfo.getFileName());
-            });
-            
-            fileServer.start();
-            
-            // Pornește clientul
-            fileClient = new FileClient(downloadFolder);
-            fileClient.setOnDownloadStart(fileName -> {
-                // Resetează progresul la început de descărcare
+        long started = System.nanoTime();
+        statusLabel.setText("◌ Pornire...");
+        Thread startup = new Thread(() -> {
+            try {
+                startNetwork(started);
+            } catch (Exception e) {
+                logger.error("Eroare la pornirea serviciilor", e);
                 Platform.runLater(() -> {
-                    downloadProgress.put(fileName, 0.1); // 0.1% pentru a indica că descărcarea a început
-                    downloadPaused.put(fileName, false); // Setează explicit că nu e pe pauză
-                    lastLoggedProgress.put(fileName, -1.0);
-                    networkFilesTable.refresh();
-                });
-                log("📥 Începe descărcarea: " + fileName);
-            });
-            fileClient.setOnDownloadProgress((fileName, progress) -> 
-                Platform.runLater(() -> {
-                    // Asigură-te că progresul nu depășește 100%
-                    double safeProgress = Math.min(progress, 100.0);
-                    downloadProgress.put(fileName, safeProgress);
-                    // NU mai facem refresh - progress bar-ul se actualizează automat prin Timeline
-                    // NU mai logăm procentele - se vede vizual în progress bar
-                }));
-            fileClient.setOnDownloadComplete(fileName -> {
-                log("✅ Descărcare completă: " + fileName);
-                
-                // Primul runLater: actualizează progresul la 100%
-                Platform.runLater(() -> {
-                    downloadProgress.put(fileName, 100.0);
-                    downloadPaused.remove(fileName);
-                    lastLoggedProgress.remove(fileName); // Cleanup
-                    networkFilesTable.refresh(); // Refresh UI
-                    
-                    // Al doilea runLater: afișează dialogul DUPĂ ce UI-ul e actualizat
-                    Platform.runLater(() -> {
-                        showAlert("Descărcare Completă", 
-                            "Fișierul " + fileName + " a fost descărcat cu succes!", Alert.AlertType.INFORMATION);
-                    });
+                    statusLabel.setText("● Offline");
+                    showAlert("Eroare", "Nu s-au putut porni serviciile P2P:\n" + e.getMessage(), 
+                             Alert.AlertType.ERROR);
                 });
+            }
+        }, "Startup");
+        startup.setDaemon(true);
+        startup.start();
+    }
+    
+    /**
+     * Etapele ONLINE și INDEXING: server cu fișierele deja indexate, descoperire, apoi indexarea din fundal
+     */
+    private void startNetwork(long started) throws Exception {
+        // Aceeași identitate la fiecare pornire: ceilalți peers își păstrează cache-ul despre noi
+        identity = PeerIdentity.loadOrCreate(identityFolder);
+        
+        // Certificatul TLS e cel al identității - peerId-ul anunțat e amprenta cheii lui
+        TlsTransport tls = TLS_ENABLED ? TlsTransport.create(identity) : null;
+        
+        // Serverul pornește înaintea anunțurilor, doar cu fișierele al căror hash e salvat
+        hashCache = new FileHashCache(cacheFolder.resolve("shared-hashes.json"));
+        hashCache.load();
+        downloadHashCache = new FileHashCache(cacheFolder.resolve("download-hashes.json"));
+        downloadHashCache.load();
+        fileServer = new FileServer(TRANSFER_PORT, sharedFolder);
+        fileServer.setTlsTransport(tls);
+        fileServer.setHashCache(hashCache);
+        fileServer.setOnFileRequested(fileName -> 
+            log("📤 Cerere primită pentru: " + fileName));
+        fileServer.setOnTransferComplete(fileName -> 
+            log("✅ Transfer completat: " + fileName));
+        
+        // IMPORTANT: Setează callback FILE_ADDED ÎNAINTE de start (îl folosește și indexarea din fundal)
+        fileServer.setOnFileAdded(fileInfo -> {
+            // Setează owner peer ID
+            fileInfo.setOwnerPeerId(discoveryService.getPeerId());
+            // Trimite notificare în rețea
+            discoveryService.broadcastFileAdded(fileInfo);
+            if (dht != null) {
+                dht.publish(fileInfo.getFileHash(), fileTransferPort);
+            }
+            logger.debug("Broadcasting FILE_ADDED pentru: {}", fileInfo.getFileName());
+        });
+        fileServer.setOnIndexProgress((indexed, total) -> Platform.runLater(() -> {
+            statusLabel.setText("● Online · indexare " + indexed + "/" + total);
+            updateSharedFilesList();
+        }));
+        fileServer.start(); // Portul e ocupat direct la bind, fără verificare separată (fără curse între instanțe)
+        fileTransferPort = fileServer.getPort();
+        
+        // Clientul există înainte de descoperire: primii peers găsiți își trimit imediat cataloagele
+        fileClient = new FileClient(downloadFolder);
+        fileClient.setTlsTransport(tls);
+        fileClient.setOnDownloadStart(fileName -> {
+            // Resetează progresul la început de descărcare
+            Platform.runLater(() -> {
+                // 0.1% pentru a indica că descărcarea a început (la reluare rămâne progresul existent)
+                downloadProgress.merge(fileName, 0.1, Math::max);
+                downloadPaused.put(fileName, false); // Setează explicit că nu e pe pauză
+                lastLoggedProgress.put(fileName, -1.0);
+                networkFilesTable.refresh();
             });
-            fileClient.setOnDownloadError((fileName, error) -> 
-                Platform.runLater(() -> showAlert("Eroare Descărcare", 
-                    "Nu s-a putut descărca " + fileName + ":\n" + error, Alert.AlertType.ERROR)));
+            log("📥 Începe descărcarea: " + fileName);
+        });
+        // Progresul per bucată merge doar în agregator - UI-ul îl preia o dată pe cadru
+        fileClient.setOnDownloadBytes(progressAggregator::record);
+        fileClient.setOnDownloadComplete(fileName -> {
+            log("✅ Descărcare completă: " + fileName);
+            downloadIndexer.execute(() -> recordDownloaded(downloadFolder.resolve(fileName)));
             
-            // Actualizează UI
+            // Primul runLater: actualizează progresul la 100%
             Platform.runLater(() -> {
-                String shortId = discoveryService.getPeerId().substring(0, 8);
-                peerIdLabel.setText("Peer ID: " + shortId + "...");
-                statusLabel.setText("● Online");
-                statusLabel.getStyleClass().remove("status-offline");
-                statusLabel.getStyleClass().add("status-online");
-                
-                addFileButton.setDisable(false);
-                refreshSharedButton.setDisable(false);
-                refreshNetworkButton.setDisable(false);
+                downloadProgress.put(fileName, 100.0);
+                progressAggregator.remove(fileName);
+                downloadPaused.remove(fileName);
+                lastLoggedProgress.remove(fileName); // Cleanup
+                networkFilesTable.refresh(); // Refresh UI
                 
-                updateSharedFilesList();
-                updateStatistics();
+                // Al doilea runLater: afișează dialogul DUPĂ ce UI-ul e actualizat
+                Platform.runLater(() -> {
+                    showAlert("Descărcare Completă", 
+                        "Fișierul " + fileName + " a fost descărcat cu succes!", Alert.AlertType.INFORMATION);
+                });
             });
+        });
+        fileClient.setOnDownloadQueued((fileName, position) ->
+            log("⏳ " + fileName + " așteaptă un slot de upload (poziția " + position + " în coadă)"));
+        fileClient.setOnDownloadError((fileName, error) -> 
+            Platform.runLater(() -> showAlert("Eroare Descărcare", 
+                "Nu s-a putut descărca " + fileName + ":\n" + error, Alert.AlertType.ERROR)));
+        if (TRANSFER_JOURNAL_ENABLED) {
+            restoreTransfers(); // Înaintea cataloagelor din cache: fișierele .partial reluate au progresul din jurnal
+        }
+        indexDownloads();
+        
+        // Serviciul de descoperire, cu cataloagele salvate și portul DHT cunoscute înainte de primul anunț
+        discoveryService = new NodeDiscoveryService(identity.getPeerId(), fileTransferPort);
+        discoveryService.setOnPeerDiscovered(this::onPeerDiscovered);
+        discoveryService.setOnPeerLost(this::onPeerLost);
+        discoveryService.setOnFilesAdded(this::onFilesAdded);
+        if (FETCH_CATALOG_ON_DISCOVERY && CATALOG_CACHE_ENABLED) {
+            loadCatalogCache(); // Înainte de primul anunț: peers-ii din cache sunt doar revalidați
+            discoveryService.setCatalogCache(catalogCache);
+        }
+        
+        // Căutare distribuită: răspundem la SEARCH_QUERY și le propagăm la vecini
+        searchService = new SearchService(identity.getPeerId(), fileServer, fileClient,
+                                          () -> connectedPeers.values());
+        fileServer.setSearchHandler(searchService::handleQuery);
+        
+        // Evenimente FILE_ADDED pierdute: se cer prin TCP doar cele lipsă
+        fileServer.setCatalogEventsHandler(discoveryService::getCatalogEvents);
+        discoveryService.setCatalogFetcher(fileClient::requestCatalogEvents);
+        
+        if (DHT_ENABLED) {
+            startDht(); // Portul DHT trebuie cunoscut înainte de primul anunț
+        }
+        discoveryService.start();
+        if (dht != null) {
+            for (FileInfo file : fileServer.getSharedFiles()) {
+                dht.publish(file.getFileHash(), fileTransferPort);
+            }
+        }
+        
+        // Etapa ONLINE: nodul e descoperibil și își listează fișierele deja indexate
+        Platform.runLater(() -> {
+            enterPhase(StartupPhase.ONLINE, started);
+            String shortId = discoveryService.getPeerId().substring(0, 8);
+            peerIdLabel.setText("Peer ID: " + shortId + "...");
+            statusLabel.setText("● Online");
+            statusLabel.getStyleClass().remove("status-offline");
+            statusLabel.getStyleClass().add("status-online");
             
-            log("🚀 Servicii P2P pornite cu succes!");
-            log("📍 ID-ul tău: " + discoveryService.getPeerId().substring(0, 16) + "...");
-            log("🔌 Port UDP (discovery): " + discoveryService.getDiscoveryPort());
-            log("🔌 Port TCP (transfer): " + fileTransferPort);
+            addFileButton.setDisable(false);
+            refreshNetworkButton.setDisable(false);
             
-        } catch (Exception e) {
-            logger.error("Eroare la pornirea serviciilor", e);
-            showAlert("Eroare", "Nu s-au putut porni serviciile P2P:\n" + e.getMessage(), 
-                     Alert.AlertType.ERROR);
+            updateSharedFilesList();
+            updateStatistics();
+        });
+        
+        log("🚀 Servicii P2P pornite cu succes!");
+        log("📍 ID-ul tău: " + discoveryService.getPeerId().substring(0, 16) + "...");
+        log("🔌 Port UDP (discovery): " + discoveryService.getDiscoveryPort());
+        log("🔌 Port TCP (transfer): " + fileTransferPort + (tls != null ? " 🔒 TLS" : ""));
+        
+        // Etapa INDEXING: fișierele noi sau modificate sunt citite în fundal și anunțate pe rând
+        Platform.runLater(() -> enterPhase(StartupPhase.INDEXING, started));
+        fileServer.startIndexing().whenComplete((added, error) -> Platform.runLater(() -> {
+            enterPhase(StartupPhase.READY, started);
+            statusLabel.setText("● Online");
+            refreshSharedButton.setDisable(false);
+            updateSharedFilesList();
+            if (added != null && added > 0) {
+                log("📂 " + added + " fișiere noi sau modificate indexate");
+            }
+            if (EXIT_WHEN_READY) {
+                shutdown();
+                Platform.exit();
+                System.exit(0);
+            }
+        }));
+    }
+    
+    /**
+     * Loghează cât a durat pornirea până la o etapă
+     */
+    private void enterPhase(StartupPhase phase, long started) {
+        long millis = (System.nanoTime() - started) / 1_000_000;
+        logger.info("Pornire: etapa {} după {} ms", phase, millis);
+        log("⏱ " + phase.description + " după " + millis + " ms");
+    }
+    
+    /**
+     * Pornește nodul DHT pe un socket UDP separat și intră în rețea prin seeds (dacă există);
+     * restul contactelor vin din anunțurile de descoperire
+     */
+    private void startDht() {
+        try {
+            KademliaNode node = new KademliaNode(discoveryService.getPeerId(), new UdpDhtTransport(null, DHT_PORT));
+            node.start();
+            discoveryService.setDhtPort(node.getPort());
+            List<InetSocketAddress> seeds = SwimMembership.parseSeeds(DHT_SEEDS);
+            if (!seeds.isEmpty()) {
+                node.bootstrap(seeds);
+            }
+            dht = node;
+            log("🔌 Port UDP (DHT): " + node.getPort());
+        } catch (IOException e) {
+            logger.warn("DHT indisponibil, căutarea deținătorilor se face doar între peers-ii descoperiți: {}",
+                        e.getMessage());
         }
     }
     
@@ -389,21 +695,51 @@ public class MainController {
      */
     private void onPeerDiscovered(PeerInfo peer) {
         connectedPeers.put(peer.getPeerId(), peer);
+        if (dht != null && peer.getDhtPort() > 0) {
+            dht.addContact(new InetSocketAddress(peer.getAddress(), peer.getDhtPort()));
+        }
         log("🌐 Peer nou conectat: " + peer.getPeerId().substring(0, 8) + "... @ " + peer.getAddress());
         
-        // Cere lista de fișiere de la noul peer
-        new Thread(() -> {
-            List<FileInfo> peerFiles = fileClient.requestFileList(peer);
+        if (fileClient != null) {
+            fileClient.updatePeerAddress(peer); // Descărcările reluate din jurnal au adresa de la pornirea trecută
+        }
+        
+        if (!FETCH_CATALOG_ON_DISCOVERY) {
+            Platform.runLater(this::updateStatistics);
+            return;
+        }
+        
+        PeerCatalogCache.Entry cached = catalogCache != null ? catalogCache.get(peer.getPeerId()) : null;
+        if (cached != null && discoveryService.hasCachedCatalog(peer.getPeerId())) {
+            // Versiunea salvată e încă valabilă; modificările de după ea vin ca evenimente de catalog
+            networkCatalog.addAll(withOwnerAddress(cached.getFiles(), peer)); // Adresa/portul pot fi altele
             Platform.runLater(() -> {
-                for (FileInfo file : peerFiles) {
-                    if (!networkFiles.contains(file)) {
-                        networkFiles.add(file);
-                    }
+                networkCatalog.flush();
+                updateStatistics();
+            });
+            log("📋 Catalogul peer-ului " + peer.getPeerId().substring(0, 8) + "... e actual în cache ("
+                + cached.getFiles().size() + " fișiere)");
+            return;
+        }
+        
+        // Cere lista de fișiere de la noul peer, împreună cu versiunea catalogului (pentru cache)
+        new Thread(() -> {
+            P2PMessage catalog = fileClient.requestCatalogEvents(peer, -1);
+            List<FileInfo> peerFiles = catalog != null ? catalog.getFileList() : List.of();
+            if (catalog != null && catalogCache != null) {
+                catalogCache.putCatalog(peer.getPeerId(), catalog.getCatalogEpoch(),
+                                        catalog.getCatalogSequence(), peerFiles);
+                if (cached != null) {
+                    networkCatalog.removeOwner(peer.getPeerId()); // Catalogul salvat era depășit (peer repornit)
                 }
+            }
+            networkCatalog.addAll(peerFiles);
+            Platform.runLater(() -> {
+                networkCatalog.flush();
                 updateStatistics();
                 log("📋 Primite " + peerFiles.size() + " fișiere de la peer " + 
                     peer.getPeerId().substring(0, 8) + "...");
-                    
+                
                 // Marchează fișierele deja descărcate după ce avem lista completă
                 markExistingDownloadsAsComplete();
             });
@@ -412,38 +748,136 @@ public class MainController {
         Platform.runLater(this::updateStatistics);
     }
     
+    /**
+     * Reia descărcările rămase neterminate la oprirea (sau căderea) anterioară, cu progresul din jurnal
+     * Fără jurnal (folosit de altă instanță), reluarea rămâne manuală, după fișierele .partial.
+     */
+    private void restoreTransfers() {
+        TransferJournal journal = new TransferJournal(cacheFolder.resolve("transfers.journal"));
+        List<TransferJournal.Entry> unfinished;
+        try {
+            unfinished = journal.open();
+        } catch (IOException e) {
+            logger.warn("Jurnal transferuri indisponibil, descărcările nu se reiau automat: {}", e.getMessage());
+            return;
+        }
+        transferJournal = journal;
+        fileClient.setTransferJournal(journal);
+        
+        int paused = 0;
+        for (TransferJournal.Entry entry : unfinished) {
+            String fileName = entry.getFileInfo().getFileName();
+            long size = entry.getFileInfo().getFileSize();
+            double progress = size > 0 ? entry.getVerifiedBytes() * 100.0 / size : 0;
+            downloadProgress.put(fileName, Math.min(Math.max(progress, 0.1), 99.9));
+            boolean isPaused = entry.getState() == DownloadTask.State.PAUSED;
+            downloadPaused.put(fileName, isPaused);
+            if (isPaused) {
+                paused++;
+            }
+        }
+        fileClient.restoreDownloads(unfinished);
+        if (!unfinished.isEmpty()) {
+            log("📒 " + unfinished.size() + " descărcări neterminate reluate din jurnal (" + paused + " pe pauză)");
+        }
+    }
+    
+    /**
+     * Afișează cataloagele salvate la pornirile anterioare, fără să aștepte descoperirea
+     * Fișierele peers-ilor care nu reapar în CATALOG_CACHE_GRACE_SECONDS dispar din tabel.
+     * Rulează pe thread-ul de pornire: fișierele intră în catalog înaintea celor de la peers-ii descoperiți.
+     */
+    private void loadCatalogCache() {
+        catalogCache = new PeerCatalogCache(cacheFolder.resolve("peer-catalogs"),
+                                            TimeUnit.DAYS.toMillis(CATALOG_CACHE_MAX_AGE_DAYS));
+        List<PeerCatalogCache.Entry> cached = catalogCache.load();
+        int fileCount = 0;
+        for (PeerCatalogCache.Entry entry : cached) {
+            networkCatalog.addAll(entry.getFiles());
+            fileCount += entry.getFiles().size();
+        }
+        if (fileCount > 0) {
+            int cachedFiles = fileCount;
+            Platform.runLater(() -> showCachedCatalogs(cached, cachedFiles));
+        }
+    }
+    
+    private void showCachedCatalogs(List<PeerCatalogCache.Entry> cached, int fileCount) {
+        networkCatalog.flush();
+        updateStatistics();
+        log("📋 " + fileCount + " fișiere din cache (" + cached.size() + " peers) - se revalidează când peers-ii reapar");
+        markExistingDownloadsAsComplete();
+        
+        PauseTransition expiry = new PauseTransition(Duration.seconds(CATALOG_CACHE_GRACE_SECONDS));
+        expiry.setOnFinished(e -> {
+            int missing = 0;
+            for (PeerCatalogCache.Entry entry : cached) {
+                if (!connectedPeers.containsKey(entry.getPeerId())) {
+                    networkCatalog.removeOwner(entry.getPeerId()); // Rămâne pe disc pentru o pornire viitoare
+                    missing++;
+                }
+            }
+            if (missing > 0) {
+                networkCatalog.flush();
+                updateStatistics();
+                log("📋 " + missing + " peers din cache nu au reapărut - fișierele lor au fost ascunse");
+            }
+        });
+        expiry.play();
+    }
+    
+    /**
+     * Copii ale fișierelor salvate, cu adresa curentă a peer-ului
+     */
+    private static List<FileInfo> withOwnerAddress(List<FileInfo> files, PeerInfo peer) {
+        return files.stream().map(file -> {
+            FileInfo copy = new FileInfo(file.getFileName(), file.getFileSize(), file.getFileHash());
+            copy.setOwnerPeerId(peer.getPeerId());
+            copy.setOwnerAddress(peer.getAddress());
+            copy.setOwnerPort(peer.getFileTransferPort());
+            return copy;
+        }).toList();
+    }
+    
     /**
      * Callback când un peer se deconectează
      */
     private void onPeerLost(String peerId) {
         connectedPeers.remove(peerId);
         
-        // Elimină fișierele de la peer-ul deconectat
-        Platform.runLater(() -> {
-            networkFiles.removeIf(file -> peerId.equals(file.getOwnerPeerId()));
-            updateStatistics();
-        });
+        // Elimină fișierele de la peer-ul deconectat (aplicat la următorul cadru)
+        networkCatalog.removeOwner(peerId);
         
         log("❌ Peer deconectat: " + peerId.substring(0, 8) + "...");
     }
     
     /**
-     * Callback când un peer adaugă un fișier nou (inclusiv propriile fișiere)
+     * Callback când se adaugă fișiere noi (de la un peer sau propriile fișiere)
+     * Un lot întreg e aplicat într-un singur runLater, cu un singur flush al catalogului.
      */
-    private void onFileAddedByPeer(FileInfo fileInfo) {
+    private void onFilesAdded(List<FileInfo> files) {
         Platform.runLater(() -> {
-            // Verifică dacă fișierul nu există deja în networkFiles
-            boolean exists = networkFiles.stream()
-                .anyMatch(f -> f.getFileHash().equals(fileInfo.getFileHash()));
+            // Doar fișierele care nu există deja în catalog (index după hash, O(1))
+            List<FileInfo> added = files.stream()
+                .filter(file -> !networkCatalog.containsHash(file.getFileHash()))
+                .toList();
+            if (added.isEmpty()) {
+                return;
+            }
+            networkCatalog.addAllIfNewHash(added);
+            networkCatalog.flush();
+            updateStatistics();
             
-            if (!exists) {
-                networkFiles.add(fileInfo);
-                updateStatistics();
-                
-                // Determină dacă e fișierul propriu sau de la alt peer
-                String ownerId = fileInfo.getOwnerPeerId();
-                boolean isOwnFile = (ownerId != null && ownerId.equals(discoveryService.getPeerId()));
-                
+            // Determină dacă sunt fișierele proprii sau de la alt peer
+            String ownerId = added.get(0).getOwnerPeerId();
+            boolean isOwnFile = (ownerId != null && ownerId.equals(discoveryService.getPeerId()));
+            
+            if (added.size() > FILES_ADDED_LOG_LIMIT) {
+                log((isOwnFile ? "📋 Fișierele tale apar în Available Files: " : "✨ Fișiere noi disponibile: ")
+                    + added.size() + (isOwnFile ? "" : " de la peer " + ownerId.substring(0, 8) + "..."));
+                return;
+            }
+            for (FileInfo fileInfo : added) {
                 if (isOwnFile) {
                     log("📋 Fișierul tău apare în Available Files: " + fileInfo.getFileName());
                 } else {
@@ -460,23 +894,42 @@ public class MainController {
     @FXML
     private void handleAddFile() {
         FileChooser fileChooser = new FileChooser();
-        fileChooser.setTitle("Selectează Fișier pentru Partajare");
-        File selectedFile = fileChooser.showOpenDialog(primaryStage);
+        fileChooser.setTitle("Selectează Fișiere pentru Partajare");
+        List<File> selectedFiles = fileChooser.showOpenMultipleDialog(primaryStage);
         
-        if (selectedFile != null) {
-            boolean success = fileServer.addSharedFile(selectedFile.toPath());
-            
-            if (success) {
-                updateSharedFilesList();
-                log("➕ Fișier adăugat: " + selectedFile.getName());
-                showAlert("Succes", "Fișierul a fost adăugat la partajare!", 
-                         Alert.AlertType.INFORMATION);
-                // Fișierul va apărea automat în networkFiles prin callback-ul onFileAdded
-            } else {
-                showAlert("Eroare", "Nu s-a putut adăuga fișierul!", 
-                         Alert.AlertType.ERROR);
-            }
+        if (selectedFiles == null || selectedFiles.isEmpty()) {
+            return;
         }
+        
+        // Copierea și hash-ul pot dura pentru multe fișiere - în afara thread-ului UI
+        addFileButton.setDisable(true);
+        new Thread(() -> {
+            int added = 0;
+            for (File selectedFile : selectedFiles) {
+                if (fileServer.addSharedFile(selectedFile.toPath())) {
+                    added++;
+                    if (selectedFiles.size() <= FILES_ADDED_LOG_LIMIT) {
+                        log("➕ Fișier adăugat: " + selectedFile.getName());
+                    }
+                }
+            }
+            int addedCount = added;
+            Platform.runLater(() -> {
+                addFileButton.setDisable(false);
+                updateSharedFilesList();
+                // Fișierele apar automat în catalogul de rețea prin callback-ul onFileAdded (în loturi)
+                if (addedCount > FILES_ADDED_LOG_LIMIT) {
+                    log("➕ Fișiere adăugate: " + addedCount);
+                }
+                if (addedCount == selectedFiles.size()) {
+                    showAlert("Succes", addedCount == 1 ? "Fișierul a fost adăugat la partajare!"
+                              : addedCount + " fișiere au fost adăugate la partajare!", Alert.AlertType.INFORMATION);
+                } else {
+                    showAlert("Eroare", "Nu s-au putut adăuga " + (selectedFiles.size() - addedCount) + " din "
+                              + selectedFiles.size() + " fișiere!", Alert.AlertType.ERROR);
+                }
+            });
+        }, "AddSharedFiles").start();
     }
     
     /**
@@ -513,11 +966,63 @@ public class MainController {
             downloadProgress.put(fileName, 0.0);
             downloadPaused.put(fileName, false);
             log("⬇️ Începe descărcarea: " + fileName);
-            fileClient.downloadFileAsync(fileInfo);
+            // Toți peers-ii conectați care au același hash; FileClient îl alege pe cel mai rapid
+            List<FileInfo> sources = networkCatalog.findHolders(fileInfo.getFileHash()).stream()
+                .filter(source -> connectedPeers.containsKey(source.getOwnerPeerId()))
+                .toList();
+            if (!sources.isEmpty()) {
+                fileClient.downloadFileAsync(fileInfo, sources);
+            } else if (dht != null) {
+                downloadFromDhtHolder(fileInfo);
+            } else {
+                fileClient.downloadFileAsync(fileInfo);
+            }
             networkFilesTable.refresh(); // Refresh UI
         }
     }
     
+    /**
+     * Anulează o descărcare în curs sau pe pauză și resetează progresul afișat
+     */
+    private void handleCancelDownload(FileInfo fileInfo) {
+        String fileName = fileInfo.getFileName();
+        if (!fileClient.isDownloadActive(fileName)) {
+            return;
+        }
+        fileClient.cancelDownload(fileName);
+        downloadProgress.remove(fileName);
+        downloadPaused.remove(fileName);
+        progressAggregator.remove(fileName);
+        lastLoggedProgress.remove(fileName);
+        log("✖ Descărcare anulată: " + fileName);
+        networkFilesTable.refresh();
+    }
+    
+    /**
+     * Niciun deținător printre peers-ii conectați: caută în DHT alți deținători ai aceluiași hash
+     */
+    private void downloadFromDhtHolder(FileInfo fileInfo) {
+        dht.findHolders(fileInfo.getFileHash()).whenComplete((holders, error) -> {
+            List<FileInfo> sources = holders == null ? List.of() : holders.stream()
+                .filter(holder -> !holder.getPeerId().equals(discoveryService.getPeerId()))
+                .map(holder -> {
+                    FileInfo source = new FileInfo(fileInfo.getFileName(), fileInfo.getFileSize(),
+                                                   fileInfo.getFileHash());
+                    source.setOwnerPeerId(holder.getPeerId());
+                    source.setOwnerAddress(holder.getAddress());
+                    source.setOwnerPort(holder.getFileTransferPort());
+                    return source;
+                })
+                .toList();
+            if (sources.isEmpty()) {
+                fileClient.downloadFileAsync(fileInfo);
+                return;
+            }
+            log("🔎 " + sources.size() + " deținători găsiți în DHT pentru " + fileInfo.getFileName());
+            fileClient.downloadFileAsync(fileInfo, sources);
+        });
+    }
+    
     /**
      * Șterge fișierul selectat din partajare
      */
@@ -577,22 +1082,22 @@ public class MainController {
         // Curăță progresul pentru fișierele șterse
         cleanupDeletedDownloads();
         
-        networkFiles.clear();
+        networkCatalog.clear();
         
         // Adaugă mai întâi propriile fișiere
-        networkFiles.addAll(sharedFiles);
+        networkCatalog.addAll(sharedFiles);
         
         new Thread(() -> {
+            // Peers-ii cei mai rapizi întâi: primul owner al unui fișier e cel afișat în tabel
+            PeerQualityTracker quality = fileClient.getQualityTracker();
             for (PeerInfo peer : connectedPeers.values()) {
-                List<FileInfo> peerFiles = fileClient.requestFileList(peer);
-                Platform.runLater(() -> {
-                    for (FileInfo file : peerFiles) {
-                        if (!networkFiles.contains(file)) {
-                            networkFiles.add(file);
-                        }
-                    }
-                    updateStatistics();
-                });
+                if (!quality.hasRtt(peer.getPeerId())) {
+                    fileClient.pingPeer(peer);
+                }
+            }
+            for (PeerInfo peer : quality.rank(connectedPeers.values(), PeerInfo::getPeerId, 0)) {
+                // Loturile sunt aplicate de bucla UI, fără runLater per peer
+                networkCatalog.addAll(fileClient.requestFileList(peer));
             }
             Platform.runLater(() -> {
                 // Marchează fișierele deja descărcate DUPĂ ce avem lista completă
@@ -621,10 +1126,8 @@ public class MainController {
         if (discoveryService != null) {
             for (FileInfo file : sharedFiles) {
                 file.setOwnerPeerId(discoveryService.getPeerId());
-                if (!networkFiles.contains(file)) {
-                    networkFiles.add(file);
-                }
             }
+            networkCatalog.addAll(sharedFiles);
         }
         
         updateStatistics();
@@ -648,6 +1151,9 @@ public class MainController {
                 }
                 return false;
             });
+            // Fișierele șterse nu mai sunt marcate ca descărcate la următoarea potrivire
+            downloadedFiles.keySet().removeIf(fileName -> !Files.exists(downloadFolder.resolve(fileName)));
+            partialSizes.keySet().removeIf(fileName -> !Files.exists(downloadFolder.resolve(fileName + ".partial")));
             
             // Refresh UI după cleanup
             networkFilesTable.refresh();
@@ -658,70 +1164,99 @@ public class MainController {
     }
     
     /**
-     * Scanează folderul P2P-Downloads și marchează fișierele existente ca fiind complete
+     * Hash-urile fișierelor din P2P-Downloads, citite o singură dată la pornire, în fundal
+     * Cele neschimbate de la pornirea trecută vin din cache. Descărcările neterminate au progresul
+     * din jurnal; doar fără jurnal se mai folosește lungimea fișierelor .partial.
      */
-    private void markExistingDownloadsAsComplete() {
-        try {
-            log("📂 Scanez folder: " + downloadFolder.toAbsolutePath());
-            
-            if (Files.exists(downloadFolder)) {
-                int markedCount = 0;
-                
-                // Scanează toate fișierele (inclusiv .partial)
-                var allFiles = Files.list(downloadFolder)
-                    .filter(Files::isRegularFile)
-                    .toList();
-                
-                log("🔍 Scanez " + allFiles.size() + " fișiere în P2P-Downloads...");
-                log("🌐 Fișiere în rețea: " + networkFiles.size());
-                
-                // Afișează toate fișierele din rețea
-                for (FileInfo netFile : networkFiles) {
-                    log("  🌍 În rețea: " + netFile.getFileName());
+    private void indexDownloads() {
+        boolean partialsFromFolder = transferJournal == null;
+        downloadIndexer.execute(() -> {
+            List<Path> files;
+            try (var stream = Files.list(downloadFolder)) {
+                files = stream.filter(Files::isRegularFile).toList();
+            } catch (IOException e) {
+                logger.error("Eroare la citirea folderului de descărcări", e);
+                return;
+            }
+            for (Path path : files) {
+                String fileName = path.getFileName().toString();
+                if (!fileName.endsWith(".partial")) {
+                    recordDownloaded(path);
+                } else if (partialsFromFolder) {
+                    try {
+                        partialSizes.put(fileName.substring(0, fileName.length() - ".partial".length()), Files.size(path));
+                    } catch (IOException e) {
+                        logger.debug("Fișier parțial necitibil: {}", fileName);
+                    }
                 }
-                
-                for (Path path : allFiles) {
-                    String fileName = path.getFileName().toString();
-                    String baseFileName = fileName.endsWith(".partial") 
-                        ? fileName.substring(0, fileName.length() - 8) 
-                        : fileName;
-                    
-                    // Verifică dacă fișierul (sau versiunea lui fără .partial) există în networkFiles
-                    FileInfo matchingFile = networkFiles.stream()
-                        .filter(fileInfo -> fileInfo.getFileName().equals(baseFileName))
-                        .findFirst()
-                        .orElse(null);
-                    
-                    if (matchingFile != null) {
-                        if (fileName.endsWith(".partial")) {
-                            // Fișier parțial - calculează progresul real
-                            long partialSize = Files.size(path);
-                            long totalSize = matchingFile.getFileSize();
-                            double progress = (partialSize * 100.0) / totalSize;
-                            
-                            downloadProgress.put(baseFileName, Math.min(progress, 99.9)); // Max 99.9% pentru partial
-                            log("⏸ Fișier parțial: " + baseFileName + " - " + String.format("%.1f%%", progress));
-                        } else {
-                            // Fișier complet
-                            downloadProgress.put(fileName, 100.0);
-                            markedCount++;
-                            log("✓ Fișier deja descărcat: " + fileName);
-                        }
-                    } else {
-                        log("  📄 " + fileName + " - în rețea: false");
+            }
+            downloadHashCache.retainAll(downloadedFiles.keySet());
+            logger.info("Descărcări existente: {} fișiere complete, {} parțiale fără jurnal",
+                        downloadedFiles.size(), partialSizes.size());
+            Platform.runLater(this::markExistingDownloadsAsComplete);
+        });
+    }
+    
+    /**
+     * Reține hash-ul unui fișier complet din P2P-Downloads (din cache sau citit acum)
+     * Rulează pe downloadIndexer.
+     */
+    private void recordDownloaded(Path path) {
+        String fileName = path.getFileName().toString();
+        try {
+            long size = Files.size(path);
+            long modified = Files.getLastModifiedTime(path).toMillis();
+            String hash = downloadHashCache.get(fileName, size, modified);
+            if (hash == null) {
+                MessageDigest digest = DeltaSync.md5();
+                try (InputStream in = Files.newInputStream(path)) {
+                    byte[] buffer = new byte[64 * 1024];
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        digest.update(buffer, 0, read);
                     }
                 }
-                
-                log("✅ Marcat " + markedCount + " fișiere ca descărcate");
-                    
-                // Refresh UI pentru a afișa progresul
-                networkFilesTable.refresh();
-            } else {
-                log("❌ Folder P2P-Downloads nu există!");
+                hash = DeltaSync.toHex(digest.digest());
+                downloadHashCache.put(fileName, size, modified, hash);
             }
+            downloadedFiles.put(fileName, hash);
         } catch (IOException e) {
-            logger.error("Eroare la scanarea fișierelor descărcate", e);
-            log("❌ Eroare la scanare: " + e.getMessage());
+            downloadedFiles.remove(fileName);
+            logger.debug("Fișier descărcat necitibil: {}", fileName);
+        }
+    }
+    
+    /**
+     * Marchează în tabel fișierele deja descărcate - același nume și același hash ca în rețea
+     * Nu citește nimic de pe disc: folosește hash-urile din indexDownloads și descărcările terminate.
+     */
+    private void markExistingDownloadsAsComplete() {
+        networkCatalog.flush(); // Asigură-te că lotul curent e aplicat înainte de potrivire
+        int markedCount = 0;
+        int partialCount = 0;
+        for (Map.Entry<String, String> entry : downloadedFiles.entrySet()) {
+            String fileName = entry.getKey();
+            boolean inNetwork = networkCatalog.findByHash(entry.getValue()).stream()
+                .anyMatch(file -> file.getFileName().equals(fileName));
+            if (inNetwork && !fileClient.isDownloadActive(fileName)) {
+                Double previous = downloadProgress.put(fileName, 100.0);
+                if (previous == null || previous < 100.0) {
+                    markedCount++;
+                }
+            }
+        }
+        // Fără jurnal, progresul descărcărilor neterminate e estimat din lungimea .partial
+        for (Map.Entry<String, Long> entry : partialSizes.entrySet()) {
+            FileInfo matchingFile = networkCatalog.findByName(entry.getKey());
+            if (matchingFile != null && matchingFile.getFileSize() > 0 && !downloadProgress.containsKey(entry.getKey())) {
+                double progress = entry.getValue() * 100.0 / matchingFile.getFileSize();
+                downloadProgress.put(entry.getKey(), Math.min(progress, 99.9)); // Max 99.9% pentru partial
+                partialCount++;
+            }
+        }
+        if (markedCount > 0 || partialCount > 0) {
+            log("✅ Marcat " + markedCount + " fișiere ca descărcate, " + partialCount + " parțiale");
+            networkFilesTable.refresh();
         }
     }
     
@@ -731,17 +1266,40 @@ public class MainController {
     private void updateStatistics() {
         connectedPeersLabel.setText("Peers conectați: " + connectedPeers.size());
         sharedFilesLabel.setText("Fișiere partajate: " + sharedFiles.size());
-        availableFilesLabel.setText("Fișiere disponibile: " + networkFiles.size());
+        availableFilesLabel.setText("Fișiere disponibile: " + networkCatalog.size());
     }
     
     /**
-     * Adaugă un mesaj în log
+     * Adaugă un mesaj în log (din orice thread - afișarea se face în loturi)
      */
     private void log(String message) {
-        Platform.runLater(() -> {
-            String timestamp = new SimpleDateFormat("HH:mm:ss").format(new Date());
-            activityLog.appendText("[" + timestamp + "] " + message + "\n");
-        });
+        logBuffer.add(message);
+    }
+    
+    /**
+     * Pornește golirea periodică a buffer-ului de log în TextArea (pe thread-ul JavaFX)
+     */
+    private void startLogFlusher() {
+        Timeline flusher = new Timeline(new KeyFrame(Duration.millis(LOG_FLUSH_INTERVAL_MS), e -> flushActivityLog()));
+        flusher.setCycleCount(Animation.INDEFINITE);
+        flusher.play();
+    }
+    
+    /**
+     * Adaugă mesajele acumulate printr-un singur appendText și limitează dimensiunea log-ului
+     */
+    private void flushActivityLog() {
+        String text = logBuffer.drain(LOG_MAX_LINES_PER_FLUSH);
+        if (text == null) {
+            return;
+        }
+        
+        activityLog.appendText(text);
+        
+        int excess = activityLog.getLength() - LOG_MAX_CHARS;
+        if (excess > 0) {
+            activityLog.deleteText(0, excess);
+        }
     }
     
     /**
@@ -769,24 +1327,59 @@ public class MainController {
             fileServer.stop();
         }
         
+        if (fileClient != null) {
+            fileClient.shutdown(); // Descărcările rămân în .partial pentru reluare
+        }
+        
+        if (transferJournal != null) {
+            transferJournal.close(); // După client: ultimul progres al descărcărilor oprite e deja scris
+        }
+        
+        if (searchService != null) {
+            searchService.stop();
+        }
+        
+        if (dht != null) {
+            dht.stop();
+        }
+        
+        if (catalogCache != null) {
+            catalogCache.close(); // Scrierile în așteptare ajung pe disc
+        }
+        
+        if (hashCache != null) {
+            hashCache.close();
+        }
+        
+        downloadIndexer.shutdownNow();
+        if (downloadHashCache != null) {
+            downloadHashCache.close();
+        }
+        
+        if (identity != null) {
+            identity.close(); // Slotul devine liber pentru următoarea pornire
+        }
+        
         logger.info("Aplicație închisă");
     }
     
+    public void setPrimaryStage(Stage stage) {
+        this.primaryStage = stage;
+    }
+    
     /**
-     * Găsește un port TCP disponibil în intervalul specificat
+     * Etapele pornirii: fereastra e folosibilă imediat, nodul devine descoperibil cu fișierele
+     * deja indexate, iar fișierele noi sau modificate sunt citite la final, în fundal
      */
-    private int findAvailablePort(int startPort, int endPort) {
-        for (int port = startPort; port <= endPort; port++) {
-            try (java.net.ServerSocket socket = new java.net.ServerSocket(port)) {
-                return port;
-            } catch (IOException e) {
-                // Port ocupat, încearcă următorul
-            }
+    private enum StartupPhase {
+        ONLINE("Descoperibil în rețea, cu fișierele deja indexate"),
+        INDEXING("Indexarea fișierelor noi a pornit"),
+        READY("Pornire completă");
+        
+        private final String description;
+        
+        StartupPhase(String description) {
+            this.description = description;
         }
-        throw new RuntimeException("Nu s-a găsit niciun port disponibil între " + startPort + " și " + endPort);
-    }
-    
-    public void setPrimaryStage(Stage stage) {
-        this.primaryStage = stage;
     }
 }
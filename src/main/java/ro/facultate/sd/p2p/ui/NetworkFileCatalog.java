@@ -0,0 +1,329 @@
+package ro.facultate.sd.p2p.ui;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Predicate;
+
+import javafx.beans.value.ObservableValue;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
+import javafx.collections.transformation.SortedList;
+import ro.facultate.sd.p2p.model.FileInfo;
+import ro.facultate.sd.p2p.search.FileSearchIndex;
+
+/**
+ * Modelul tabelului de fișiere din rețea, indexat prin hash-uri
+ * Modificările (adăugări, ștergeri, actualizări) pot fi trimise din orice thread;
+ * ele sunt aplicate pe thread-ul JavaFX prin flush(), ca un singur lot de
+ * removeAll/addAll, deci tabelul primește un eveniment per lot, nu per fișier.
+ * Căutările (după cheie, hash, nume, owner) sunt O(1) prin indecși.
+ */
+public class NetworkFileCatalog {
+    private static final int SMALL_REMOVAL = 64; // Peste acest număr lista e reconstruită
+    
+    private final ObservableList<FileInfo> items = FXCollections.observableArrayList();
+    private final FilteredList<FileInfo> filtered = new FilteredList<>(items);
+    private final SortedList<FileInfo> sorted = new SortedList<>(filtered);
+    
+    // Indecși - accesați doar pe thread-ul JavaFX
+    private final Map<FileInfo, FileInfo> byKey = new HashMap<>(); // cheie = nume + hash
+    private final Map<String, List<FileInfo>> byHash = new HashMap<>();
+    private final Map<String, List<FileInfo>> byName = new HashMap<>();
+    private final Map<String, Set<FileInfo>> byOwner = new HashMap<>();
+    // Toți deținătorii fiecărui hash (tabelul arată un singur rând per fișier)
+    private final Map<String, Map<String, FileInfo>> holdersByHash = new HashMap<>();
+    private final FileSearchIndex searchIndex = new FileSearchIndex(); // Căutare după nume/atribute
+    
+    private final ConcurrentLinkedQueue<Command> pending = new ConcurrentLinkedQueue<>();
+    
+    // Operații (thread-safe, aplicate la următorul flush)
+    
+    /**
+     * Adaugă fișiere; o intrare existentă de la același owner e înlocuită (adresă/port noi)
+     */
+    public void addAll(Collection<FileInfo> files) {
+        pending.add(new Command(Kind.ADD, List.copyOf(files), null));
+    }
+    
+    /**
+     * Adaugă un fișier doar dacă niciun fișier cu același hash nu e deja în catalog
+     */
+    public void addIfNewHash(FileInfo file) {
+        pending.add(new Command(Kind.ADD_IF_NEW_HASH, List.of(file), null));
+    }
+    
+    /**
+     * Ca addIfNewHash, pentru un lot de fișiere (o singură comandă)
+     */
+    public void addAllIfNewHash(Collection<FileInfo> files) {
+        pending.add(new Command(Kind.ADD_IF_NEW_HASH, List.copyOf(files), null));
+    }
+    
+    public void removeAll(Collection<FileInfo> files) {
+        pending.add(new Command(Kind.REMOVE, List.copyOf(files), null));
+    }
+    
+    /**
+     * Elimină toate fișierele unui peer (ex. la deconectare)
+     */
+    public void removeOwner(String peerId) {
+        pending.add(new Command(Kind.REMOVE_OWNER, List.of(), peerId));
+    }
+    
+    public void clear() {
+        pending.add(new Command(Kind.CLEAR, List.of(), null));
+    }
+    
+    /**
+     * Aplică modificările în așteptare ca un singur lot (doar pe thread-ul JavaFX)
+     * @return fișierele adăugate efectiv în acest lot; null dacă nu s-a schimbat nimic
+     */
+    public Collection<FileInfo> flush() {
+        if (pending.isEmpty()) {
+            return null;
+        }
+        
+        Set<FileInfo> removed = new HashSet<>();
+        Map<FileInfo, FileInfo> added = new LinkedHashMap<>();
+        Command command;
+        
+        while ((command = pending.poll()) != null) {
+            switch (command.kind) {
+                case CLEAR:
+                    removed.addAll(byKey.keySet());
+                    added.clear();
+                    byKey.clear();
+                    byHash.clear();
+                    byName.clear();
+                    byOwner.clear();
+                    holdersByHash.clear();
+                    searchIndex.clear();
+                    break;
+                
+                case ADD:
+                case ADD_IF_NEW_HASH:
+                    for (FileInfo file : command.files) {
+                        if (file.getOwnerPeerId() != null) {
+                            holdersByHash.computeIfAbsent(file.getFileHash(), k -> new LinkedHashMap<>())
+                                         .put(file.getOwnerPeerId(), file);
+                        }
+                        if (command.kind == Kind.ADD_IF_NEW_HASH && byHash.containsKey(file.getFileHash())) {
+                            continue;
+                        }
+                        FileInfo existing = byKey.get(file);
+                        if (existing == null) {
+                            index(file);
+                            added.put(file, file);
+                        } else if (existing != file && sameOwner(existing, file)) {
+                            // Actualizare: înlocuiește instanța veche
+                            unindex(existing);
+                            index(file);
+                            if (added.put(file, file) == null) {
+                                removed.add(existing);
+                            }
+                        }
+                    }
+                    break;
+                
+                case REMOVE:
+                    for (FileInfo file : command.files) {
+                        removeHolder(file.getFileHash(), ownerKey(file));
+                        FileInfo existing = byKey.get(file);
+                        if (existing != null) {
+                            unindex(existing);
+                            if (added.remove(existing) == null) {
+                                removed.add(existing);
+                            }
+                        }
+                    }
+                    break;
+                
+                case REMOVE_OWNER:
+                    String lostPeer = command.peerId;
+                    holdersByHash.values().removeIf(holders -> holders.remove(lostPeer) != null && holders.isEmpty());
+                    Set<FileInfo> owned = byOwner.get(command.peerId);
+                    if (owned != null) {
+                        for (FileInfo file : new ArrayList<>(owned)) {
+                            unindex(file);
+                            if (added.remove(file) == null) {
+                                removed.add(file);
+                            }
+                            // Fișierul rămâne în tabel dacă îl mai deține alt peer
+                            Map<String, FileInfo> holders = holdersByHash.get(file.getFileHash());
+                            if (holders != null && !byKey.containsKey(file)) {
+                                FileInfo replacement = holders.values().iterator().next();
+                                index(replacement);
+                                added.put(replacement, replacement);
+                            }
+                        }
+                    }
+                    break;
+            }
+        }
+        
+        if (removed.isEmpty() && added.isEmpty()) {
+            return null;
+        }
+        
+        if (removed.size() > SMALL_REMOVAL) {
+            // Ștergeri multe: reconstruiește lista într-o singură trecere O(n)
+            // (removeAll generează câte o modificare pe element, O(n·k) în vederile derivate)
+            List<FileInfo> remaining = new ArrayList<>(byKey.size());
+            for (FileInfo file : items) {
+                if (!removed.contains(file)) {
+                    remaining.add(file);
+                }
+            }
+            remaining.addAll(added.values());
+            items.setAll(remaining);
+        } else {
+            // Un singur eveniment de ștergere și unul de adăugare pentru tot lotul
+            if (!removed.isEmpty()) {
+                items.removeAll(removed);
+            }
+            if (!added.isEmpty()) {
+                items.addAll(added.values());
+            }
+        }
+        return added.values();
+    }
+    
+    private void index(FileInfo file) {
+        byKey.put(file, file);
+        byHash.computeIfAbsent(file.getFileHash(), k -> new ArrayList<>(1)).add(file);
+        byName.computeIfAbsent(file.getFileName(), k -> new ArrayList<>(1)).add(file);
+        byOwner.computeIfAbsent(ownerKey(file), k -> new HashSet<>()).add(file);
+        searchIndex.add(file);
+    }
+    
+    private void unindex(FileInfo file) {
+        byKey.remove(file);
+        searchIndex.remove(file);
+        removeFrom(byHash, file.getFileHash(), file);
+        removeFrom(byName, file.getFileName(), file);
+        Set<FileInfo> owned = byOwner.get(ownerKey(file));
+        if (owned != null && owned.remove(file) && owned.isEmpty()) {
+            byOwner.remove(ownerKey(file));
+        }
+    }
+    
+    private void removeHolder(String fileHash, String peerId) {
+        Map<String, FileInfo> holders = holdersByHash.get(fileHash);
+        if (holders != null && holders.remove(peerId) != null && holders.isEmpty()) {
+            holdersByHash.remove(fileHash);
+        }
+    }
+    
+    private static void removeFrom(Map<String, List<FileInfo>> map, String key, FileInfo file) {
+        List<FileInfo> list = map.get(key);
+        if (list != null) {
+            list.removeIf(f -> f == file);
+            if (list.isEmpty()) {
+                map.remove(key);
+            }
+        }
+    }
+    
+    private static String ownerKey(FileInfo file) {
+        return file.getOwnerPeerId() != null ? file.getOwnerPeerId() : "";
+    }
+    
+    private static boolean sameOwner(FileInfo a, FileInfo b) {
+        return ownerKey(a).equals(ownerKey(b)) || a.getOwnerPeerId() == null;
+    }
+    
+    // Interogări (doar pe thread-ul JavaFX)
+    
+    public boolean containsHash(String fileHash) {
+        return byHash.containsKey(fileHash);
+    }
+    
+    /**
+     * Primul fișier cu numele dat sau null
+     */
+    public FileInfo findByName(String fileName) {
+        List<FileInfo> list = byName.get(fileName);
+        return list != null ? list.get(0) : null;
+    }
+    
+    /**
+     * Toți peers-ii cunoscuți care dețin fișierul (câte o intrare per peer)
+     */
+    public List<FileInfo> findHolders(String fileHash) {
+        Map<String, FileInfo> holders = holdersByHash.get(fileHash);
+        return holders != null ? new ArrayList<>(holders.values()) : List.of();
+    }
+    
+    public List<FileInfo> findByHash(String fileHash) {
+        return byHash.getOrDefault(fileHash, List.of());
+    }
+    
+    public int size() {
+        return items.size();
+    }
+    
+    /**
+     * Caută în catalog folosind indexul inversat (vezi FileSearchIndex pentru sintaxă)
+     */
+    public List<FileInfo> search(String query, int maxResults) {
+        return searchIndex.search(query, maxResults);
+    }
+    
+    /**
+     * Toate fișierele (nefiltrate, nesortate) - vedere read-only
+     */
+    public List<FileInfo> getAll() {
+        return FXCollections.unmodifiableObservableList(items);
+    }
+    
+    /**
+     * Lista pentru TableView: filtrată și sortată incremental
+     */
+    public SortedList<FileInfo> getView() {
+        return sorted;
+    }
+    
+    /**
+     * Leagă sortarea de comparatorul tabelului (click pe coloane)
+     */
+    public void bindComparator(ObservableValue<Comparator<FileInfo>> comparator) {
+        sorted.comparatorProperty().bind(comparator);
+    }
+    
+    /**
+     * Setează filtrul afișat (null = toate fișierele)
+     */
+    public void setFilter(Predicate<FileInfo> predicate) {
+        filtered.setPredicate(predicate);
+    }
+    
+    public int visibleCount() {
+        return filtered.size();
+    }
+    
+    private enum Kind { ADD, ADD_IF_NEW_HASH, REMOVE, REMOVE_OWNER, CLEAR }
+    
+    /**
+     * O modificare în așteptare
+     */
+    private static final class Command {
+        private final Kind kind;
+        private final List<FileInfo> files;
+        private final String peerId;
+        
+        private Command(Kind kind, List<FileInfo> files, String peerId) {
+            this.kind = kind;
+            this.files = files;
+            this.peerId = peerId;
+        }
+    }
+}